@@ -6,16 +6,28 @@
 package com.archimatetool.csv.export;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
+import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.ecore.EObject;
 
 import com.archimatetool.csv.CSVConstants;
@@ -27,6 +39,7 @@ import com.archimatetool.model.IArchimateElement;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimateRelationship;
 import com.archimatetool.model.IAssociationRelationship;
+import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.IFolder;
 import com.archimatetool.model.IInfluenceRelationship;
 import com.archimatetool.model.IJunction;
@@ -38,6 +51,9 @@ import com.archimatetool.model.IProperty;
 /**
  * CSV Exporter
  * 
+ * The elements, relations and properties files are written concurrently. Each file is written through a CSVRowWriter
+ * and a buffered file channel. The model should not be changed while exporting.
+ * 
  * @author Phillip Beauvoir
  */
 public class CSVExporter implements CSVConstants {
@@ -66,10 +82,52 @@ public class CSVExporter implements CSVConstants {
         fModel = model;
     }
     
+    /**
+     * A task that writes one file
+     */
+    @FunctionalInterface
+    private interface WriteTask {
+        void write() throws IOException;
+    }
+    
     public void export(File folder) throws IOException {
-        writeModelAndElements(new File(folder, createElementsFileName()));
-        writeRelationships(new File(folder, createRelationsFileName()));
-        writeProperties(new File(folder, createPropertiesFileName()));
+        List<WriteTask> writeTasks = List.of(
+                () -> writeModelAndElements(new File(folder, createElementsFileName())),
+                () -> writeRelationships(new File(folder, createRelationsFileName())),
+                () -> writeProperties(new File(folder, createPropertiesFileName())));
+        
+        // Write the files concurrently
+        List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+        for(WriteTask writeTask : writeTasks) {
+            tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                writeTask.write();
+                return null;
+            }));
+        }
+        
+        // Wait for all files to be written and report the first error
+        IOException exception = null;
+        
+        for(ForkJoinTask<Void> task : tasks) {
+            try {
+                task.get();
+            }
+            catch(ExecutionException ex) {
+                if(exception == null) {
+                    exception = ex.getCause() instanceof IOException ? (IOException)ex.getCause() : new IOException(ex.getCause());
+                }
+            }
+            catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                if(exception == null) {
+                    exception = new InterruptedIOException();
+                }
+            }
+        }
+        
+        if(exception != null) {
+            throw exception;
+        }
     }
     
     /**
@@ -107,38 +165,31 @@ public class CSVExporter implements CSVConstants {
      * Write the Model and All Elements
      */
     private void writeModelAndElements(File file) throws IOException {
-        Writer writer = createOutputStreamWriter(file);
-        
-        // Write BOM
-        writeBOM(writer);
-        
-        // Write Header
-        String header = createHeader(MODEL_ELEMENTS_HEADER);
-        writer.write(header);
-        
-        // CRLF
-        writer.write(CRLF);
-        
-        // Write Model
-        String modelRow = createModelRow();
-        writer.write(modelRow);
-        
-        // Write Elements
-        writeElementsInFolder(writer, fModel.getFolder(FolderType.STRATEGY));
-        writeElementsInFolder(writer, fModel.getFolder(FolderType.BUSINESS));
-        writeElementsInFolder(writer, fModel.getFolder(FolderType.APPLICATION));
-        writeElementsInFolder(writer, fModel.getFolder(FolderType.TECHNOLOGY));
-        writeElementsInFolder(writer, fModel.getFolder(FolderType.MOTIVATION));
-        writeElementsInFolder(writer, fModel.getFolder(FolderType.IMPLEMENTATION_MIGRATION));
-        writeElementsInFolder(writer, fModel.getFolder(FolderType.OTHER));
-        
-        writer.close();
+        try(CSVRowWriter writer = createRowWriter(file)) {
+            // Write BOM
+            writeBOM(writer);
+            
+            // Write Header
+            writer.writeHeader(MODEL_ELEMENTS_HEADER);
+            
+            // Write Model
+            writeModelRow(writer);
+            
+            // Write Elements
+            writeElementsInFolder(writer, fModel.getFolder(FolderType.STRATEGY));
+            writeElementsInFolder(writer, fModel.getFolder(FolderType.BUSINESS));
+            writeElementsInFolder(writer, fModel.getFolder(FolderType.APPLICATION));
+            writeElementsInFolder(writer, fModel.getFolder(FolderType.TECHNOLOGY));
+            writeElementsInFolder(writer, fModel.getFolder(FolderType.MOTIVATION));
+            writeElementsInFolder(writer, fModel.getFolder(FolderType.IMPLEMENTATION_MIGRATION));
+            writeElementsInFolder(writer, fModel.getFolder(FolderType.OTHER));
+        }
     }
     
     /**
-     * Write all elements in a given folder and its child folders to Writer
+     * Write all elements in a given folder and its child folders
      */
-    private void writeElementsInFolder(Writer writer, IFolder folder) throws IOException {
+    private void writeElementsInFolder(CSVRowWriter writer, IFolder folder) throws IOException {
         if(folder == null) {
             return;
         }
@@ -148,8 +199,7 @@ public class CSVExporter implements CSVConstants {
         
         for(IArchimateConcept concept : concepts) {
             if(concept instanceof IArchimateElement) {
-                writer.write(CRLF);
-                writer.write(createElementRow((IArchimateElement)concept));
+                writeElementRow(writer, (IArchimateElement)concept);
             }
         }
     }
@@ -166,90 +216,121 @@ public class CSVExporter implements CSVConstants {
             return;
         }
         
-        Writer writer = createOutputStreamWriter(file);
-        
-        // Write BOM
-        writeBOM(writer);
-        
-        // Write Header
-        String header = createHeader(RELATIONSHIPS_HEADER);
-        writer.write(header);
-        
-        // Write Relationships
-        for(IArchimateConcept concept : concepts) {
-            if(concept instanceof IArchimateRelationship) {
-                writer.write(CRLF);
-                writer.write(createRelationshipRow((IArchimateRelationship)concept));
+        try(CSVRowWriter writer = createRowWriter(file)) {
+            // Write BOM
+            writeBOM(writer);
+            
+            // Write Header
+            writer.writeHeader(RELATIONSHIPS_HEADER);
+            
+            // Write Relationships
+            for(IArchimateConcept concept : concepts) {
+                if(concept instanceof IArchimateRelationship) {
+                    writeRelationshipRow(writer, (IArchimateRelationship)concept);
+                }
             }
         }
-        
-        writer.close();
     }
     
     /**
      * Write All Properties
      */
     private void writeProperties(File file) throws IOException {
-        // Are there any to write?
-        if(!fWriteEmptyFile && !hasProperties()) {
-            return;
-        }
-        
-        Writer writer = createOutputStreamWriter(file);
-        
-        // Write BOM
-        writeBOM(writer);
-        
-        // Write Header
-        String header = createHeader(PROPERTIES_HEADER);
-        writer.write(header);
-        
-        // Write Model Properties
-        for(IProperty property : fModel.getProperties()) {
-            writer.write(CRLF);
-            writer.write(createPropertyRow(fModel.getId(), property));
-        }
+        CSVRowWriter writer = null;
         
-        // Write Element and Relationship Properties
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
-            if(eObject instanceof IArchimateConcept) {
-                IArchimateConcept concept = (IArchimateConcept)eObject;
+        try {
+            // Write Model Properties
+            for(IProperty property : fModel.getProperties()) {
+                writer = startPropertiesFile(writer, file);
+                writePropertyRow(writer, fModel.getId(), property.getKey(), property.getValue());
+            }
+            
+            // Write Element and Relationship Properties in one pass of the model tree
+            for(TreeIterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
+                EObject eObject = iter.next();
                 
-                for(IProperty property : concept.getProperties()) {
-                    writer.write(CRLF);
-                    writer.write(createPropertyRow(concept.getId(), property));
+                if(eObject instanceof IArchimateConcept) {
+                    IArchimateConcept concept = (IArchimateConcept)eObject;
+                    
+                    for(IProperty property : concept.getProperties()) {
+                        writer = startPropertiesFile(writer, file);
+                        writePropertyRow(writer, concept.getId(), property.getKey(), property.getValue());
+                    }
+                    
+                    // Write special attributes as properties
+                    if(hasSpecialProperties(concept)) {
+                        writer = startPropertiesFile(writer, file);
+                        writeSpecialProperties(writer, concept);
+                    }
+                    
+                    // Concepts do not contain concepts
+                    iter.prune();
                 }
-                
-                // Write special attributes as properties
-                writeSpecialProperties(writer, concept);
+                // Diagram models do not contain concepts
+                else if(eObject instanceof IDiagramModel) {
+                    iter.prune();
+                }
+            }
+            
+            // Write an empty file
+            if(fWriteEmptyFile) {
+                writer = startPropertiesFile(writer, file);
             }
         }
+        finally {
+            if(writer != null) {
+                writer.close();
+            }
+        }
+    }
+    
+    /**
+     * Create the properties file and write its header if it has not been created yet
+     * @return The writer
+     */
+    private CSVRowWriter startPropertiesFile(CSVRowWriter writer, File file) throws IOException {
+        if(writer == null) {
+            writer = createRowWriter(file);
+            
+            // Write BOM
+            writeBOM(writer);
+            
+            // Write Header
+            writer.writeHeader(PROPERTIES_HEADER);
+        }
+        
+        return writer;
+    }
+    
+    /**
+     * @return true if special attributes of the concept are written as properties
+     */
+    private boolean hasSpecialProperties(IArchimateConcept concept) {
+        if(concept instanceof IInfluenceRelationship) {
+            return StringUtils.isSet(((IInfluenceRelationship)concept).getStrength());
+        }
         
-        writer.close();
+        return concept instanceof IAccessRelationship || concept instanceof IAssociationRelationship || concept instanceof IJunction;
     }
     
-    private void writeSpecialProperties(Writer writer, IArchimateConcept concept) throws IOException {
+    private void writeSpecialProperties(CSVRowWriter writer, IArchimateConcept concept) throws IOException {
         // Influence relationship strength
         if(concept instanceof IInfluenceRelationship) {
             String strength = ((IInfluenceRelationship)concept).getStrength();
             if(StringUtils.isSet(strength)) {
-                writer.write(CRLF);
-                writer.write(createPropertyRow(concept.getId(), INFLUENCE_STRENGTH, strength));
+                writePropertyRow(writer, concept.getId(), INFLUENCE_STRENGTH, strength);
             }
         }
         
         // Access relationship type
         else if(concept instanceof IAccessRelationship) {
-            writer.write(CRLF);
-            writer.write(createPropertyRow(concept.getId(), ACCESS_TYPE, ACCESS_TYPES.get(((IAccessRelationship)concept).getAccessType())));
+            writePropertyRow(writer, concept.getId(), ACCESS_TYPE, ACCESS_TYPES.get(((IAccessRelationship)concept).getAccessType()));
         }
         
         // Association relationship directed
         else if(concept instanceof IAssociationRelationship) {
-            writer.write(CRLF);
-            writer.write(createPropertyRow(concept.getId(), ASSOCIATION_DIRECTED,
-                    ((IAssociationRelationship)concept).isDirected() ? "true" : "false")); //$NON-NLS-1$ //$NON-NLS-2$
+            writePropertyRow(writer, concept.getId(), ASSOCIATION_DIRECTED,
+                    ((IAssociationRelationship)concept).isDirected() ? "true" : "false"); //$NON-NLS-1$ //$NON-NLS-2$
         }
         
         // Junction Type
@@ -261,188 +342,152 @@ public class CSVExporter implements CSVConstants {
             else {
                 type = JUNCTION_OR;
             }
-            writer.write(CRLF);
-            writer.write(createPropertyRow(concept.getId(), JUNCTION_TYPE, type));
+            writePropertyRow(writer, concept.getId(), JUNCTION_TYPE, type);
         }
     }
     
     /**
-     * @return true if the model has any user properties
+     * Create a Header from given string elements
      */
-    boolean hasProperties() {
-        if(!fModel.getProperties().isEmpty()) {
-            return true;
-        }
-        
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
-            if(eObject instanceof IArchimateConcept) {
-                IArchimateConcept concept = (IArchimateConcept)eObject;
-                if(!concept.getProperties().isEmpty()) {
-                    return true;
-                }
-            }
-        }
+    String createHeader(String[] elements) {
+        return createRowString(writer -> writer.writeHeader(elements));
+    }
+    
+    /**
+     * Create a String Row for the Archimate Model
+     */
+    String createModelRow() {
+        return createRowString(this::writeModelRow);
+    }
 
-        return false;
+    /**
+     * Create a String Row for an Element
+     */
+    String createElementRow(IArchimateElement element) {
+        return createRowString(writer -> writeElementRow(writer, element));
+    }
+    
+    /**
+     * Create a String Row for a Relationship
+     */
+    String createRelationshipRow(IArchimateRelationship relationship) {
+        return createRowString(writer -> writeRelationshipRow(writer, relationship));
     }
 
     /**
-     * Create a Header from given string elements
+     * Create a String Row for a Property
      */
-    String createHeader(String[] elements) {
-        StringBuffer sb = new StringBuffer();
-        
-        for(int i = 0; i < elements.length; i++) {
-            String s = elements[i];
-            sb.append("\""); //$NON-NLS-1$
-            sb.append(s);
-            sb.append("\""); //$NON-NLS-1$
-            if(i < elements.length - 1) {
-                sb.append(fDelimiter);
-            }
-        }
-        
-        return sb.toString();
+    String createPropertyRow(String conceptID, IProperty property) {
+        return createPropertyRow(conceptID, property.getKey(), property.getValue());
+    }
+
+    /**
+     * Create a String Row for a Key/Value
+     */
+    String createPropertyRow(String conceptID, String key, String value) {
+        return createRowString(writer -> writePropertyRow(writer, conceptID, key, value));
     }
     
     /**
-     * Create a String Row for the Archimate Model
+     * Writes a row
      */
-    String createModelRow() {
-        StringBuffer sb = new StringBuffer();
-        
-        String id = fModel.getId();
-        sb.append(surroundWithQuotes(id));
-        sb.append(fDelimiter);
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(CSVRowWriter writer) throws IOException;
+    }
+    
+    /**
+     * @return A row written by rowWriter as a String
+     */
+    private String createRowString(RowWriter rowWriter) {
+        StringWriter stringWriter = new StringWriter();
         
-        sb.append(surroundWithQuotes(ARCHIMATE_MODEL_TYPE));
-        sb.append(fDelimiter);
+        try(CSVRowWriter writer = createRowWriter(stringWriter)) {
+            rowWriter.write(writer);
+        }
+        catch(IOException ex) { // Not thrown by a StringWriter
+            throw new RuntimeException(ex);
+        }
         
-        String name = normalise(fModel.getName());
-        sb.append(surroundWithQuotes(name));
-        sb.append(fDelimiter);
+        return stringWriter.toString();
+    }
+    
+    /**
+     * Write a Row for the Archimate Model
+     */
+    private void writeModelRow(CSVRowWriter writer) throws IOException {
+        writer.startRow();
         
-        String purpose = normalise(fModel.getPurpose());
-        sb.append(surroundWithQuotes(purpose));
-        sb.append(fDelimiter);
+        writer.writeField(fModel.getId());
+        writer.writeField(ARCHIMATE_MODEL_TYPE);
+        writer.writeText(fModel.getName());
+        writer.writeText(fModel.getPurpose());
         
         // Specialization dummy entry
-        sb.append("\"\""); //$NON-NLS-1$
-        
-        return sb.toString();
+        writer.writeField(""); //$NON-NLS-1$
     }
 
     /**
-     * Create a String Row for an Element
+     * Write a Row for an Element
      */
-    String createElementRow(IArchimateElement element) {
-        StringBuffer sb = new StringBuffer();
+    private void writeElementRow(CSVRowWriter writer, IArchimateElement element) throws IOException {
+        writer.startRow();
         
         // ID
-        String id = element.getId();
-        sb.append(surroundWithQuotes(id));
-        sb.append(fDelimiter);
+        writer.writeField(element.getId());
         
         // Class
-        sb.append(surroundWithQuotes(element.eClass().getName()));
-        sb.append(fDelimiter);
+        writer.writeField(element.eClass().getName());
         
         // Name
-        String name = normalise(element.getName());
-        sb.append(surroundWithQuotes(name));
-        sb.append(fDelimiter);
+        writer.writeText(element.getName());
         
         // Documentation
-        String documentation = normalise(element.getDocumentation());
-        sb.append(surroundWithQuotes(documentation));
-        sb.append(fDelimiter);
+        writer.writeText(element.getDocumentation());
         
         // Specialization
         IProfile profile = element.getPrimaryProfile();
-        String specialization = normalise(profile != null ? profile.getName() : ""); //$NON-NLS-1$
-        sb.append(surroundWithQuotes(specialization));
-        
-        return sb.toString();
+        writer.writeText(profile != null ? profile.getName() : ""); //$NON-NLS-1$
     }
     
     /**
-     * Create a String Row for a Relationship
+     * Write a Row for a Relationship
      */
-    String createRelationshipRow(IArchimateRelationship relationship) {
-        StringBuffer sb = new StringBuffer();
+    private void writeRelationshipRow(CSVRowWriter writer, IArchimateRelationship relationship) throws IOException {
+        writer.startRow();
         
         // ID
-        String id = relationship.getId();
-        sb.append(surroundWithQuotes(id));
-        sb.append(fDelimiter);
+        writer.writeField(relationship.getId());
         
         // Class
-        sb.append(surroundWithQuotes(relationship.eClass().getName()));
-        sb.append(fDelimiter);
+        writer.writeField(relationship.eClass().getName());
         
         // Name
-        String name = normalise(relationship.getName());
-        sb.append(surroundWithQuotes(name));
-        sb.append(fDelimiter);
+        writer.writeText(relationship.getName());
         
         // Documentation
-        String documentation = normalise(relationship.getDocumentation());
-        sb.append(surroundWithQuotes(documentation));
-        sb.append(fDelimiter);
+        writer.writeText(relationship.getDocumentation());
         
         // Source
-        if(relationship.getSource() != null) {
-            String sourceID = relationship.getSource().getId();
-            sb.append(surroundWithQuotes(sourceID));
-        }
-        else {
-            sb.append("\"\""); //$NON-NLS-1$
-        }
-        sb.append(fDelimiter);
+        writer.writeField(relationship.getSource() != null ? relationship.getSource().getId() : ""); //$NON-NLS-1$
         
         // Target
-        if(relationship.getTarget() != null) {
-            String targetID = relationship.getTarget().getId();
-            sb.append(surroundWithQuotes(targetID));
-        }
-        else {
-            sb.append("\"\""); //$NON-NLS-1$
-        }
-        sb.append(fDelimiter);
+        writer.writeField(relationship.getTarget() != null ? relationship.getTarget().getId() : ""); //$NON-NLS-1$
         
         // Specialization
         IProfile profile = relationship.getPrimaryProfile();
-        String specialization = normalise(profile != null ? profile.getName() : ""); //$NON-NLS-1$
-        sb.append(surroundWithQuotes(specialization));
-        
-        return sb.toString();
-    }
-
-    /**
-     * Create a String Row for a Property
-     */
-    String createPropertyRow(String conceptID, IProperty property) {
-        return createPropertyRow(conceptID, property.getKey(), property.getValue());
+        writer.writeText(profile != null ? profile.getName() : ""); //$NON-NLS-1$
     }
 
     /**
-     * Create a String Row for a Key/Value
+     * Write a Row for a Key/Value
      */
-    String createPropertyRow(String conceptID, String key, String value) {
-        StringBuffer sb = new StringBuffer();
-        
-        sb.append(surroundWithQuotes(conceptID));
-        sb.append(fDelimiter);
-        
-        key = normalise(key);
-        sb.append(surroundWithQuotes(key));
-        sb.append(fDelimiter);
-        
-        value = normalise(value);
-        sb.append(surroundWithQuotes(value));
+    private void writePropertyRow(CSVRowWriter writer, String conceptID, String key, String value) throws IOException {
+        writer.startRow();
         
-        return sb.toString();
+        writer.writeField(conceptID);
+        writer.writeText(key);
+        writer.writeText(value);
     }
 
     /**
@@ -450,56 +495,10 @@ public class CSVExporter implements CSVConstants {
      * @param writer
      * @throws IOException
      */
-    private void writeBOM(Writer writer) throws IOException {
+    private void writeBOM(CSVRowWriter writer) throws IOException {
         if(fEncoding.contains("BOM")) { //$NON-NLS-1$
-            writer.write('\ufeff');
-        }
-    }
-    
-    /**
-     * Return a normalised String.
-     * A Null string is returned as an empty string
-     * All types of CR and LF and TAB characters are converted to single spaces
-     */
-    String normalise(String s) {
-        if(s == null) {
-            return ""; //$NON-NLS-1$
-        }
-        
-        // Newlines (optional)
-        if(fStripNewLines) {
-            s = s.replaceAll("(\r\n|\r|\n)", " ");  //$NON-NLS-1$//$NON-NLS-2$
-        }
-        
-        // Tabs become a space
-        s = s.replace("\t", " "); //$NON-NLS-1$ //$NON-NLS-2$
-        
-        // Single quotes become double quotes
-        s = s.replace("\"", "\"\"");  //$NON-NLS-1$//$NON-NLS-2$
-        
-        return s;
-    }
-    
-    String surroundWithQuotes(String s) {
-        if(needsLeadingCharHack(s)) {
-            return "\"=\"\"" + s + "\"\"\""; //$NON-NLS-1$ //$NON-NLS-2$
+            writer.writeBOM();
         }
-        else if(needsLeadingCharFormulaHack(s)) {
-            s = " " + s; //$NON-NLS-1$
-        }
-        return "\"" + s + "\""; //$NON-NLS-1$ //$NON-NLS-2$
-    }
-    
-    // See http://www.creativyst.com/Doc/Articles/CSV/CSV01.htm#CSVAndExcel
-    boolean needsLeadingCharHack(String s) {
-        return s != null && fExcelCompatible && (s.startsWith(" ") || s.startsWith("0"));  //$NON-NLS-1$//$NON-NLS-2$
-    }
-    
-    // If string starts with "=", "+", "-", "@"
-    // See https://payatu.com/csv-injection-basic-to-exploit
-    //     https://owasp.org/www-community/attacks/CSV_Injection
-    boolean needsLeadingCharFormulaHack(String s) {
-        return s != null && fExcelCompatible && (s.startsWith("=") || s.startsWith("+") || s.startsWith("-") || s.startsWith("@"));  //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
     }
     
     /**
@@ -562,15 +561,43 @@ public class CSVExporter implements CSVConstants {
         return fFilePrefix + PROPERTIES_FILENAME + FILE_EXTENSION;
     }
     
-    OutputStreamWriter createOutputStreamWriter(File file) throws IOException {
+    CSVRowWriter createRowWriter(Writer writer) {
+        return new CSVRowWriter(writer, fDelimiter, fStripNewLines, fExcelCompatible);
+    }
+    
+    CSVRowWriter createRowWriter(File file) throws IOException {
+        return createRowWriter(createWriter(file));
+    }
+    
+    /**
+     * Create a Writer that encodes into a large buffer and writes it to the file's channel.
+     * Characters that can't be encoded are replaced as with an OutputStreamWriter.
+     */
+    Writer createWriter(File file) throws IOException {
+        Charset charset = getCharset();
+        
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        
+        return Channels.newWriter(channel, charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), CSVRowWriter.BUFFER_SIZE);
+    }
+    
+    Charset getCharset() throws UnsupportedEncodingException {
         if("ANSI".equals(fEncoding)) { //$NON-NLS-1$
-            return new OutputStreamWriter(new FileOutputStream(file));
+            return Charset.defaultCharset();
         }
         else if(fEncoding.startsWith("UTF-8")) { //$NON-NLS-1$
-            return new OutputStreamWriter(new FileOutputStream(file), "UTF-8"); //$NON-NLS-1$
+            return StandardCharsets.UTF_8;
         }
         else {
-            return new OutputStreamWriter(new FileOutputStream(file), fEncoding);
+            try {
+                return Charset.forName(fEncoding);
+            }
+            catch(IllegalCharsetNameException | UnsupportedCharsetException ex) {
+                throw new UnsupportedEncodingException(fEncoding);
+            }
         }
     }
 }
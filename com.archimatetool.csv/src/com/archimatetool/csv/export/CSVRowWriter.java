@@ -0,0 +1,235 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.csv.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+import com.archimatetool.csv.CSVConstants;
+
+
+/**
+ * Writes CSV rows to a Writer.
+ *
+ * Fields are quoted, normalised and given the Excel hacks as they are copied into a char buffer,
+ * so no Strings are created for each field or row. The buffer is written to the Writer when it is full.
+ *
+ * This is not thread safe. Use one for each file.
+ *
+ * @author Phillip Beauvoir
+ */
+class CSVRowWriter implements Closeable {
+    
+    static final int BUFFER_SIZE = 1 << 16;
+    
+    private Writer fWriter;
+    
+    private char[] fBuffer = new char[BUFFER_SIZE];
+    private int fLength;
+    
+    private char fDelimiter;
+    private boolean fStripNewLines;
+    private boolean fExcelCompatible;
+    
+    private boolean fHasRow;
+    private boolean fFirstField = true;
+    
+    CSVRowWriter(Writer writer, char delimiter, boolean stripNewLines, boolean excelCompatible) {
+        fWriter = writer;
+        fDelimiter = delimiter;
+        fStripNewLines = stripNewLines;
+        fExcelCompatible = excelCompatible;
+    }
+    
+    /**
+     * Write the BOM character
+     */
+    void writeBOM() throws IOException {
+        append('\ufeff');
+    }
+    
+    /**
+     * Write a header row of fields in quotes
+     */
+    void writeHeader(String[] fields) throws IOException {
+        startRow();
+        
+        for(String field : fields) {
+            startField();
+            append('"');
+            append(field, 0, field.length());
+            append('"');
+        }
+    }
+    
+    /**
+     * Start a new row. Rows are separated by CRLF.
+     */
+    void startRow() throws IOException {
+        if(fHasRow) {
+            append(CSVConstants.CRLF, 0, CSVConstants.CRLF.length());
+        }
+        
+        fHasRow = true;
+        fFirstField = true;
+    }
+    
+    /**
+     * Write a field as it is, such as an id or a class name, in quotes
+     */
+    void writeField(String s) throws IOException {
+        if(s == null) {
+            s = "null"; //$NON-NLS-1$
+        }
+        
+        startField();
+        
+        char first = s.isEmpty() ? 0 : s.charAt(0);
+        writeQuotedStart(first);
+        append(s, 0, s.length());
+        writeQuotedEnd(first);
+    }
+    
+    /**
+     * Write a text field in quotes.
+     * A null string is written as an empty string.
+     * Tabs become a space, quotes are doubled, and new lines optionally become a space.
+     */
+    void writeText(String s) throws IOException {
+        if(s == null) {
+            s = ""; //$NON-NLS-1$
+        }
+        
+        startField();
+        
+        char first = s.isEmpty() ? 0 : normalise(s.charAt(0));
+        writeQuotedStart(first);
+        
+        int length = s.length();
+        int start = 0; // Start of the run of characters that are copied as they are
+        
+        for(int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            
+            if(c == '"' || c == '\t' || (fStripNewLines && (c == '\r' || c == '\n'))) {
+                append(s, start, i);
+                
+                if(c == '"') {
+                    append('"');
+                    append('"');
+                }
+                else {
+                    append(' ');
+                    
+                    // CRLF becomes one space
+                    if(c == '\r' && i + 1 < length && s.charAt(i + 1) == '\n') {
+                        i++;
+                    }
+                }
+                
+                start = i + 1;
+            }
+        }
+        
+        append(s, start, length);
+        writeQuotedEnd(first);
+    }
+    
+    /**
+     * Write any buffered characters to the Writer and flush it
+     */
+    void flush() throws IOException {
+        flushBuffer();
+        fWriter.flush();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        }
+        finally {
+            fWriter.close();
+        }
+    }
+    
+    /**
+     * @return The first character of a normalised text field
+     */
+    private char normalise(char c) {
+        return c == '\t' || (fStripNewLines && (c == '\r' || c == '\n')) ? ' ' : c;
+    }
+    
+    private void startField() throws IOException {
+        if(!fFirstField) {
+            append(fDelimiter);
+        }
+        fFirstField = false;
+    }
+    
+    private void writeQuotedStart(char first) throws IOException {
+        if(fExcelCompatible && needsLeadingCharHack(first)) {
+            append('"');
+            append('=');
+            append('"');
+            append('"');
+        }
+        else {
+            append('"');
+            if(fExcelCompatible && needsLeadingCharFormulaHack(first)) {
+                append(' ');
+            }
+        }
+    }
+    
+    private void writeQuotedEnd(char first) throws IOException {
+        if(fExcelCompatible && needsLeadingCharHack(first)) {
+            append('"');
+            append('"');
+        }
+        append('"');
+    }
+    
+    // See http://www.creativyst.com/Doc/Articles/CSV/CSV01.htm#CSVAndExcel
+    static boolean needsLeadingCharHack(char first) {
+        return first == ' ' || first == '0';
+    }
+    
+    // If string starts with "=", "+", "-", "@"
+    // See https://payatu.com/csv-injection-basic-to-exploit
+    //     https://owasp.org/www-community/attacks/CSV_Injection
+    static boolean needsLeadingCharFormulaHack(char first) {
+        return first == '=' || first == '+' || first == '-' || first == '@';
+    }
+    
+    private void append(char c) throws IOException {
+        if(fLength == fBuffer.length) {
+            flushBuffer();
+        }
+        fBuffer[fLength++] = c;
+    }
+    
+    private void append(String s, int start, int end) throws IOException {
+        while(start < end) {
+            if(fLength == fBuffer.length) {
+                flushBuffer();
+            }
+            
+            int count = Math.min(end - start, fBuffer.length - fLength);
+            s.getChars(start, start + count, fBuffer, fLength);
+            fLength += count;
+            start += count;
+        }
+    }
+    
+    private void flushBuffer() throws IOException {
+        if(fLength > 0) {
+            fWriter.write(fBuffer, 0, fLength);
+            fLength = 0;
+        }
+    }
+}
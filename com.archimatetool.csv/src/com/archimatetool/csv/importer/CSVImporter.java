@@ -5,16 +5,21 @@
  */
 package com.archimatetool.csv.importer;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -83,6 +88,9 @@ public class CSVImporter implements CSVConstants {
     // IArchimateRelationship -> Source/Target IDs in two String array objects [0] and [1]
     Map<IArchimateRelationship, String[]> relationshipSourceTargets = new HashMap<>();
 
+    // IProperties object -> (Key -> first IProperty with that key): existing Properties looked up
+    private Map<IProperties, Map<String, IProperty>> propertyKeys = new HashMap<>();
+
     // CSV Model id. This might be set as a reference for Properties. Might be null.
     private String modelID;
     
@@ -92,6 +100,14 @@ public class CSVImporter implements CSVConstants {
     // Model purpose from CSV. Optional.
     private String modelPurpose;
 
+    // Number of characters read from the start of a file to detect the delimiter
+    static final int DELIMITER_DETECTION_LENGTH = 8192;
+    
+    private static final char[] DELIMITERS = { ',', ';', '\t' };
+    
+    private static final Pattern NEWLINES_PATTERN = Pattern.compile("(\r\n|\r|\n|\t)"); //$NON-NLS-1$
+    private static final Pattern ID_PATTERN = Pattern.compile("^[a-zA-Z0-9._-]+$"); //$NON-NLS-1$
+
     public CSVImporter(IArchimateModel model) {
         fModel = model;
     }
@@ -235,36 +251,39 @@ public class CSVImporter implements CSVConstants {
      * @throws CSVParseException
      */
     void importElements(File file) throws IOException, CSVParseException {
-        List<CSVRecord> records = getRecords(file);
-        
-        // Should have at least one record
-        if(records.isEmpty()) {
-            throw new CSVParseException(Messages.CSVImporter_1);
-        }
-        
-        // Header
-        if(!isHeaderRecord(records.get(0), MODEL_ELEMENTS_HEADER)) {
-            throw new CSVParseException(Messages.CSVImporter_13);
-        }
-        
-        // Header size is what we'll use to check the rest of the records
-        int headerSize = records.get(0).size();
-        
-        for(int i = 1; i < records.size(); i++) {
-            CSVRecord csvRecord = records.get(i);
+        try(CSVParser parser = createParser(file)) {
+            Iterator<CSVRecord> records = parser.iterator();
             
-            // Wrong record length
-            if(csvRecord.size() != headerSize) {
-                throw new CSVParseException(NLS.bind(Messages.CSVImporter_2, csvRecord.toString()) );
+            // Should have at least one record
+            if(!hasNextRecord(records)) {
+                throw new CSVParseException(Messages.CSVImporter_1);
             }
-
-            // Model (this is optional)
-            if(isModelRecord(csvRecord)) {
-                parseModelRecord(records.get(i));
+            
+            // Header
+            CSVRecord header = records.next();
+            if(!isHeaderRecord(header, MODEL_ELEMENTS_HEADER)) {
+                throw new CSVParseException(Messages.CSVImporter_13);
             }
-            // Element
-            else {
-                createElementFromRecord(csvRecord);
+            
+            // Header size is what we'll use to check the rest of the records
+            int headerSize = header.size();
+            
+            while(hasNextRecord(records)) {
+                CSVRecord csvRecord = records.next();
+                
+                // Wrong record length
+                if(csvRecord.size() != headerSize) {
+                    throw new CSVParseException(NLS.bind(Messages.CSVImporter_2, csvRecord.toString()) );
+                }
+    
+                // Model (this is optional)
+                if(isModelRecord(csvRecord)) {
+                    parseModelRecord(csvRecord);
+                }
+                // Element
+                else {
+                    createElementFromRecord(csvRecord);
+                }
             }
         }
     }
@@ -354,26 +373,29 @@ public class CSVImporter implements CSVConstants {
      * @throws CSVParseException
      */
     void importRelations(File file) throws IOException, CSVParseException {
-        List<CSVRecord> records = getRecords(file);
-        
-        // Header
-        if(!isHeaderRecord(records.get(0), RELATIONSHIPS_HEADER)) {
-            throw new CSVParseException(Messages.CSVImporter_14);
-        }
-        
-        // Header size is what we'll use to check the rest of the records
-        int headerSize = records.get(0).size();
-        
-        for(int i = 1; i < records.size(); i++) {
-            CSVRecord csvRecord = records.get(i);
+        try(CSVParser parser = createParser(file)) {
+            Iterator<CSVRecord> records = parser.iterator();
             
-            // Wrong record length
-            if(csvRecord.size() != headerSize) {
-                throw new CSVParseException(NLS.bind(Messages.CSVImporter_2, csvRecord.toString()) );
+            // Header
+            CSVRecord header = hasNextRecord(records) ? records.next() : null;
+            if(header == null || !isHeaderRecord(header, RELATIONSHIPS_HEADER)) {
+                throw new CSVParseException(Messages.CSVImporter_14);
+            }
+            
+            // Header size is what we'll use to check the rest of the records
+            int headerSize = header.size();
+            
+            while(hasNextRecord(records)) {
+                CSVRecord csvRecord = records.next();
+                
+                // Wrong record length
+                if(csvRecord.size() != headerSize) {
+                    throw new CSVParseException(NLS.bind(Messages.CSVImporter_2, csvRecord.toString()) );
+                }
+    
+                // Relation
+                createRelationFromRecord(csvRecord);
             }
-
-            // Relation
-            createRelationFromRecord(csvRecord);
         }
 
         // Now connect the relations
@@ -465,18 +487,22 @@ public class CSVImporter implements CSVConstants {
      * @throws CSVParseException
      */
     void importProperties(File file) throws IOException, CSVParseException {
-        for(CSVRecord csvRecord : getRecords(file)) {
-            if(!isPropertiesRecordCorrectSize(csvRecord)) {
-                throw new CSVParseException(Messages.CSVImporter_2);
-            }
-
-            // Header
-            if(isHeaderRecord(csvRecord, PROPERTIES_HEADER)) {
-                continue;
-            }
-            // Property
-            else {
-                createPropertyFromRecord(csvRecord);
+        try(CSVParser parser = createParser(file)) {
+            for(Iterator<CSVRecord> records = parser.iterator(); hasNextRecord(records);) {
+                CSVRecord csvRecord = records.next();
+                
+                if(!isPropertiesRecordCorrectSize(csvRecord)) {
+                    throw new CSVParseException(Messages.CSVImporter_2);
+                }
+    
+                // Header
+                if(isHeaderRecord(csvRecord, PROPERTIES_HEADER)) {
+                    continue;
+                }
+                // Property
+                else {
+                    createPropertyFromRecord(csvRecord);
+                }
             }
         }
     }
@@ -499,15 +525,11 @@ public class CSVImporter implements CSVConstants {
             checkIDForInvalidCharacters(id);
         }
         
-        // Find referenced concept in newly created list
-        IProperties propertiesObject = newConcepts.get(id);
-        
-        // Not found, check if it's referencing an existing element in the model
-        if(propertiesObject == null) {
-            EObject eObject = ArchimateModelUtils.getObjectByID(fModel, id);
-            if(eObject instanceof IProperties) {
-                propertiesObject = (IProperties)eObject;
-            }
+        // Find referenced concept in newly created list or existing object in the model
+        IProperties propertiesObject = null;
+        EObject eObject = findObjectByID(id);
+        if(eObject instanceof IProperties) {
+            propertiesObject = (IProperties)eObject;
         }
 
         // Not found, check if it's referencing the model
@@ -570,60 +592,94 @@ public class CSVImporter implements CSVConstants {
     // -------------------------------- Helpers --------------------------------
     
     /**
-     * Get all records for a CSV file.
-     * This is a brute-force approach to try with a comma delimiter first. If that fails then
-     * try a semicolon, and if that fails, a tab.
+     * Create a parser that reads the records of a CSV file as they are iterated.
+     * The delimiter is detected from the start of the file.
      * 
      * @param file The file to open
-     * @return Records, which may be empty but never null
+     * @return The parser, which should be closed
      * @throws IOException
      */
-    private List<CSVRecord> getRecords(File file) throws IOException {
-        List<CSVRecord> records = new ArrayList<CSVRecord>(); 
-        CSVParser parser = null;
-        
-        final String errorMessage = "invalid char between encapsulated token and delimiter"; //$NON-NLS-1$
+    private CSVParser createParser(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new BOMInputStream(new FileInputStream(file)), StandardCharsets.UTF_8));
         
         try {
-            InputStreamReader is = new InputStreamReader(new BOMInputStream(new FileInputStream(file)), "UTF-8"); //$NON-NLS-1$
-            parser = new CSVParser(is, CSVFormat.DEFAULT);
-            records = parser.getRecords();
+            return new CSVParser(reader, CSVFormat.DEFAULT.withDelimiter(detectDelimiter(reader)));
         }
         catch(IOException ex) {
-            if(parser != null) {
-                parser.close();
+            reader.close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * The parser's iterator reports read and parse errors as IllegalStateException so report these as IOException
+     * @return True if there is another record
+     * @throws IOException
+     */
+    private boolean hasNextRecord(Iterator<CSVRecord> records) throws IOException {
+        try {
+            return records.hasNext();
+        }
+        catch(IllegalStateException ex) {
+            if(ex.getCause() instanceof IOException) {
+                throw (IOException)ex.getCause();
+            }
+            throw ex;
+        }
+    }
+    
+    /**
+     * Detect the delimiter of a CSV file from the first record in a bounded prefix of the file.
+     * This is whichever of comma, semicolon or tab occurs most outside of quotes, preferring a comma.
+     * The reader is reset to where it was.
+     * 
+     * @param reader The reader which must support mark()
+     * @return The delimiter
+     * @throws IOException
+     */
+    static char detectDelimiter(Reader reader) throws IOException {
+        char[] prefix = new char[DELIMITER_DETECTION_LENGTH];
+        int length = 0;
+        
+        reader.mark(DELIMITER_DETECTION_LENGTH);
+        
+        for(int count = 0; length < prefix.length && (count = reader.read(prefix, length, prefix.length - length)) != -1;) {
+            length += count;
+        }
+        
+        reader.reset();
+        
+        int[] counts = new int[DELIMITERS.length];
+        boolean quoted = false;
+        
+        for(int i = 0; i < length; i++) {
+            char c = prefix[i];
+            
+            if(c == '"') {
+                quoted = !quoted;
             }
-            if(ex.getMessage() != null && ex.getMessage().contains(errorMessage)) {
-                try {
-                    InputStreamReader is = new InputStreamReader(new BOMInputStream(new FileInputStream(file)), "UTF-8"); //$NON-NLS-1$
-                    parser = new CSVParser(is, CSVFormat.DEFAULT.withDelimiter(';'));
-                    records = parser.getRecords();
+            else if(!quoted) {
+                // End of first record
+                if(c == '\r' || c == '\n') {
+                    break;
                 }
-                catch(IOException ex2) {
-                    if(parser != null) {
-                        parser.close();
-                    }
-                    if(ex2.getMessage() != null && ex2.getMessage().contains(errorMessage)) {
-                        InputStreamReader is = new InputStreamReader(new BOMInputStream(new FileInputStream(file)), "UTF-8"); //$NON-NLS-1$
-                        parser = new CSVParser(is, CSVFormat.DEFAULT.withDelimiter('\t'));
-                        records = parser.getRecords();
-                    }
-                    else {
-                        throw ex2;
+                
+                for(int j = 0; j < DELIMITERS.length; j++) {
+                    if(c == DELIMITERS[j]) {
+                        counts[j]++;
                     }
                 }
             }
-            else {
-                throw ex;
-            }
         }
-        finally {
-            if(parser != null) {
-                parser.close();
+        
+        int best = 0;
+        for(int j = 1; j < DELIMITERS.length; j++) {
+            if(counts[j] > counts[best]) {
+                best = j;
             }
         }
         
-        return records;
+        return DELIMITERS[best];
     }
     
     /**
@@ -693,7 +749,7 @@ public class CSVImporter implements CSVConstants {
         }
         
         // Newlines and Tabs
-        s = s.replaceAll("(\r\n|\r|\n|\t)", " ");  //$NON-NLS-1$//$NON-NLS-2$
+        s = NEWLINES_PATTERN.matcher(s).replaceAll(" ");  //$NON-NLS-1$
         
         return s;
     }
@@ -729,7 +785,7 @@ public class CSVImporter implements CSVConstants {
     }
     
     void checkIDForInvalidCharacters(String id) throws CSVParseException {
-        if(!id.matches("^[a-zA-Z0-9._-]+$")) { //$NON-NLS-1$
+        if(!ID_PATTERN.matcher(id).matches()) {
             throw new CSVParseException(Messages.CSVImporter_12 + id);
         }
     }
@@ -739,7 +795,7 @@ public class CSVImporter implements CSVConstants {
      * @throws CSVParseException 
      */
     IArchimateConcept findArchimateConceptInModel(String id, EClass eClass) throws CSVParseException {
-        EObject eObject = ArchimateModelUtils.getObjectByID(fModel, id);
+        EObject eObject = fModel.getObjectByID(id);
         
         // Found an element with this id
         if(eObject != null) {
@@ -761,13 +817,7 @@ public class CSVImporter implements CSVConstants {
      * Find a referenced concept either in the model or in the newly created elements list
      */
     IArchimateConcept findReferencedConcept(String id) throws CSVParseException {
-        // Do we have it as a newly created element?
-        EObject eObject = newConcepts.get(id);
-        
-        // No. How about in the model?
-        if(eObject == null) {
-            eObject = ArchimateModelUtils.getObjectByID(fModel, id);
-        }
+        EObject eObject = findObjectByID(id);
         
         // Not found
         if(eObject == null) {
@@ -782,6 +832,26 @@ public class CSVImporter implements CSVConstants {
         return (IArchimateConcept)eObject;
     }
     
+    /**
+     * Find an object by id in the newly created concepts or in the model. Return null if not found.
+     * Both are looked up in a map so this is not an expensive operation.
+     */
+    EObject findObjectByID(String id) {
+        if(id == null) {
+            return null;
+        }
+        
+        // Do we have it as a newly created concept?
+        EObject eObject = newConcepts.get(id);
+        
+        // No. How about in the model's index of ids?
+        if(eObject == null) {
+            eObject = fModel.getObjectByID(id);
+        }
+        
+        return eObject;
+    }
+    
     boolean isArchimateConceptEClass(EClass eClass) {
         return eClass != null && IArchimatePackage.eINSTANCE.getArchimateConcept().isSuperTypeOf(eClass);
     }
@@ -795,13 +865,18 @@ public class CSVImporter implements CSVConstants {
     }
     
     IProperty getProperty(IProperties propertiesObject, String key) {
-        for(IProperty property : propertiesObject.getProperties()) {
-            if(property.getKey().equals(key)) {
-                return property;
+        // Index the object's properties by key the first time so that many properties are not searched for each key
+        Map<String, IProperty> keys = propertyKeys.get(propertiesObject);
+        
+        if(keys == null) {
+            keys = new HashMap<>();
+            for(IProperty property : propertiesObject.getProperties()) {
+                keys.putIfAbsent(property.getKey(), property);
             }
+            propertyKeys.put(propertiesObject, keys);
         }
         
-        return null;
+        return keys.get(key);
     }
     
     private void storeUpdatedConceptFeature(IArchimateConcept concept, EAttribute feature, Object value) {
@@ -0,0 +1,74 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.diagram.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.gef.ui.parts.GraphicalViewerImpl;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Shell;
+
+import com.archimatetool.model.IDiagramModel;
+
+
+/**
+ * Creates images of many diagram models.
+ * 
+ * DiagramUtils.createModelReferencedImage(IDiagramModel, double, int) creates a new Shell and Viewer for each diagram model.
+ * This re-uses one off-screen Shell and one Viewer for each type of diagram model and sets the diagram model as the Viewer's contents.
+ * 
+ * This must be used in the Display thread. Call dispose() when done.
+ * 
+ * @author Phillip Beauvoir
+ */
+public class DiagramImageRenderer {
+    
+    private Shell shell;
+    
+    private Map<EClass, GraphicalViewerImpl> viewers = new HashMap<>();
+    
+    /**
+     * @param model The model to create the image from
+     * @param scale The scale to use. 1 is full size.
+     * @param margin amount of white space margin to apply around the image
+     * @return ModelReferencedImage wrapper class containing a Scaled Image from the given Diagram Model and offset bounds
+     *         Clients must dispose of the Image when done.
+     *         If model has no children a blank image of 100x100 is returned
+     */
+    public ModelReferencedImage createModelReferencedImage(IDiagramModel model, double scale, int margin) {
+        if(shell == null) {
+            shell = new Shell();
+            shell.setLayout(new FillLayout());
+        }
+        
+        GraphicalViewerImpl viewer = viewers.get(model.eClass());
+        
+        if(viewer == null) {
+            viewer = DiagramUtils.createViewer(model, shell);
+            viewers.put(model.eClass(), viewer);
+        }
+        else {
+            viewer.setContents(model);
+            viewer.flush();
+        }
+        
+        return DiagramUtils.createModelReferencedImage(viewer, scale, margin);
+    }
+    
+    /**
+     * Dispose of the Shell and the Viewers
+     */
+    public void dispose() {
+        if(shell != null) {
+            shell.dispose();
+            shell = null;
+        }
+        
+        viewers.clear();
+    }
+}
@@ -100,6 +100,7 @@ public final class DiagramUtils {
      * @return ModelReferencedImage wrapper class containing a Scaled Image from the given Diagram Model and offset bounds
      *         Clients must dispose of the Image when done.
      *         If model has no children a blank image of 100x100 is returned
+     * @see DiagramImageRenderer for creating images of many diagram models
      */
     public static ModelReferencedImage createModelReferencedImage(IDiagramModel model, double scale, int margin) {
         Shell shell = new Shell();
@@ -124,7 +125,7 @@ public final class DiagramUtils {
         return createModelReferencedImage(graphicalViewer, scale, margin).getImage();
     }
     
-    private static ModelReferencedImage createModelReferencedImage(GraphicalViewer graphicalViewer, double scale, int margin) {
+    static ModelReferencedImage createModelReferencedImage(GraphicalViewer graphicalViewer, double scale, int margin) {
         LayerManager layerManager = (LayerManager)graphicalViewer.getEditPartRegistry().get(LayerManager.ID);
         IFigure rootFigure = layerManager.getLayer(LayerConstants.PRINTABLE_LAYERS);
         return createModelReferencedImage(rootFigure, scale, margin);
@@ -146,6 +146,23 @@ public interface IArchiveManager {
      */
     byte[] getBytesFromEntry(String imagePath);
     
+    /**
+     * Get the content digest of stored image bytes. The digest is based on the size and a strong hash of the bytes
+     * and can be used to find identical images in this or another IArchiveManager.
+     * 
+     * @param imagePath The image path
+     * @return The content digest or null if not found
+     */
+    String getImageDigest(String imagePath);
+    
+    /**
+     * Get the image path of stored image bytes that have the given content digest
+     * 
+     * @param digest The content digest as returned from {@link #getImageDigest(String)}
+     * @return The image path or null if no stored image has this content digest
+     */
+    String getImagePathForDigest(String digest);
+    
     /**
      * Create a new Image for this path entry
      * @param imagePath The image imagePath
@@ -7,15 +7,22 @@ package com.archimatetool.editor.model;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.swt.widgets.Shell;
 
@@ -36,11 +43,21 @@ import com.archimatetool.model.IFolder;
 import com.archimatetool.model.IIdentifier;
 import com.archimatetool.model.IProfile;
 import com.archimatetool.model.IProfiles;
+import com.archimatetool.model.util.IModelContentListener;
 
 
 /**
  * Check Model for integrity
  * 
+ * Objects are checked in one pass through the model. Each check adds any error messages to a shared list so that
+ * nothing is allocated for objects that pass.
+ * 
+ * If set to parallel the model's top level folders are checked concurrently on the common ForkJoinPool.
+ * Messages that need an object's label are created afterwards on the calling thread.
+ * 
+ * If set to incremental the checker listens to model changes and, after a successful check, only the objects that
+ * have changed since then are checked again. An incremental checker should be disposed when no longer needed.
+ * 
  * @author Phillip Beauvoir
  */
 public class ModelChecker {
@@ -52,10 +69,52 @@ public class ModelChecker {
     
     private List<String> fErrorMessages;
     
+    private boolean fParallel;
+    
+    // Incremental checking
+    private IModelContentListener fModelListener;
+    private Set<EObject> fDirtyObjects;
+    private boolean fNeedsFullCheck = true;
+    
     public ModelChecker(IArchimateModel model) {
         fModel = model;
     }
     
+    /**
+     * Set whether the model's top level folders are checked concurrently
+     */
+    public void setParallel(boolean parallel) {
+        fParallel = parallel;
+    }
+    
+    /**
+     * Set whether to check only the objects that have changed since the last successful check.
+     * If set, this checker listens to model changes until it is disposed or this is set to false.
+     * The first check is always a full check.
+     */
+    public void setIncremental(boolean incremental) {
+        if(incremental && fModelListener == null) {
+            fDirtyObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+            fNeedsFullCheck = true;
+            fModelListener = this::modelChanged;
+            fModel.addModelContentListener(fModelListener);
+        }
+        else if(!incremental) {
+            dispose();
+        }
+    }
+    
+    /**
+     * Stop listening to model changes
+     */
+    public void dispose() {
+        if(fModelListener != null) {
+            fModel.removeModelContentListener(fModelListener);
+            fModelListener = null;
+            fDirtyObjects = null;
+        }
+    }
+    
     /**
      * @return True if OK, false if not OK
      */
@@ -67,58 +126,309 @@ public class ModelChecker {
             return true;
         }
         
-        // Instance count map
-        Map<IArchimateConcept, Integer> dmcMap = new HashMap<IArchimateConcept, Integer>();
-        
         // fErrorMessages.addAll(checkFolderStructure()); // not that important
         
-        // Iterate through all objects in the model...
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
+        if(fModelListener != null && !fNeedsFullCheck) {
+            checkDirtyObjects();
+        }
+        else if(fParallel) {
+            checkAllParallel();
+        }
+        else {
+            CheckContext context = new CheckContext(fErrorMessages);
             
-            // Identifier
-            if(eObject instanceof IIdentifier) {
-                fErrorMessages.addAll(checkHasIdentifier((IIdentifier)eObject));
+            // Iterate through all objects in the model...
+            for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
+                visit(iter.next(), context);
             }
             
-            // Relation
-            if(eObject instanceof IArchimateRelationship) {
-                fErrorMessages.addAll(checkRelationship((IArchimateRelationship)eObject));
+            // Now check Diagram Model Object reference count
+            checkDiagramComponentInstanceCount(context.instanceCounts, fErrorMessages);
+        }
+        
+        boolean result = fErrorMessages.isEmpty();
+        
+        // If successful the next incremental check only needs to check objects that change after this, else a full check is needed
+        if(fModelListener != null) {
+            fNeedsFullCheck = !result;
+            fDirtyObjects.clear();
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Check each top level folder, and the model's other top level objects, concurrently and merge the results in model order
+     */
+    private void checkAllParallel() {
+        List<List<EObject>> partitions = new ArrayList<>();
+        List<EObject> others = new ArrayList<>();
+        
+        for(EObject eObject : fModel.eContents()) {
+            if(eObject instanceof IFolder) {
+                partitions.add(List.of(eObject));
             }
-            
-            // Diagram Model Object
-            if(eObject instanceof IDiagramModelArchimateObject) {
-                fErrorMessages.addAll(checkDiagramModelArchimateObject((IDiagramModelArchimateObject)eObject));
-                incrementInstanceCount((IDiagramModelArchimateComponent)eObject, dmcMap);
+            else {
+                others.add(eObject);
             }
-            
-            // Diagram Model Connection
-            if(eObject instanceof IDiagramModelArchimateConnection) {
-                fErrorMessages.addAll(checkDiagramModelArchimateConnection((IDiagramModelArchimateConnection)eObject));
-                incrementInstanceCount((IDiagramModelArchimateConnection)eObject, dmcMap);
+        }
+        partitions.add(others);
+        
+        // Checks only read the model
+        List<CheckContext> results = partitions.parallelStream().map(partition -> {
+            CheckContext context = new CheckContext(new ArrayList<>());
+            context.noIdentifiers = new ArrayList<>();
+            for(EObject root : partition) {
+                visit(root, context);
+                for(Iterator<EObject> iter = root.eAllContents(); iter.hasNext();) {
+                    visit(iter.next(), context);
+                }
             }
-            
-            // Folder
-            if(eObject instanceof IFolder) {
-                fErrorMessages.addAll(checkFolder((IFolder)eObject));
+            return context;
+        }).collect(Collectors.toList());
+        
+        // Merge
+        Map<IArchimateConcept, int[]> instanceCounts = new HashMap<>();
+        for(CheckContext context : results) {
+            // A null message is for an object without an identifier and the message is created here as it needs the object's label
+            Iterator<IIdentifier> noIdentifiers = context.noIdentifiers.iterator();
+            for(String message : context.messages) {
+                if(message != null) {
+                    fErrorMessages.add(message);
+                }
+                else {
+                    checkHasIdentifier(noIdentifiers.next(), fErrorMessages);
+                }
             }
             
-            // Profiles
-            if(eObject instanceof IProfiles) {
-                fErrorMessages.addAll(checkProfiles((IProfiles)eObject));
+            for(Entry<IArchimateConcept, int[]> entry : context.instanceCounts.entrySet()) {
+                instanceCounts.computeIfAbsent(entry.getKey(), k -> new int[1])[0] += entry.getValue()[0];
             }
         }
         
         // Now check Diagram Model Object reference count
-        fErrorMessages.addAll(checkDiagramComponentInstanceCount(dmcMap));
+        checkDiagramComponentInstanceCount(instanceCounts, fErrorMessages);
+    }
+    
+    /**
+     * Check only the objects that have changed since the last successful check
+     */
+    private void checkDirtyObjects() {
+        CheckContext context = new CheckContext(fErrorMessages);
+        
+        for(EObject eObject : fDirtyObjects) {
+            // Not in this model any more
+            if(EcoreUtil.getRootContainer(eObject) != fModel) {
+                continue;
+            }
+            
+            visit(eObject, context);
+            
+            // Instead of counting all instances check that the references between concepts and diagram components match
+            if(eObject instanceof IDiagramModelArchimateComponent) {
+                checkDiagramComponentIsReferenced((IDiagramModelArchimateComponent)eObject, fErrorMessages);
+            }
+            else if(eObject instanceof IArchimateConcept) {
+                checkConceptDiagramComponents((IArchimateConcept)eObject, fErrorMessages);
+            }
+        }
+    }
+    
+    /**
+     * Visit an object and run the checks that apply to it
+     */
+    private void visit(EObject eObject, CheckContext context) {
+        List<String> messages = context.messages;
+        
+        // Identifier
+        if(eObject instanceof IIdentifier) {
+            // Getting a label is not thread safe so add a placeholder message
+            if(context.noIdentifiers != null) {
+                if(!StringUtils.isSet(((IIdentifier)eObject).getId())) {
+                    messages.add(null);
+                    context.noIdentifiers.add((IIdentifier)eObject);
+                }
+            }
+            else {
+                checkHasIdentifier((IIdentifier)eObject, messages);
+            }
+        }
+        
+        // Relation
+        if(eObject instanceof IArchimateRelationship) {
+            checkRelationship((IArchimateRelationship)eObject, messages);
+        }
+        
+        // Diagram Model Object
+        else if(eObject instanceof IDiagramModelArchimateObject) {
+            checkDiagramModelArchimateObject((IDiagramModelArchimateObject)eObject, messages);
+            incrementInstanceCount((IDiagramModelArchimateComponent)eObject, context.instanceCounts);
+        }
+        
+        // Diagram Model Connection
+        else if(eObject instanceof IDiagramModelArchimateConnection) {
+            checkDiagramModelArchimateConnection((IDiagramModelArchimateConnection)eObject, messages);
+            incrementInstanceCount((IDiagramModelArchimateConnection)eObject, context.instanceCounts);
+        }
+        
+        // Folder
+        else if(eObject instanceof IFolder) {
+            checkFolder((IFolder)eObject, messages);
+        }
+        
+        // Profiles
+        if(eObject instanceof IProfiles) {
+            checkProfiles((IProfiles)eObject, messages);
+        }
+    }
+    
+    /**
+     * Error messages and diagram component instance counts for one pass
+     */
+    private static class CheckContext {
+        List<String> messages;
+        Map<IArchimateConcept, int[]> instanceCounts = new HashMap<>();
+        
+        // If not null, objects without an identifier are added here and their messages are created later on the calling thread
+        List<IIdentifier> noIdentifiers;
+        
+        CheckContext(List<String> messages) {
+            this.messages = messages;
+        }
+    }
+    
+    /**
+     * Mark objects that need checking again when the model changes
+     */
+    private void modelChanged(Notification notification) {
+        if(notification.isTouch() || fNeedsFullCheck) {
+            return;
+        }
+        
+        if(notification.getNotifier() instanceof EObject) {
+            markDirty((EObject)notification.getNotifier());
+        }
+        
+        switch(notification.getEventType()) {
+            case Notification.ADD:
+            case Notification.SET:
+                markAdded(notification.getNewValue());
+                markRemoved(notification.getOldValue());
+                break;
+                
+            case Notification.ADD_MANY:
+                for(Object o : (Collection<?>)notification.getNewValue()) {
+                    markAdded(o);
+                }
+                break;
+                
+            case Notification.REMOVE:
+                markRemoved(notification.getOldValue());
+                break;
+                
+            case Notification.REMOVE_MANY:
+                for(Object o : (Collection<?>)notification.getOldValue()) {
+                    markRemoved(o);
+                }
+                break;
+
+            default:
+                break;
+        }
+    }
+    
+    private void markDirty(EObject eObject) {
+        // Profiles are referenced by concepts that we can't find so check everything
+        if(eObject instanceof IProfile) {
+            fNeedsFullCheck = true;
+            return;
+        }
         
-        return fErrorMessages.isEmpty();
+        addDirty(eObject);
+        
+        // Diagram connections check their relationship's ends
+        if(eObject instanceof IArchimateRelationship) {
+            addDirty(((IArchimateRelationship)eObject).getReferencingDiagramConnections());
+        }
+    }
+    
+    /**
+     * Add an object to the dirty set if it is in the model so that removed objects are not held on to
+     */
+    private void addDirty(EObject eObject) {
+        if(isInModel(eObject)) {
+            fDirtyObjects.add(eObject);
+        }
+    }
+    
+    private void addDirty(Collection<? extends EObject> eObjects) {
+        for(EObject eObject : eObjects) {
+            addDirty(eObject);
+        }
+    }
+    
+    private boolean isInModel(EObject eObject) {
+        return EcoreUtil.getRootContainer(eObject) == fModel;
+    }
+    
+    /**
+     * An object and its children were added to the model
+     */
+    private void markAdded(Object newValue) {
+        if(newValue instanceof EObject && ((EObject)newValue).eContainer() != null) {
+            markDirty((EObject)newValue);
+            for(Iterator<EObject> iter = ((EObject)newValue).eAllContents(); iter.hasNext();) {
+                markDirty(iter.next());
+            }
+        }
+    }
+    
+    /**
+     * An object and its children were removed from the model. Objects that reference them need checking.
+     */
+    private void markRemoved(Object oldValue) {
+        if(oldValue instanceof EObject) {
+            markRemovedObject((EObject)oldValue);
+            for(Iterator<EObject> iter = ((EObject)oldValue).eAllContents(); iter.hasNext();) {
+                markRemovedObject(iter.next());
+            }
+        }
+    }
+    
+    private void markRemovedObject(EObject eObject) {
+        // Don't hold on to an object that is no longer in the model
+        if(!isInModel(eObject)) {
+            fDirtyObjects.remove(eObject);
+        }
+        
+        if(eObject instanceof IProfile) {
+            fNeedsFullCheck = true;
+        }
+        else if(eObject instanceof IArchimateConcept) {
+            IArchimateConcept concept = (IArchimateConcept)eObject;
+            addDirty(concept.getSourceRelationships());
+            addDirty(concept.getTargetRelationships());
+            addDirty(concept.getReferencingDiagramComponents());
+        }
+        else if(eObject instanceof IDiagramModelArchimateComponent) {
+            IArchimateConcept concept = ((IDiagramModelArchimateComponent)eObject).getArchimateConcept();
+            if(concept != null) {
+                addDirty(concept);
+            }
+        }
     }
     
     public List<String> getErrorMessages() {
         return fErrorMessages;
     }
     
+    /**
+     * @return The objects to check in the next incremental check. For testing.
+     */
+    Set<EObject> getDirtyObjects() {
+        return fDirtyObjects;
+    }
+    
     public void showErrorDialog(Shell shell) {
         if(fErrorMessages == null || fErrorMessages.isEmpty()) {
             return;
@@ -180,18 +490,24 @@ public class ModelChecker {
     
     List<String> checkHasIdentifier(IIdentifier eObject) {
         List<String> messages = new ArrayList<String>();
-        
+        checkHasIdentifier(eObject, messages);
+        return messages;
+    }
+    
+    private void checkHasIdentifier(IIdentifier eObject, List<String> messages) {
         if(!StringUtils.isSet(eObject.getId())) {
             String message = Messages.ModelChecker_10 + " " + ArchiLabelProvider.INSTANCE.getLabel(eObject); //$NON-NLS-1$
             messages.add(message);
         }
-        
-        return messages;
     }
     
     List<String> checkRelationship(IArchimateRelationship relation) {
         List<String> messages = new ArrayList<String>();
-        
+        checkRelationship(relation, messages);
+        return messages;
+    }
+    
+    private void checkRelationship(IArchimateRelationship relation, List<String> messages) {
         String name = " (" + relation.getId() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
         
         // Source missing
@@ -215,13 +531,15 @@ public class ModelChecker {
             String message = Messages.ModelChecker_22 + name;
             messages.add(message);
         }
-        
-        return messages;
     }
     
     List<String> checkDiagramModelArchimateObject(IDiagramModelArchimateObject dmo) {
         List<String> messages = new ArrayList<String>();
-        
+        checkDiagramModelArchimateObject(dmo, messages);
+        return messages;
+    }
+    
+    private void checkDiagramModelArchimateObject(IDiagramModelArchimateObject dmo, List<String> messages) {
         String name = dmo.getDiagramModel() == null ? Messages.ModelChecker_11 : " '" + dmo.getDiagramModel().getName() + "' (" + dmo.getId() + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
         IArchimateElement element = dmo.getArchimateElement();
@@ -234,13 +552,15 @@ public class ModelChecker {
         else if(element.getArchimateModel() == null) {
             messages.add(Messages.ModelChecker_13 + name);
         }
-        
-        return messages;
     }
     
     List<String> checkDiagramModelArchimateConnection(IDiagramModelArchimateConnection connection) {
         List<String> messages = new ArrayList<String>();
-        
+        checkDiagramModelArchimateConnection(connection, messages);
+        return messages;
+    }
+    
+    private void checkDiagramModelArchimateConnection(IDiagramModelArchimateConnection connection, List<String> messages) {
         String name = connection.getDiagramModel() == null ? Messages.ModelChecker_11 : " '" + connection.getDiagramModel().getName() + "' (" + connection.getId() + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
         IArchimateRelationship relation = connection.getArchimateRelationship();
@@ -270,13 +590,15 @@ public class ModelChecker {
                 messages.add(Messages.ModelChecker_27 + name);
             }
         }
-        
-        return messages;
     }
     
     List<String> checkFolder(IFolder folder) {
         List<String> messages = new ArrayList<String>();
-        
+        checkFolder(folder, messages);
+        return messages;
+    }
+    
+    private void checkFolder(IFolder folder, List<String> messages) {
         // Only allowed these types in folder's elements list
         for(EObject eObject : folder.getElements()) {
             if(!(eObject instanceof IArchimateConcept || eObject instanceof IDiagramModel)) {
@@ -284,13 +606,15 @@ public class ModelChecker {
                 messages.add(Messages.ModelChecker_25 + name);
             }
         }
-        
-        return messages;
     }
     
     List<String> checkProfiles(IProfiles profilesObject) {
         List<String> messages = new ArrayList<String>();
-        
+        checkProfiles(profilesObject, messages);
+        return messages;
+    }
+    
+    private void checkProfiles(IProfiles profilesObject, List<String> messages) {
         for(IProfile profile : profilesObject.getProfiles()) {
             String name = " " + profile.getId(); //$NON-NLS-1$
             
@@ -305,38 +629,55 @@ public class ModelChecker {
                 messages.add(Messages.ModelChecker_29 + name);
             }
         }
-        
-        return messages;
     }
     
     /**
      * For each IDiagramModelArchimateComponent encountered increment the instance count
      */
-    private void incrementInstanceCount(IDiagramModelArchimateComponent dmc, Map<IArchimateConcept, Integer> map) {
+    private void incrementInstanceCount(IDiagramModelArchimateComponent dmc, Map<IArchimateConcept, int[]> map) {
         IArchimateConcept concept = dmc.getArchimateConcept();
         if(concept != null) { // don't want an NPE while checking
-            Integer count = map.get(concept);
-            map.put(concept, count == null ? 1 : ++count);
+            map.computeIfAbsent(concept, k -> new int[1])[0]++;
         }
     }
     
     /**
      * Check the actual IDiagramModelArchimateComponent instance count against the concept's reported instance count
      */
-    private List<String> checkDiagramComponentInstanceCount(Map<IArchimateConcept, Integer> map) {
-        List<String> messages = new ArrayList<String>();
-        
+    private void checkDiagramComponentInstanceCount(Map<IArchimateConcept, int[]> map, List<String> messages) {
         // Now check the total count against the reported count of the concept
-        for(Entry<IArchimateConcept, Integer> entry : map.entrySet()) {
+        for(Entry<IArchimateConcept, int[]> entry : map.entrySet()) {
             IArchimateConcept concept = entry.getKey();
-            int count = entry.getValue();
+            int count = entry.getValue()[0];
             if(concept.getReferencingDiagramComponents().size() != count) {
                 String name = " (" + concept.getId() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
                 messages.add(Messages.ModelChecker_24 + name);
             }
         }
-        
-        return messages;
+    }
+    
+    /**
+     * Check that the diagram component's concept reports it as a referencing diagram component
+     */
+    private void checkDiagramComponentIsReferenced(IDiagramModelArchimateComponent dmc, List<String> messages) {
+        IArchimateConcept concept = dmc.getArchimateConcept();
+        if(concept != null && !concept.getReferencingDiagramComponents().contains(dmc)) {
+            String name = " (" + concept.getId() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+            messages.add(Messages.ModelChecker_24 + name);
+        }
+    }
+    
+    /**
+     * Check that the concept's reported diagram components are in this model and reference the concept
+     */
+    private void checkConceptDiagramComponents(IArchimateConcept concept, List<String> messages) {
+        for(IDiagramModelArchimateComponent dmc : concept.getReferencingDiagramComponents()) {
+            if(dmc.getArchimateConcept() != concept || EcoreUtil.getRootContainer(dmc) != fModel) {
+                String name = " (" + concept.getId() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+                messages.add(Messages.ModelChecker_24 + name);
+                break;
+            }
+        }
     }
 
     void logMessage(String message) {
@@ -5,20 +5,24 @@
  */
 package com.archimatetool.editor.model.impl;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -31,11 +35,16 @@ import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.widgets.Display;
 
+import com.archimatetool.editor.ArchiPlugin;
+import com.archimatetool.editor.Logger;
 import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.editor.preferences.IPreferenceConstants;
 import com.archimatetool.editor.utils.FileUtils;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IDiagramModelImageProvider;
+import com.archimatetool.model.util.ArchimateResource;
 import com.archimatetool.model.util.ArchimateResourceFactory;
+import com.archimatetool.model.util.SaveFragmentCache;
 
 
 
@@ -48,11 +57,19 @@ import com.archimatetool.model.util.ArchimateResourceFactory;
  */
 public class ArchiveManager implements IArchiveManager {
     
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
     /**
      * Raw image bytes stored for all images in this model
      */
     private ByteArrayStorage byteArrayStorage = new ByteArrayStorage();
     
+    /**
+     * Image entries in the model's archive file that are read only when needed.
+     * This is null unless images are loaded on demand.
+     */
+    private LazyArchiveStorage lazyArchiveStorage;
+    
     /**
      * The ArchiMate model
      */
@@ -63,11 +80,43 @@ public class ArchiveManager implements IArchiveManager {
      */
     private boolean fImagesLoaded = false;
     
+    /**
+     * Whether to read images from the model's archive file only when they are needed
+     */
+    private boolean fLoadImagesOnDemand;
+    
+    /**
+     * Compression level used when saving an archive file
+     */
+    private int fCompressionLevel;
+    
+    /**
+     * Whether to store PNG, JPEG and GIF images in an archive file without compressing them again
+     */
+    private boolean fStoreCompressedImages;
+    
+    /**
+     * Whether to re-use the serialised XML of folders and diagrams that have not changed since the last save
+     */
+    private boolean fIncrementalSave;
+    
     /**
      * @param model The owning model
      */
     public ArchiveManager(IArchimateModel model) {
         fModel = model;
+        fLoadImagesOnDemand = ArchiPlugin.PREFERENCES.getBoolean(IPreferenceConstants.LOAD_IMAGES_ON_DEMAND);
+        fCompressionLevel = ArchiPlugin.PREFERENCES.getInt(IPreferenceConstants.ARCHIVE_COMPRESSION_LEVEL);
+        fStoreCompressedImages = ArchiPlugin.PREFERENCES.getBoolean(IPreferenceConstants.ARCHIVE_STORE_COMPRESSED_IMAGES);
+        fIncrementalSave = ArchiPlugin.PREFERENCES.getBoolean(IPreferenceConstants.INCREMENTAL_SAVE);
+    }
+    
+    /**
+     * Set whether to read images from the model's archive file only when they are needed.
+     * This has to be set before images are loaded.
+     */
+    void setLoadImagesOnDemand(boolean set) {
+        fLoadImagesOnDemand = set;
     }
 
     @Override
@@ -103,8 +152,9 @@ public class ArchiveManager implements IArchiveManager {
     
     @Override
     public Image createImage(String imagePath) throws Exception {
-        if(byteArrayStorage.hasEntry(imagePath)) {
-            return new Image(Display.getCurrent(), byteArrayStorage.getInputStream(imagePath));
+        InputStream in = getImageInputStream(imagePath);
+        if(in != null) {
+            return new Image(Display.getCurrent(), in);
         }
         
         return null;
@@ -112,8 +162,29 @@ public class ArchiveManager implements IArchiveManager {
     
     @Override
     public ImageData createImageData(String imagePath) {
+        try {
+            InputStream in = getImageInputStream(imagePath);
+            if(in != null) {
+                return new ImageData(in);
+            }
+        }
+        catch(IOException ex) {
+            Logger.logError("Could not read image: " + imagePath, ex); //$NON-NLS-1$
+        }
+        
+        return null;
+    }
+    
+    /**
+     * @return An InputStream on the image bytes from memory or, if loading on demand, from the archive file. Null if not found.
+     */
+    private InputStream getImageInputStream(String imagePath) throws IOException {
         if(byteArrayStorage.hasEntry(imagePath)) {
-            return new ImageData(byteArrayStorage.getInputStream(imagePath));
+            return byteArrayStorage.getInputStream(imagePath);
+        }
+        
+        if(lazyArchiveStorage != null) {
+            return lazyArchiveStorage.getInputStream(imagePath);
         }
         
         return null;
@@ -138,6 +209,12 @@ public class ArchiveManager implements IArchiveManager {
     
     @Override
     public Set<String> getLoadedImagePaths() {
+        if(lazyArchiveStorage != null) {
+            Set<String> set = new HashSet<>(byteArrayStorage.getEntryNames());
+            set.addAll(lazyArchiveStorage.getEntryNames());
+            return set;
+        }
+        
         return byteArrayStorage.getEntryNames();
     }
     
@@ -146,9 +223,26 @@ public class ArchiveManager implements IArchiveManager {
      */
     @Override
     public void loadImages() throws IOException {
-        if(!fImagesLoaded && loadImagesFromModelFile(fModel.getFile())) {
-            fImagesLoaded = true;
+        if(!fImagesLoaded) {
+            fImagesLoaded = fLoadImagesOnDemand ? loadImagesOnDemandFromModelFile(fModel.getFile()) : loadImagesFromModelFile(fModel.getFile());
+        }
+    }
+    
+    /**
+     * Record the image entries in the model's archive file but don't read the image bytes until they are needed
+     */
+    private boolean loadImagesOnDemandFromModelFile(File file) throws IOException {
+        if(file == null || !file.exists() || !FACTORY.isArchiveFile(file)) {
+            return false;
+        }
+        
+        if(lazyArchiveStorage != null) {
+            lazyArchiveStorage.dispose();
         }
+        
+        lazyArchiveStorage = new LazyArchiveStorage(file, "images/", LazyArchiveStorage.DEFAULT_MAX_CACHE_SIZE); //$NON-NLS-1$
+        
+        return true;
     }
     
     @Override
@@ -164,7 +258,7 @@ public class ArchiveManager implements IArchiveManager {
             String entryName = zipEntry.getName();
             if(entryName.startsWith("images/")) { //$NON-NLS-1$
                 // Add to ByteArrayStorage
-                if(!byteArrayStorage.hasEntry(entryName)) {
+                if(!byteArrayStorage.hasEntry(entryName) && (lazyArchiveStorage == null || !lazyArchiveStorage.hasEntry(entryName))) {
                     InputStream in = zipFile.getInputStream(zipEntry);
                     byteArrayStorage.addStreamEntry(entryName, in);
                 }
@@ -205,13 +299,33 @@ public class ArchiveManager implements IArchiveManager {
 
     @Override
     public byte[] getBytesFromEntry(String entryName) {
-        return byteArrayStorage.getEntry(entryName);
+        byte[] bytes = byteArrayStorage.getEntry(entryName);
+        
+        if(bytes == null && lazyArchiveStorage != null) {
+            try {
+                bytes = lazyArchiveStorage.getEntry(entryName);
+            }
+            catch(IOException ex) {
+                Logger.logError("Could not read image: " + entryName, ex); //$NON-NLS-1$
+            }
+        }
+        
+        return bytes;
     }
 
     @Override
     public String addByteContentEntry(String imagePath, byte[] bytes) throws IOException {
+        return addByteContentEntry(imagePath, bytes, ByteArrayStorage.createDigest(bytes));
+    }
+    
+    private String addByteContentEntry(String imagePath, byte[] bytes, String digest) throws IOException {
         // Is this already in the cache?
-        String entryName = byteArrayStorage.getKey(bytes);
+        String entryName = byteArrayStorage.getKeyForDigest(digest);
+        
+        // Or in the archive file?
+        if(entryName == null && lazyArchiveStorage != null) {
+            entryName = lazyArchiveStorage.getKeyForDigest(digest);
+        }
         
         // No
         if(entryName == null) {
@@ -220,7 +334,7 @@ public class ArchiveManager implements IArchiveManager {
            
             // Add it
             entryName = imagePath;
-            byteArrayStorage.addByteContentEntry(imagePath, bytes);
+            byteArrayStorage.addByteContentEntry(imagePath, bytes, digest);
         }
 
         return entryName;
@@ -228,13 +342,54 @@ public class ArchiveManager implements IArchiveManager {
     
     @Override
     public String copyImageBytes(IArchiveManager archiveManager, String imagePath) throws IOException {
+        // If we know the digest of the source image we might have it already
+        String digest = archiveManager.getImageDigest(imagePath);
+        if(digest != null) {
+            String entryName = getImagePathForDigest(digest);
+            if(entryName != null) {
+                return entryName;
+            }
+        }
+        
         byte[] bytes = archiveManager.getBytesFromEntry(imagePath);
         if(bytes != null) {
-            imagePath = addByteContentEntry(imagePath, bytes);
+            imagePath = digest != null ? addByteContentEntry(imagePath, bytes, digest) : addByteContentEntry(imagePath, bytes);
         }
         return imagePath;
     }
     
+    @Override
+    public String getImageDigest(String imagePath) {
+        String digest = byteArrayStorage.getDigest(imagePath);
+        
+        if(digest == null && lazyArchiveStorage != null) {
+            try {
+                digest = lazyArchiveStorage.getDigest(imagePath);
+            }
+            catch(IOException ex) {
+                Logger.logError("Could not read image: " + imagePath, ex); //$NON-NLS-1$
+            }
+        }
+        
+        return digest;
+    }
+    
+    @Override
+    public String getImagePathForDigest(String digest) {
+        String imagePath = byteArrayStorage.getKeyForDigest(digest);
+        
+        if(imagePath == null && lazyArchiveStorage != null) {
+            try {
+                imagePath = lazyArchiveStorage.getKeyForDigest(digest);
+            }
+            catch(IOException ex) {
+                Logger.logError("Could not read images", ex); //$NON-NLS-1$
+            }
+        }
+        
+        return imagePath;
+    }
+    
     @Override
     public void saveModel() throws IOException {
         File file = fModel.getFile();
@@ -243,11 +398,94 @@ public class ArchiveManager implements IArchiveManager {
             return;
         }
         
-        if(hasImages()) {
-            saveModelToArchiveFile(file);
+        Set<String> imagePaths = getImagePaths();
+        
+        // If images are loaded on demand the archive file will be replaced so read in any images that won't be saved to it
+        if(lazyArchiveStorage != null) {
+            lazyArchiveStorage.moveEntries(byteArrayStorage, imagePaths);
         }
-        else {
-            saveResource(file);
+        
+        boolean hasImages = hasImages();
+        
+        // If the file is a link then replace the linked file
+        if(Files.isSymbolicLink(file.toPath())) {
+            file = file.toPath().toRealPath().toFile();
+        }
+        
+        // Write to a temporary file next to the model file and then replace the model file with it
+        File tmpFile = new File(file.getAbsoluteFile().getParentFile(), "~" + file.getName() + "." + System.nanoTime() + ".tmp"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        
+        try {
+            try(OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile), BUFFER_SIZE)) {
+                if(hasImages) {
+                    saveModelToArchive(file, imagePaths, out);
+                }
+                else {
+                    saveResource(file, out);
+                }
+            }
+            
+            // Release any file handles before replacing the file
+            if(lazyArchiveStorage != null) {
+                // A clone of this archive manager might still read images from the file that is replaced
+                if(lazyArchiveStorage.isFile(file)) {
+                    lazyArchiveStorage.releaseFile();
+                }
+                else {
+                    lazyArchiveStorage.dispose();
+                }
+                lazyArchiveStorage = null;
+            }
+            
+            replaceFile(tmpFile, file);
+        }
+        finally {
+            tmpFile.delete();
+        }
+        
+        // Images are now in the saved archive file so they can be loaded from there on demand and released from memory
+        if(hasImages && fLoadImagesOnDemand) {
+            lazyArchiveStorage = new LazyArchiveStorage(file, "images/", LazyArchiveStorage.DEFAULT_MAX_CACHE_SIZE); //$NON-NLS-1$
+            for(String entryName : lazyArchiveStorage.getEntryNames()) {
+                byteArrayStorage.removeEntry(entryName);
+            }
+        }
+    }
+    
+    /**
+     * Set the compression level used when saving an archive file
+     * @param level 0-9 or -1 for the default compression level
+     */
+    void setCompressionLevel(int level) {
+        fCompressionLevel = level;
+    }
+    
+    /**
+     * Set whether image formats that are already compressed (PNG, JPEG and GIF) are stored in an archive file without compressing them again
+     */
+    void setStoreCompressedImages(boolean set) {
+        fStoreCompressedImages = set;
+    }
+    
+    /**
+     * Set whether to re-use the serialised XML of folders, concepts and diagrams that have not changed since the last save
+     */
+    void setIncrementalSave(boolean set) {
+        fIncrementalSave = set;
+        
+        if(!set) {
+            disposeSaveFragmentCache();
+        }
+    }
+    
+    /**
+     * Remove the model's SaveFragmentCache, if it has one, and release its fragments
+     */
+    private void disposeSaveFragmentCache() {
+        SaveFragmentCache cache = (SaveFragmentCache)fModel.getAdapter(SaveFragmentCache.class);
+        if(cache != null) {
+            cache.dispose();
+            fModel.setAdapter(SaveFragmentCache.class, null);
         }
     }
     
@@ -255,8 +493,14 @@ public class ArchiveManager implements IArchiveManager {
     public IArchiveManager clone(IArchimateModel model) {
         ArchiveManager archiveManager = new ArchiveManager(model);
         
+        // Re-use the digests so that the bytes don't have to be hashed again
         for(Entry<String, byte[]> entry : byteArrayStorage.getEntrySet()) {
-            archiveManager.byteArrayStorage.addByteContentEntry(entry.getKey(), entry.getValue());
+            archiveManager.byteArrayStorage.addByteContentEntry(entry.getKey(), entry.getValue(), byteArrayStorage.getDigest(entry.getKey()));
+        }
+        
+        // Images not yet read from the archive file are read from the same file when needed
+        if(lazyArchiveStorage != null) {
+            archiveManager.lazyArchiveStorage = lazyArchiveStorage.copy();
         }
         
         return archiveManager;
@@ -265,48 +509,37 @@ public class ArchiveManager implements IArchiveManager {
     /**
      * Save the model to Archive File format
      */
-    private void saveModelToArchiveFile(File file) throws IOException {
-        try(ZipOutputStream zOut = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
-            // Add the model xml file
-            saveModelFile(zOut);
-            
-            // Add any images
-            saveImages(zOut);
-        }
+    private void saveModelToArchive(File file, Set<String> imagePaths, OutputStream out) throws IOException {
+        ZipOutputStream zOut = new ZipOutputStream(out);
+        zOut.setLevel(fCompressionLevel);
+        
+        // Add the model xml file
+        saveModelFile(file, zOut);
+        
+        // Add any images
+        saveImages(imagePaths, zOut);
+        
+        zOut.finish();
     }
     
     /**
      * Save the model xml file in the Archive File
      */
-    private void saveModelFile(ZipOutputStream zOut) throws IOException {
-        // Temp file for xml model file
-        File tmpFile = File.createTempFile("archi-", null); //$NON-NLS-1$
-        tmpFile.deleteOnExit();
-        saveResource(tmpFile);
-        
+    private void saveModelFile(File file, ZipOutputStream zOut) throws IOException {
         ZipEntry zipEntry = new ZipEntry("model.xml"); //$NON-NLS-1$
         zipEntry.setTime(0); // Set time to zero for coArchi
         zOut.putNextEntry(zipEntry);
         
-        final int bufSize = 8192;
-        byte buf[] = new byte[bufSize];
-        int bytesRead;
+        // Write the xml straight into the zip entry
+        saveResource(file, zOut);
         
-        try(BufferedInputStream in = new BufferedInputStream(new FileInputStream(tmpFile), bufSize)) {
-            while((bytesRead = in.read(buf)) != -1) {
-                zOut.write(buf, 0, bytesRead);
-            }
-            zOut.closeEntry();
-        }
-        finally {
-            tmpFile.delete();
-        }
+        zOut.closeEntry();
     }
     
     /**
      * Save the model to Resource
      */
-    private void saveResource(File file) throws IOException {
+    private void saveResource(File file, OutputStream out) throws IOException {
         Resource resource = fModel.eResource();
         
         // No parent Resource set, so create a new one
@@ -319,21 +552,63 @@ public class ArchiveManager implements IArchiveManager {
             resource.setURI(URI.createFileURI(file.getAbsolutePath()));
         }
         
+        // Folders and diagrams that haven't changed since the last save are written from the cache
+        if(fIncrementalSave && resource instanceof ArchimateResource) {
+            SaveFragmentCache cache = (SaveFragmentCache)fModel.getAdapter(SaveFragmentCache.class);
+            if(cache == null) {
+                cache = new SaveFragmentCache(fModel);
+                fModel.setAdapter(SaveFragmentCache.class, cache);
+            }
+            ((ArchimateResource)resource).setSaveFragmentCache(cache);
+        }
+        
         // Catch *all* exceptions in case of XML errors
         try {
-            resource.save(null);
+            // Don't let the Resource close the stream as we might be writing to a zip entry
+            resource.save(new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+                
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            }, null);
         }
         catch(Exception ex) {
+            // The cache might be out of step with the model
+            SaveFragmentCache cache = (SaveFragmentCache)fModel.getAdapter(SaveFragmentCache.class);
+            if(cache != null) {
+                cache.clear();
+            }
             throw new IOException(ex);
         }
+        finally {
+            if(resource instanceof ArchimateResource) {
+                ((ArchimateResource)resource).setSaveFragmentCache(null);
+            }
+        }
     }
     
-    private void saveImages(ZipOutputStream zOut) throws IOException {
-        for(String imagePath : getImagePaths()) {
-            byte[] bytes = byteArrayStorage.getEntry(imagePath);
+    private void saveImages(Set<String> imagePaths, ZipOutputStream zOut) throws IOException {
+        for(String imagePath : imagePaths) {
+            byte[] bytes = getBytesFromEntry(imagePath);
             if(bytes != null) {
                 ZipEntry zipEntry = new ZipEntry(imagePath);
                 zipEntry.setTime(0); // Set time to zero for coArchi
+                
+                // Don't compress again
+                if(fStoreCompressedImages && isCompressedImage(bytes)) {
+                    CRC32 crc = new CRC32();
+                    crc.update(bytes);
+                    zipEntry.setMethod(ZipEntry.STORED);
+                    zipEntry.setSize(bytes.length);
+                    zipEntry.setCompressedSize(bytes.length);
+                    zipEntry.setCrc(crc.getValue());
+                }
+                
                 zOut.putNextEntry(zipEntry);
                 zOut.write(bytes);
                 zOut.closeEntry();
@@ -341,6 +616,54 @@ public class ArchiveManager implements IArchiveManager {
         }
     }
     
+    /**
+     * @return true if the bytes are a PNG, JPEG or GIF image which are already compressed
+     */
+    static boolean isCompressedImage(byte[] bytes) {
+        if(bytes.length < 4) {
+            return false;
+        }
+        
+        // PNG
+        if((bytes[0] & 0xFF) == 0x89 && bytes[1] == 'P' && bytes[2] == 'N' && bytes[3] == 'G') {
+            return true;
+        }
+        
+        // JPEG
+        if((bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xD8 && (bytes[2] & 0xFF) == 0xFF) {
+            return true;
+        }
+        
+        // GIF
+        if(bytes[0] == 'G' && bytes[1] == 'I' && bytes[2] == 'F' && bytes[3] == '8') {
+            return true;
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Replace destFile with srcFile, atomically if the file system supports it
+     */
+    private void replaceFile(File srcFile, File destFile) throws IOException {
+        // Keep the existing file's permissions
+        if(destFile.exists()) {
+            try {
+                Files.setPosixFilePermissions(srcFile.toPath(), Files.getPosixFilePermissions(destFile.toPath()));
+            }
+            catch(UnsupportedOperationException ex) {
+                // Not a POSIX file system
+            }
+        }
+        
+        try {
+            Files.move(srcFile.toPath(), destFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(AtomicMoveNotSupportedException ex) {
+            Files.move(srcFile.toPath(), destFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
     private String createArchiveImagePathname(File file) {
         String ext = FileUtils.getFileExtension(file);
         
@@ -358,6 +681,14 @@ public class ArchiveManager implements IArchiveManager {
     public void dispose() {
         byteArrayStorage.dispose();
         byteArrayStorage = null;
+        
+        if(lazyArchiveStorage != null) {
+            lazyArchiveStorage.dispose();
+            lazyArchiveStorage = null;
+        }
+        
+        disposeSaveFragmentCache();
+        
         fModel = null;
     }
 }
@@ -11,7 +11,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -20,12 +21,54 @@ import java.util.Set;
 /**
  * Byte Array Storage Unit
  * 
+ * Entries are indexed by a content digest (size plus SHA-256 hash) so that duplicate bytes can be found without comparing against every stored entry
+ * 
  * @author Phillip Beauvoir
  */
 public class ByteArrayStorage {
     
+    private static final String DIGEST_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+    
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+    
     private Map<String, byte[]> fdataTable = new HashMap<String, byte[]>();
     
+    /**
+     * Entry name -> content digest
+     */
+    private Map<String, String> fEntryDigests = new HashMap<String, String>();
+    
+    /**
+     * Content digest -> first entry name that was added with that content
+     */
+    private Map<String, String> fDigestTable = new HashMap<String, String>();
+    
+    /**
+     * Create a content digest for some bytes. The digest is the size of the bytes plus their SHA-256 hash.
+     * @param bytes The bytes
+     * @return The digest as a String
+     */
+    static String createDigest(byte[] bytes) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        }
+        catch(NoSuchAlgorithmException ex) {
+            // Every Java implementation is required to support SHA-256
+            throw new RuntimeException(ex);
+        }
+        
+        byte[] hash = md.digest(bytes);
+        
+        StringBuilder sb = new StringBuilder(hash.length * 2 + 12);
+        sb.append(bytes.length).append('-');
+        for(byte b : hash) {
+            sb.append(HEX_CHARS[(b >> 4) & 0xF]).append(HEX_CHARS[b & 0xF]);
+        }
+        
+        return sb.toString();
+    }
+    
     InputStream getInputStream(String entryName) {
         if(entryName != null) {
             byte[] bytes = fdataTable.get(entryName);
@@ -37,14 +80,23 @@ public class ByteArrayStorage {
     }
 
     String getKey(byte[] bytes) {
-        for(Entry<String, byte[]> entry : fdataTable.entrySet()) {
-            byte[] entryBytes = entry.getValue();
-            if(Arrays.equals(bytes, entryBytes)) {
-                return entry.getKey();
-            }
-        }
-        
-        return null;
+        return getKeyForDigest(createDigest(bytes));
+    }
+    
+    /**
+     * @param digest The content digest as created by {@link #createDigest(byte[])}
+     * @return The entry name of stored bytes with the given content digest, or null if not found
+     */
+    String getKeyForDigest(String digest) {
+        return digest != null ? fDigestTable.get(digest) : null;
+    }
+    
+    /**
+     * @param entryName The entry name
+     * @return The content digest of the stored bytes for entryName, or null if not found
+     */
+    String getDigest(String entryName) {
+        return entryName != null ? fEntryDigests.get(entryName) : null;
     }
     
     long getEntrySize(String entryName) {
@@ -75,6 +127,19 @@ public class ByteArrayStorage {
     
     void removeEntry(String entryName) {
         fdataTable.remove(entryName);
+        
+        String digest = fEntryDigests.remove(entryName);
+        
+        // If the digest referenced this entry then re-reference another entry with the same bytes, if there is one
+        if(digest != null && entryName.equals(fDigestTable.get(digest))) {
+            fDigestTable.remove(digest);
+            for(Entry<String, String> entry : fEntryDigests.entrySet()) {
+                if(digest.equals(entry.getValue())) {
+                    fDigestTable.put(digest, entry.getKey());
+                    break;
+                }
+            }
+        }
     }
     
     byte[] getEntry(String entryName) {
@@ -91,9 +156,25 @@ public class ByteArrayStorage {
     }
 
     void addByteContentEntry(String entryName, byte[] bytes) {
+        addByteContentEntry(entryName, bytes, createDigest(bytes));
+    }
+    
+    /**
+     * Add bytes keyed by entryName where the content digest of the bytes is already known
+     * @param entryName The entry name
+     * @param bytes The bytes
+     * @param digest The content digest of the bytes as created by {@link #createDigest(byte[])}
+     */
+    void addByteContentEntry(String entryName, byte[] bytes, String digest) {
+        // Replacing an existing entry with different bytes
+        String oldDigest = fEntryDigests.get(entryName);
+        if(oldDigest != null && !oldDigest.equals(digest)) {
+            removeEntry(entryName);
+        }
+        
         // Check if we have these bytes already. If we do then re-reference them
         // We might be adding the same set of bytes but from a different file
-        String key = getKey(bytes);
+        String key = getKeyForDigest(digest);
         
         // Yes we have them, so re-use the bytes
         if(key != null) {
@@ -102,7 +183,10 @@ public class ByteArrayStorage {
         // No, so add the bytes
         else {
             fdataTable.put(entryName, bytes);
+            fDigestTable.put(digest, entryName);
         }
+        
+        fEntryDigests.put(entryName, digest);
     }
     
     byte[] getBytesFromFile(File file) throws IOException {
@@ -117,6 +201,10 @@ public class ByteArrayStorage {
     void dispose() {
         fdataTable.clear();
         fdataTable = null;
+        fEntryDigests.clear();
+        fEntryDigests = null;
+        fDigestTable.clear();
+        fDigestTable = null;
     }
     
     /**
@@ -44,6 +44,7 @@ import com.archimatetool.editor.model.compatibility.IncompatibleModelException;
 import com.archimatetool.editor.model.compatibility.ModelCompatibility;
 import com.archimatetool.editor.preferences.IPreferenceConstants;
 import com.archimatetool.editor.ui.services.EditorManager;
+import com.archimatetool.editor.ui.textrender.TextRenderer;
 import com.archimatetool.editor.utils.FileUtils;
 import com.archimatetool.jdom.JDOMUtils;
 import com.archimatetool.model.FolderType;
@@ -52,6 +53,7 @@ import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.ModelVersion;
 import com.archimatetool.model.util.IModelContentListener;
+import com.archimatetool.model.util.ModelTextIndex;
 
 
 
@@ -438,6 +440,15 @@ implements IEditorModelManager {
   
         // Delete Archive Manager
         deleteArchiveManager(model);
+        
+        // Delete Model Checker
+        deleteModelChecker(model);
+        
+        // Delete cached labels
+        TextRenderer.getDefault().disposeLabelCache(model);
+        
+        // Delete text index
+        ModelTextIndex.disposeIndex(model);
 
         // *at the very last* dispose of this model so its contents can be garbage collected
         // Some Eclipse components such as the Properties View might still reference the model or some of its contents
@@ -482,7 +493,7 @@ implements IEditorModelManager {
     @Override
     public boolean saveModel(IArchimateModel model) throws IOException {
         // Check integrity
-        ModelChecker checker = new ModelChecker(model);
+        ModelChecker checker = getModelChecker(model);
         if(!checker.checkAll()) {
             if(PlatformUI.isWorkbenchRunning()) {
                 checker.showErrorDialog(PlatformUI.getWorkbench().getActiveWorkbenchWindow().getShell());
@@ -692,6 +703,39 @@ implements IEditorModelManager {
         }
     }
 
+    /**
+     * @return The ModelChecker to check the model when it is saved.
+     *         If set in Preferences the checker is kept with the model so that later saves only check objects that have changed.
+     */
+    private ModelChecker getModelChecker(IArchimateModel model) {
+        if(!ArchiPlugin.PREFERENCES.getBoolean(IPreferenceConstants.INCREMENTAL_MODEL_CHECK)) {
+            // Preference might have changed
+            deleteModelChecker(model);
+            return new ModelChecker(model);
+        }
+        
+        ModelChecker checker = (ModelChecker)model.getAdapter(ModelChecker.class);
+        if(checker == null) {
+            checker = new ModelChecker(model);
+            checker.setParallel(true);
+            checker.setIncremental(true);
+            model.setAdapter(ModelChecker.class, checker);
+        }
+        
+        return checker;
+    }
+    
+    /**
+     * Remove the model's ModelChecker if it has one
+     */
+    private void deleteModelChecker(IArchimateModel model) {
+        ModelChecker checker = (ModelChecker)model.getAdapter(ModelChecker.class);
+        if(checker != null) {
+            checker.dispose();
+            model.setAdapter(ModelChecker.class, null);
+        }
+    }
+
     //========================== Persist backing file  ==========================
 
     @Override
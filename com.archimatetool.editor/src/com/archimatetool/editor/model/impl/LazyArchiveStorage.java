@@ -0,0 +1,430 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.archimatetool.editor.Logger;
+
+/**
+ * Lazy Archive Storage
+ *
+ * Records the image entries in an archive file but only reads the bytes of an entry when it is asked for.
+ * Read bytes are held in a bounded cache and the least recently used entries are evicted when the cache is full.
+ *
+ * A copy made with {@link #copy()} shares the archive file, its cache and its digests with this storage.
+ * If the archive file is going to be replaced {@link #releaseFile()} reads the entries of any copies into memory first.
+ *
+ * @author Phillip Beauvoir
+ */
+public class LazyArchiveStorage {
+    
+    /**
+     * Default maximum number of bytes held in the cache
+     */
+    static final long DEFAULT_MAX_CACHE_SIZE = 32 * 1024 * 1024;
+    
+    /**
+     * The archive file and what is known about its entries. This is shared by copies and is also their lock.
+     */
+    private static class Source {
+        File file;
+        ZipFile zipFile;
+        
+        // Entry names and sizes as recorded in the archive (-1 if not known)
+        Map<String, Long> sizes = new LinkedHashMap<>();
+        
+        // Entry name -> digest
+        Map<String, String> digests = new HashMap<>();
+        
+        // Digest -> entry names. Created on the first lookup by digest
+        Map<String, List<String>> digestIndex;
+        
+        Map<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true); // access order
+        long cacheSize;
+        long maxCacheSize;
+        
+        // Storages that read from the file
+        Set<LazyArchiveStorage> users = new HashSet<>();
+    }
+    
+    private final Source fSource;
+    
+    private Set<String> fEntryNames;
+    
+    /**
+     * Entry bytes held in memory once the archive file has been released by another storage, otherwise null
+     */
+    private Map<String, byte[]> fReleasedEntries;
+    
+    /**
+     * @param file The archive file
+     * @param prefix The prefix of the entry names to record, for example "images/"
+     * @param maxCacheSize Maximum number of bytes held in the cache
+     * @throws IOException
+     */
+    LazyArchiveStorage(File file, String prefix, long maxCacheSize) throws IOException {
+        fSource = new Source();
+        fSource.file = file;
+        fSource.maxCacheSize = maxCacheSize;
+        
+        try(ZipFile zipFile = new ZipFile(file)) {
+            for(Enumeration<? extends ZipEntry> enm = zipFile.entries(); enm.hasMoreElements();) {
+                ZipEntry zipEntry = enm.nextElement();
+                if(!zipEntry.isDirectory() && zipEntry.getName().startsWith(prefix)) {
+                    fSource.sizes.put(zipEntry.getName(), zipEntry.getSize());
+                }
+            }
+        }
+        
+        fEntryNames = new LinkedHashSet<>(fSource.sizes.keySet());
+        fSource.users.add(this);
+    }
+    
+    private LazyArchiveStorage(LazyArchiveStorage other) {
+        fSource = other.fSource;
+        fEntryNames = new LinkedHashSet<>(other.fEntryNames);
+        
+        if(other.fReleasedEntries != null) {
+            fReleasedEntries = new HashMap<>(other.fReleasedEntries);
+        }
+        else {
+            fSource.users.add(this);
+        }
+    }
+    
+    /**
+     * @return A copy of this storage that reads from the same archive file. Entries are not read.
+     */
+    LazyArchiveStorage copy() {
+        synchronized(fSource) {
+            return new LazyArchiveStorage(this);
+        }
+    }
+    
+    /**
+     * @return true if file is the archive file that this storage reads from
+     */
+    boolean isFile(File file) {
+        try {
+            return file != null && Files.isSameFile(fSource.file.toPath(), file.toPath());
+        }
+        catch(IOException ex) {
+            return false;
+        }
+    }
+    
+    boolean hasEntry(String entryName) {
+        synchronized(fSource) {
+            return entryName != null && fEntryNames.contains(entryName);
+        }
+    }
+    
+    boolean hasEntries() {
+        synchronized(fSource) {
+            return !fEntryNames.isEmpty();
+        }
+    }
+    
+    Set<String> getEntryNames() {
+        synchronized(fSource) {
+            return Set.copyOf(fEntryNames);
+        }
+    }
+    
+    void removeEntry(String entryName) {
+        synchronized(fSource) {
+            fEntryNames.remove(entryName);
+            if(fReleasedEntries != null) {
+                fReleasedEntries.remove(entryName);
+            }
+        }
+    }
+    
+    /**
+     * @return The size of the entry as recorded in the archive, or -1 if not found or not known
+     */
+    long getEntrySize(String entryName) {
+        synchronized(fSource) {
+            if(!hasEntry(entryName)) {
+                return -1;
+            }
+            
+            if(fReleasedEntries != null) {
+                return fReleasedEntries.get(entryName).length;
+            }
+            
+            return fSource.sizes.get(entryName);
+        }
+    }
+    
+    /**
+     * @return The bytes for the entry, reading them from the archive if they are not in the cache, or null if not found
+     */
+    byte[] getEntry(String entryName) throws IOException {
+        synchronized(fSource) {
+            if(!hasEntry(entryName)) {
+                return null;
+            }
+            
+            if(fReleasedEntries != null) {
+                return fReleasedEntries.get(entryName);
+            }
+            
+            byte[] bytes = fSource.cache.get(entryName);
+            
+            if(bytes == null) {
+                bytes = readEntry(entryName);
+                addToCache(entryName, bytes);
+            }
+            
+            return bytes;
+        }
+    }
+    
+    /**
+     * @return An InputStream on the entry's bytes, or null if not found
+     */
+    InputStream getInputStream(String entryName) throws IOException {
+        byte[] bytes = getEntry(entryName);
+        return bytes != null ? new ByteArrayInputStream(bytes) : null;
+    }
+    
+    /**
+     * @return The content digest of the entry as created by {@link ByteArrayStorage#createDigest(byte[])} or null if not found.
+     *         The entry's bytes are read the first time this is called.
+     */
+    String getDigest(String entryName) throws IOException {
+        synchronized(fSource) {
+            if(!hasEntry(entryName)) {
+                return null;
+            }
+            
+            String digest = fSource.digests.get(entryName);
+            if(digest == null) {
+                digest = ByteArrayStorage.createDigest(getEntry(entryName));
+                fSource.digests.put(entryName, digest);
+            }
+            
+            return digest;
+        }
+    }
+    
+    /**
+     * Find an entry that has the given content digest.
+     * The first time this is called every entry in the archive is read once to index the entries by digest.
+     * @return The entry name or null if not found
+     */
+    String getKeyForDigest(String digest) throws IOException {
+        if(digest == null) {
+            return null;
+        }
+        
+        synchronized(fSource) {
+            if(fSource.digestIndex == null) {
+                // If the file has been released all of our entries are in memory
+                if(fReleasedEntries != null) {
+                    for(String entryName : fEntryNames) {
+                        if(digest.equals(getDigest(entryName))) {
+                            return entryName;
+                        }
+                    }
+                    return null;
+                }
+                
+                createDigestIndex();
+            }
+            
+            List<String> entryNames = fSource.digestIndex.get(digest);
+            if(entryNames != null) {
+                for(String entryName : entryNames) {
+                    if(fEntryNames.contains(entryName)) {
+                        return entryName;
+                    }
+                }
+            }
+            
+            return null;
+        }
+    }
+    
+    /**
+     * Read all entries into a ByteArrayStorage and remove them from here
+     */
+    void moveEntries(ByteArrayStorage byteArrayStorage) throws IOException {
+        moveEntries(byteArrayStorage, Set.of());
+    }
+    
+    /**
+     * Read entries into a ByteArrayStorage and remove them from here
+     * @param except Names of entries that are not moved
+     */
+    void moveEntries(ByteArrayStorage byteArrayStorage, Set<String> except) throws IOException {
+        synchronized(fSource) {
+            for(Iterator<String> iter = fEntryNames.iterator(); iter.hasNext();) {
+                String entryName = iter.next();
+                if(except.contains(entryName)) {
+                    continue;
+                }
+                
+                byte[] bytes = getEntry(entryName);
+                String digest = fSource.digests.get(entryName);
+                if(digest != null) {
+                    byteArrayStorage.addByteContentEntry(entryName, bytes, digest);
+                }
+                else {
+                    byteArrayStorage.addByteContentEntry(entryName, bytes);
+                }
+                
+                iter.remove();
+                if(fReleasedEntries != null) {
+                    fReleasedEntries.remove(entryName);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Read the entries of any copies of this storage into memory and close the archive file so that it can be replaced.
+     * This storage is then disposed.
+     */
+    void releaseFile() throws IOException {
+        synchronized(fSource) {
+            for(LazyArchiveStorage storage : new ArrayList<>(fSource.users)) {
+                if(storage != this) {
+                    Map<String, byte[]> entries = new HashMap<>();
+                    for(String entryName : storage.fEntryNames) {
+                        entries.put(entryName, storage.getEntry(entryName));
+                    }
+                    storage.fReleasedEntries = entries;
+                    fSource.users.remove(storage);
+                }
+            }
+            
+            dispose();
+        }
+    }
+    
+    /**
+     * Close any open file handles. They will be re-opened if needed.
+     */
+    void close() throws IOException {
+        synchronized(fSource) {
+            if(fSource.zipFile != null) {
+                fSource.zipFile.close();
+                fSource.zipFile = null;
+            }
+        }
+    }
+    
+    void dispose() {
+        synchronized(fSource) {
+            // Close the file even if a copy still uses it as the copy might never be disposed. It is re-opened if needed.
+            try {
+                close();
+            }
+            catch(IOException ex) {
+                Logger.logError("Error closing archive file", ex); //$NON-NLS-1$
+            }
+            
+            fSource.users.remove(this);
+            fEntryNames.clear();
+            fReleasedEntries = null;
+            
+            if(fSource.users.isEmpty()) {
+                clearCache();
+                fSource.digests.clear();
+                fSource.digestIndex = null;
+            }
+        }
+    }
+    
+    // ========================================= Cache =========================================
+    
+    long getCacheSize() {
+        synchronized(fSource) {
+            return fSource.cacheSize;
+        }
+    }
+    
+    private void addToCache(String entryName, byte[] bytes) {
+        // Too big to cache
+        if(bytes.length > fSource.maxCacheSize) {
+            return;
+        }
+        
+        byte[] old = fSource.cache.put(entryName, bytes);
+        if(old != null) {
+            fSource.cacheSize -= old.length;
+        }
+        fSource.cacheSize += bytes.length;
+        
+        // Evict least recently used entries
+        for(Iterator<byte[]> iter = fSource.cache.values().iterator(); fSource.cacheSize > fSource.maxCacheSize && iter.hasNext();) {
+            fSource.cacheSize -= iter.next().length;
+            iter.remove();
+        }
+    }
+    
+    private void clearCache() {
+        fSource.cache.clear();
+        fSource.cacheSize = 0;
+    }
+    
+    // ========================================= Reading =========================================
+    
+    private byte[] readEntry(String entryName) throws IOException {
+        if(fSource.zipFile == null) {
+            fSource.zipFile = new ZipFile(fSource.file);
+        }
+        
+        ZipEntry zipEntry = fSource.zipFile.getEntry(entryName);
+        if(zipEntry == null) {
+            throw new IOException("Entry not found in archive: " + entryName); //$NON-NLS-1$
+        }
+        
+        try(InputStream in = fSource.zipFile.getInputStream(zipEntry)) {
+            return in.readAllBytes();
+        }
+    }
+    
+    /**
+     * Index all entries in the archive by digest. Entries that are not in the cache are read but not cached.
+     */
+    private void createDigestIndex() throws IOException {
+        Map<String, List<String>> digestIndex = new HashMap<>();
+        
+        for(String entryName : fSource.sizes.keySet()) {
+            String digest = fSource.digests.get(entryName);
+            if(digest == null) {
+                byte[] bytes = fSource.cache.get(entryName);
+                digest = ByteArrayStorage.createDigest(bytes != null ? bytes : readEntry(entryName));
+                fSource.digests.put(entryName, digest);
+            }
+            
+            digestIndex.computeIfAbsent(digest, key -> new ArrayList<>(1)).add(entryName);
+        }
+        
+        fSource.digestIndex = digestIndex;
+    }
+}
+    
\ No newline at end of file
@@ -36,6 +36,11 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
     
     private Button fOpenDiagramsOnLoadButton;
     private Button fBackupOnSaveButton;
+    private Button fLoadImagesOnDemandButton;
+    private Button fStoreCompressedImagesButton;
+    private Spinner fCompressionLevelSpinner;
+    private Button fIncrementalSaveButton;
+    private Button fIncrementalModelCheckButton;
     
     private Spinner fMRUSizeSpinner;
     
@@ -86,8 +91,36 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
         fBackupOnSaveButton.setText(Messages.GeneralPreferencePage_5);
         fBackupOnSaveButton.setLayoutData(createHorizontalGridData(2));
         
-        // Size of recently opened file list
+        // Load images on demand
+        fLoadImagesOnDemandButton = new Button(fileGroup, SWT.CHECK);
+        fLoadImagesOnDemandButton.setText(Messages.GeneralPreferencePage_20);
+        fLoadImagesOnDemandButton.setLayoutData(createHorizontalGridData(2));
+        
+        // Store compressed images
+        fStoreCompressedImagesButton = new Button(fileGroup, SWT.CHECK);
+        fStoreCompressedImagesButton.setText(Messages.GeneralPreferencePage_23);
+        fStoreCompressedImagesButton.setLayoutData(createHorizontalGridData(2));
+        
+        // Incremental save
+        fIncrementalSaveButton = new Button(fileGroup, SWT.CHECK);
+        fIncrementalSaveButton.setText(Messages.GeneralPreferencePage_25);
+        fIncrementalSaveButton.setLayoutData(createHorizontalGridData(2));
+        
+        // Incremental model check
+        fIncrementalModelCheckButton = new Button(fileGroup, SWT.CHECK);
+        fIncrementalModelCheckButton.setText(Messages.GeneralPreferencePage_26);
+        fIncrementalModelCheckButton.setLayoutData(createHorizontalGridData(2));
+        
+        // Compression level
         Label label = new Label(fileGroup, SWT.NULL);
+        label.setText(Messages.GeneralPreferencePage_24);
+        
+        fCompressionLevelSpinner = new Spinner(fileGroup, SWT.BORDER);
+        fCompressionLevelSpinner.setMinimum(0);
+        fCompressionLevelSpinner.setMaximum(9);
+        
+        // Size of recently opened file list
+        label = new Label(fileGroup, SWT.NULL);
         label.setText(Messages.GeneralPreferencePage_2);
         
         fMRUSizeSpinner = new Spinner(fileGroup, SWT.BORDER);
@@ -202,6 +235,11 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
         fMRUSizeSpinner.setSelection(getPreferenceStore().getInt(MRU_MAX));
         
         fBackupOnSaveButton.setSelection(getPreferenceStore().getBoolean(BACKUP_ON_SAVE));
+        fLoadImagesOnDemandButton.setSelection(getPreferenceStore().getBoolean(LOAD_IMAGES_ON_DEMAND));
+        fStoreCompressedImagesButton.setSelection(getPreferenceStore().getBoolean(ARCHIVE_STORE_COMPRESSED_IMAGES));
+        fCompressionLevelSpinner.setSelection(getPreferenceStore().getInt(ARCHIVE_COMPRESSION_LEVEL));
+        fIncrementalSaveButton.setSelection(getPreferenceStore().getBoolean(INCREMENTAL_SAVE));
+        fIncrementalModelCheckButton.setSelection(getPreferenceStore().getBoolean(INCREMENTAL_MODEL_CHECK));
         fOpenDiagramsOnLoadButton.setSelection(getPreferenceStore().getBoolean(OPEN_DIAGRAMS_ON_LOAD));
         
         fShowUnusedElementsInModelTreeButton.setSelection(getPreferenceStore().getBoolean(HIGHLIGHT_UNUSED_ELEMENTS_IN_MODEL_TREE));
@@ -229,6 +267,11 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
     @Override
     public boolean performOk() {
         getPreferenceStore().setValue(BACKUP_ON_SAVE, fBackupOnSaveButton.getSelection());
+        getPreferenceStore().setValue(LOAD_IMAGES_ON_DEMAND, fLoadImagesOnDemandButton.getSelection());
+        getPreferenceStore().setValue(ARCHIVE_STORE_COMPRESSED_IMAGES, fStoreCompressedImagesButton.getSelection());
+        getPreferenceStore().setValue(ARCHIVE_COMPRESSION_LEVEL, fCompressionLevelSpinner.getSelection());
+        getPreferenceStore().setValue(INCREMENTAL_SAVE, fIncrementalSaveButton.getSelection());
+        getPreferenceStore().setValue(INCREMENTAL_MODEL_CHECK, fIncrementalModelCheckButton.getSelection());
         getPreferenceStore().setValue(OPEN_DIAGRAMS_ON_LOAD, fOpenDiagramsOnLoadButton.getSelection());
         getPreferenceStore().setValue(MRU_MAX, fMRUSizeSpinner.getSelection());
         
@@ -259,6 +302,11 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
     @Override
     protected void performDefaults() {
         fBackupOnSaveButton.setSelection(getPreferenceStore().getDefaultBoolean(BACKUP_ON_SAVE));
+        fLoadImagesOnDemandButton.setSelection(getPreferenceStore().getDefaultBoolean(LOAD_IMAGES_ON_DEMAND));
+        fStoreCompressedImagesButton.setSelection(getPreferenceStore().getDefaultBoolean(ARCHIVE_STORE_COMPRESSED_IMAGES));
+        fCompressionLevelSpinner.setSelection(getPreferenceStore().getDefaultInt(ARCHIVE_COMPRESSION_LEVEL));
+        fIncrementalSaveButton.setSelection(getPreferenceStore().getDefaultBoolean(INCREMENTAL_SAVE));
+        fIncrementalModelCheckButton.setSelection(getPreferenceStore().getDefaultBoolean(INCREMENTAL_MODEL_CHECK));
         fOpenDiagramsOnLoadButton.setSelection(getPreferenceStore().getDefaultBoolean(OPEN_DIAGRAMS_ON_LOAD));
         fMRUSizeSpinner.setSelection(getPreferenceStore().getDefaultInt(MRU_MAX));
         
@@ -116,6 +116,11 @@ public interface IPreferenceConstants {
     
     String OPEN_DIAGRAMS_ON_LOAD = "openDiagramsOnLoad";
     String BACKUP_ON_SAVE = "backupOnSave";
+    String LOAD_IMAGES_ON_DEMAND = "loadImagesOnDemand";
+    String ARCHIVE_COMPRESSION_LEVEL = "archiveCompressionLevel";
+    String ARCHIVE_STORE_COMPRESSED_IMAGES = "archiveStoreCompressedImages";
+    String INCREMENTAL_SAVE = "incrementalSave";
+    String INCREMENTAL_MODEL_CHECK = "incrementalModelCheck";
     
     String HIGHLIGHT_UNUSED_ELEMENTS_IN_MODEL_TREE = "highlightUnusedElementsInModelTree";
     
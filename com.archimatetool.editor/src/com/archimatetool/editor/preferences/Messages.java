@@ -273,10 +273,20 @@ public class Messages extends NLS {
 
     public static String GeneralPreferencePage_2;
 
+    public static String GeneralPreferencePage_20;
+
     public static String GeneralPreferencePage_21;
 
     public static String GeneralPreferencePage_22;
 
+    public static String GeneralPreferencePage_23;
+
+    public static String GeneralPreferencePage_24;
+
+    public static String GeneralPreferencePage_25;
+
+    public static String GeneralPreferencePage_26;
+
     public static String GeneralPreferencePage_3;
 
     public static String GeneralPreferencePage_4;
@@ -125,6 +125,11 @@ implements IPreferenceConstants {
         
         store.setDefault(OPEN_DIAGRAMS_ON_LOAD, false);
         store.setDefault(BACKUP_ON_SAVE, true);
+        store.setDefault(LOAD_IMAGES_ON_DEMAND, false);
+        store.setDefault(ARCHIVE_COMPRESSION_LEVEL, 6);
+        store.setDefault(ARCHIVE_STORE_COMPRESSED_IMAGES, false);
+        store.setDefault(INCREMENTAL_SAVE, false);
+        store.setDefault(INCREMENTAL_MODEL_CHECK, false);
 
         store.setDefault(HIGHLIGHT_UNUSED_ELEMENTS_IN_MODEL_TREE, true);
         
@@ -66,6 +66,7 @@ import com.archimatetool.editor.ui.components.ExtendedTitleAreaDialog;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IProperties;
 import com.archimatetool.model.IProperty;
+import com.archimatetool.model.util.ModelTextIndex;
 
 
 
@@ -328,19 +329,12 @@ public class UserPropertiesManagerDialog extends ExtendedTitleAreaDialog {
     }
 
     private void getAllUniquePropertyKeysForModel() {
-        for(Iterator<EObject> iter = fArchimateModel.eAllContents(); iter.hasNext();) {
-            EObject element = iter.next();
-            if(element instanceof IProperty) {
-                String key = ((IProperty)element).getKey();
-                if(key != null) {
-                    if(fKeysTable.containsKey(key)) {
-                        fKeysTable.get(key).usedTimes++;
-                    }
-                    else {
-                        fKeysTable.put(key, new KeyEntry(key));
-                    }
-                }
-            }
+        ModelTextIndex index = ModelTextIndex.getIndex(fArchimateModel);
+        
+        for(String key : index.getPropertyKeys()) {
+            KeyEntry entry = new KeyEntry(key);
+            entry.usedTimes = index.getPropertyCount(key);
+            fKeysTable.put(key, entry);
         }
     }
 
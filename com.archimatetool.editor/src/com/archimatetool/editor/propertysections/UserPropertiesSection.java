@@ -10,7 +10,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -20,7 +19,6 @@ import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.common.util.BasicEList;
 import org.eclipse.emf.common.util.ECollections;
 import org.eclipse.emf.common.util.EList;
-import org.eclipse.emf.ecore.EObject;
 import org.eclipse.gef.commands.Command;
 import org.eclipse.gef.commands.CompoundCommand;
 import org.eclipse.jface.action.Action;
@@ -104,6 +102,7 @@ import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IProperties;
 import com.archimatetool.model.IProperty;
 import com.archimatetool.model.util.LightweightEContentAdapter;
+import com.archimatetool.model.util.ModelTextIndex;
 
 
 
@@ -521,13 +520,9 @@ public class UserPropertiesSection extends AbstractECorePropertySection {
 
         Set<String> set = new HashSet<String>();
 
-        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
-            EObject element = iter.next();
-            if(element instanceof IProperty) {
-                String key = ((IProperty)element).getKey();
-                if(StringUtils.isSetAfterTrim(key)) {
-                    set.add(key);
-                }
+        for(String key : ModelTextIndex.getIndex(model).getPropertyKeys()) {
+            if(StringUtils.isSetAfterTrim(key)) {
+                set.add(key);
             }
         }
 
@@ -550,16 +545,9 @@ public class UserPropertiesSection extends AbstractECorePropertySection {
 
         Set<String> set = new HashSet<String>();
 
-        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
-            EObject element = iter.next();
-            if(element instanceof IProperty) {
-                IProperty p = (IProperty)element;
-                if(p.getKey().equals(key)) {
-                    String value = p.getValue();
-                    if(StringUtils.isSetAfterTrim(value)) {
-                        set.add(value);
-                    }
-                }
+        for(String value : ModelTextIndex.getIndex(model).getPropertyValues(key)) {
+            if(StringUtils.isSetAfterTrim(value)) {
+                set.add(value);
             }
         }
 
@@ -16,6 +16,9 @@ import com.archimatetool.model.IFolder;
 /**
  * Name renderer
  * 
+ * Objects other than the rendered object should be got with getActualObject() or getObjectFromPrefix()
+ * so that the rendered label is updated when they change.
+ * 
  * @author Phillip Beauvoir
  */
 @SuppressWarnings("nls")
@@ -28,7 +31,13 @@ public abstract class AbstractTextRenderer implements ITextRenderer {
      * @return object itself or the IArchimateConcept
      */
     protected IArchimateModelObject getActualObject(IArchimateModelObject object) {
-        return object instanceof IDiagramModelArchimateComponent ? ((IDiagramModelArchimateComponent)object).getArchimateConcept() : object;
+        IArchimateModelObject actualObject = object instanceof IDiagramModelArchimateComponent ? ((IDiagramModelArchimateComponent)object).getArchimateConcept() : object;
+        
+        // The label depends on both
+        RenderedLabelCache.addDependency(object);
+        RenderedLabelCache.addDependency(actualObject);
+        
+        return actualObject;
     }
     
     /**
@@ -40,6 +49,12 @@ public abstract class AbstractTextRenderer implements ITextRenderer {
      *         Return null if the prefix is not appropriate for the obect.
      */
     protected IArchimateModelObject getObjectFromPrefix(IArchimateModelObject object, String prefix) {
+        IArchimateModelObject refObject = findObjectFromPrefix(object, prefix);
+        RenderedLabelCache.addDependency(refObject);
+        return refObject;
+    }
+    
+    private IArchimateModelObject findObjectFromPrefix(IArchimateModelObject object, String prefix) {
         IArchimateModelObject actualObject = getActualObject(object);
 
         // No prefix so return actual object
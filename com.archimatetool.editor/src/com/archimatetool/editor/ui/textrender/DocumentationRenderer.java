@@ -5,6 +5,7 @@
  */
 package com.archimatetool.editor.ui.textrender;
 
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -18,7 +19,7 @@ import com.archimatetool.model.IDocumentable;
  * @author Phillip Beauvoir
  */
 @SuppressWarnings("nls")
-public class DocumentationRenderer extends AbstractTextRenderer {
+public class DocumentationRenderer extends AbstractTextRenderer implements IExpressionRenderer {
     
     private static final Pattern DOCUMENTATION_PATTERN = Pattern.compile("\\$" + allPrefixesGroup + "\\{(documentation|doc)\\}");
 
@@ -28,22 +29,31 @@ public class DocumentationRenderer extends AbstractTextRenderer {
         
         while(matcher.find()) {
             String prefix = matcher.group(1);
-            String replacement = "";
-            
-            // Get ref object...
-            IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
-            // If ref object is IDocumentable
-            if(refObject instanceof IDocumentable) {
-                replacement = ((IDocumentable)refObject).getDocumentation();
-            }
-            // If ref object is IArchimateModel use Purpose
-            else if(refObject instanceof IArchimateModel) {
-                replacement = ((IArchimateModel)refObject).getPurpose();
-            }
-            
-            text = text.replace(matcher.group(), replacement);
+            text = text.replace(matcher.group(), renderDocumentation(object, prefix));
         }
         
         return text;
     }
+    
+    @Override
+    public String renderExpression(IArchimateModelObject object, String prefix, String name, List<String> arguments) {
+        return ("documentation".equals(name) || "doc".equals(name)) && arguments.isEmpty() ? renderDocumentation(object, prefix) : null;
+    }
+    
+    private String renderDocumentation(IArchimateModelObject object, String prefix) {
+        // Get ref object...
+        IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
+        
+        // If ref object is IDocumentable
+        if(refObject instanceof IDocumentable) {
+            return ((IDocumentable)refObject).getDocumentation();
+        }
+        
+        // If ref object is IArchimateModel use Purpose
+        if(refObject instanceof IArchimateModel) {
+            return ((IArchimateModel)refObject).getPurpose();
+        }
+        
+        return "";
+    }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.ui.textrender;
+
+import java.util.List;
+
+import com.archimatetool.model.IArchimateModelObject;
+
+/**
+ * A text renderer that can also render the expressions of a compiled label expression.
+ *
+ * A label expression is parsed once into its text and expressions, such as ${name} or $model{property:key},
+ * and each expression is rendered by the first registered renderer that returns a value for it.
+ * If any registered renderer is not an IExpressionRenderer, label expressions are rendered by calling
+ * {@link #render(IArchimateModelObject, String)} on each renderer until the text doesn't change.
+ *
+ * @author Phillip Beauvoir
+ */
+public interface IExpressionRenderer extends ITextRenderer {
+    
+    /**
+     * @param object The object whose text should be rendered
+     * @param prefix The expression's prefix, for example "model" in $model{name}, or null if there is no prefix
+     * @param name The expression's name, for example "property" in ${property:key}
+     * @param arguments The expression's arguments that were separated by ':', for example "key" in ${property:key}.
+     *                  Any expressions in them have already been rendered.
+     * @return The rendered expression, or null if this renderer doesn't render the expression
+     */
+    String renderExpression(IArchimateModelObject object, String prefix, String name, List<String> arguments);
+}
@@ -5,6 +5,7 @@
  */
 package com.archimatetool.editor.ui.textrender;
 
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,7 +17,7 @@ import com.archimatetool.model.IArchimateModelObject;
  * @author Jean-Baptiste Sarrodie
  */
 @SuppressWarnings("nls")
-public class IfRenderer extends AbstractTextRenderer {
+public class IfRenderer extends AbstractTextRenderer implements IExpressionRenderer {
 
     private static final String startOfExpression = "\\$" + allPrefixesGroup + "\\{";
     private static final String notStartOfExpression = "(?!" + startOfExpression + ")";
@@ -43,6 +44,42 @@ public class IfRenderer extends AbstractTextRenderer {
 
         return text;
     }
+    
+    @Override
+    public String renderExpression(IArchimateModelObject object, String prefix, String name, List<String> arguments) {
+        if(prefix != null || !("if".equals(name) || "nvl".equals(name)) || !arguments.stream().allMatch(this::isTextWithoutExpressions)) {
+            return null;
+        }
+        
+        // ${if:condition:then} or ${if:condition:then:else}
+        if("if".equals(name) && (arguments.size() == 2 || arguments.size() == 3)) {
+            String ifElse = arguments.size() == 3 ? arguments.get(2) : "";
+            return arguments.get(0).isBlank() ? ifElse : arguments.get(1);
+        }
+        
+        // ${nvl:condition:alternate}
+        if("nvl".equals(name) && arguments.size() == 2) {
+            return arguments.get(0).isBlank() ? arguments.get(1) : arguments.get(0);
+        }
+        
+        return null;
+    }
+    
+    /**
+     * @return true if an argument matches textWithoutExpressions, where a '\' can only be used in \: or \\
+     */
+    private boolean isTextWithoutExpressions(String text) {
+        for(int i = 0; i < text.length(); i++) {
+            if(text.charAt(i) == '\\') {
+                if(i + 1 == text.length() || (text.charAt(i + 1) != ':' && text.charAt(i + 1) != '\\')) {
+                    return false;
+                }
+                i++;
+            }
+        }
+        
+        return true;
+    }
 
     private String renderIfThen(String text) {
         Matcher matcher = IF_THEN_PATTERN.matcher(text);
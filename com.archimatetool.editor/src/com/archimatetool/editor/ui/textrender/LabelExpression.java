@@ -0,0 +1,266 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.ui.textrender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.archimatetool.model.IArchimateModelObject;
+
+/**
+ * A label expression that has been parsed into its text and expressions so that it can be rendered in one pass.
+ *
+ * An expression is $prefix{name:argument:argument...} where the prefix and arguments are optional.
+ * Arguments are separated by ':' unless it is escaped as \: and can contain other expressions, which are rendered first.
+ *
+ * The result is the same as rendering the text with each ITextRenderer until it doesn't change.
+ * Where that could be different, because a rendered value contains characters that are part of the expression syntax
+ * or an expression isn't rendered by any renderer, null is returned and the text has to be rendered in that way.
+ *
+ * @author Phillip Beauvoir
+ */
+@SuppressWarnings("nls")
+final class LabelExpression {
+    
+    private static final Pattern START_OF_EXPRESSION = Pattern.compile("\\$" + ITextRenderer.allPrefixesGroup + "\\{");
+    
+    // Characters in a rendered value in an argument that can change how the regular expressions of the renderers match
+    private static final String ARGUMENT_SYNTAX_CHARS = "${}:\\";
+    
+    private static abstract class Node {
+    }
+    
+    private static class TextNode extends Node {
+        String text;
+        
+        TextNode(String text) {
+            this.text = text;
+        }
+    }
+    
+    private static class ExpressionNode extends Node {
+        String prefix;
+        String name;
+        List<List<Node>> arguments = new ArrayList<>();
+        
+        ExpressionNode(String prefix, String name) {
+            this.prefix = prefix;
+            this.name = name;
+        }
+    }
+    
+    /**
+     * Parse an expression
+     * @param expression The expression with escaped newline characters already removed
+     * @return The compiled expression. If it can't be parsed it will always render as null.
+     */
+    static LabelExpression compile(String expression) {
+        return new LabelExpression(new Parser(expression).parse());
+    }
+    
+    // Null if the expression couldn't be parsed
+    private final List<Node> nodes;
+    
+    private LabelExpression(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+    
+    /**
+     * @return false if the expression couldn't be parsed
+     */
+    boolean isCompiled() {
+        return nodes != null;
+    }
+    
+    /**
+     * Render the expression in one pass
+     * @param object The object whose text should be rendered
+     * @param renderers The renderers of expressions
+     * @return The rendered text with escaped characters not yet removed,
+     *         or null if it has to be rendered by calling each renderer until the text doesn't change
+     */
+    String render(IArchimateModelObject object, List<IExpressionRenderer> renderers) {
+        if(nodes == null) {
+            return null;
+        }
+        
+        String result = render(nodes, object, renderers, false);
+        
+        // Any text that could be an expression would be rendered again
+        if(result == null || (result.indexOf('$') != -1 && result.indexOf('{') != -1)) {
+            return null;
+        }
+        
+        return result;
+    }
+    
+    private static String render(List<Node> nodes, IArchimateModelObject object, List<IExpressionRenderer> renderers, boolean inArgument) {
+        if(nodes.size() == 1 && nodes.get(0) instanceof TextNode) {
+            return ((TextNode)nodes.get(0)).text;
+        }
+        
+        StringBuilder sb = new StringBuilder();
+        
+        for(Node node : nodes) {
+            if(node instanceof TextNode) {
+                sb.append(((TextNode)node).text);
+            }
+            else {
+                String value = render((ExpressionNode)node, object, renderers);
+                if(value == null || (inArgument && containsAny(value, ARGUMENT_SYNTAX_CHARS))) {
+                    return null;
+                }
+                sb.append(value);
+            }
+        }
+        
+        return sb.toString();
+    }
+    
+    private static String render(ExpressionNode node, IArchimateModelObject object, List<IExpressionRenderer> renderers) {
+        List<String> arguments = new ArrayList<>(node.arguments.size());
+        
+        for(List<Node> argument : node.arguments) {
+            String value = render(argument, object, renderers, true);
+            if(value == null) {
+                return null;
+            }
+            arguments.add(value);
+        }
+        
+        for(IExpressionRenderer renderer : renderers) {
+            String value = renderer.renderExpression(object, node.prefix, node.name, arguments);
+            if(value != null) {
+                return value;
+            }
+        }
+        
+        return null;
+    }
+    
+    private static boolean containsAny(String s, String chars) {
+        for(int i = 0; i < s.length(); i++) {
+            if(chars.indexOf(s.charAt(i)) != -1) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Parser of an expression
+     */
+    private static class Parser {
+        private String text;
+        private Matcher matcher;
+        private int pos;
+        
+        Parser(String text) {
+            this.text = text;
+            matcher = START_OF_EXPRESSION.matcher(text);
+        }
+        
+        List<Node> parse() {
+            return parseText(false);
+        }
+        
+        /**
+         * Parse text and expressions up to the end of the text or, in an argument, up to the next ':' or '}'
+         * @return The nodes or null if the text can't be parsed
+         */
+        private List<Node> parseText(boolean inArgument) {
+            List<Node> nodes = new ArrayList<>();
+            StringBuilder sb = new StringBuilder();
+            
+            while(pos < text.length()) {
+                char c = text.charAt(pos);
+                
+                if(inArgument && (c == ':' || c == '}')) {
+                    break;
+                }
+                
+                // Escaped ':' or '\' stays as it is
+                if(c == '\\' && pos + 1 < text.length() && (text.charAt(pos + 1) == ':' || text.charAt(pos + 1) == '\\')) {
+                    sb.append(c).append(text.charAt(pos + 1));
+                    pos += 2;
+                    continue;
+                }
+                
+                if(c == '$' && matcher.region(pos, text.length()).lookingAt()) {
+                    if(sb.length() > 0) {
+                        nodes.add(new TextNode(sb.toString()));
+                        sb.setLength(0);
+                    }
+                    
+                    String prefix = matcher.group(1);
+                    pos = matcher.end();
+                    
+                    ExpressionNode node = parseExpression(prefix);
+                    if(node == null) {
+                        return null;
+                    }
+                    
+                    nodes.add(node);
+                    continue;
+                }
+                
+                sb.append(c);
+                pos++;
+            }
+            
+            // Argument was not closed
+            if(inArgument && pos == text.length()) {
+                return null;
+            }
+            
+            if(sb.length() > 0) {
+                nodes.add(new TextNode(sb.toString()));
+            }
+            
+            return nodes;
+        }
+        
+        /**
+         * Parse an expression after its opening '{'
+         * @return The expression or null if it can't be parsed
+         */
+        private ExpressionNode parseExpression(String prefix) {
+            int start = pos;
+            
+            while(pos < text.length() && text.charAt(pos) != ':' && text.charAt(pos) != '}') {
+                char c = text.charAt(pos);
+                if(c == '$' || c == '{' || c == '\\') {
+                    return null;
+                }
+                pos++;
+            }
+            
+            if(pos == text.length()) {
+                return null;
+            }
+            
+            ExpressionNode node = new ExpressionNode(prefix, text.substring(start, pos));
+            
+            while(text.charAt(pos) == ':') {
+                pos++;
+                
+                List<Node> argument = parseText(true);
+                if(argument == null) {
+                    return null;
+                }
+                
+                node.arguments.add(argument);
+            }
+            
+            pos++; // '}'
+            
+            return node;
+        }
+    }
+}
@@ -5,6 +5,7 @@
  */
 package com.archimatetool.editor.ui.textrender;
 
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,7 +17,7 @@ import com.archimatetool.model.IArchimateModelObject;
  * @author Phillip Beauvoir
  */
 @SuppressWarnings("nls")
-public class NameRenderer extends AbstractTextRenderer {
+public class NameRenderer extends AbstractTextRenderer implements IExpressionRenderer {
     
     private static final Pattern NAME_PATTERN = Pattern.compile("\\$" + allPrefixesGroup + "\\{name\\}");
 
@@ -26,16 +27,19 @@ public class NameRenderer extends AbstractTextRenderer {
         
         while(matcher.find()) {
             String prefix = matcher.group(1);
-            String replacement = "";
-            
-            IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
-            if(refObject != null) {
-                replacement = refObject.getName();
-            }
-            
-            text = text.replace(matcher.group(), replacement);
+            text = text.replace(matcher.group(), renderName(object, prefix));
         }
         
         return text;
     }
+    
+    @Override
+    public String renderExpression(IArchimateModelObject object, String prefix, String name, List<String> arguments) {
+        return "name".equals(name) && arguments.isEmpty() ? renderName(object, prefix) : null;
+    }
+    
+    private String renderName(IArchimateModelObject object, String prefix) {
+        IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
+        return refObject != null ? refObject.getName() : "";
+    }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@
  */
 package com.archimatetool.editor.ui.textrender;
 
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -19,7 +20,7 @@ import com.archimatetool.model.IProperty;
  * @author jbsarrodie
  */
 @SuppressWarnings("nls")
-public class PropertiesRenderer extends AbstractTextRenderer {
+public class PropertiesRenderer extends AbstractTextRenderer implements IExpressionRenderer {
     
     private static final String startOfExpression = "\\$" + allPrefixesGroup + "\\{";
     private static final String notStartOfExpression = "(?!" + startOfExpression + ")";
@@ -41,28 +42,64 @@ public class PropertiesRenderer extends AbstractTextRenderer {
         return text;
     }
     
+    @Override
+    public String renderExpression(IArchimateModelObject object, String prefix, String name, List<String> arguments) {
+        switch(name) {
+            // ${property:key}
+            case "property": {
+                String key = String.join(":", arguments);
+                return key.isEmpty() ? null : renderPropertyValue(object, prefix, key);
+            }
+            
+            // ${properties} or ${properties:separator:key}
+            case "properties": {
+                if(arguments.isEmpty()) {
+                    return renderPropertiesList(object, prefix, true);
+                }
+                
+                // The separator can't have an escaped ':'
+                String separator = arguments.get(0);
+                String key = String.join(":", arguments.subList(1, arguments.size()));
+                if(arguments.size() == 1 || separator.indexOf('\\') != -1 || key.isEmpty()) {
+                    return null;
+                }
+                
+                return renderPropertiesValuesCustomList(object, prefix, separator, key);
+            }
+            
+            // ${propertiesvalues}
+            case "propertiesvalues":
+                return arguments.isEmpty() ? renderPropertiesList(object, prefix, false) : null;
+
+            default:
+                return null;
+        }
+    }
+    
     private String renderPropertyValue(IArchimateModelObject object, String text) {
         Matcher matcher = PROPERTY_VALUE_PATTERN.matcher(text);
         
         while(matcher.find()) {
             String prefix = matcher.group(1);
             String key = matcher.group(2);
-            String propertyValue = "";
-            
-            IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
-            if(refObject instanceof IProperties) {
-                IProperty property = getProperty((IProperties)refObject, key);
-                if(property != null) {
-                    propertyValue = property.getValue();
-                }
-            }
-            
-            text = text.replace(matcher.group(), propertyValue);
+            text = text.replace(matcher.group(), renderPropertyValue(object, prefix, key));
         }
 
         return text;
     }
     
+    private String renderPropertyValue(IArchimateModelObject object, String prefix, String key) {
+        IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
+        if(refObject instanceof IProperties) {
+            IProperty property = getProperty((IProperties)refObject, key);
+            if(property != null) {
+                return property.getValue();
+            }
+        }
+        
+        return "";
+    }
+    
     // List all properties like key: value
     private String renderPropertiesList(IArchimateModelObject object, String text) {
         Matcher matcher = PROPERTIES_PATTERN.matcher(text);
@@ -70,9 +107,9 @@ public class PropertiesRenderer extends AbstractTextRenderer {
         while(matcher.find()) {
             String prefix = matcher.group(1);
             
-            IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
-            if(refObject instanceof IProperties) {
-                text = text.replace(matcher.group(), getAllProperties((IProperties)refObject, true));
+            String s = renderPropertiesList(object, prefix, true);
+            if(s != null) {
+                text = text.replace(matcher.group(), s);
             }
         }
         
@@ -86,14 +123,22 @@ public class PropertiesRenderer extends AbstractTextRenderer {
         while(matcher.find()) {
             String prefix = matcher.group(1);
             
-            IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
-            if(refObject instanceof IProperties) {
-                text = text.replace(matcher.group(), getAllProperties((IProperties)refObject, false));
+            String s = renderPropertiesList(object, prefix, false);
+            if(s != null) {
+                text = text.replace(matcher.group(), s);
             }
         }
         
         return text;
     }
+    
+    /**
+     * @return The list of properties, or null if the object referred to by prefix doesn't have properties
+     */
+    private String renderPropertiesList(IArchimateModelObject object, String prefix, boolean full) {
+        IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
+        return refObject instanceof IProperties ? getAllProperties((IProperties)refObject, full) : null;
+    }
 
     // List of all of a certain property key with separator
     private String renderPropertiesValuesCustomList(IArchimateModelObject object, String text) {
@@ -103,25 +148,39 @@ public class PropertiesRenderer extends AbstractTextRenderer {
             String prefix = matcher.group(1);
             String separator = matcher.group(2);
             String key = matcher.group(3);
-            String s = "";
             
-            IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
-            if(refObject instanceof IProperties) {
-                for(IProperty property : ((IProperties)refObject).getProperties()) {
-                    if(property.getKey().equals(key)) {
-                        if(!s.isEmpty()) {
-                            s += separator;
-                        }
-                        
-                        s += property.getValue();
-                    }
-                }
+            String s = renderPropertiesValuesCustomList(object, prefix, separator, key);
+            if(s != null) {
                 text = text.replace(matcher.group(), s);
             }
         }
         
         return text;
     }
+    
+    /**
+     * @return The values of the properties with key, or null if the object referred to by prefix doesn't have properties
+     */
+    private String renderPropertiesValuesCustomList(IArchimateModelObject object, String prefix, String separator, String key) {
+        IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
+        if(!(refObject instanceof IProperties)) {
+            return null;
+        }
+        
+        String s = "";
+        
+        for(IProperty property : ((IProperties)refObject).getProperties()) {
+            if(property.getKey().equals(key)) {
+                if(!s.isEmpty()) {
+                    s += separator;
+                }
+                
+                s += property.getValue();
+            }
+        }
+        
+        return s;
+    }
 
     private String getAllProperties(IProperties object, boolean full) {
         String s = "";
@@ -5,6 +5,8 @@
  */
 package com.archimatetool.editor.ui.textrender;
 
+import java.util.List;
+
 import com.archimatetool.model.IArchimateModelObject;
 import com.archimatetool.model.IInfluenceRelationship;
 
@@ -13,7 +15,7 @@ import com.archimatetool.model.IInfluenceRelationship;
  * 
  * @author Phillip Beauvoir
  */
-public class RelationshipRenderer extends AbstractTextRenderer {
+public class RelationshipRenderer extends AbstractTextRenderer implements IExpressionRenderer {
     
     // Influence Strength
     private static final String STRENGTH = "${strength}"; //$NON-NLS-1$
@@ -28,4 +30,17 @@ public class RelationshipRenderer extends AbstractTextRenderer {
         
         return text;
     }
+    
+    @Override
+    public String renderExpression(IArchimateModelObject object, String prefix, String name, List<String> arguments) {
+        if(prefix == null && "strength".equals(name) && arguments.isEmpty()) { //$NON-NLS-1$
+            object = getActualObject(object);
+            
+            if(object instanceof IInfluenceRelationship) {
+                return ((IInfluenceRelationship)object).getStrength();
+            }
+        }
+        
+        return null;
+    }
 }
\ No newline at end of file
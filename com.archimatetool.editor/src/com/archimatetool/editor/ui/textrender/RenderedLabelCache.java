@@ -0,0 +1,260 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.ui.textrender;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimateModelObject;
+import com.archimatetool.model.IDiagramModelComponent;
+import com.archimatetool.model.IFeature;
+import com.archimatetool.model.IProfile;
+import com.archimatetool.model.IProperty;
+import com.archimatetool.model.util.IModelContentListener;
+
+/**
+ * Cache of the rendered labels of a model's objects.
+ *
+ * While a label is rendered the objects that the renderers read are recorded as its dependencies.
+ * These are the object itself, its concept and diagram model, and the objects that are got with
+ * AbstractTextRenderer's getActualObject() and getObjectFromPrefix().
+ * A label is removed from the cache when a model notification changes one of its dependencies, or one of their properties or features.
+ * Objects that are added, moved or removed are also changed because a label might use their parent or folder.
+ *
+ * The cache is shared by all users of a model and is stored as an adapter of the model. It is thread safe.
+ * It is disposed when the model is closed, see TextRenderer#disposeLabelCache().
+ *
+ * @author Phillip Beauvoir
+ */
+final class RenderedLabelCache {
+    
+    // The dependencies of the label that is being rendered on this thread
+    private static final ThreadLocal<Set<EObject>> recordedDependencies = new ThreadLocal<>();
+    
+    // Lock for creating a model's cache
+    private static final Object CREATE_LOCK = new Object();
+    
+    /**
+     * @return The shared cache for model, creating it if needed
+     */
+    static RenderedLabelCache getCache(IArchimateModel model) {
+        synchronized(CREATE_LOCK) {
+            RenderedLabelCache cache = (RenderedLabelCache)model.getAdapter(RenderedLabelCache.class);
+            if(cache == null) {
+                cache = new RenderedLabelCache(model);
+                model.setAdapter(RenderedLabelCache.class, cache);
+            }
+            return cache;
+        }
+    }
+    
+    /**
+     * Record that eObject is read by the label that is being rendered on this thread, if any
+     */
+    static void addDependency(EObject eObject) {
+        Set<EObject> dependencies = recordedDependencies.get();
+        if(dependencies != null && eObject != null) {
+            dependencies.add(eObject);
+        }
+    }
+    
+    private static class Entry {
+        String expression;
+        String text;
+        Set<EObject> dependencies;
+        
+        Entry(String expression, String text, Set<EObject> dependencies) {
+            this.expression = expression;
+            this.text = text;
+            this.dependencies = dependencies;
+        }
+    }
+    
+    private IArchimateModel fModel;
+    
+    // Rendered labels keyed by object
+    private Map<EObject, Entry> fEntries = new IdentityHashMap<>();
+    
+    // Objects keyed by the dependencies of their labels
+    private Map<EObject, Set<EObject>> fDependents = new IdentityHashMap<>();
+    
+    // Incremented on each model change so that a label rendered during a change isn't cached
+    private long fChangeCount;
+    
+    private IModelContentListener fModelListener = this::modelChanged;
+    
+    private RenderedLabelCache(IArchimateModel model) {
+        fModel = model;
+        fModel.addModelContentListener(fModelListener);
+    }
+    
+    /**
+     * Stop listening to model changes and remove this cache from the model
+     */
+    synchronized void dispose() {
+        fModel.removeModelContentListener(fModelListener);
+        
+        if(fModel.getAdapter(RenderedLabelCache.class) == this) {
+            fModel.setAdapter(RenderedLabelCache.class, null);
+        }
+        
+        clear();
+    }
+    
+    /**
+     * @param object The object whose label is rendered
+     * @param expression The label expression
+     * @param renderer Renders the label if it's not in the cache
+     * @return The cached or rendered label
+     */
+    String getLabel(IArchimateModelObject object, String expression, Supplier<String> renderer) {
+        long changeCount;
+        
+        synchronized(this) {
+            Entry entry = fEntries.get(object);
+            if(entry != null && entry.expression.equals(expression)) {
+                return entry.text;
+            }
+            changeCount = fChangeCount;
+        }
+        
+        Set<EObject> dependencies = Collections.newSetFromMap(new IdentityHashMap<>());
+        dependencies.add(object);
+        
+        String text;
+        
+        recordedDependencies.set(dependencies);
+        try {
+            if(object instanceof IDiagramModelComponent) {
+                addDependency(((IDiagramModelComponent)object).getDiagramModel());
+            }
+            
+            text = renderer.get();
+        }
+        finally {
+            recordedDependencies.remove();
+        }
+        
+        synchronized(this) {
+            if(changeCount == fChangeCount) {
+                removeEntry(object);
+                put(object, new Entry(expression, text, dependencies));
+            }
+        }
+        
+        return text;
+    }
+    
+    /**
+     * @return The number of cached labels
+     */
+    synchronized int size() {
+        return fEntries.size();
+    }
+    
+    private void put(EObject object, Entry entry) {
+        fEntries.put(object, entry);
+        
+        for(EObject dependency : entry.dependencies) {
+            fDependents.computeIfAbsent(dependency, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(object);
+        }
+    }
+    
+    private void removeEntry(EObject object) {
+        Entry entry = fEntries.remove(object);
+        if(entry == null) {
+            return;
+        }
+        
+        for(EObject dependency : entry.dependencies) {
+            Set<EObject> dependents = fDependents.get(dependency);
+            if(dependents != null) {
+                dependents.remove(object);
+                if(dependents.isEmpty()) {
+                    fDependents.remove(dependency);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Remove the labels that depend on eObject
+     */
+    private void invalidate(Object eObject) {
+        Set<EObject> dependents = fDependents.get(eObject);
+        if(dependents != null) {
+            for(EObject object : dependents.toArray(new EObject[dependents.size()])) {
+                removeEntry(object);
+            }
+        }
+    }
+    
+    /**
+     * Remove the labels that depend on value or its contents
+     */
+    private void invalidateContents(Object value) {
+        if(value instanceof Collection<?>) {
+            for(Object o : (Collection<?>)value) {
+                invalidateContents(o);
+            }
+        }
+        else if(value instanceof EObject) {
+            invalidate(value);
+            for(Iterator<EObject> iter = ((EObject)value).eAllContents(); iter.hasNext();) {
+                invalidate(iter.next());
+            }
+        }
+    }
+    
+    private void clear() {
+        fEntries.clear();
+        fDependents.clear();
+    }
+    
+    private synchronized void modelChanged(Notification notification) {
+        if(notification.isTouch()) {
+            return;
+        }
+        
+        fChangeCount++;
+        
+        if(fEntries.isEmpty()) {
+            return;
+        }
+        
+        Object notifier = notification.getNotifier();
+        
+        // A profile's name or image is used by the concepts that have it
+        if(notifier instanceof IProfile) {
+            clear();
+            return;
+        }
+        
+        // A property or feature belongs to its owner
+        if(notifier instanceof IProperty || notifier instanceof IFeature) {
+            notifier = ((EObject)notifier).eContainer();
+        }
+        
+        invalidate(notifier);
+        
+        // Added, moved or removed objects have a new parent
+        Object feature = notification.getFeature();
+        if(feature instanceof EReference && ((EReference)feature).isContainment()) {
+            invalidateContents(notification.getOldValue());
+            invalidateContents(notification.getNewValue());
+        }
+    }
+}
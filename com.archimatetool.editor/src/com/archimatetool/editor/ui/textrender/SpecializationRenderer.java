@@ -5,6 +5,7 @@
  */
 package com.archimatetool.editor.ui.textrender;
 
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -18,7 +19,7 @@ import com.archimatetool.model.IProfiles;
  * @author Phillip Beauvoir
  */
 @SuppressWarnings("nls")
-public class SpecializationRenderer extends AbstractTextRenderer {
+public class SpecializationRenderer extends AbstractTextRenderer implements IExpressionRenderer {
     
     private static final Pattern NAME_PATTERN = Pattern.compile("\\$" + allPrefixesGroup + "\\{specialization\\}");
 
@@ -28,19 +29,26 @@ public class SpecializationRenderer extends AbstractTextRenderer {
         
         while(matcher.find()) {
             String prefix = matcher.group(1);
-            String replacement = "";
-            
-            IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
-            if(refObject instanceof IProfiles) {
-                IProfile profile = ((IProfiles)refObject).getPrimaryProfile();
-                if(profile != null) {
-                    replacement = profile.getName();
-                }
-            }
-            
-            text = text.replace(matcher.group(), replacement);
+            text = text.replace(matcher.group(), renderSpecialization(object, prefix));
         }
         
         return text;
     }
+    
+    @Override
+    public String renderExpression(IArchimateModelObject object, String prefix, String name, List<String> arguments) {
+        return "specialization".equals(name) && arguments.isEmpty() ? renderSpecialization(object, prefix) : null;
+    }
+    
+    private String renderSpecialization(IArchimateModelObject object, String prefix) {
+        IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
+        if(refObject instanceof IProfiles) {
+            IProfile profile = ((IProfiles)refObject).getPrimaryProfile();
+            if(profile != null) {
+                return profile.getName();
+            }
+        }
+        
+        return "";
+    }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@
  */
 package com.archimatetool.editor.ui.textrender;
 
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,7 +18,7 @@ import com.archimatetool.model.ITextContent;
  * @author Phillip Beauvoir
  */
 @SuppressWarnings("nls")
-public class TextContentRenderer extends AbstractTextRenderer {
+public class TextContentRenderer extends AbstractTextRenderer implements IExpressionRenderer {
     
     private static final Pattern CONTENT_PATTERN = Pattern.compile("\\$(connection:(?:source|target))?\\{content\\}");
 
@@ -27,16 +28,25 @@ public class TextContentRenderer extends AbstractTextRenderer {
         
         while(matcher.find()) {
             String prefix = matcher.group(1);
-            String replacement = "";
-            
-            IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
-            if(refObject instanceof ITextContent) {
-                replacement = ((ITextContent)refObject).getContent();
-            }
-            
-            text = text.replace(matcher.group(), replacement);
+            text = text.replace(matcher.group(), renderContent(object, prefix));
         }
         
         return text;
     }
+    
+    @Override
+    public String renderExpression(IArchimateModelObject object, String prefix, String name, List<String> arguments) {
+        // Only a connection prefix is used with content
+        if(!"content".equals(name) || !arguments.isEmpty()
+                || (prefix != null && !"connection:source".equals(prefix) && !"connection:target".equals(prefix))) {
+            return null;
+        }
+        
+        return renderContent(object, prefix);
+    }
+    
+    private String renderContent(IArchimateModelObject object, String prefix) {
+        IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
+        return refObject instanceof ITextContent ? ((ITextContent)refObject).getContent() : "";
+    }
 }
\ No newline at end of file
@@ -5,11 +5,17 @@
  */
 package com.archimatetool.editor.ui.textrender;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.archimatetool.editor.utils.StringUtils;
+import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimateModelObject;
 import com.archimatetool.model.IDiagramModelArchimateComponent;
 import com.archimatetool.model.IDiagramModelConnection;
@@ -23,6 +29,10 @@ import com.archimatetool.model.util.Logger;
 /**
  * Render Text for display in Text controls in diagrams
  * 
+ * A label expression is compiled once and rendered in one pass by the registered IExpressionRenderers.
+ * If that's not possible it is rendered by each registered renderer in turn until the text doesn't change.
+ * The rendered labels of a model's objects are cached until something that they depend on changes.
+ * 
  * @author Phillip Beauvoir
  */
 @SuppressWarnings("nls")
@@ -32,6 +42,25 @@ public class TextRenderer {
 
     private Set<ITextRenderer> renderers = new LinkedHashSet<>();
     
+    // The renderers as IExpressionRenderers, or null if any of them is not one
+    private volatile List<IExpressionRenderer> expressionRenderers = new ArrayList<>();
+    
+    // Whether rendered labels are cached
+    private volatile boolean cacheLabels = true;
+    
+    // Maximum number of compiled expressions to keep
+    static final int MAX_COMPILED_EXPRESSIONS = 1000;
+    
+    // Compiled expressions keyed by expression. The least recently used is removed when there are too many.
+    private Map<String, LabelExpression> compiledExpressions = Collections.synchronizedMap(new LinkedHashMap<String, LabelExpression>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LabelExpression> eldest) {
+            return size() > MAX_COMPILED_EXPRESSIONS;
+        }
+    });
+    
     private static TextRenderer defaultTextRenderer = new TextRenderer();
     
     public static TextRenderer getDefault() {
@@ -99,6 +128,29 @@ public class TextRenderer {
             return defaultText;
         }
         
+        // Use the cached label if nothing that it depends on has changed
+        IArchimateModel model = object.getArchimateModel();
+        if(model != null && cacheLabels) {
+            return RenderedLabelCache.getCache(model).getLabel(object, formatExpression, () -> renderExpression(object, formatExpression));
+        }
+        
+        return renderExpression(object, formatExpression);
+    }
+    
+    /**
+     * Dispose of the cached labels of a model and stop listening to its changes. This is called when the model is closed.
+     */
+    public void disposeLabelCache(IArchimateModel model) {
+        RenderedLabelCache cache = (RenderedLabelCache)model.getAdapter(RenderedLabelCache.class);
+        if(cache != null) {
+            cache.dispose();
+        }
+    }
+    
+    /**
+     * Render an object with a format expression that is set
+     */
+    private String renderExpression(IArchimateModelObject object, String formatExpression) {
         // Remove escapement of newline chars
         String result = renderNewLines(formatExpression);
         
@@ -108,6 +160,12 @@ public class TextRenderer {
         final int MAX_RECURSION = 10; // Max recursion level
         
         try {
+            // Render the compiled expression in one pass if we can
+            String compiledResult = renderCompiledExpression(object, result);
+            if(compiledResult != null) {
+                return renderEscapedCharacters(compiledResult);
+            }
+            
             do {
                 // Add to result set
                 resultSet.add(result);
@@ -132,6 +190,33 @@ public class TextRenderer {
         return renderEscapedCharacters(result);
     }
 
+    /**
+     * Render an expression in one pass from its compiled form
+     * @return The rendered text, or null if the expression has to be rendered by each renderer in turn
+     */
+    private String renderCompiledExpression(IArchimateModelObject object, String expression) {
+        List<IExpressionRenderer> currentRenderers = expressionRenderers;
+        if(currentRenderers == null) {
+            return null;
+        }
+        
+        LabelExpression compiledExpression = compiledExpressions.get(expression);
+        
+        if(compiledExpression == null) {
+            compiledExpression = LabelExpression.compile(expression);
+            compiledExpressions.put(expression, compiledExpression);
+        }
+        
+        return compiledExpression.render(object, currentRenderers);
+    }
+
+    /**
+     * @return true if the compiled form of expression is cached
+     */
+    boolean isCompiledExpressionCached(String expression) {
+        return compiledExpressions.containsKey(expression);
+    }
+    
     /**
      * @return true if object has a format expression
      */
@@ -173,6 +258,21 @@ public class TextRenderer {
      */
     public void registerRenderer(ITextRenderer renderer) {
         renderers.add(renderer);
+        
+        // Compiled expressions can only be rendered if all renderers can render them
+        List<IExpressionRenderer> list = new ArrayList<>();
+        for(ITextRenderer r : renderers) {
+            if(!(r instanceof IExpressionRenderer)) {
+                list = null;
+                break;
+            }
+            list.add((IExpressionRenderer)r);
+        }
+        
+        expressionRenderers = list;
+        
+        // Rendered labels can only be cached if all renderers get objects from AbstractTextRenderer
+        cacheLabels = renderers.stream().allMatch(AbstractTextRenderer.class::isInstance);
     }
     
     /**
@@ -5,6 +5,7 @@
  */
 package com.archimatetool.editor.ui.textrender;
 
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,7 +18,7 @@ import com.archimatetool.model.IArchimateModelObject;
  * @author Phillip Beauvoir
  */
 @SuppressWarnings("nls")
-public class TypeRenderer extends AbstractTextRenderer {
+public class TypeRenderer extends AbstractTextRenderer implements IExpressionRenderer {
     
     private static final Pattern TYPE_PATTERN = Pattern.compile("\\$" + allPrefixesGroup + "\\{type\\}");
 
@@ -27,16 +28,19 @@ public class TypeRenderer extends AbstractTextRenderer {
         
         while(matcher.find()) {
             String prefix = matcher.group(1);
-            String replacement = "";
-            
-            IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
-            if(refObject != null) {
-                replacement = ArchiLabelProvider.INSTANCE.getDefaultName(refObject.eClass());
-            }
-            
-            text = text.replace(matcher.group(), replacement);
+            text = text.replace(matcher.group(), renderType(object, prefix));
         }
         
         return text;
     }
+    
+    @Override
+    public String renderExpression(IArchimateModelObject object, String prefix, String name, List<String> arguments) {
+        return "type".equals(name) && arguments.isEmpty() ? renderType(object, prefix) : null;
+    }
+    
+    private String renderType(IArchimateModelObject object, String prefix) {
+        IArchimateModelObject refObject = getObjectFromPrefix(object, prefix);
+        return refObject != null ? ArchiLabelProvider.INSTANCE.getDefaultName(refObject.eClass()) : "";
+    }
 }
\ No newline at end of file
@@ -5,6 +5,8 @@
  */
 package com.archimatetool.editor.ui.textrender;
 
+import java.util.List;
+
 import com.archimatetool.model.IArchimateDiagramModel;
 import com.archimatetool.model.IArchimateModelObject;
 import com.archimatetool.model.IDiagramModelComponent;
@@ -16,19 +18,26 @@ import com.archimatetool.model.viewpoints.ViewpointManager;
  * @author Phillip Beauvoir
  */
 @SuppressWarnings("nls")
-public class ViewpointRenderer extends AbstractTextRenderer {
+public class ViewpointRenderer extends AbstractTextRenderer implements IExpressionRenderer {
     
     private static final String VIEWPOINT = "${viewpoint}";
 
     @Override
     public String render(IArchimateModelObject object, String text) {
-        String replacement = "";
-        
+        return text.replace(VIEWPOINT, renderViewpoint(object));
+    }
+    
+    @Override
+    public String renderExpression(IArchimateModelObject object, String prefix, String name, List<String> arguments) {
+        return prefix == null && "viewpoint".equals(name) && arguments.isEmpty() ? renderViewpoint(object) : null;
+    }
+    
+    private String renderViewpoint(IArchimateModelObject object) {
         // Object is a digram model component or diagram model that is an ArchiMate diagram model
         if(object instanceof IDiagramModelComponent && ((IDiagramModelComponent)object).getDiagramModel() instanceof IArchimateDiagramModel) {
-            replacement = ViewpointManager.INSTANCE.getViewpoint(((IArchimateDiagramModel)((IDiagramModelComponent)object).getDiagramModel()).getViewpoint()).getName();
+            return ViewpointManager.INSTANCE.getViewpoint(((IArchimateDiagramModel)((IDiagramModelComponent)object).getDiagramModel()).getViewpoint()).getName();
         }
         
-        return text.replace(VIEWPOINT, replacement);
+        return "";
     }
 }
\ No newline at end of file
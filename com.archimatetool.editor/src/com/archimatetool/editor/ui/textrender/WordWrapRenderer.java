@@ -5,6 +5,7 @@
  */
 package com.archimatetool.editor.ui.textrender;
 
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,7 +17,7 @@ import com.archimatetool.model.IArchimateModelObject;
  * @author jbsarrodie
  */
 @SuppressWarnings("nls")
-public class WordWrapRenderer extends AbstractTextRenderer {
+public class WordWrapRenderer extends AbstractTextRenderer implements IExpressionRenderer {
 	
 	private static final String LINEBREAK = "\n";
 	
@@ -32,24 +33,38 @@ public class WordWrapRenderer extends AbstractTextRenderer {
         Matcher matcher = WORD_WRAP_PATTERN.matcher(text);
 
         while(matcher.find()) {
-            int wrapLimit;
             String textToWrap = matcher.group(2);
-            String s = "";
-
-            try {
-                wrapLimit = Integer.parseInt(matcher.group(1));
-            }
-            catch(NumberFormatException nfe) {
-                // Should not be possible to have an exception here because Pattern only accept integer
-                wrapLimit = 999999;
-            }
-
-            s = wrap(textToWrap, wrapLimit);
-            text = text.replace(matcher.group(), s);
+            text = text.replace(matcher.group(), wrap(textToWrap, getWrapLimit(matcher.group(1))));
         }
 
         return text;
     }
+    
+    @Override
+    public String renderExpression(IArchimateModelObject object, String prefix, String name, List<String> arguments) {
+        // ${wordwrap:count:text}
+        if(prefix != null || !"wordwrap".equals(name) || arguments.size() < 2 || !isNumber(arguments.get(0))) {
+            return null;
+        }
+        
+        // The text can have a ':'
+        String textToWrap = String.join(":", arguments.subList(1, arguments.size()));
+        return textToWrap.isEmpty() ? null : wrap(textToWrap, getWrapLimit(arguments.get(0)));
+    }
+    
+    private boolean isNumber(String s) {
+        return !s.isEmpty() && s.chars().allMatch(c -> c >= '0' && c <= '9');
+    }
+    
+    private int getWrapLimit(String s) {
+        try {
+            return Integer.parseInt(s);
+        }
+        catch(NumberFormatException nfe) {
+            // Should not be possible to have an exception here because Pattern only accept integer
+            return 999999;
+        }
+    }
 
 	/*
 	 * Based on a simple word wrapping function found on Stackoverflow (https://stackoverflow.com/a/45614206)
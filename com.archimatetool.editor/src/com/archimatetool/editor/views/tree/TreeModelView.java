@@ -654,6 +654,11 @@ implements ITreeModelView, IUIRequestListener {
         // Disable Global actions
         disableGlobalActions();
         
+        // Dispose of the Search Filter's listener and background job
+        if(fSearchFilter != null) {
+            fSearchFilter.dispose();
+        }
+
         // Garbage collection
         fTreeViewer = null;
         fFindReplaceProvider = null;
@@ -6,8 +6,13 @@
 package com.archimatetool.editor.views.tree;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
 
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.StructuredSelection;
 
@@ -19,6 +24,7 @@ import com.archimatetool.model.IArchimateModelObject;
 import com.archimatetool.model.IArchimateRelationship;
 import com.archimatetool.model.IFolder;
 import com.archimatetool.model.INameable;
+import com.archimatetool.model.util.ModelTextIndex;
 
 
 
@@ -26,6 +32,9 @@ import com.archimatetool.model.INameable;
 /**
  * Find/Replace Provider for Model Tree Viewer
  * 
+ * The names that might match are looked up in the models' ModelTextIndex so that only the branches
+ * of the tree that contain them are visited.
+ * 
  * @author Phillip Beauvoir
  */
 public class TreeModelViewerFindReplaceProvider extends AbstractFindReplaceProvider {
@@ -39,6 +48,10 @@ public class TreeModelViewerFindReplaceProvider extends AbstractFindReplaceProvi
      */
     boolean replaceSelection = false;
     
+    // The compiled search pattern and its regex
+    private Pattern fPattern;
+    private String fPatternRegex;
+    
     public TreeModelViewerFindReplaceProvider(TreeModelViewer viewer) {
         fTreeModelViewer = viewer;
     }
@@ -125,8 +138,8 @@ public class TreeModelViewerFindReplaceProvider extends AbstractFindReplaceProvi
      * @return The next/previous element if found, or null
      */
     INameable findNextElement(Object startElement, String toFind) {
-        // Get *all* elements in the viewer
-        List<INameable> elements = getAllNameableElements();
+        // Get the elements in the viewer that might match, and the start element
+        List<INameable> elements = getCandidateElements(startElement, toFind);
         
         if(elements.isEmpty()) {
             return null;
@@ -155,48 +168,88 @@ public class TreeModelViewerFindReplaceProvider extends AbstractFindReplaceProvi
     }
     
     /**
-     * @param toFind The string to find a match on. If this is null, then collect all elements in the tree viewer.
+     * @param toFind The string to find a match on
      * @return All elements in the TreeViewer that match the string, in sorted and filtered order
      *          If a model is in scope use that as the starting/end point
      */
     List<INameable> getAllMatchingElements(String toFind) {
-        if(isAllModels()) {
-            return getMatchingElements(fTreeModelViewer.getInput(), toFind);
-        }
-        else {
-            return getMatchingElements(getModelInScope(), toFind);
+        List<INameable> list = new ArrayList<INameable>();
+        
+        for(INameable element : getCandidateElements(null, toFind)) {
+            if(matches(element, toFind)) {
+                list.add(element);
+            }
         }
+        
+        return list;
     }
     
     /**
-     * @param element The element to start searching from.
-     * @param toFind The string to find a match on. If this is null, then collect all elements in the tree viewer.
-     * @return A list of all matching elements in the viewer model as sorted and filtered by the TreeViewer model
+     * @param startElement An element to include in the list, or null
+     * @param toFind The string to find
+     * @return The elements in the TreeViewer whose names might match toFind, and startElement, in sorted and filtered order
+     *          If a model is in scope use that as the starting/end point
      */
-    private List<INameable> getMatchingElements(Object element, String toFind) {
+    private List<INameable> getCandidateElements(Object startElement, String toFind) {
         List<INameable> list = new ArrayList<INameable>();
         
-        if(element != null) {
-            if(toFind == null && element instanceof INameable) { // collect all
-                list.add((INameable)element);
-            }
-            else if(matches(element, toFind)) { // collect on match
-                list.add((INameable)element);
-            }
-            
-            for(Object object : fTreeModelViewer.getSortedChildren(element)) {
-                list.addAll(getMatchingElements(object, toFind));
+        Object root = isAllModels() ? fTreeModelViewer.getInput() : getModelInScope();
+        if(root == null || !StringUtils.isSet(toFind)) {
+            return list;
+        }
+        
+        // The candidates and their ancestors are the branches of the tree to visit
+        Set<Object> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(IArchimateModel model : getModels(root)) {
+            candidates.addAll(ModelTextIndex.getIndex(model).findByName(toFind));
+        }
+        
+        if(startElement != null) {
+            candidates.add(startElement);
+        }
+        
+        Set<Object> branches = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(Object o : candidates) {
+            while(o instanceof EObject && branches.add(o)) {
+                o = ((EObject)o).eContainer();
             }
         }
         
+        collectCandidateElements(root, candidates, branches, list);
+        
         return list;
     }
     
+    private void collectCandidateElements(Object element, Set<Object> candidates, Set<Object> branches, List<INameable> list) {
+        if(element instanceof INameable && candidates.contains(element)) {
+            list.add((INameable)element);
+        }
+        
+        for(Object object : fTreeModelViewer.getSortedChildren(element)) {
+            if(branches.contains(object)) {
+                collectCandidateElements(object, candidates, branches, list);
+            }
+        }
+    }
+    
     /**
-     * @return *all* elements in the TreeViewer of type INameable, in sorted and filtered order
+     * @return The models in the tree under root
      */
-    private List<INameable> getAllNameableElements() {
-        return getAllMatchingElements(null);
+    private List<IArchimateModel> getModels(Object root) {
+        List<IArchimateModel> models = new ArrayList<IArchimateModel>();
+        
+        if(root instanceof IArchimateModelObject) {
+            models.add(((IArchimateModelObject)root).getArchimateModel());
+        }
+        else if(root != null) {
+            for(Object o : fTreeModelViewer.getSortedChildren(root)) {
+                if(o instanceof IArchimateModel) {
+                    models.add((IArchimateModel)o);
+                }
+            }
+        }
+        
+        return models;
     }
     
     /**
@@ -215,7 +268,21 @@ public class TreeModelViewerFindReplaceProvider extends AbstractFindReplaceProvi
                 && RenameCommandHandler.canRename(object)
                 && StringUtils.isSet(toFind)
                 && ((INameable)object).getName() != null
-                && ((INameable)object).getName().matches(getSearchStringPattern(toFind));
+                && getSearchPattern(toFind).matcher(((INameable)object).getName()).matches();
+    }
+    
+    /**
+     * @return The compiled search pattern for toFind and the current parameters
+     */
+    private Pattern getSearchPattern(String toFind) {
+        String regex = getSearchStringPattern(toFind);
+        
+        if(!regex.equals(fPatternRegex)) {
+            fPattern = Pattern.compile(regex);
+            fPatternRegex = regex;
+        }
+        
+        return fPattern;
     }
     
     /**
@@ -5,35 +5,46 @@
  */
 package com.archimatetool.editor.views.tree.search;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.emf.ecore.EClass;
-import org.eclipse.emf.ecore.EObject;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerFilter;
 import org.eclipse.swt.widgets.Display;
 
-import com.archimatetool.editor.utils.StringUtils;
-import com.archimatetool.model.IArchimateConcept;
-import com.archimatetool.model.IDocumentable;
+import com.archimatetool.editor.model.IEditorModelManager;
+import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IFolder;
 import com.archimatetool.model.IFolderContainer;
-import com.archimatetool.model.INameable;
 import com.archimatetool.model.IProfile;
-import com.archimatetool.model.IProperties;
-import com.archimatetool.model.IProperty;
-import com.archimatetool.model.util.ArchimateModelUtils;
+import com.archimatetool.model.util.ModelTextIndex;
 
 
 /**
  * Search Filter
  * 
+ * The objects that are visible are computed in one pass when the filter changes (see SearchFilterIndex)
+ * so that select() is a lookup. For large models the text is searched in a background job
+ * and the visible set is then built on the UI thread.
+ * 
  * @author Phillip Beauvoir
  */
 public class SearchFilter extends ViewerFilter {
+    
+    // Search the text in a background job if the models have more than this number of folders and elements
+    static final int BACKGROUND_BUILD_THRESHOLD = 5000;
+    
     private TreeViewer fViewer;
     private String fSearchText = ""; //$NON-NLS-1$
     private Object[] fExpanded;
@@ -46,9 +57,64 @@ public class SearchFilter extends ViewerFilter {
     private Set<IProfile> fSpecializationsFilter = new HashSet<>();
 
     private boolean fShowAllFolders = false;
+    
+    private SearchFilterIndex fIndex; // Index for the current criteria, null if the criteria have changed
+    private SearchFilterIndex fPreviousIndex; // Last built index, used while fIndex's text is searched in the background
+    private int fObjectCount = -1; // Number of folders and elements in the models when the index was last built
+    
+    private volatile SearchFilterIndex fIndexToBuild;
+    private volatile List<IArchimateModel> fModelsToBuild;
+    private boolean fRefreshViewerWhenBuilt;
+    
+    // Only reads the models' text indexes, the models are read on the UI thread
+    private Job fBuildJob = new Job(Messages.SearchFilter_0) {
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            SearchFilterIndex index = fIndexToBuild;
+            List<IArchimateModel> models = fModelsToBuild;
+            
+            if(index == null || models == null || !index.findTextMatches(models, monitor)) {
+                return Status.CANCEL_STATUS;
+            }
+            
+            Display.getDefault().asyncExec(() -> indexBuilt(index));
+            
+            return Status.OK_STATUS;
+        }
+    };
+    
+    private PropertyChangeListener fModelListener = new PropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+            String propertyName = evt.getPropertyName();
+            
+            // The models in the tree have changed so count them again when next needed, even if not filtering
+            if(propertyName == IEditorModelManager.PROPERTY_MODEL_CREATED
+                    || propertyName == IEditorModelManager.PROPERTY_MODEL_OPENED
+                    || propertyName == IEditorModelManager.PROPERTY_MODEL_LOADED
+                    || propertyName == IEditorModelManager.PROPERTY_MODEL_REMOVED) {
+                fObjectCount = -1;
+                modelChanged();
+            }
+            else if(propertyName == IEditorModelManager.PROPERTY_ECORE_EVENT) {
+                modelChanged();
+            }
+        }
+    };
 
     public SearchFilter(TreeViewer viewer) {
         fViewer = viewer;
+        
+        fBuildJob.setSystem(true);
+        
+        IEditorModelManager.INSTANCE.addPropertyChangeListener(fModelListener);
+    }
+    
+    public void dispose() {
+        IEditorModelManager.INSTANCE.removePropertyChangeListener(fModelListener);
+        cancelBuild();
+        fIndex = null;
+        fPreviousIndex = null;
     }
 
     void setSearchText(String text) {
@@ -62,30 +128,45 @@ public class SearchFilter extends ViewerFilter {
     }
 
     private void refresh() {
-        Display.getCurrent().asyncExec(() -> {
-            try {
-                fViewer.getTree().setRedraw(false);
+        // The criteria have changed
+        invalidateIndex();
+        
+        if(isFiltering() && isLargeModel()) {
+            buildIndexInBackground(true);
+        }
+        else {
+            cancelBuild();
+            Display.getCurrent().asyncExec(this::refreshViewer);
+        }
+    }
+    
+    private void refreshViewer() {
+        if(fViewer.getControl().isDisposed()) {
+            return;
+        }
+        
+        try {
+            fViewer.getTree().setRedraw(false);
 
-                // If we do this first fViewer.refresh() is then faster
-                if(!isFiltering()) {
-                    restoreState();
-                }
-                
-                // This has to be called before expandAll
-                fViewer.refresh();
-                
-                // If we have something to show expand all nodes
-                if(isFiltering()) {
-                    fViewer.expandAll();
-                }
-                else {
-                    restoreState(); // Yes, do call this again.
-                }
+            // If we do this first fViewer.refresh() is then faster
+            if(!isFiltering()) {
+                restoreState();
+            }
+            
+            // This has to be called before expandAll
+            fViewer.refresh();
+            
+            // If we have something to show expand all nodes
+            if(isFiltering()) {
+                fViewer.expandAll();
             }
-            finally {
-                fViewer.getTree().setRedraw(true);
+            else {
+                restoreState(); // Yes, do call this again.
             }
-        });
+        }
+        finally {
+            fViewer.getTree().setRedraw(true);
+        }
     }
 
     public void clear() {
@@ -118,145 +199,167 @@ public class SearchFilter extends ViewerFilter {
             return true;
         }
 
-        return isElementVisible(element);
+        // Nothing is shown until the first index is built in the background
+        SearchFilterIndex index = getBuiltIndex();
+        return index != null && index.isVisible(element);
     }
-
+    
     /**
-     * Query whether element is to be shown (or any children) when filtering
-     * This will also query child elements of element if it's a container
-     * @param element Any element including containers
+     * Query whether element matches filter criteria when filtering on node/leaf elements
+     * @param element Any element, children will not be queried.
+     * @return true if the element should be shown
      */
-    private boolean isElementVisible(Object element) {
-        if(element instanceof IFolderContainer) {
-            for(IFolder folder : ((IFolderContainer)element).getFolders()) {
-                if(isElementVisible(folder)) {
-                    return true;
-                }
-            }
+    public boolean matchesFilter(Object element) {
+        return getIndex().matches(element);
+    }
+    
+    public boolean isFiltering() {
+        return getIndex().isFiltering();
+    }
+    
+    /**
+     * @return The index for the current criteria. Its visible set might not be built yet.
+     */
+    private SearchFilterIndex getIndex() {
+        if(fIndex == null) {
+            fIndex = new SearchFilterIndex(fSearchText, fFilterName, fFilterDocumentation, fConceptsFilter,
+                                           fPropertiesFilter, fSpecializationsFilter, fShowAllFolders);
         }
-
-        if(element instanceof IFolder) {
-            for(Object o : ((IFolder)element).getElements()) {
-                if(isElementVisible(o)) {
-                    return true;
-                }
+        
+        return fIndex;
+    }
+    
+    /**
+     * @return An index with a built visible set.
+     *         If the text for the current criteria is being searched in the background this is the previous index,
+     *         or null if there is no previous one. This never waits for the background search.
+     */
+    private SearchFilterIndex getBuiltIndex() {
+        SearchFilterIndex index = getIndex();
+        
+        if(!index.isBuilt()) {
+            // The text of large models is always searched in the background
+            if(index != fIndexToBuild && isLargeModel()) {
+                buildIndexInBackground(fPreviousIndex == null);
             }
-
-            if(isShowAllFolders()) {
-                return true;
+            
+            if(index == fIndexToBuild) {
+                return fPreviousIndex;
             }
+            
+            index.build(getModels());
+            fObjectCount = index.getObjectCount();
+            fPreviousIndex = null;
         }
         
-        return matchesFilter(element);
+        return index;
     }
     
     /**
-     * Query whether element matches filter criteria when filtering on node/leaf elements
-     * @param element Any element, children will not be queried.
-     * @return true if the element should be shown
+     * The criteria or the models have changed so the index is out of date.
+     * The current index is kept if it is built so that it can be used until the new one is built in the background.
      */
-    public boolean matchesFilter(Object element) {
-        boolean show = true;
-        
-        // Concept or Specialization
-        if(isFilteringConcepts() || isFilteringSpecializations()) {
-            show &= shouldShowConcept(element) || shouldShowSpecialization(element);
+    private void invalidateIndex() {
+        if(fIndex != null && fIndex.isBuilt()) {
+            fPreviousIndex = fIndex;
         }
         
-        // Name or Documentation or Property
-        if(isFilteringName() || isFilteringDocumentation() || isFilteringPropertyKeys()) {
-            show &= (isFilteringName() && shouldShowObjectWithName(element))
-                    || (isFilteringDocumentation() && shouldShowObjectWithDocumentation(element))
-                    || (isFilteringPropertyKeys() && shouldShowProperty(element));
+        fIndex = null;
+    }
+    
+    /**
+     * Search the text for the current criteria in the background and then build the index on the UI thread
+     * @param refreshViewer If true refresh and expand the whole tree when it is built, else just refresh the tree
+     */
+    private void buildIndexInBackground(boolean refreshViewer) {
+        fRefreshViewerWhenBuilt |= refreshViewer;
+        
+        fIndexToBuild = getIndex();
+        fModelsToBuild = new ArrayList<>(getModels());
+        
+        // Create the text indexes here so that they are built from the models and listen to them on the UI thread
+        for(IArchimateModel model : fModelsToBuild) {
+            ModelTextIndex.getIndex(model);
         }
         
-        return show;
+        fBuildJob.cancel();
+        fBuildJob.schedule();
     }
     
-    private boolean shouldShowConcept(Object element) {
-        return fConceptsFilter.contains(((EObject)element).eClass());
+    private void cancelBuild() {
+        fBuildJob.cancel();
+        fIndexToBuild = null;
+        fModelsToBuild = null;
+        fRefreshViewerWhenBuilt = false;
     }
-
-    private boolean shouldShowObjectWithName(Object element) {
-        if(element instanceof INameable) {
-            String name = StringUtils.safeString(((INameable)element).getName());
-
-            // Normalise in case of multi-line text
-            name = StringUtils.normaliseNewLineCharacters(name);
-
-            return name.toLowerCase().contains(fSearchText.toLowerCase());
+    
+    private void indexBuilt(SearchFilterIndex index) {
+        // Out of date or disposed
+        if(index != fIndex || index != fIndexToBuild || fViewer.getControl().isDisposed()) {
+            return;
         }
         
-        return false;
+        index.build(fModelsToBuild);
+        fObjectCount = index.getObjectCount();
+        fPreviousIndex = null;
+        
+        boolean refreshViewer = fRefreshViewerWhenBuilt;
+        cancelBuild();
+        
+        if(refreshViewer) {
+            refreshViewer();
+        }
+        else {
+            fViewer.refresh();
+        }
     }
-
-    private boolean shouldShowObjectWithDocumentation(Object element) {
-        if(element instanceof IDocumentable) {
-            String text = StringUtils.safeString(((IDocumentable)element).getDocumentation());
-            return text.toLowerCase().contains(fSearchText.toLowerCase());
+    
+    /**
+     * A model has changed so re-build the index, in the background if the models are large
+     */
+    private void modelChanged() {
+        if(fIndex == null || !fIndex.isFiltering()) {
+            return;
         }
         
-        return false;
+        invalidateIndex();
+        
+        if(isLargeModel()) {
+            buildIndexInBackground(false);
+        }
     }
-
-    private boolean shouldShowSpecialization(Object element) {
-        if(element instanceof IArchimateConcept) {
-            for(IProfile profile : ((IArchimateConcept)element).getProfiles()) {
-                for(IProfile p : fSpecializationsFilter) {
-                    // Could be marching Profile name/class in different models
-                    if(ArchimateModelUtils.isMatchingProfile(p, profile)) {
-                        return true;
-                    }
-                }
-            }
+    
+    private boolean isLargeModel() {
+        if(fObjectCount == -1) {
+            fObjectCount = countObjects(getModels());
         }
         
-        return false;
+        return fObjectCount > BACKGROUND_BUILD_THRESHOLD;
     }
     
-    private boolean shouldShowProperty(Object element) {
-        if(element instanceof IProperties) {
-            for(IProperty property : ((IProperties)element).getProperties()) {
-                if(fPropertiesFilter.contains(property.getKey())) {
-                    return hasSearchText() ? property.getValue().toLowerCase().contains(fSearchText.toLowerCase()) : true;
-                }
+    private int countObjects(List<? extends Object> objects) {
+        int count = objects.size();
+        
+        for(Object o : objects) {
+            if(o instanceof IFolderContainer) {
+                count += countObjects(((IFolderContainer)o).getFolders());
+            }
+            if(o instanceof IFolder) {
+                count += ((IFolder)o).getElements().size();
             }
         }
-
-        return false;
-    }
-
-    public boolean isFiltering() {
-        return isFilteringName() || isFilteringDocumentation() || isFilteringConcepts() || isFilteringPropertyKeys() || isFilteringSpecializations();
-    }
-
-    private boolean isFilteringName() {
-        return fFilterName && hasSearchText();
-    }
-    
-    private boolean isFilteringDocumentation() {
-        return fFilterDocumentation && hasSearchText();
-    }
-    
-    private boolean isFilteringConcepts() {
-        return !fConceptsFilter.isEmpty();
+        
+        return count;
     }
     
-    private boolean isFilteringPropertyKeys() {
-        return !fPropertiesFilter.isEmpty();
-    }
-
-    private boolean isFilteringSpecializations() {
-        return !fSpecializationsFilter.isEmpty();
-    }
-
-    private boolean hasSearchText() {
-        return fSearchText.length() > 0;
+    private List<IArchimateModel> getModels() {
+        return IEditorModelManager.INSTANCE.getModels();
     }
 
     void setFilterOnName(boolean set, boolean doRefresh) {
         if(fFilterName != set) {
             fFilterName = set;
+            invalidateIndex();
             
             if(doRefresh) {
                 refresh();
@@ -267,6 +370,7 @@ public class SearchFilter extends ViewerFilter {
     void setFilterOnDocumentation(boolean set, boolean doRefresh) {
         if(fFilterDocumentation != set) {
             fFilterDocumentation = set;
+            invalidateIndex();
             
             if(doRefresh) {
                 refresh();
@@ -0,0 +1,332 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.views.tree.search;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+
+import com.archimatetool.editor.utils.StringUtils;
+import com.archimatetool.model.IArchimateConcept;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IDocumentable;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.IFolderContainer;
+import com.archimatetool.model.INameable;
+import com.archimatetool.model.IProfile;
+import com.archimatetool.model.IProperties;
+import com.archimatetool.model.IProperty;
+import com.archimatetool.model.util.ArchimateModelUtils;
+import com.archimatetool.model.util.ModelTextIndex;
+
+
+/**
+ * The filter criteria of a SearchFilter and the set of tree objects that are visible with them.
+ *
+ * The criteria are copied when this is created.
+ * The objects with matching names, documentation and property keys are looked up in each model's ModelTextIndex first.
+ * This only reads the text indexes so it can be done on another thread (see findTextMatches()).
+ * The visible set is then built on the UI thread in one bottom-up pass over the models' folders and elements,
+ * a folder or model is visible if it matches or if any of its descendants are visible.
+ *
+ * @author Phillip Beauvoir
+ */
+class SearchFilterIndex {
+    
+    /**
+     * Objects found in the models' text indexes
+     */
+    private static class TextMatches {
+        Set<Object> names = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Object> documentation = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Object> propertyOwners = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+    
+    private final String fSearchText; // case folded
+    
+    private final boolean fFilterName;
+    private final boolean fFilterDocumentation;
+    
+    private final Set<EClass> fConceptsFilter;
+    private final Set<String> fPropertiesFilter;
+    private final Set<IProfile> fSpecializationsFilter;
+    
+    private final boolean fShowAllFolders;
+    
+    private volatile Set<Object> fVisible;
+    private volatile TextMatches fTextMatches;
+    
+    private int fCount;
+    
+    SearchFilterIndex(String searchText, boolean filterName, boolean filterDocumentation, Set<EClass> conceptsFilter,
+                      Set<String> propertiesFilter, Set<IProfile> specializationsFilter, boolean showAllFolders) {
+        fSearchText = ModelTextIndex.fold(searchText);
+        fFilterName = filterName;
+        fFilterDocumentation = filterDocumentation;
+        fConceptsFilter = new HashSet<>(conceptsFilter);
+        fPropertiesFilter = new HashSet<>(propertiesFilter);
+        fSpecializationsFilter = new HashSet<>(specializationsFilter);
+        fShowAllFolders = showAllFolders;
+    }
+    
+    /**
+     * @return A new unbuilt index with the same criteria as this one
+     */
+    SearchFilterIndex copy() {
+        return new SearchFilterIndex(fSearchText, fFilterName, fFilterDocumentation, fConceptsFilter,
+                                     fPropertiesFilter, fSpecializationsFilter, fShowAllFolders);
+    }
+    
+    /**
+     * Find the objects with matching names, documentation and property keys in the models' text indexes.
+     * This only reads the text indexes and not the models so it can be called on another thread,
+     * but the text indexes must have been created on the UI thread with ModelTextIndex.getIndex() first.
+     * @param models The models in the tree
+     * @param monitor A progress monitor to check for cancellation, or null
+     * @return true if they were found, false if it was cancelled
+     */
+    boolean findTextMatches(List<IArchimateModel> models, IProgressMonitor monitor) {
+        TextMatches textMatches = new TextMatches();
+        
+        for(IArchimateModel model : models) {
+            if(monitor != null && monitor.isCanceled()) {
+                return false;
+            }
+            
+            ModelTextIndex index = ModelTextIndex.getIndex(model);
+            
+            if(isFilteringName()) {
+                textMatches.names.addAll(index.findByName(fSearchText));
+            }
+            
+            if(isFilteringDocumentation()) {
+                textMatches.documentation.addAll(index.findByDocumentation(fSearchText));
+            }
+            
+            if(isFilteringPropertyKeys()) {
+                textMatches.propertyOwners.addAll(index.getPropertyOwners(fPropertiesFilter));
+            }
+        }
+        
+        fTextMatches = textMatches;
+        return true;
+    }
+    
+    /**
+     * @return true if the text matches have been found
+     */
+    boolean hasTextMatches() {
+        return fTextMatches != null;
+    }
+    
+    /**
+     * Build the set of visible objects, finding the text matches first if they have not been found.
+     * This reads the models' folders so it must be called on the UI thread.
+     * @param models The models in the tree
+     */
+    void build(List<IArchimateModel> models) {
+        if(fVisible != null) {
+            return;
+        }
+        
+        if(fTextMatches == null) {
+            findTextMatches(models, null);
+        }
+        
+        Set<Object> visible = Collections.newSetFromMap(new IdentityHashMap<>());
+        fCount = 0;
+        
+        for(IArchimateModel model : models) {
+            addVisible(model, visible, fTextMatches);
+        }
+        
+        fVisible = visible;
+    }
+    
+    /**
+     * @return true if the visible set has been built
+     */
+    boolean isBuilt() {
+        return fVisible != null;
+    }
+    
+    /**
+     * @return The number of folders, elements and models that were visited when this was built
+     */
+    int getObjectCount() {
+        return fCount;
+    }
+    
+    /**
+     * @return true if element or any of its descendants match the filter. The index must have been built.
+     */
+    boolean isVisible(Object element) {
+        return fVisible.contains(element);
+    }
+    
+    /**
+     * Add element to the visible set if it or any of its descendants are visible
+     * @return true if element is visible
+     */
+    private boolean addVisible(Object element, Set<Object> visible, TextMatches textMatches) {
+        fCount++;
+        
+        boolean isVisible = false;
+        
+        // Children are always visited so that they are added to the set
+        if(element instanceof IFolderContainer) {
+            for(IFolder folder : ((IFolderContainer)element).getFolders()) {
+                isVisible |= addVisible(folder, visible, textMatches);
+            }
+        }
+        
+        if(element instanceof IFolder) {
+            for(Object o : ((IFolder)element).getElements()) {
+                isVisible |= addVisible(o, visible, textMatches);
+            }
+            
+            isVisible |= fShowAllFolders;
+        }
+        
+        isVisible = isVisible || matches(element, textMatches);
+        
+        if(isVisible) {
+            visible.add(element);
+        }
+        
+        return isVisible;
+    }
+    
+    /**
+     * Query whether element matches filter criteria when filtering on node/leaf elements
+     * @param element Any element, children will not be queried.
+     * @return true if the element should be shown
+     */
+    boolean matches(Object element) {
+        return matches(element, fTextMatches);
+    }
+    
+    /**
+     * @param textMatches The objects found in the models' text indexes, or null to check the element's text
+     */
+    private boolean matches(Object element, TextMatches textMatches) {
+        boolean show = true;
+        
+        // Concept or Specialization
+        if(isFilteringConcepts() || isFilteringSpecializations()) {
+            show &= shouldShowConcept(element) || shouldShowSpecialization(element);
+        }
+        
+        // Name or Documentation or Property
+        if(isFilteringName() || isFilteringDocumentation() || isFilteringPropertyKeys()) {
+            show &= (isFilteringName() && shouldShowObjectWithName(element, textMatches))
+                    || (isFilteringDocumentation() && shouldShowObjectWithDocumentation(element, textMatches))
+                    || (isFilteringPropertyKeys() && shouldShowProperty(element, textMatches));
+        }
+        
+        return show;
+    }
+    
+    private boolean shouldShowConcept(Object element) {
+        return fConceptsFilter.contains(((EObject)element).eClass());
+    }
+    
+    private boolean shouldShowObjectWithName(Object element, TextMatches textMatches) {
+        if(textMatches != null) {
+            return textMatches.names.contains(element);
+        }
+        
+        if(element instanceof INameable) {
+            String name = StringUtils.safeString(((INameable)element).getName());
+            
+            // Normalise in case of multi-line text
+            name = StringUtils.normaliseNewLineCharacters(name);
+            
+            return ModelTextIndex.fold(name).contains(fSearchText);
+        }
+        
+        return false;
+    }
+    
+    private boolean shouldShowObjectWithDocumentation(Object element, TextMatches textMatches) {
+        if(textMatches != null) {
+            return textMatches.documentation.contains(element);
+        }
+        
+        if(element instanceof IDocumentable) {
+            String text = StringUtils.safeString(((IDocumentable)element).getDocumentation());
+            return ModelTextIndex.fold(text).contains(fSearchText);
+        }
+        
+        return false;
+    }
+    
+    private boolean shouldShowSpecialization(Object element) {
+        if(element instanceof IArchimateConcept) {
+            for(IProfile profile : ((IArchimateConcept)element).getProfiles()) {
+                for(IProfile p : fSpecializationsFilter) {
+                    // Could be marching Profile name/class in different models
+                    if(ArchimateModelUtils.isMatchingProfile(p, profile)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        
+        return false;
+    }
+    
+    private boolean shouldShowProperty(Object element, TextMatches textMatches) {
+        // Objects without any of the keys
+        if(textMatches != null && !textMatches.propertyOwners.contains(element)) {
+            return false;
+        }
+        
+        if(element instanceof IProperties) {
+            for(IProperty property : ((IProperties)element).getProperties()) {
+                if(fPropertiesFilter.contains(property.getKey())) {
+                    return hasSearchText() ? ModelTextIndex.fold(property.getValue()).contains(fSearchText) : true;
+                }
+            }
+        }
+        
+        return false;
+    }
+    
+    boolean isFiltering() {
+        return isFilteringName() || isFilteringDocumentation() || isFilteringConcepts() || isFilteringPropertyKeys() || isFilteringSpecializations();
+    }
+    
+    private boolean isFilteringName() {
+        return fFilterName && hasSearchText();
+    }
+    
+    private boolean isFilteringDocumentation() {
+        return fFilterDocumentation && hasSearchText();
+    }
+    
+    private boolean isFilteringConcepts() {
+        return !fConceptsFilter.isEmpty();
+    }
+    
+    private boolean isFilteringPropertyKeys() {
+        return !fPropertiesFilter.isEmpty();
+    }
+    
+    private boolean isFilteringSpecializations() {
+        return !fSpecializationsFilter.isEmpty();
+    }
+    
+    private boolean hasSearchText() {
+        return fSearchText.length() > 0;
+    }
+}
@@ -9,7 +9,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -17,7 +16,6 @@ import java.util.Timer;
 import java.util.TimerTask;
 
 import org.eclipse.emf.ecore.EClass;
-import org.eclipse.emf.ecore.EObject;
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.action.MenuManager;
@@ -47,8 +45,8 @@ import com.archimatetool.editor.utils.StringUtils;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IProfile;
 import com.archimatetool.model.IProfiles;
-import com.archimatetool.model.IProperty;
 import com.archimatetool.model.util.ArchimateModelUtils;
+import com.archimatetool.model.util.ModelTextIndex;
 
 
 
@@ -390,13 +388,9 @@ public class SearchWidget extends Composite {
 	}
 
     private void getAllUniquePropertyKeysForModel(IArchimateModel model, Set<String> set) {
-        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
-            EObject element = iter.next();
-            if(element instanceof IProperty) {
-            	String key = ((IProperty)element).getKey();
-            	if(StringUtils.isSetAfterTrim(key)) {
-            	    set.add(key);
-            	}
+        for(String key : ModelTextIndex.getIndex(model).getPropertyKeys()) {
+            if(StringUtils.isSetAfterTrim(key)) {
+                set.add(key);
             }
         }
     }
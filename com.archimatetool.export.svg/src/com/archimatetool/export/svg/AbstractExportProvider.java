@@ -11,6 +11,7 @@ import java.awt.GraphicsEnvironment;
 import java.io.File;
 
 import org.apache.batik.dom.GenericDOMImplementation;
+import org.apache.batik.svggen.CachedImageHandlerBase64Encoder;
 import org.apache.batik.svggen.SVGGeneratorContext;
 import org.apache.batik.svggen.SVGGraphics2D;
 import org.eclipse.draw2d.IFigure;
@@ -108,6 +109,10 @@ public abstract class AbstractExportProvider implements IImageExportProvider {
         SVGGeneratorContext ctx = SVGGeneratorContext.createDefault(document);
         ctx.setEmbeddedFontsOn(embedFonts);
         ctx.setComment(Messages.SVGExportProvider_1); // Add a comment
+        
+        // Write each distinct image once in <defs> and reference it with <use> wherever it is drawn
+        ctx.setGenericImageHandler(new CachedImageHandlerBase64Encoder());
+        
         return ctx;
     }
     
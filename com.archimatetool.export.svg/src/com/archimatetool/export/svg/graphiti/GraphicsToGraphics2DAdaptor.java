@@ -35,6 +35,8 @@ import java.awt.geom.Path2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Stack;
 
 import org.eclipse.draw2d.Graphics;
@@ -200,6 +202,13 @@ public class GraphicsToGraphics2DAdaptor extends Graphics {
     private org.eclipse.swt.graphics.Rectangle viewBox;
     private Image image;
 
+    /**
+     * Converted AWT images keyed by the SWT Image instance, so that an image drawn more than once
+     * (such as an icon or a fill image used by many figures) is only converted once.
+     * The same BufferedImage is then passed to the Graphics2D each time which lets it share the image data.
+     */
+    private Map<Image, BufferedImage> convertedImages = new IdentityHashMap<>();
+
     /**
      * x coordinate for graphics translation
      */
@@ -387,6 +396,7 @@ public class GraphicsToGraphics2DAdaptor extends Graphics {
         }
 
         states.clear();
+        convertedImages.clear();
     }
 
     /**
@@ -508,7 +518,7 @@ public class GraphicsToGraphics2DAdaptor extends Graphics {
         ypos += transY;
 
         // Convert the SWT Image into an AWT BufferedImage
-        BufferedImage toDraw = ImageConverter.convert(srcImage);
+        BufferedImage toDraw = getConvertedImage(srcImage);
 
         checkState();
         getGraphics2D().drawImage(toDraw, new AffineTransform(1f, 0f, 0f, 1f, xpos, ypos), null);
@@ -527,11 +537,19 @@ public class GraphicsToGraphics2DAdaptor extends Graphics {
         x2 += transX;
         y2 += transY;
 
-        BufferedImage toDraw = ImageConverter.convert(srcImage);
+        BufferedImage toDraw = getConvertedImage(srcImage);
         checkState();
         getGraphics2D().drawImage(toDraw, x2, y2, w2, h2, null);
     }
 
+    /**
+     * @param srcImage The SWT Image
+     * @return The AWT BufferedImage converted from srcImage, converting it the first time that it is drawn
+     */
+    protected BufferedImage getConvertedImage(Image srcImage) {
+        return convertedImages.computeIfAbsent(srcImage, ImageConverter::convert);
+    }
+
     /*
      * (non-Javadoc)
      * 
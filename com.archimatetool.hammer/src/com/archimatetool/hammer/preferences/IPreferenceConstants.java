@@ -24,4 +24,7 @@ public interface IPreferenceConstants {
     String PREFS_HAMMER_CHECK_DUPLICATE_ELEMENTS = "checkDuplicateElements"; //$NON-NLS-1$
     String PREFS_HAMMER_CHECK_JUNCTIONS = "checkJunctions"; //$NON-NLS-1$
     
+    String PREFS_HAMMER_CHECK_SIMILAR_ELEMENTS = "checkSimilarElements"; //$NON-NLS-1$
+    String PREFS_HAMMER_SIMILAR_ELEMENTS_DISTANCE = "similarElementsDistance"; //$NON-NLS-1$
+    
 }
@@ -23,6 +23,8 @@ public class Messages extends NLS {
     public static String ValidatorPreferencePage_7;
 
     public static String ValidatorPreferencePage_8;
+
+    public static String ValidatorPreferencePage_9;
     static {
         // initialize resource bundle
         NLS.initializeMessages(BUNDLE_NAME, Messages.class);
@@ -32,5 +32,8 @@ implements IPreferenceConstants {
 		store.setDefault(PREFS_HAMMER_CHECK_VIEWPOINT, true);
         store.setDefault(PREFS_HAMMER_CHECK_DUPLICATE_ELEMENTS, true);
         store.setDefault(PREFS_HAMMER_CHECK_JUNCTIONS, true);
+        
+        store.setDefault(PREFS_HAMMER_CHECK_SIMILAR_ELEMENTS, false);
+        store.setDefault(PREFS_HAMMER_SIMILAR_ELEMENTS_DISTANCE, 2);
     }
 }
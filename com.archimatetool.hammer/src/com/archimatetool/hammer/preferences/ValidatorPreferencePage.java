@@ -13,6 +13,7 @@ import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Group;
+import org.eclipse.swt.widgets.Spinner;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 import org.eclipse.ui.PlatformUI;
@@ -34,6 +35,9 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
     
     private Button[] fDoCheckButtons;
     
+    private Button fCheckSimilarElementsButton;
+    private Spinner fSimilarElementsDistanceSpinner;
+    
     String[] fCheckers = {
             PREFS_HAMMER_CHECK_EMPTY_VIEWS, Messages.ValidatorPreferencePage_0,
             PREFS_HAMMER_CHECK_INVALID_RELATIONS, Messages.ValidatorPreferencePage_1,
@@ -76,6 +80,17 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
             fDoCheckButtons[i].setLayoutData(gd);
         }
         
+        // Similar names for possible duplicates
+        fCheckSimilarElementsButton = new Button(checkerGroup, SWT.CHECK);
+        fCheckSimilarElementsButton.setText(Messages.ValidatorPreferencePage_9);
+        gd = new GridData();
+        gd.horizontalIndent = 20;
+        fCheckSimilarElementsButton.setLayoutData(gd);
+        
+        fSimilarElementsDistanceSpinner = new Spinner(checkerGroup, SWT.BORDER);
+        fSimilarElementsDistanceSpinner.setMinimum(1);
+        fSimilarElementsDistanceSpinner.setMaximum(5);
+        
         setValues();
         
         return client;
@@ -85,6 +100,9 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
         for(int i = 0; i < fCheckers.length / 2; i++) {
             fDoCheckButtons[i].setSelection(getPreferenceStore().getBoolean(fCheckers[i * 2]));
         }
+        
+        fCheckSimilarElementsButton.setSelection(getPreferenceStore().getBoolean(PREFS_HAMMER_CHECK_SIMILAR_ELEMENTS));
+        fSimilarElementsDistanceSpinner.setSelection(getPreferenceStore().getInt(PREFS_HAMMER_SIMILAR_ELEMENTS_DISTANCE));
     }
     
     @Override
@@ -92,6 +110,9 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
         for(int i = 0; i < fCheckers.length / 2; i++) {
             getPreferenceStore().setValue(fCheckers[i * 2], fDoCheckButtons[i].getSelection());
         }
+        
+        getPreferenceStore().setValue(PREFS_HAMMER_CHECK_SIMILAR_ELEMENTS, fCheckSimilarElementsButton.getSelection());
+        getPreferenceStore().setValue(PREFS_HAMMER_SIMILAR_ELEMENTS_DISTANCE, fSimilarElementsDistanceSpinner.getSelection());
         return true;
     }
     
@@ -100,6 +121,9 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
         for(int i = 0; i < fCheckers.length / 2; i++) {
             fDoCheckButtons[i].setSelection(getPreferenceStore().getDefaultBoolean(fCheckers[i * 2]));
         }
+        
+        fCheckSimilarElementsButton.setSelection(getPreferenceStore().getDefaultBoolean(PREFS_HAMMER_CHECK_SIMILAR_ELEMENTS));
+        fSimilarElementsDistanceSpinner.setSelection(getPreferenceStore().getDefaultInt(PREFS_HAMMER_SIMILAR_ELEMENTS_DISTANCE));
         super.performDefaults();
     }
     
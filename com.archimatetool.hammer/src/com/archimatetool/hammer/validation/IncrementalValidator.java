@@ -0,0 +1,434 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.hammer.validation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.jface.preference.IPreferenceStore;
+
+import com.archimatetool.hammer.ArchiHammerPlugin;
+import com.archimatetool.hammer.preferences.IPreferenceConstants;
+import com.archimatetool.hammer.validation.checkers.DuplicateElementChecker;
+import com.archimatetool.hammer.validation.checkers.EmptyViewsChecker;
+import com.archimatetool.hammer.validation.checkers.IChecker;
+import com.archimatetool.hammer.validation.checkers.InvalidRelationsChecker;
+import com.archimatetool.hammer.validation.checkers.JunctionsChecker;
+import com.archimatetool.hammer.validation.checkers.NestedElementsChecker;
+import com.archimatetool.hammer.validation.checkers.UnusedElementsChecker;
+import com.archimatetool.hammer.validation.checkers.UnusedRelationsChecker;
+import com.archimatetool.hammer.validation.checkers.ViewpointChecker;
+import com.archimatetool.hammer.validation.issues.IIssue;
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateConcept;
+import com.archimatetool.model.IArchimateDiagramModel;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IArchimateRelationship;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelArchimateComponent;
+import com.archimatetool.model.IDiagramModelArchimateConnection;
+import com.archimatetool.model.IDiagramModelComponent;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.util.IModelContentListener;
+
+
+/**
+ * Validates a model and then keeps the issues up to date as the model changes.
+ *
+ * Issues are kept for each checked object. When the model changes the objects whose checks might be affected are marked,
+ * for example a relation and the views that show it when the relation is reconnected, or a view and the concepts
+ * of its diagram objects when diagram objects are added or removed. Only the checks for the marked objects are run again
+ * when validateChanges() is called. Duplicate elements are checked over the whole model so this is only run again when
+ * an element's name changes or elements are added or removed.
+ *
+ * This should be used on the UI thread and disposed when no longer needed.
+ *
+ * @author Phillip Beauvoir
+ */
+public class IncrementalValidator {
+    
+    /**
+     * Listener notified when the model has changed and validateChanges() should be called
+     */
+    @FunctionalInterface
+    public interface IChangeListener {
+        void validationNeeded();
+    }
+    
+    /**
+     * Issues found by a checker for each object of one type
+     */
+    private static class Check<T extends EObject> {
+        Class<T> type;
+        Function<List<T>, IChecker> factory;
+        Map<EObject, List<IIssue>> issues = new LinkedHashMap<>();
+        
+        Check(Class<T> type, Function<List<T>, IChecker> factory) {
+            this.type = type;
+            this.factory = factory;
+        }
+        
+        void check(EObject eObject) {
+            List<IIssue> found = factory.apply(Collections.singletonList(type.cast(eObject))).getIssues();
+            if(found.isEmpty()) {
+                issues.remove(eObject);
+            }
+            else {
+                issues.put(eObject, found);
+            }
+        }
+    }
+    
+    private IArchimateModel fModel;
+    private IChangeListener fChangeListener;
+    
+    private List<Check<?>> fChecks = new ArrayList<>();
+    
+    private Set<EObject> fDirtyObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean fValidationNeeded;
+    
+    private IModelContentListener fModelListener = this::modelChanged;
+    
+    public IncrementalValidator(IArchimateModel model, IChangeListener changeListener) {
+        fModel = model;
+        fChangeListener = changeListener;
+    }
+    
+    /**
+     * Validate the whole model and start listening to model changes
+     */
+    public void start() {
+        createChecks();
+        
+        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
+            check(iter.next());
+        }
+        check(fModel);
+        
+        fDirtyObjects.clear();
+        fModel.addModelContentListener(fModelListener);
+    }
+    
+    /**
+     * Stop listening to model changes
+     */
+    public void dispose() {
+        fModel.removeModelContentListener(fModelListener);
+        fDirtyObjects.clear();
+    }
+    
+    /**
+     * Run the checks again for the objects affected by model changes since the last validation
+     */
+    public void validateChanges() {
+        fValidationNeeded = false;
+        
+        if(fDirtyObjects.isEmpty()) {
+            return;
+        }
+        
+        List<EObject> dirtyObjects = new ArrayList<>(fDirtyObjects);
+        fDirtyObjects.clear();
+        
+        for(EObject eObject : dirtyObjects) {
+            // Deleted
+            if(eObject != fModel && EcoreUtil.getRootContainer(eObject) != fModel) {
+                for(Check<?> check : fChecks) {
+                    check.issues.remove(eObject);
+                }
+            }
+            else {
+                check(eObject);
+            }
+        }
+    }
+    
+    /**
+     * @return true if the model has changed since the last validation
+     */
+    public boolean isValidationNeeded() {
+        return !fDirtyObjects.isEmpty();
+    }
+    
+    /**
+     * @return true if the checks for eObject will be run again by validateChanges()
+     */
+    boolean isDirty(EObject eObject) {
+        return fDirtyObjects.contains(eObject);
+    }
+    
+    /**
+     * @return All current issues in checker order
+     */
+    public List<IIssue> getIssues() {
+        List<IIssue> issues = new ArrayList<>();
+        
+        for(Check<?> check : fChecks) {
+            for(List<IIssue> objectIssues : check.issues.values()) {
+                issues.addAll(objectIssues);
+            }
+        }
+        
+        return issues;
+    }
+    
+    /**
+     * @return The list of Issue Categories and Issues
+     */
+    public List<Object> getResult() {
+        return Validator.createCategories(getIssues());
+    }
+    
+    public IArchimateModel getModel() {
+        return fModel;
+    }
+    
+    /**
+     * Create the checks set in preferences in the same order as the Validator
+     */
+    private void createChecks() {
+        fChecks.clear();
+        
+        IPreferenceStore store = ArchiHammerPlugin.INSTANCE.getPreferenceStore();
+        
+        if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_INVALID_RELATIONS)) {
+            fChecks.add(new Check<>(IArchimateRelationship.class, InvalidRelationsChecker::new));
+        }
+        
+        if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_UNUSED_ELEMENTS)) {
+            fChecks.add(new Check<>(IArchimateElement.class, UnusedElementsChecker::new));
+        }
+        
+        if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_UNUSED_RELATIONS)) {
+            fChecks.add(new Check<>(IArchimateRelationship.class, UnusedRelationsChecker::new));
+        }
+        
+        if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_EMPTY_VIEWS)) {
+            fChecks.add(new Check<>(IArchimateDiagramModel.class, EmptyViewsChecker::new));
+        }
+        
+        if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_VIEWPOINT)) {
+            fChecks.add(new Check<>(IArchimateDiagramModel.class, ViewpointChecker::new));
+        }
+        
+        if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_NESTING)) {
+            fChecks.add(new Check<>(IArchimateDiagramModel.class, NestedElementsChecker::new));
+        }
+        
+        // Duplicates depend on all elements so this is checked for the model
+        if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_DUPLICATE_ELEMENTS)) {
+            int maxDistance = store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_SIMILAR_ELEMENTS) ?
+                    store.getInt(IPreferenceConstants.PREFS_HAMMER_SIMILAR_ELEMENTS_DISTANCE) : 0;
+            
+            fChecks.add(new Check<>(IArchimateModel.class, models -> {
+                DuplicateElementChecker checker = new DuplicateElementChecker(getElements());
+                checker.setMaxDistance(maxDistance);
+                return checker;
+            }));
+        }
+        
+        if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_JUNCTIONS)) {
+            fChecks.add(new Check<>(IArchimateElement.class, JunctionsChecker::new));
+        }
+    }
+    
+    private void check(EObject eObject) {
+        for(Check<?> check : fChecks) {
+            if(check.type.isInstance(eObject)) {
+                check.check(eObject);
+            }
+        }
+    }
+    
+    /**
+     * @return The model's elements in model order
+     */
+    private List<IArchimateElement> getElements() {
+        List<IArchimateElement> elements = new ArrayList<>();
+        
+        for(IFolder folder : fModel.getFolders()) {
+            if(folder.getType() == FolderType.DIAGRAMS || folder.getType() == FolderType.RELATIONS) {
+                continue;
+            }
+            for(Iterator<EObject> iter = folder.eAllContents(); iter.hasNext();) {
+                EObject eObject = iter.next();
+                if(eObject instanceof IArchimateElement) {
+                    elements.add((IArchimateElement)eObject);
+                }
+            }
+        }
+        
+        return elements;
+    }
+    
+    // =================================================================================
+    //                       Model changes
+    // =================================================================================
+    
+    private void modelChanged(Notification msg) {
+        if(msg.isTouch()) {
+            return;
+        }
+        
+        if(msg.getNotifier() instanceof EObject) {
+            markDirty((EObject)msg.getNotifier());
+        }
+        
+        // An element's name is checked for duplicates
+        if(msg.getNotifier() instanceof IArchimateElement && msg.getFeature() == IArchimatePackage.Literals.NAMEABLE__NAME) {
+            fDirtyObjects.add(fModel);
+        }
+        
+        // A relation's previous source or target might be nested in views where the relation isn't shown
+        if(msg.getNotifier() instanceof IArchimateRelationship && msg.getOldValue() instanceof IArchimateConcept) {
+            markConceptViewsDirty((IArchimateConcept)msg.getOldValue());
+        }
+        
+        // Added and removed objects, and the objects referenced before and after a change
+        boolean containment = msg.getFeature() instanceof EReference && ((EReference)msg.getFeature()).isContainment();
+        
+        switch(msg.getEventType()) {
+            case Notification.ADD:
+            case Notification.SET:
+            case Notification.UNSET:
+            case Notification.REMOVE:
+                markValueDirty(msg.getNewValue(), containment);
+                markValueDirty(msg.getOldValue(), containment);
+                break;
+            
+            case Notification.ADD_MANY:
+                for(Object o : (Collection<?>)msg.getNewValue()) {
+                    markValueDirty(o, containment);
+                }
+                break;
+            
+            case Notification.REMOVE_MANY:
+                for(Object o : (Collection<?>)msg.getOldValue()) {
+                    markValueDirty(o, containment);
+                }
+                break;
+            
+            default:
+                break;
+        }
+        
+        // Tell the listener once until the changes are validated
+        if(!fValidationNeeded && !fDirtyObjects.isEmpty() && fChangeListener != null) {
+            fValidationNeeded = true;
+            fChangeListener.validationNeeded();
+        }
+    }
+    
+    private void markValueDirty(Object value, boolean containment) {
+        if(value instanceof EObject) {
+            markDirty((EObject)value);
+            
+            if(containment) {
+                // Elements added or removed, or a folder that might contain them, are checked for duplicates
+                if(value instanceof IArchimateElement || value instanceof IFolder) {
+                    fDirtyObjects.add(fModel);
+                }
+                
+                for(Iterator<EObject> iter = ((EObject)value).eAllContents(); iter.hasNext();) {
+                    markDirty(iter.next());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Mark the nearest object, or the object's nearest container, that checks depend on
+     */
+    private void markDirty(EObject eObject) {
+        for(EObject o = eObject; o != null; o = o.eContainer()) {
+            if(markObjectDirty(o)) {
+                return;
+            }
+        }
+    }
+    
+    private boolean markObjectDirty(EObject eObject) {
+        // A relation is checked itself, the views that show it or its ends are checked for nesting, and its Junction ends are checked
+        if(eObject instanceof IArchimateRelationship) {
+            IArchimateRelationship relation = (IArchimateRelationship)eObject;
+            fDirtyObjects.add(relation);
+            
+            if(relation.getSource() instanceof IArchimateElement) {
+                fDirtyObjects.add(relation.getSource());
+            }
+            if(relation.getTarget() instanceof IArchimateElement) {
+                fDirtyObjects.add(relation.getTarget());
+            }
+            
+            for(IDiagramModelArchimateConnection connection : relation.getReferencingDiagramConnections()) {
+                markViewDirty(connection.getDiagramModel());
+            }
+            
+            // Nesting is also allowed by relations in the model that aren't in a view
+            markConceptViewsDirty(relation.getSource());
+            markConceptViewsDirty(relation.getTarget());
+            
+            return true;
+        }
+        
+        // An element is checked itself. Duplicate names are marked in modelChanged() and markValueDirty().
+        if(eObject instanceof IArchimateElement) {
+            fDirtyObjects.add(eObject);
+            return true;
+        }
+        
+        // A diagram component's view is checked and its concept is checked for being used in views
+        if(eObject instanceof IDiagramModelArchimateComponent) {
+            IArchimateConcept concept = ((IDiagramModelArchimateComponent)eObject).getArchimateConcept();
+            if(concept != null) {
+                fDirtyObjects.add(concept);
+            }
+            markViewDirty(((IDiagramModelComponent)eObject).getDiagramModel());
+            return true;
+        }
+        
+        if(eObject instanceof IDiagramModelComponent) {
+            markViewDirty(((IDiagramModelComponent)eObject).getDiagramModel());
+            return true;
+        }
+        
+        if(eObject instanceof IDiagramModel) {
+            markViewDirty((IDiagramModel)eObject);
+            return true;
+        }
+        
+        // Nothing else is checked
+        return eObject instanceof IFolder || eObject instanceof IArchimateModel;
+    }
+    
+    private void markConceptViewsDirty(IArchimateConcept concept) {
+        if(concept != null) {
+            for(IDiagramModelArchimateComponent dmc : concept.getReferencingDiagramComponents()) {
+                markViewDirty(dmc.getDiagramModel());
+            }
+        }
+    }
+    
+    private void markViewDirty(IDiagramModel dm) {
+        if(dm instanceof IArchimateDiagramModel) {
+            fDirtyObjects.add(dm);
+        }
+    }
+}
@@ -6,8 +6,11 @@
 package com.archimatetool.hammer.validation;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.jface.preference.IPreferenceStore;
@@ -41,10 +44,27 @@ import com.archimatetool.model.IArchimateRelationship;
 /**
  * Validator
  * 
+ * Checkers run one after another on the calling thread and share unmodifiable lists of the model's elements, relations and views.
+ * Checkers get names and labels from the UI label providers so this should be called on the UI thread.
+ * 
  * @author Phillip Beauvoir
  */
 public class Validator {
     
+    /**
+     * Listener notified as each checker finishes
+     */
+    @FunctionalInterface
+    public interface IValidatorListener {
+        /**
+         * Called from the thread that called validate()
+         * @param checker The checker
+         * @param issues The checker's issues
+         * @param time The time taken by the checker in milliseconds
+         */
+        void checkerFinished(IChecker checker, List<IIssue> issues, long time);
+    }
+    
     private IArchimateModel fModel;
     
     private List<IArchimateElement> fElements;
@@ -54,104 +74,193 @@ public class Validator {
     private List<ErrorType> fErrorList;
     private List<WarningType> fWarningList;
     private List<AdviceType> fAdviceList;
+    
+    private List<IChecker> fExtraCheckers = new ArrayList<>();
+    
+    private Map<IChecker, Long> fCheckerTimes = new LinkedHashMap<>();
 
     
     public Validator(IArchimateModel model) {
         fModel = model;
     }
+    
+    /**
+     * Add a checker to run as well as the checkers set in preferences.
+     * The checker can get the model's objects from this Validator after validation starts.
+     */
+    public void addChecker(IChecker checker) {
+        fExtraCheckers.add(checker);
+    }
 
     /**
      * @return The list of Issue Categories and Issues
      */
     public List<Object> validate() {
+        return validate(null);
+    }
+    
+    /**
+     * @param listener Listener notified as each checker finishes, or null
+     * @return The list of Issue Categories and Issues
+     */
+    public List<Object> validate(IValidatorListener listener) {
         if(fModel == null) {
             return null;
         }
         
         // Collect interesting objects
-        fElements = new ArrayList<IArchimateElement>();
-        fRelations = new ArrayList<IArchimateRelationship>();
-        fViews = new ArrayList<IArchimateDiagramModel>();
+        List<IArchimateElement> elements = new ArrayList<IArchimateElement>();
+        List<IArchimateRelationship> relations = new ArrayList<IArchimateRelationship>();
+        List<IArchimateDiagramModel> views = new ArrayList<IArchimateDiagramModel>();
         
         for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
             EObject eObject = iter.next();
             
             if(eObject instanceof IArchimateRelationship) {
-                fRelations.add((IArchimateRelationship)eObject);
+                relations.add((IArchimateRelationship)eObject);
             }
             else if(eObject instanceof IArchimateElement) {
-                fElements.add((IArchimateElement)eObject);
+                elements.add((IArchimateElement)eObject);
             }
             else if(eObject instanceof IArchimateDiagramModel) {
-                fViews.add((IArchimateDiagramModel)eObject);
+                views.add((IArchimateDiagramModel)eObject);
             }
         }
         
-        // Analyse
-        List<Object> result = new ArrayList<Object>();
+        // Shared by all checkers
+        fElements = Collections.unmodifiableList(elements);
+        fRelations = Collections.unmodifiableList(relations);
+        fViews = Collections.unmodifiableList(views);
         
+        // Analyse
         fErrorList = new ArrayList<ErrorType>();
         fWarningList = new ArrayList<WarningType>();
         fAdviceList = new ArrayList<AdviceType>();
         
+        fCheckerTimes.clear();
+        
+        for(IChecker checker : createCheckers()) {
+            long start = System.nanoTime();
+            List<IIssue> issues = checker.getIssues();
+            long time = (System.nanoTime() - start) / 1_000_000;
+            
+            collectIssues(issues);
+            fCheckerTimes.put(checker, time);
+            
+            if(listener != null) {
+                listener.checkerFinished(checker, issues, time);
+            }
+        }
+        
+        return createCategories();
+    }
+    
+    /**
+     * @return The checkers set in preferences and any added checkers
+     */
+    List<IChecker> createCheckers() {
+        List<IChecker> checkers = new ArrayList<>();
+        
         // ------------------ Checkers -----------------------------
         
         IPreferenceStore store = ArchiHammerPlugin.INSTANCE.getPreferenceStore();
         
         // Invalid Relations
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_INVALID_RELATIONS)) {
-            collectIssues(new InvalidRelationsChecker(getArchimateRelationships()));
+            checkers.add(new InvalidRelationsChecker(getArchimateRelationships()));
         }
         
         // Unused Elements
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_UNUSED_ELEMENTS)) {
-            collectIssues(new UnusedElementsChecker(getArchimateElements()));
+            checkers.add(new UnusedElementsChecker(getArchimateElements()));
         }
         
         // Unused Relations
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_UNUSED_RELATIONS)) {
-            collectIssues(new UnusedRelationsChecker(getArchimateRelationships()));
+            checkers.add(new UnusedRelationsChecker(getArchimateRelationships()));
         }
         
         // Empty Views
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_EMPTY_VIEWS)) {
-            collectIssues(new EmptyViewsChecker(getArchimateViews()));
+            checkers.add(new EmptyViewsChecker(getArchimateViews()));
         }
         
         // Components in wrong Viewpoints
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_VIEWPOINT)) {
-            collectIssues(new ViewpointChecker(getArchimateViews()));
+            checkers.add(new ViewpointChecker(getArchimateViews()));
         }
         
         // Nested elements
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_NESTING)) {
-            collectIssues(new NestedElementsChecker(getArchimateViews()));
+            checkers.add(new NestedElementsChecker(getArchimateViews()));
         }
 
         // Possible Duplicates
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_DUPLICATE_ELEMENTS)) {
-            collectIssues(new DuplicateElementChecker(getArchimateElements()));
+            DuplicateElementChecker checker = new DuplicateElementChecker(getArchimateElements());
+            if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_SIMILAR_ELEMENTS)) {
+                checker.setMaxDistance(store.getInt(IPreferenceConstants.PREFS_HAMMER_SIMILAR_ELEMENTS_DISTANCE));
+            }
+            checkers.add(checker);
         }
         
         // Junctions
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_JUNCTIONS)) {
-            collectIssues(new JunctionsChecker(getArchimateElements()));
+            checkers.add(new JunctionsChecker(getArchimateElements()));
         }
 
         // ----------------------------------------------------------
-
-        if(!fErrorList.isEmpty()) {
-            IIssueCategory category = new ErrorsCategory(fErrorList);
+        
+        checkers.addAll(fExtraCheckers);
+        
+        return checkers;
+    }
+    
+    /**
+     * @return The Issue Categories of the collected issues
+     */
+    private List<Object> createCategories() {
+        return createCategories(fErrorList, fWarningList, fAdviceList);
+    }
+    
+    /**
+     * @return The list of Issue Categories and Issues for the given issues, for example issues found so far
+     */
+    public static List<Object> createCategories(List<IIssue> issues) {
+        List<ErrorType> errorList = new ArrayList<ErrorType>();
+        List<WarningType> warningList = new ArrayList<WarningType>();
+        List<AdviceType> adviceList = new ArrayList<AdviceType>();
+        
+        for(IIssue issue : issues) {
+            if(issue instanceof ErrorType) {
+                errorList.add((ErrorType)issue);
+            }
+            if(issue instanceof WarningType) {
+                warningList.add((WarningType)issue);
+            }
+            if(issue instanceof AdviceType) {
+                adviceList.add((AdviceType)issue);
+            }
+        }
+        
+        return createCategories(errorList, warningList, adviceList);
+    }
+    
+    private static List<Object> createCategories(List<ErrorType> errorList, List<WarningType> warningList, List<AdviceType> adviceList) {
+        List<Object> result = new ArrayList<Object>();
+        
+        if(!errorList.isEmpty()) {
+            IIssueCategory category = new ErrorsCategory(errorList);
             result.add(category);
         }
 
-        if(!fWarningList.isEmpty()) {
-            IIssueCategory category = new WarningsCategory(fWarningList);
+        if(!warningList.isEmpty()) {
+            IIssueCategory category = new WarningsCategory(warningList);
             result.add(category);
         }
         
-        if(!fAdviceList.isEmpty()) {
-            IIssueCategory category = new AdviceCategory(fAdviceList);
+        if(!adviceList.isEmpty()) {
+            IIssueCategory category = new AdviceCategory(adviceList);
             result.add(category);
         }
 
@@ -162,8 +271,8 @@ public class Validator {
         return result;
     }
     
-    void collectIssues(IChecker checker) {
-        for(IIssue issue : checker.getIssues()) {
+    void collectIssues(List<IIssue> issues) {
+        for(IIssue issue : issues) {
             if(issue instanceof ErrorType) {
                 fErrorList.add((ErrorType)issue);
             }
@@ -180,15 +289,31 @@ public class Validator {
         return fModel;
     }
     
+    /**
+     * @return The time taken by each checker in the last validation in milliseconds, in the order the checkers were run
+     */
+    public Map<IChecker, Long> getCheckerTimes() {
+        return Collections.unmodifiableMap(fCheckerTimes);
+    }
+    
+    /**
+     * @return The model's elements. This list is unmodifiable.
+     */
     public List<IArchimateElement> getArchimateElements() {
-        return new ArrayList<IArchimateElement>(fElements); // copy
+        return fElements;
     }
     
+    /**
+     * @return The model's relations. This list is unmodifiable.
+     */
     public List<IArchimateRelationship> getArchimateRelationships() {
-        return new ArrayList<IArchimateRelationship>(fRelations); // copy
+        return fRelations;
     }
     
+    /**
+     * @return The model's views. This list is unmodifiable.
+     */
     public List<IArchimateDiagramModel> getArchimateViews() {
-        return new ArrayList<IArchimateDiagramModel>(fViews); // copy
+        return fViews;
     }
 }
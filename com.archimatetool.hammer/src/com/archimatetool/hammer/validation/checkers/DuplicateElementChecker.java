@@ -6,10 +6,13 @@
 package com.archimatetool.hammer.validation.checkers;
 
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Locale;
+import java.util.Map;
 
+import org.eclipse.emf.ecore.EClass;
 import org.eclipse.osgi.util.NLS;
 
 import com.archimatetool.editor.ui.ArchiLabelProvider;
@@ -22,6 +25,11 @@ import com.archimatetool.model.IArchimatePackage;
 
 /**
  * Checks for possible duplicates of elements of the same type
+ *
+ * Elements are grouped on their type and name in one pass.
+ * If a maximum edit distance is set names are compared ignoring case and extra white space and names within that
+ * edit distance are also reported. Candidate names are found from an index of the names' trigrams so that not every pair
+ * of names is compared.
  * 
  * @author Phillip Beauvoir
  */
@@ -30,12 +38,25 @@ public class DuplicateElementChecker implements IChecker {
     final String NAME = Messages.DuplicateElementChecker_0;
     final String DESCRIPTION = Messages.DuplicateElementChecker_1;
     final String EXPLANATION = Messages.DuplicateElementChecker_2;
+    final String SIMILAR_DESCRIPTION = Messages.DuplicateElementChecker_3;
+    
+    private static final int GRAM_SIZE = 3;
     
     private List<IArchimateElement> fArchimateElements;
     
+    private int fMaxDistance;
+    
     public DuplicateElementChecker(List<IArchimateElement> archimateElements) {
         fArchimateElements = archimateElements;
     }
+    
+    /**
+     * Also report names that are within maxDistance edits of each other, ignoring case and extra white space.
+     * @param maxDistance The maximum edit distance, or 0 to report identical names only
+     */
+    public void setMaxDistance(int maxDistance) {
+        fMaxDistance = Math.max(0, maxDistance);
+    }
 
     @Override
     public List<IIssue> getIssues() {
@@ -45,40 +66,241 @@ public class DuplicateElementChecker implements IChecker {
     List<IIssue> findDuplicateNamesElements() {
         List<IIssue> issues = new ArrayList<IIssue>();
         
-        Set<IArchimateElement> dupes = new LinkedHashSet<IArchimateElement>();
+        // Group elements on type and name
+        Map<EClass, Map<String, Name>> types = new HashMap<>();
+        List<Name> elementNames = new ArrayList<>(fArchimateElements.size());
+        
+        for(IArchimateElement element : fArchimateElements) {
+            // Ignore Junctions as these tend to just be called "Junction" or may well have a common name like "Or" or "And"
+            if(element.eClass() == IArchimatePackage.eINSTANCE.getJunction()) {
+                elementNames.add(null);
+                continue;
+            }
+            
+            String key = getKey(element.getName());
+            Name name = types.computeIfAbsent(element.eClass(), eClass -> new LinkedHashMap<>()).computeIfAbsent(key, Name::new);
+            name.count++;
+            elementNames.add(name);
+        }
+        
+        // Merge similar names
+        if(fMaxDistance > 0) {
+            for(Map<String, Name> names : types.values()) {
+                findSimilarNames(new ArrayList<>(names.values()));
+            }
+        }
+        
+        // Group duplicates in order of first occurrence of each group, as with comparing each pair in turn
+        Map<Name, List<IArchimateElement>> dupes = new LinkedHashMap<>();
         
         for(int i = 0; i < fArchimateElements.size(); i++) {
-            for(int j = i + 1; j < fArchimateElements.size(); j++) {
-                IArchimateElement element1 = fArchimateElements.get(i);
-                IArchimateElement element2 = fArchimateElements.get(j);
-                if(isDuplicate(element1, element2)) {
-                    dupes.add(element1);
-                    dupes.add(element2);
+            Name name = elementNames.get(i);
+            if(name != null) {
+                Name group = name.getGroup();
+                if(group.isDuplicate()) {
+                    dupes.computeIfAbsent(group, n -> new ArrayList<>()).add(fArchimateElements.get(i));
                 }
             }
         }
         
-        for(IArchimateElement element : dupes) {
-            String description = NLS.bind(DESCRIPTION, new Object[] { element.getName(),
-                    ArchiLabelProvider.INSTANCE.getDefaultName(element.eClass()) });
+        for(List<IArchimateElement> elements : dupes.values()) {
+            // Names are only similar if they are not all the same
+            boolean similar = false;
+            for(IArchimateElement element : elements) {
+                if(!StringUtils.safeString(element.getName()).equals(StringUtils.safeString(elements.get(0).getName()))) {
+                    similar = true;
+                    break;
+                }
+            }
+            
+            for(IArchimateElement element : elements) {
+                String description = NLS.bind(similar ? SIMILAR_DESCRIPTION : DESCRIPTION, new Object[] { element.getName(),
+                        ArchiLabelProvider.INSTANCE.getDefaultName(element.eClass()) });
 
-            IIssue issue = new WarningType(NAME, description, EXPLANATION, element);
-            issues.add(issue);
+                IIssue issue = new WarningType(NAME, description, EXPLANATION, element);
+                issues.add(issue);
+            }
         }
         
         return issues;
     }
     
-    private boolean isDuplicate(IArchimateElement element1, IArchimateElement element2) {
-        // Ignore Junctions as these tend to just be called "Junction" or may well have a common name like "Or" or "And"
-        if(element1.eClass() == IArchimatePackage.eINSTANCE.getJunction() &&
-                element2.eClass() == IArchimatePackage.eINSTANCE.getJunction()) {
+    /**
+     * @return The key to group a name on. If comparing similar names this ignores case and extra white space.
+     */
+    String getKey(String name) {
+        name = StringUtils.safeString(name);
+        return fMaxDistance > 0 ? normalise(name) : name;
+    }
+    
+    /**
+     * @return name in lower case with white space trimmed and runs of white space replaced by one space
+     */
+    static String normalise(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        
+        boolean space = false;
+        for(int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if(Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+            }
+            else {
+                if(space) {
+                    sb.append(' ');
+                    space = false;
+                }
+                sb.append(c);
+            }
+        }
+        
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Merge the groups of names of one type that are within the maximum edit distance.
+     * Names that are within the edit distance share at least (length + GRAM_SIZE - 1 - distance * GRAM_SIZE) trigrams,
+     * so only names that share enough trigrams with a name are compared to it.
+     */
+    private void findSimilarNames(List<Name> names) {
+        // Shorter names would be similar to almost any other short name
+        int minLength = Math.max(2 * fMaxDistance + 1, GRAM_SIZE * fMaxDistance - GRAM_SIZE + 2);
+        
+        Map<String, List<Integer>> gramIndex = new HashMap<>();
+        List<Name> indexed = new ArrayList<>();
+        int[] sharedGrams = new int[names.size()];
+        List<Integer> candidates = new ArrayList<>();
+        
+        for(Name name : names) {
+            String key = name.key;
+            if(key.length() < minLength) {
+                continue;
+            }
+            
+            List<String> grams = getGrams(key);
+            
+            // Count the trigrams shared with names already indexed
+            for(String gram : grams) {
+                List<Integer> postings = gramIndex.get(gram);
+                if(postings != null) {
+                    for(int index : postings) {
+                        if(sharedGrams[index]++ == 0) {
+                            candidates.add(index);
+                        }
+                    }
+                }
+            }
+            
+            for(int index : candidates) {
+                Name other = indexed.get(index);
+                int maxLength = Math.max(key.length(), other.key.length());
+                int minShared = maxLength + GRAM_SIZE - 1 - fMaxDistance * GRAM_SIZE;
+                
+                if(sharedGrams[index] >= minShared && Math.abs(key.length() - other.key.length()) <= fMaxDistance
+                        && name.getGroup() != other.getGroup() && isWithinDistance(key, other.key, fMaxDistance)) {
+                    name.merge(other);
+                }
+                
+                sharedGrams[index] = 0;
+            }
+            candidates.clear();
+            
+            // Index this name
+            int index = indexed.size();
+            indexed.add(name);
+            for(String gram : grams) {
+                gramIndex.computeIfAbsent(gram, g -> new ArrayList<>()).add(index);
+            }
+        }
+    }
+    
+    /**
+     * @return The trigrams of s padded with spaces at the start and end
+     */
+    private static List<String> getGrams(String s) {
+        String padded = "  " + s + "  "; //$NON-NLS-1$ //$NON-NLS-2$
+        List<String> grams = new ArrayList<>(padded.length() - GRAM_SIZE + 1);
+        for(int i = 0; i <= padded.length() - GRAM_SIZE; i++) {
+            grams.add(padded.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+    
+    /**
+     * @return true if the Levenshtein edit distance between s1 and s2 is not more than maxDistance
+     */
+    static boolean isWithinDistance(String s1, String s2, int maxDistance) {
+        if(Math.abs(s1.length() - s2.length()) > maxDistance) {
             return false;
         }
         
-        String name1 = StringUtils.safeString(element1.getName());
-        String name2 = StringUtils.safeString(element2.getName());
+        int[] previous = new int[s2.length() + 1];
+        int[] current = new int[s2.length() + 1];
+        
+        for(int j = 0; j <= s2.length(); j++) {
+            previous[j] = j;
+        }
+        
+        for(int i = 1; i <= s1.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            
+            for(int j = 1; j <= s2.length(); j++) {
+                int cost = s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            
+            // No path can get back under the maximum
+            if(rowMin > maxDistance) {
+                return false;
+            }
+            
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        
+        return previous[s2.length()] <= maxDistance;
+    }
+    
+    /**
+     * A name used by elements of one type. Similar names are merged into one group.
+     */
+    private static class Name {
+        String key;
+        int count;
+        Name parent;
+        
+        Name(String key) {
+            this.key = key;
+        }
+        
+        Name getGroup() {
+            Name group = this;
+            while(group.parent != null) {
+                group = group.parent;
+            }
+            
+            // Shorten the path for the next time
+            if(parent != null) {
+                parent = group;
+            }
+            
+            return group;
+        }
         
-        return name1.equals(name2) && (element1.eClass() == element2.eClass());
+        void merge(Name other) {
+            Name group = getGroup();
+            Name otherGroup = other.getGroup();
+            if(group != otherGroup) {
+                otherGroup.parent = group;
+                group.count += otherGroup.count;
+            }
+        }
+        
+        boolean isDuplicate() {
+            return count > 1;
+        }
     }
 }
@@ -20,6 +20,7 @@ import org.eclipse.jface.action.IMenuManager;
 import org.eclipse.jface.action.IToolBarManager;
 import org.eclipse.jface.action.MenuManager;
 import org.eclipse.jface.action.Separator;
+import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.jface.layout.TreeColumnLayout;
 import org.eclipse.jface.preference.PreferenceDialog;
 import org.eclipse.jface.resource.ImageDescriptor;
@@ -35,6 +36,7 @@ import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.BusyIndicator;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Menu;
 import org.eclipse.ui.IActionBars;
 import org.eclipse.ui.ISelectionListener;
@@ -48,6 +50,7 @@ import org.eclipse.ui.views.properties.tabbed.ITabbedPropertySheetPageContributo
 import org.eclipse.ui.views.properties.tabbed.TabbedPropertySheetPage;
 
 import com.archimatetool.editor.ArchiPlugin;
+import com.archimatetool.editor.Logger;
 import com.archimatetool.editor.diagram.IDiagramModelEditor;
 import com.archimatetool.editor.model.IEditorModelManager;
 import com.archimatetool.editor.ui.ArchiLabelProvider;
@@ -55,7 +58,9 @@ import com.archimatetool.editor.ui.services.EditorManager;
 import com.archimatetool.editor.ui.services.ViewManager;
 import com.archimatetool.editor.views.tree.ITreeModelView;
 import com.archimatetool.hammer.IHammerImages;
+import com.archimatetool.hammer.validation.IncrementalValidator;
 import com.archimatetool.hammer.validation.Validator;
+import com.archimatetool.hammer.validation.Validator.IValidatorListener;
 import com.archimatetool.hammer.validation.issues.IIssue;
 import com.archimatetool.help.hints.IHintsView;
 import com.archimatetool.model.IArchimateConcept;
@@ -78,9 +83,12 @@ implements IValidatorView, ISelectionListener, IContextProvider, ITabbedProperty
     private IAction fActionExplain;
     private IAction fActionSelectObjects;
     private IAction fActionShowPreferences;
+    private IAction fActionLiveValidation;
     
     private IArchimateModel fModel;
     
+    private IncrementalValidator fLiveValidator;
+    
     public ValidatorView() {
     }
 
@@ -195,6 +203,23 @@ implements IValidatorView, ISelectionListener, IContextProvider, ITabbedProperty
                 return getText();
             }
         };
+        
+        fActionLiveValidation = new Action(Messages.ValidatorView_6, IAction.AS_CHECK_BOX) {
+            @Override
+            public void run() {
+                if(isChecked()) {
+                    startLiveValidation();
+                }
+                else {
+                    stopLiveValidation();
+                }
+            }
+            
+            @Override
+            public String getToolTipText() {
+                return getText();
+            }
+        };
     }
 
     /**
@@ -215,6 +240,8 @@ implements IValidatorView, ISelectionListener, IContextProvider, ITabbedProperty
         manager.add(fActionExplain);
         
         final IMenuManager menuManager = bars.getMenuManager();
+        menuManager.add(fActionLiveValidation);
+        menuManager.add(new Separator());
         menuManager.add(fActionShowPreferences); 
     }
     
@@ -282,8 +309,13 @@ implements IValidatorView, ISelectionListener, IContextProvider, ITabbedProperty
         
         IArchimateModel model = part.getAdapter(IArchimateModel.class);
         
-        if(model != null) {
+        if(model != null && model != fModel) {
             fModel = model;
+            
+            // Validate the newly selected model
+            if(fActionLiveValidation.isChecked()) {
+                startLiveValidation();
+            }
         }
         
         fActionValidate.setEnabled(fModel != null);
@@ -334,16 +366,77 @@ implements IValidatorView, ISelectionListener, IContextProvider, ITabbedProperty
     
     @Override
     public void validateModel() {
-        BusyIndicator.showWhile(null, new Runnable() {
-            @Override
-            public void run() {
-                updateStatusBar();
-                Validator validator = new Validator(fModel);
-                List<Object> result = validator.validate();
-                fViewer.setInput(result);
-                fViewer.expandAll();
+        updateStatusBar();
+        
+        if(fModel == null) {
+            fViewer.setInput(null);
+            return;
+        }
+        
+        Validator validator = new Validator(fModel);
+        
+        List<IIssue> issuesFound = new ArrayList<>();
+        
+        // Show the issues found so far as each checker finishes.
+        // The checkers run on the UI thread so paint the tree now rather than waiting for the event loop.
+        IValidatorListener listener = (checker, issues, time) -> {
+            issuesFound.addAll(issues);
+            fViewer.setInput(Validator.createCategories(issuesFound));
+            fViewer.expandAll();
+            fViewer.getControl().update();
+        };
+        
+        List<Object> result = new ArrayList<>();
+        
+        BusyIndicator.showWhile(getSite().getShell().getDisplay(), () -> {
+            try {
+                result.addAll(validator.validate(listener));
+            }
+            catch(Exception ex) {
+                Logger.logError("Error validating model", ex); //$NON-NLS-1$
+                MessageDialog.openError(getSite().getShell(), Messages.ValidatorView_3, Messages.ValidatorView_7 + " " + ex.getMessage()); //$NON-NLS-1$
             }
         });
+        
+        fViewer.setInput(result);
+        fViewer.expandAll();
+    }
+    
+    /**
+     * Validate the model and then re-validate it as it changes
+     */
+    private void startLiveValidation() {
+        stopLiveValidation();
+        updateStatusBar();
+        
+        if(fModel == null) {
+            fViewer.setInput(null);
+            return;
+        }
+        
+        Display display = getSite().getShell().getDisplay();
+        
+        // Validate on the next UI cycle so that a run of model changes, such as a compound command, is validated once
+        IncrementalValidator validator = new IncrementalValidator(fModel, () -> display.asyncExec(() -> {
+            if(fLiveValidator != null && fLiveValidator.isValidationNeeded() && !fViewer.getControl().isDisposed()) {
+                fLiveValidator.validateChanges();
+                fViewer.setInput(fLiveValidator.getResult());
+                fViewer.expandAll();
+            }
+        }));
+        
+        fLiveValidator = validator;
+        validator.start();
+        
+        fViewer.setInput(validator.getResult());
+        fViewer.expandAll();
+    }
+    
+    private void stopLiveValidation() {
+        if(fLiveValidator != null) {
+            fLiveValidator.dispose();
+            fLiveValidator = null;
+        }
     }
     
     private void updateStatusBar() {
@@ -410,6 +503,7 @@ implements IValidatorView, ISelectionListener, IContextProvider, ITabbedProperty
         // Model Closed
         if(propertyName == IEditorModelManager.PROPERTY_MODEL_REMOVED) {
             if(fModel == newValue) {
+                stopLiveValidation();
                 fModel = null;
                 fViewer.setInput(null);
                 fActionValidate.setEnabled(false);
@@ -421,6 +515,8 @@ implements IValidatorView, ISelectionListener, IContextProvider, ITabbedProperty
     public void dispose() {
         super.dispose();
         
+        stopLiveValidation();
+        
         // Unregister selection listener
         getSite().getWorkbenchWindow().getSelectionService().removeSelectionListener(this);
         
@@ -7,13 +7,30 @@ package com.archimatetool.jasperreports;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.ResourceBundle;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.osgi.util.NLS;
@@ -24,15 +41,21 @@ import org.eclipse.swt.graphics.ImageLoader;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.PlatformUI;
 
-import com.archimatetool.editor.diagram.util.DiagramUtils;
+import com.archimatetool.editor.ArchiPlugin;
+import com.archimatetool.editor.diagram.util.DiagramImageRenderer;
 import com.archimatetool.editor.ui.ImageFactory;
 import com.archimatetool.editor.utils.FileUtils;
 import com.archimatetool.jasperreports.data.ArchimateModelDataSource;
+import com.archimatetool.jasperreports.data.FieldDataFactory;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IDiagramModel;
 
 import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRDataset;
 import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRExpression;
+import net.sf.jasperreports.engine.JRExpressionCollector;
+import net.sf.jasperreports.engine.JRField;
 import net.sf.jasperreports.engine.JRParameter;
 import net.sf.jasperreports.engine.JasperCompileManager;
 import net.sf.jasperreports.engine.JasperExportManager;
@@ -43,6 +66,8 @@ import net.sf.jasperreports.engine.export.JRRtfExporter;
 import net.sf.jasperreports.engine.export.oasis.JROdtExporter;
 import net.sf.jasperreports.engine.export.ooxml.JRDocxExporter;
 import net.sf.jasperreports.engine.export.ooxml.JRPptxExporter;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSaver;
 import net.sf.jasperreports.export.SimpleExporterInput;
 import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
 import net.sf.jasperreports.export.SimpleWriterExporterOutput;
@@ -70,6 +95,19 @@ public class JasperReportsExporter {
     
     private boolean DELETE_TEMP_FILES = true;
     
+    /**
+     * Compiled reports are cached in this folder. The file name of a compiled report is the hash of its template's path
+     * followed by the hash of its content. Only the latest compiled report for a template is kept.
+     */
+    static final File COMPILED_REPORTS_FOLDER = new File(ArchiPlugin.INSTANCE.getUserDataFolder(), "jasper-cache"); //$NON-NLS-1$
+    
+    /**
+     * System property set to the folder of the diagram images
+     */
+    static final String IMAGE_PATH_PROPERTY = "JASPER_IMAGE_PATH"; //$NON-NLS-1$
+    
+    private static final String COMPILED_REPORT_EXTENSION = ".jasper"; //$NON-NLS-1$
+    
     private IArchimateModel fModel;
     private File fExportFolder;
     private String fExportFileName;
@@ -123,90 +161,365 @@ public class JasperReportsExporter {
         tmpFolder.mkdirs();
         
         try {
-            writeDiagrams(tmpFolder);
+            List<JasperReport> reports = compileReports();
+            
+            // Only write the diagrams if a report uses their images
+            if(usesDiagramImages(reports)) {
+                writeDiagrams(tmpFolder);
+            }
             
-            JasperPrint jasperPrint = createJasperPrint(tmpFolder);
+            JasperPrint jasperPrint = createJasperPrint(tmpFolder, reports);
             
+            exportReports(jasperPrint);
+        }
+        finally {
+            if(DELETE_TEMP_FILES) {
+                setProgressSubTask(Messages.JasperReportsExporter_9);
+                FileUtils.deleteFolder(tmpFolder);
+            }
+        }
+    }
+    
+    /**
+     * Run the selected exporters.
+     * The JasperPrint is not changed by an exporter so the exporters are run at the same time by a pool of threads.
+     */
+    private void exportReports(JasperPrint jasperPrint) throws IOException, JRException {
+        // Progress message and Future for each exporter
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        
+        try {
             if((fExportOptions & EXPORT_HTML) != 0) {
-                setProgressSubTask(Messages.JasperReportsExporter_3);
-                exportHTML(jasperPrint, new File(fExportFolder, fExportFileName + ".html")); //$NON-NLS-1$
+                futures.put(Messages.JasperReportsExporter_3, executor.submit(() -> {
+                    exportHTML(jasperPrint, new File(fExportFolder, fExportFileName + ".html")); //$NON-NLS-1$
+                    return null;
+                }));
             }
 
             if((fExportOptions & EXPORT_PDF) != 0) {
-                setProgressSubTask(Messages.JasperReportsExporter_4);
-                exportPDF(jasperPrint, new File(fExportFolder, fExportFileName + ".pdf")); //$NON-NLS-1$
+                futures.put(Messages.JasperReportsExporter_4, executor.submit(() -> {
+                    exportPDF(jasperPrint, new File(fExportFolder, fExportFileName + ".pdf")); //$NON-NLS-1$
+                    return null;
+                }));
             }
 
             if((fExportOptions & EXPORT_DOCX) != 0) {
-                setProgressSubTask(Messages.JasperReportsExporter_5);
-                exportDOCX(jasperPrint, new File(fExportFolder, fExportFileName + ".docx")); //$NON-NLS-1$
+                futures.put(Messages.JasperReportsExporter_5, executor.submit(() -> {
+                    exportDOCX(jasperPrint, new File(fExportFolder, fExportFileName + ".docx")); //$NON-NLS-1$
+                    return null;
+                }));
             }
             
             if((fExportOptions & EXPORT_PPT) != 0) {
-                setProgressSubTask(Messages.JasperReportsExporter_6);
-                exportPPT(jasperPrint, new File(fExportFolder, fExportFileName + ".pptx")); //$NON-NLS-1$
+                futures.put(Messages.JasperReportsExporter_6, executor.submit(() -> {
+                    exportPPT(jasperPrint, new File(fExportFolder, fExportFileName + ".pptx")); //$NON-NLS-1$
+                    return null;
+                }));
             }
             
             if((fExportOptions & EXPORT_RTF) != 0) {
-                setProgressSubTask(Messages.JasperReportsExporter_7);
-                exportRTF(jasperPrint, new File(fExportFolder, fExportFileName + ".rtf")); //$NON-NLS-1$
+                futures.put(Messages.JasperReportsExporter_7, executor.submit(() -> {
+                    exportRTF(jasperPrint, new File(fExportFolder, fExportFileName + ".rtf")); //$NON-NLS-1$
+                    return null;
+                }));
             }
             
             if((fExportOptions & EXPORT_ODT) != 0) {
-                setProgressSubTask(Messages.JasperReportsExporter_8);
-                exportODT(jasperPrint, new File(fExportFolder, fExportFileName + ".odt")); //$NON-NLS-1$
+                futures.put(Messages.JasperReportsExporter_8, executor.submit(() -> {
+                    exportODT(jasperPrint, new File(fExportFolder, fExportFileName + ".odt")); //$NON-NLS-1$
+                    return null;
+                }));
+            }
+            
+            // Wait for each exporter in turn, keeping the UI responsive so that the user can cancel
+            for(Entry<String, Future<?>> entry : futures.entrySet()) {
+                setProgressSubTask(entry.getKey());
+                
+                Future<?> future = entry.getValue();
+                
+                while(true) {
+                    try {
+                        future.get(100, TimeUnit.MILLISECONDS);
+                        break;
+                    }
+                    catch(TimeoutException ex) {
+                        updateProgress();
+                    }
+                    catch(ExecutionException ex) {
+                        Throwable cause = ex.getCause();
+                        if(cause instanceof JRException) {
+                            throw (JRException)cause;
+                        }
+                        if(cause instanceof IOException) {
+                            throw (IOException)cause;
+                        }
+                        throw new IOException(cause);
+                    }
+                    catch(InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
             }
         }
         finally {
-            if(DELETE_TEMP_FILES) {
-                setProgressSubTask(Messages.JasperReportsExporter_9);
-                FileUtils.deleteFolder(tmpFolder);
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * @return true if one of the reports might show the diagram images. This is if a report or one of its datasets
+     *         has the image path field of a View, or a parameter or expression refers to the image path field,
+     *         the JASPER_IMAGE_PATH property or a PNG file named by an id. If in doubt the images are written.
+     */
+    boolean usesDiagramImages(List<JasperReport> reports) {
+        for(JasperReport report : reports) {
+            JRExpressionCollector collector = JRExpressionCollector.collector(DefaultJasperReportsContext.getInstance(), report);
+            collector.collect();
+            
+            if(usesDiagramImages(report.getMainDataset(), collector)) {
+                return true;
+            }
+            
+            if(report.getDatasets() != null) {
+                for(JRDataset dataset : report.getDatasets()) {
+                    if(usesDiagramImages(dataset, collector.getCollector(dataset))) {
+                        return true;
+                    }
+                }
             }
         }
+        
+        return false;
+    }
+    
+    private boolean usesDiagramImages(JRDataset dataset, JRExpressionCollector collector) {
+        if(dataset.getFields() != null) {
+            for(JRField field : dataset.getFields()) {
+                if(FieldDataFactory.IMAGE_PATH.equals(field.getName())) {
+                    return true;
+                }
+            }
+        }
+        
+        if(dataset.getParameters() != null) {
+            for(JRParameter parameter : dataset.getParameters()) {
+                if(refersToDiagramImages(parameter.getName())) {
+                    return true;
+                }
+            }
+        }
+        
+        for(JRExpression expression : collector.getExpressions()) {
+            if(refersToDiagramImages(expression.getText())) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    private boolean refersToDiagramImages(String text) {
+        return text != null && (text.contains(FieldDataFactory.IMAGE_PATH) || text.contains(IMAGE_PATH_PROPERTY)
+                || (text.contains("$F{id}") && text.contains(".png"))); //$NON-NLS-1$ //$NON-NLS-2$
     }
     
     /**
      * Write the diagrams to temp files
+     * 
+     * Diagrams are rendered to ImageData in this thread because SWT needs the Display thread.
+     * The PNG encoding and file writing is done by a pool of worker threads. The pool's queue is bounded
+     * so that only a few images are held in memory. If it is full the image is saved in this thread.
      */
     void writeDiagrams(File tmpFolder) throws IOException {
         List<IDiagramModel> diagramModels = fModel.getDiagramModels();
         int total = diagramModels.size();
         int i = 1;
+        
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads), new ThreadPoolExecutor.CallerRunsPolicy());
+        
+        Map<IDiagramModel, Future<?>> futures = new LinkedHashMap<>();
+        
+        DiagramImageRenderer renderer = new DiagramImageRenderer();
 
-        for(IDiagramModel dm : diagramModels) {
-            setProgressSubTask(NLS.bind(Messages.JasperReportsExporter_1, i++, total));
-            
-            Image image = null;
-            
-            try {
-                image = DiagramUtils.createImage(dm, 1, 10);
-                String diagramName = dm.getId() + ".png"; //$NON-NLS-1$
-                ImageLoader loader = new ImageLoader();
-                loader.data = new ImageData[] { image.getImageData(ImageFactory.getImageDeviceZoom()) };
-                File file = new File(tmpFolder, diagramName);
-                loader.save(file.getAbsolutePath(), SWT.IMAGE_PNG);
-            }
-            catch(Throwable t) {
-                throw new IOException("Error saving image for: " + dm.getName() + "\n" + //$NON-NLS-1$ //$NON-NLS-2$
-                        (t.getMessage() == null ? t.toString() : t.getMessage()), t);
+        try {
+            for(IDiagramModel dm : diagramModels) {
+                setProgressSubTask(NLS.bind(Messages.JasperReportsExporter_1, i++, total));
+                
+                ImageData imageData;
+                
+                try {
+                    Image image = renderer.createModelReferencedImage(dm, 1, 10).getImage();
+                    try {
+                        imageData = image.getImageData(ImageFactory.getImageDeviceZoom());
+                    }
+                    finally {
+                        image.dispose();
+                    }
+                }
+                catch(Throwable t) {
+                    throw createSaveImageException(dm, t);
+                }
+                
+                File file = new File(tmpFolder, dm.getId() + ".png"); //$NON-NLS-1$
+                
+                futures.put(dm, executor.submit(() -> {
+                    ImageLoader loader = new ImageLoader();
+                    loader.data = new ImageData[] { imageData };
+                    loader.save(file.getAbsolutePath(), SWT.IMAGE_PNG);
+                }));
             }
-            finally {
-                if(image != null) {
-                    image.dispose();
+            
+            // Wait for all images to be saved
+            for(Entry<IDiagramModel, Future<?>> entry : futures.entrySet()) {
+                try {
+                    entry.getValue().get();
+                }
+                catch(ExecutionException ex) {
+                    throw createSaveImageException(entry.getKey(), ex.getCause());
+                }
+                catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw createSaveImageException(entry.getKey(), ex);
                 }
             }
         }
+        finally {
+            renderer.dispose();
+            executor.shutdown();
+        }
     }
     
-    JasperPrint createJasperPrint(File tmpFolder) throws JRException, IOException {
-        setProgressSubTask(Messages.JasperReportsExporter_2);
+    private IOException createSaveImageException(IDiagramModel dm, Throwable t) {
+        return new IOException("Error saving image for: " + dm.getName() + "\n" + //$NON-NLS-1$ //$NON-NLS-2$
+                (t.getMessage() == null ? t.toString() : t.getMessage()), t);
+    }
+    
+    /**
+     * Compile the main report and the sub-reports in its folder
+     * @return The compiled reports. The first one is the main report.
+     */
+    List<JasperReport> compileReports() throws JRException, IOException {
+        setProgressSubTask(Messages.JasperReportsExporter_10);
         
         // Set the location of the default Jasper Properties File
         File propsFile = new File(JasperReportsPlugin.INSTANCE.getPluginFolder(), "jasperreports.properties"); //$NON-NLS-1$
         System.setProperty(DefaultJasperReportsContext.PROPERTIES_FILE, propsFile.getAbsolutePath());
 
+        List<JasperReport> reports = new ArrayList<>();
+        
+        // Main report
+        reports.add(compileReport(fMainTemplateFile));
+        
+        // Sub-reports
+        for(File file : fMainTemplateFile.getParentFile().listFiles()) {
+            if(!file.equals(fMainTemplateFile) && file.getName().endsWith(".jrxml")) { //$NON-NLS-1$
+                //System.out.println("Compiling Sub-Report: " + file);
+                reports.add(compileReport(file));
+            }
+        }
+        
+        return reports;
+    }
+    
+    /**
+     * Compile a report template, or load it from the cache of compiled reports if its content has not changed.
+     * The cache key is the hash of the template's content and this plug-in's version, which includes the version of Jasper Reports.
+     */
+    JasperReport compileReport(File templateFile) throws JRException, IOException {
+        return compileReport(templateFile, COMPILED_REPORTS_FOLDER);
+    }
+    
+    /**
+     * @param compiledReportsFolder The folder of the cache of compiled reports
+     */
+    JasperReport compileReport(File templateFile, File compiledReportsFolder) throws JRException, IOException {
+        String templatePrefix = createPathHash(templateFile) + "-"; //$NON-NLS-1$
+        File compiledFile = new File(compiledReportsFolder, templatePrefix + createHash(templateFile) + COMPILED_REPORT_EXTENSION);
+        
+        if(compiledFile.isFile()) {
+            try {
+                return (JasperReport)JRLoader.loadObject(compiledFile);
+            }
+            catch(JRException | ClassCastException ex) {
+                // Not a valid compiled report so compile it again
+            }
+        }
+        
+        JasperReport report = JasperCompileManager.compileReport(templateFile.getPath());
+        
+        // Save to a temp file first so that an incomplete file is not left in the cache
+        compiledReportsFolder.mkdirs();
+        File tmpFile = File.createTempFile("report", COMPILED_REPORT_EXTENSION, compiledReportsFolder); //$NON-NLS-1$
+        try {
+            JRSaver.saveObject(report, tmpFile);
+            Files.move(tmpFile.toPath(), compiledFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally {
+            tmpFile.delete();
+        }
+        
+        // Delete the template's compiled reports for earlier versions of it
+        File[] staleFiles = compiledReportsFolder.listFiles((dir, name) -> name.startsWith(templatePrefix)
+                && name.endsWith(COMPILED_REPORT_EXTENSION) && !name.equals(compiledFile.getName()));
+        if(staleFiles != null) {
+            for(File file : staleFiles) {
+                file.delete();
+            }
+        }
+        
+        return report;
+    }
+    
+    private String createHash(File file) throws IOException {
+        MessageDigest md = createMessageDigest();
+        md.update(JasperReportsPlugin.INSTANCE.getBundle().getVersion().toString().getBytes(StandardCharsets.UTF_8));
+        md.update(Files.readAllBytes(file.toPath()));
+        return toHex(md.digest());
+    }
+    
+    /**
+     * @return A short hash of the file's path to tell the compiled reports of different templates apart
+     */
+    private String createPathHash(File file) throws IOException {
+        MessageDigest md = createMessageDigest();
+        md.update(file.getCanonicalPath().getBytes(StandardCharsets.UTF_8));
+        return toHex(md.digest()).substring(0, 16);
+    }
+    
+    private MessageDigest createMessageDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+        }
+        catch(NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+    }
+    
+    private String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for(byte b : bytes) {
+            sb.append(String.format("%02x", b)); //$NON-NLS-1$
+        }
+        return sb.toString();
+    }
+    
+    JasperPrint createJasperPrint(File tmpFolder) throws JRException, IOException {
+        return createJasperPrint(tmpFolder, compileReports());
+    }
+    
+    /**
+     * @param reports The compiled main report and sub-reports
+     */
+    JasperPrint createJasperPrint(File tmpFolder, List<JasperReport> reports) throws JRException, IOException {
+        setProgressSubTask(Messages.JasperReportsExporter_2);
+        
         // Set the location of the Images
-        System.setProperty("JASPER_IMAGE_PATH", tmpFolder.getPath()); //$NON-NLS-1$
+        System.setProperty(IMAGE_PATH_PROPERTY, tmpFolder.getPath());
         
         // Declare Parameters passed to JasperFillManager
         Map<String, Object> params = new HashMap<String, Object>();
@@ -239,18 +552,12 @@ public class JasperReportsExporter {
             params.put("MODEL_DIRECTORY", fModel.getFile().getParent() + File.separator); //$NON-NLS-1$
         }
 
-        // Compile Main Report
-        setProgressSubTask(Messages.JasperReportsExporter_10);
+        // Main Report
+        JasperReport mainReport = reports.get(0);
         
-        JasperReport mainReport = JasperCompileManager.compileReport(fMainTemplateFile.getPath());
-        
-        // Compile sub-reports
-        for(File file : reportFolder.listFiles()) {
-            if(!file.equals(fMainTemplateFile) && file.getName().endsWith(".jrxml")) { //$NON-NLS-1$
-                //System.out.println("Compiling Sub-Report: " + file);
-                JasperReport jr = JasperCompileManager.compileReport(file.getPath());
-                params.put(jr.getName(), jr);
-            }
+        // Sub-reports
+        for(JasperReport jr : reports.subList(1, reports.size())) {
+            params.put(jr.getName(), jr);
         }
         
         // Fill Report
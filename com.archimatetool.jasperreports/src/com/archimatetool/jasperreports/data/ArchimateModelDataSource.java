@@ -38,10 +38,19 @@ import net.sf.jasperreports.engine.JRField;
 public class ArchimateModelDataSource implements JRDataSource, IPropertiesDataSource {
     
     private IArchimateModel fModel;
+    private ModelIndex fIndex;
     private boolean done;
     
     public ArchimateModelDataSource(IArchimateModel model) {
-        fModel = model;
+        this(new ModelIndex(model));
+    }
+    
+    /**
+     * @param index The index of the model, shared by all data sources for the report
+     */
+    public ArchimateModelDataSource(ModelIndex index) {
+        fModel = index.getModel();
+        fIndex = index;
     }
     
     public IArchimateModel getModel() {
@@ -54,11 +63,11 @@ public class ArchimateModelDataSource implements JRDataSource, IPropertiesDataSo
     }
     
     public ViewModelDataSource getViewsDataSource() {
-        return new ViewModelDataSource(fModel);
+        return new ViewModelDataSource(fModel.getDiagramModels(), fIndex);
     }
     
     public ElementsDataSource getElementsDataSource(String types) {
-        return new ElementsDataSource(fModel, types);
+        return new ElementsDataSource(fIndex, types, false);
     }
     
     /**
@@ -66,7 +75,7 @@ public class ArchimateModelDataSource implements JRDataSource, IPropertiesDataSo
      * @return true if there are elements of types to print
      */
     public boolean hasElements(String types) {
-        return !new ElementsDataSource(fModel, types).fConcepts.isEmpty(); 
+        return !fIndex.getConcepts(types).isEmpty(); 
     }
 
     @Override
@@ -80,7 +89,7 @@ public class ArchimateModelDataSource implements JRDataSource, IPropertiesDataSo
      * @return The element, or null if not found
      */
     public Object getElementByID(String id) {
-        return ArchimateModelUtils.getObjectByID(fModel, id);
+        return fIndex.getObjectByID(id);
     }
 
     @Override
@@ -102,7 +111,7 @@ public class ArchimateModelDataSource implements JRDataSource, IPropertiesDataSo
      */
     @Override
     public ArchimateModelDataSource clone() {
-    	return new ArchimateModelDataSource(fModel);
+    	return new ArchimateModelDataSource(fIndex);
     }
     
     @Override
@@ -34,6 +34,11 @@ public class ElementsDataSource implements JRRewindableDataSource, IPropertiesDa
     List<IArchimateConcept> fConcepts = new ArrayList<IArchimateConcept>();
     private IArchimateConcept fCurrentConcept;
     private int currentIndex = -1;
+    
+    /**
+     * The model index shared by the report's data sources, or null
+     */
+    private ModelIndex fIndex;
 
     
     /**
@@ -55,6 +60,25 @@ public class ElementsDataSource implements JRRewindableDataSource, IPropertiesDa
         }
     }
 
+    /**
+     * Elements of types in the model using the model index
+     * @param index - the model index
+     * @param types - String that indicates the types of elements to be retrieved
+     * @param sortFirstByType - Boolean that indicates if the results should be sorted by
+     *                          type first, and secondly by name
+     **/
+    public ElementsDataSource(ModelIndex index, String types, boolean sortFirstByType) {
+        fIndex = index;
+        fConcepts.addAll(index.getConcepts(types));
+        
+        if(sortFirstByType) {
+            ArchimateModelDataSource.sortByTypeThenName(fConcepts);
+        }
+        else {
+            ArchimateModelDataSource.sort(fConcepts);
+        }
+    }
+
     /**
      * @param dm - the Diagram model
      **/
@@ -154,7 +178,7 @@ public class ElementsDataSource implements JRRewindableDataSource, IPropertiesDa
         }
         
         List<IDiagramModel> views = DiagramModelUtils.findReferencedDiagramsForArchimateConcept(fCurrentConcept);
-        return new ViewModelDataSource(views);
+        return new ViewModelDataSource(views, fIndex);
     }
 
     private void getConcepts(IArchimateModel model, Set<EClass> desiredEClasses) {
@@ -0,0 +1,179 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.jasperreports.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+
+import com.archimatetool.model.IArchimateConcept;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelArchimateComponent;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.IIdentifier;
+
+
+/**
+ * Index of a model's objects by ID, and of its concepts by type and by View.
+ * 
+ * This is built once when a report is filled and shared by its data sources, so that each call from a report template
+ * doesn't have to iterate through the model or a View.
+ * The model should not be changed while the report is filled.
+ * 
+ * @author Phillip Beauvoir
+ */
+public class ModelIndex {
+    
+    private IArchimateModel fModel;
+    
+    /**
+     * Objects by ID. If more than one object has the same ID the first one found is kept.
+     */
+    private Map<String, EObject> fObjectsByID = new HashMap<>();
+    
+    /**
+     * Concepts by class. The position of each concept in the model's folders is kept so that lists can be in model order.
+     */
+    private Map<EClass, List<IArchimateConcept>> fConceptsByClass = new HashMap<>();
+    private Map<IArchimateConcept, Integer> fPositions = new IdentityHashMap<>();
+    
+    /**
+     * Concepts referenced in each View, in the order that they are in the View
+     */
+    private Map<IDiagramModel, List<IArchimateConcept>> fConceptsByView = new HashMap<>();
+    
+    /**
+     * Concepts for a types string, as used in templates
+     */
+    private Map<String, List<IArchimateConcept>> fConceptsByTypes = new ConcurrentHashMap<>();
+    
+    public ModelIndex(IArchimateModel model) {
+        fModel = model;
+        
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof IIdentifier && ((IIdentifier)eObject).getId() != null) {
+                fObjectsByID.putIfAbsent(((IIdentifier)eObject).getId(), eObject);
+            }
+        }
+        
+        for(IFolder folder : model.getFolders()) {
+            addConcepts(folder);
+        }
+        
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            Set<IArchimateConcept> concepts = new LinkedHashSet<>();
+            
+            for(Iterator<EObject> iter = dm.eAllContents(); iter.hasNext();) {
+                EObject eObject = iter.next();
+                if(eObject instanceof IDiagramModelArchimateComponent) {
+                    IArchimateConcept concept = ((IDiagramModelArchimateComponent)eObject).getArchimateConcept();
+                    if(concept != null) {
+                        concepts.add(concept);
+                    }
+                }
+            }
+            
+            fConceptsByView.put(dm, new ArrayList<>(concepts));
+        }
+    }
+    
+    private void addConcepts(IFolder folder) {
+        for(EObject object : folder.getElements()) {
+            if(object instanceof IArchimateConcept) {
+                fConceptsByClass.computeIfAbsent(object.eClass(), eClass -> new ArrayList<>()).add((IArchimateConcept)object);
+                fPositions.put((IArchimateConcept)object, fPositions.size());
+            }
+        }
+        
+        for(IFolder f : folder.getFolders()) {
+            addConcepts(f);
+        }
+    }
+    
+    public IArchimateModel getModel() {
+        return fModel;
+    }
+    
+    /**
+     * @param id The identifier
+     * @return The object in the model with id, or null if not found
+     */
+    public Object getObjectByID(String id) {
+        if(id == null) {
+            return null;
+        }
+        
+        if(id.equals(fModel.getId())) {
+            return fModel;
+        }
+        
+        return fObjectsByID.get(id);
+    }
+    
+    /**
+     * @param types The types string as used by {@link ArchimateModelDataSource#getClasses(String)}
+     * @return The model's concepts that match types in model order. Clients should not change this list.
+     */
+    public List<IArchimateConcept> getConcepts(String types) {
+        return fConceptsByTypes.computeIfAbsent(types, t -> getConcepts(ArchimateModelDataSource.getClasses(t)));
+    }
+    
+    private List<IArchimateConcept> getConcepts(Set<EClass> eClasses) {
+        List<IArchimateConcept> concepts = new ArrayList<>();
+        
+        for(EClass eClass : eClasses) {
+            List<IArchimateConcept> list = fConceptsByClass.get(eClass);
+            if(list != null) {
+                concepts.addAll(list);
+            }
+        }
+        
+        // Back into model order if there is more than one class
+        if(eClasses.size() > 1) {
+            Collections.sort(concepts, Comparator.comparing(fPositions::get));
+        }
+        
+        return concepts;
+    }
+    
+    /**
+     * @param dm The View
+     * @param types The types string as used by {@link ArchimateModelDataSource#getClasses(String)}
+     * @return The concepts referenced in dm that match types, in the order that they are in the View
+     */
+    public List<IArchimateConcept> getConceptsInDiagram(IDiagramModel dm, String types) {
+        List<IArchimateConcept> allConcepts = fConceptsByView.get(dm);
+        
+        // Not a View in this model
+        if(allConcepts == null) {
+            return new ArrayList<>(ArchimateModelDataSource.getConceptsInDiagram(dm, types));
+        }
+        
+        Set<EClass> eClasses = ArchimateModelDataSource.getClasses(types);
+        
+        List<IArchimateConcept> concepts = new ArrayList<>();
+        for(IArchimateConcept concept : allConcepts) {
+            if(eClasses.contains(concept.eClass())) {
+                concepts.add(concept);
+            }
+        }
+        
+        return concepts;
+    }
+}
@@ -80,7 +80,24 @@ public class ViewChildrenDataSource implements JRRewindableDataSource, IProperti
      *                          will be sorted by name only 
      **/
     public ViewChildrenDataSource(IDiagramModel dm, String types, boolean sortFirstByType) {
-        fChildren.addAll(ArchimateModelDataSource.getConceptsInDiagram(dm, types));
+        this(dm, types, sortFirstByType, null);
+    }
+
+    /**
+     * Constructor that uses the model index to get the View's concepts
+     * @param dm - the Diagram model
+     * @param types - String that indicates the types of elements to be retrieved
+     * @param sortFirstByType - Boolean that indicates if the results should be sorted by
+     *                          type first, and secondly by name
+     * @param index - The model index shared by the report's data sources, or null
+     **/
+    public ViewChildrenDataSource(IDiagramModel dm, String types, boolean sortFirstByType, ModelIndex index) {
+        if(index != null) {
+            fChildren.addAll(index.getConceptsInDiagram(dm, types));
+        }
+        else {
+            fChildren.addAll(ArchimateModelDataSource.getConceptsInDiagram(dm, types));
+        }
         
         if(sortFirstByType) {
             ArchimateModelDataSource.sortByTypeThenName(fChildren);
@@ -33,14 +33,28 @@ public class ViewModelDataSource implements JRRewindableDataSource, IPropertiesD
     private IDiagramModel fCurrentView;
     private int currentIndex = -1;
     
+    /**
+     * The model index shared by the report's data sources, or null
+     */
+    private ModelIndex fIndex;
+    
     public ViewModelDataSource(IArchimateModel model) {
         this(model.getDiagramModels());
     }
     
     public ViewModelDataSource(List<IDiagramModel> diagramModels) {
+        this(diagramModels, null);
+    }
+    
+    /**
+     * @param diagramModels The Views
+     * @param index The model index shared by the report's data sources, or null
+     */
+    public ViewModelDataSource(List<IDiagramModel> diagramModels, ModelIndex index) {
         // Use a *copy* of the List
         fViews = new ArrayList<IDiagramModel>(diagramModels);
         ArchimateModelDataSource.sort(fViews);
+        fIndex = index;
     }
     
     public String getViewpointName() {
@@ -66,19 +80,19 @@ public class ViewModelDataSource implements JRRewindableDataSource, IPropertiesD
     }
     
     public ViewChildrenDataSource getChildElementsDataSource() {
-        return new ViewChildrenDataSource(fCurrentView);
+        return new ViewChildrenDataSource(fCurrentView, ELEMENTS, false, fIndex);
     }
     
     public ViewChildrenDataSource getChildElementsDataSourceForTypes(String types) {
-        return new ViewChildrenDataSource(fCurrentView, types);
+        return new ViewChildrenDataSource(fCurrentView, types, false, fIndex);
     }
 
     public ViewChildrenDataSource getChildElementsDataSourceSortedByType(boolean sortFirstByType) {
-        return new ViewChildrenDataSource(fCurrentView, sortFirstByType);
+        return new ViewChildrenDataSource(fCurrentView, ELEMENTS, sortFirstByType, fIndex);
     }
 
     public ViewChildrenDataSource getChildElementsDataSourceForTypesSortedByType(String types, boolean sortFirstByType) {
-        return new ViewChildrenDataSource(fCurrentView, types, sortFirstByType);
+        return new ViewChildrenDataSource(fCurrentView, types, sortFirstByType, fIndex);
     }
     
     @Override
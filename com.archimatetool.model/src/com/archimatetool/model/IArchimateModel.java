@@ -208,6 +208,15 @@ public interface IArchimateModel extends IFolderContainer, IArchimateModelObject
      */
     boolean removeModelContentListener(IModelContentListener listener);
     
+    /**
+     * Find an object in this model by its identifier.
+     * If a model content listener has been added the lookup uses an ID index that is kept up to date as the model changes,
+     * otherwise the model's contents are iterated. A lookup never changes the model.
+     * @param id The identifier to look for
+     * @return The object in this model with the given id, or null if not found
+     */
+    EObject getObjectByID(String id);
+    
     /**
      * Dispose of this model to free memory
      */
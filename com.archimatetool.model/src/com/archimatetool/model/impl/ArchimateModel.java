@@ -230,6 +230,15 @@ public class ArchimateModel extends EObjectImpl implements IArchimateModel {
      */
     private List<IModelContentListener> fContentListeners = new ArrayList<IModelContentListener>();
     
+    /**
+     * Index of IDs to objects contained in this model. Created when eContentAdapter is added to the model and then kept live by it.
+     * If more than one object has the same ID the others are kept in fDuplicateIDs so that they can replace the indexed object if it is removed.
+     * Access is guarded by fIDIndexLock as lookups can be made from any thread.
+     */
+    private Map<String, EObject> fIDIndex;
+    private Map<String, List<EObject>> fDuplicateIDs;
+    private final Object fIDIndexLock = new Object();
+    
     /**
      * One central EContentAdapter to listen to all model changes and forward on to listeners
      */
@@ -243,6 +252,13 @@ public class ArchimateModel extends EObjectImpl implements IArchimateModel {
                 return;
             }
             
+            // ID changed
+            if(notification.getFeature() == IArchimatePackage.Literals.IDENTIFIER__ID && notification.getEventType() == Notification.SET) {
+                EObject notifier = (EObject)notification.getNotifier();
+                unindexObject(notification.getOldStringValue(), notifier);
+                indexObject(notifier);
+            }
+            
             // Notify model listeners
             if(fContentListeners != null) {
                 for(IModelContentListener listener : new ArrayList<>(fContentListeners)) {
@@ -250,6 +266,22 @@ public class ArchimateModel extends EObjectImpl implements IArchimateModel {
                 }
             }
         }
+        
+        // Called when this adapter is added to an object in the model's containment tree
+        @Override
+        protected void setTarget(EObject target) {
+            indexObject(target);
+            super.setTarget(target);
+        }
+        
+        // Called when this adapter is removed from an object that has been removed from the model's containment tree
+        @Override
+        protected void unsetTarget(EObject target) {
+            super.unsetTarget(target);
+            if(target instanceof IIdentifier) {
+                unindexObject(((IIdentifier)target).getId(), target);
+            }
+        }
     };
 
     /**
@@ -270,6 +302,11 @@ public class ArchimateModel extends EObjectImpl implements IArchimateModel {
         }
         
         if(!eAdapters().contains(eContentAdapter)) {
+            // Adding the adapter will index all child objects as it adapts to them
+            synchronized(fIDIndexLock) {
+                fIDIndex = new HashMap<>();
+                fDuplicateIDs = new HashMap<>();
+            }
             eAdapters().add(eContentAdapter);
         }
         
@@ -285,6 +322,86 @@ public class ArchimateModel extends EObjectImpl implements IArchimateModel {
         return fContentListeners.remove(listener);
     }
     
+    @Override
+    public EObject getObjectByID(String id) {
+        if(id == null || fContentListeners == null) { // we might be disposed
+            return null;
+        }
+        
+        if(id.equals(getId())) {
+            return this;
+        }
+        
+        synchronized(fIDIndexLock) {
+            if(fIDIndex != null) {
+                return fIDIndex.get(id);
+            }
+        }
+        
+        // No index because there are no model content listeners, so iterate through the model
+        for(Iterator<EObject> iter = eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof IIdentifier && id.equals(((IIdentifier)eObject).getId())) {
+                return eObject;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Add an object to the ID index. If more than one object has the same ID the first one is indexed and the others are kept as duplicates.
+     */
+    private void indexObject(EObject eObject) {
+        if(!(eObject instanceof IIdentifier) || eObject == this) {
+            return;
+        }
+        
+        String id = ((IIdentifier)eObject).getId();
+        if(id == null) {
+            return;
+        }
+        
+        synchronized(fIDIndexLock) {
+            if(fIDIndex != null) {
+                EObject existing = fIDIndex.putIfAbsent(id, eObject);
+                if(existing != null && existing != eObject) {
+                    fDuplicateIDs.computeIfAbsent(id, key -> new ArrayList<>(1)).add(eObject);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Remove an object from the ID index. If it was the indexed object for id then the next object with the same ID is indexed in its place.
+     */
+    private void unindexObject(String id, EObject eObject) {
+        if(id == null) {
+            return;
+        }
+        
+        synchronized(fIDIndexLock) {
+            if(fIDIndex == null) {
+                return;
+            }
+            
+            List<EObject> duplicates = fDuplicateIDs.get(id);
+            
+            if(fIDIndex.remove(id, eObject)) {
+                if(duplicates != null) {
+                    fIDIndex.put(id, duplicates.remove(0));
+                }
+            }
+            else if(duplicates != null) {
+                duplicates.remove(eObject);
+            }
+            
+            if(duplicates != null && duplicates.isEmpty()) {
+                fDuplicateIDs.remove(id);
+            }
+        }
+    }
+    
     /**
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
@@ -975,6 +1092,11 @@ public class ArchimateModel extends EObjectImpl implements IArchimateModel {
         fContentListeners.clear();
         fContentListeners = null;
         
+        synchronized(fIDIndexLock) {
+            fIDIndex = null;
+            fDuplicateIDs = null;
+        }
+        
         // Dispose of these in case they are referenced in an editor or similar
         for(IDiagramModel dm : getDiagramModels()) {
             dm.getProperties().clear();
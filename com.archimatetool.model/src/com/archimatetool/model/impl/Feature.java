@@ -102,12 +102,21 @@ public class Feature extends EObjectImpl implements IFeature {
     /**
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
-     * @generated
+     * @generated NOT
      */
     @Override
     public void setName(String newName) {
         String oldName = name;
         name = newName;
+        
+        // The containing list indexes its features by name
+        if(eContainer() != null && eContainmentFeature() != null) {
+            Object list = eContainer().eGet(eContainmentFeature());
+            if(list instanceof FeaturesEList) {
+                ((FeaturesEList)list).featureNameChanged();
+            }
+        }
+        
         if (eNotificationRequired())
             eNotify(new ENotificationImpl(this, Notification.SET, IArchimatePackage.FEATURE__NAME, oldName, name));
     }
@@ -5,6 +5,9 @@
  */
 package com.archimatetool.model.impl;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.util.EObjectContainmentEList;
 
@@ -15,10 +18,66 @@ import com.archimatetool.model.IFeaturesEList;
 /**
  * Convenience class to set and get IFeature names and values
  * 
+ * Features are looked up by name in an index that is built when first needed and discarded
+ * when the list or the name of one of its features changes.
+ * Int and boolean values are parsed once and kept until the feature's value changes.
+ * 
  * @author Phillip Beauvoir
  */
 public class FeaturesEList extends EObjectContainmentEList<IFeature> implements IFeaturesEList {
     
+    private static class Entry {
+        final IFeature feature;
+        volatile ParsedValue parsed;
+        
+        Entry(IFeature feature) {
+            this.feature = feature;
+        }
+    }
+    
+    /**
+     * A feature's value parsed as an int and a boolean
+     */
+    private static class ParsedValue {
+        final String source;
+        final Integer intValue; // null if source is not an int
+        final boolean booleanValue;
+        
+        ParsedValue(String source) {
+            this.source = source;
+            intValue = parseInt(source);
+            booleanValue = Boolean.parseBoolean(source);
+        }
+        
+        private static Integer parseInt(String s) {
+            if(s == null || s.isEmpty()) {
+                return null;
+            }
+            
+            // Check the characters first so that most values that are not ints don't throw an exception
+            int start = (s.charAt(0) == '-' || s.charAt(0) == '+') ? 1 : 0;
+            if(start == s.length()) {
+                return null;
+            }
+            
+            for(int i = start; i < s.length(); i++) {
+                if(!Character.isDigit(s.charAt(i))) {
+                    return null;
+                }
+            }
+            
+            try {
+                return Integer.valueOf(s);
+            }
+            catch(NumberFormatException ex) {
+                return null;
+            }
+        }
+    }
+    
+    // Features keyed by name, null until needed
+    private volatile Map<String, Entry> index;
+    
     public FeaturesEList(Class<?> dataClass, InternalEObject owner, int featureID) {
         super(dataClass, owner, featureID);
     }
@@ -84,19 +143,27 @@ public class FeaturesEList extends EObjectContainmentEList<IFeature> implements
 
     @Override
     public int getInt(String name, int defaultValue) {
-        String val = getString(name, String.valueOf(defaultValue));
-        try {
-            return Integer.valueOf(val);
-        }
-        catch(NumberFormatException ex) {
+        checkNull(name);
+        
+        Entry entry = getEntry(name);
+        if(entry == null) {
             return defaultValue;
         }
+        
+        Integer value = getParsedValue(entry).intValue;
+        return value == null ? defaultValue : value;
     }
 
     @Override
     public boolean getBoolean(String name, boolean defaultValue) {
-        String val = getString(name, Boolean.toString(defaultValue));
-        return Boolean.valueOf(val);
+        checkNull(name);
+        
+        Entry entry = getEntry(name);
+        if(entry == null) {
+            return defaultValue;
+        }
+        
+        return getParsedValue(entry).booleanValue;
     }
 
     @Override
@@ -120,13 +187,63 @@ public class FeaturesEList extends EObjectContainmentEList<IFeature> implements
     public IFeature getFeature(String name) {
         checkNull(name);
         
+        Entry entry = getEntry(name);
+        return entry == null ? null : entry.feature;
+    }
+    
+    private Entry getEntry(String name) {
+        Map<String, Entry> map = index;
+        if(map == null) {
+            map = createIndex();
+        }
+        
+        Entry entry = map.get(name);
+        
+        // A feature was renamed without us knowing, so index it again
+        if(entry != null && !name.equals(entry.feature.getName())) {
+            entry = createIndex().get(name);
+        }
+        
+        return entry;
+    }
+    
+    private Map<String, Entry> createIndex() {
+        Map<String, Entry> map = new HashMap<>();
+        
+        // The first feature with a name is the one that is used
         for(IFeature f : this) {
-            if(f.getName().equals(name)) {
-                return f;
+            if(f.getName() != null) {
+                map.putIfAbsent(f.getName(), new Entry(f));
             }
         }
         
-        return null;
+        index = map;
+        return map;
+    }
+    
+    private ParsedValue getParsedValue(Entry entry) {
+        String value = entry.feature.getValue();
+        
+        ParsedValue parsed = entry.parsed;
+        if(parsed == null || parsed.source != value) {
+            parsed = new ParsedValue(value);
+            entry.parsed = parsed;
+        }
+        
+        return parsed;
+    }
+    
+    /**
+     * Called by a feature in this list when its name is set
+     */
+    void featureNameChanged() {
+        index = null;
+    }
+    
+    @Override
+    protected void didChange() {
+        super.didChange();
+        index = null;
     }
 
     private void checkNull(String s) {
@@ -24,7 +24,6 @@ import com.archimatetool.model.IArchimateConcept;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IArchimateRelationship;
-import com.archimatetool.model.IIdentifier;
 import com.archimatetool.model.IJunction;
 import com.archimatetool.model.IProfile;
 import com.archimatetool.model.IProfiles;
@@ -197,19 +196,8 @@ public class ArchimateModelUtils {
             return null;
         }
         
-        if(id.equals(model.getId())) {
-            return model;
-        }
-        
-        // This is an expensive iteration!
-        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
-            EObject element = iter.next();
-            if(element instanceof IIdentifier && id.equals(((IIdentifier)element).getId())) {
-                return element;
-            }
-        }
-
-        return null;
+        // The model keeps an index of IDs if it has a model content listener, otherwise this is an expensive iteration
+        return model.getObjectByID(id);
     }
 
     
@@ -6,6 +6,7 @@
 package com.archimatetool.model.util;
 
 import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.xmi.XMLSave;
 import org.eclipse.emf.ecore.xmi.impl.XMLResourceImpl;
 
 /**
@@ -16,6 +17,9 @@ import org.eclipse.emf.ecore.xmi.impl.XMLResourceImpl;
  * @generated
  */
 public class ArchimateResource extends XMLResourceImpl {
+    
+    private SaveFragmentCache fSaveFragmentCache;
+    
     /**
      * Creates an instance of the resource.
      * <!-- begin-user-doc -->
@@ -26,5 +30,25 @@ public class ArchimateResource extends XMLResourceImpl {
     public ArchimateResource(URI uri) {
         super(uri);
     }
+    
+    /**
+     * Set a cache of serialised folders and diagram models to use when saving, or null to serialise everything
+     * @generated NOT
+     */
+    public void setSaveFragmentCache(SaveFragmentCache cache) {
+        fSaveFragmentCache = cache;
+    }
+    
+    /**
+     * @generated NOT
+     */
+    @Override
+    protected XMLSave createXMLSave() {
+        if(fSaveFragmentCache != null) {
+            return new FragmentCachingXMLSave(createXMLHelper(), fSaveFragmentCache);
+        }
+        
+        return super.createXMLSave();
+    }
 
 } //ArchimateResource
@@ -0,0 +1,73 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.xmi.XMLHelper;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMLSaveImpl;
+
+import com.archimatetool.model.util.SaveFragmentCache.Fragment;
+
+/**
+ * XMLSave that writes cached folders and diagram models as placeholders and changed ones between markers
+ * and then expands the placeholders from the SaveFragmentCache.
+ *
+ * @author Phillip Beauvoir
+ */
+class FragmentCachingXMLSave extends XMLSaveImpl {
+    
+    private SaveFragmentCache fCache;
+    
+    FragmentCachingXMLSave(XMLHelper helper, SaveFragmentCache cache) {
+        super(helper);
+        fCache = cache;
+    }
+    
+    @Override
+    public void save(XMLResource resource, OutputStream outputStream, Map<?, ?> options) throws IOException {
+        ByteArrayOutputStream skeleton = new ByteArrayOutputStream();
+        super.save(resource, skeleton, options);
+        fCache.write(skeleton.toByteArray(), outputStream);
+    }
+    
+    @Override
+    protected void saveElement(EObject o, EStructuralFeature f) {
+        if(!fCache.isFragmentObject(o)) {
+            super.saveElement(o, f);
+            return;
+        }
+        
+        Fragment fragment = fCache.getFragment(o);
+        
+        // Cached
+        if(fragment.bytes != null) {
+            // The fragment's xsi:type attributes need the namespace declaration in the root element
+            if(fragment.usesXSI) {
+                declareXSI = true;
+            }
+            writeMarker(SaveFragmentCache.PLACEHOLDER_ELEMENT, fragment);
+        }
+        // Not cached
+        else {
+            writeMarker(SaveFragmentCache.START_ELEMENT, fragment);
+            super.saveElement(o, f);
+            writeMarker(SaveFragmentCache.END_ELEMENT, fragment);
+        }
+    }
+    
+    private void writeMarker(String name, Fragment fragment) {
+        doc.startElement(name);
+        doc.addAttribute(SaveFragmentCache.KEY_ATTRIBUTE, Integer.toString(fragment.key));
+        doc.endEmptyElement();
+    }
+}
@@ -0,0 +1,429 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDocumentable;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.INameable;
+import com.archimatetool.model.IProperty;
+
+/**
+ * In-memory index of the text in a model so that searching it doesn't have to visit every object.
+ *
+ * The names and documentation of the model and of the folders, concepts and diagram models in its folders are indexed by trigram.
+ * A query finds the objects that have all of its trigrams and then checks that their text contains it.
+ * Text is case folded in the same way as a case insensitive Unicode regular expression, so a match here is also a match for that.
+ * New lines in names are replaced by a space, as they are when a name is shown on one line.
+ *
+ * All properties in the model, including those of diagram components, are indexed by key.
+ *
+ * The index is built when it is first requested and is then kept up to date from the model's notifications.
+ * It is shared by all users of a model and is stored as an adapter of the model. It is thread safe.
+ * When the model is closed the index should be removed with {@link #disposeIndex(IArchimateModel)}.
+ *
+ * @author Phillip Beauvoir
+ */
+public class ModelTextIndex {
+    
+    private static final Pattern NEW_LINES = Pattern.compile("(\r\n|\r|\n)+"); //$NON-NLS-1$
+    
+    // Lock for creating and removing a model's index
+    private static final Object CREATE_LOCK = new Object();
+    
+    /**
+     * @return The shared index for model, creating it if needed
+     */
+    public static ModelTextIndex getIndex(IArchimateModel model) {
+        synchronized(CREATE_LOCK) {
+            ModelTextIndex index = (ModelTextIndex)model.getAdapter(ModelTextIndex.class);
+            if(index == null) {
+                index = new ModelTextIndex(model);
+                model.setAdapter(ModelTextIndex.class, index);
+            }
+            return index;
+        }
+    }
+    
+    /**
+     * Dispose of the shared index for model, if there is one
+     */
+    public static void disposeIndex(IArchimateModel model) {
+        synchronized(CREATE_LOCK) {
+            ModelTextIndex index = (ModelTextIndex)model.getAdapter(ModelTextIndex.class);
+            if(index != null) {
+                index.dispose();
+            }
+        }
+    }
+    
+    /**
+     * Case fold text in the same way as a case insensitive Unicode regular expression compares characters.
+     * The folded text has the same length as the text.
+     */
+    public static String fold(String text) {
+        if(text == null) {
+            return ""; //$NON-NLS-1$
+        }
+        
+        char[] chars = null;
+        
+        for(int i = 0; i < text.length();) {
+            int c = text.codePointAt(i);
+            int folded = Character.toLowerCase(Character.toUpperCase(c));
+            int count = Character.charCount(c);
+            
+            if(folded != c && Character.charCount(folded) == count) {
+                if(chars == null) {
+                    chars = text.toCharArray();
+                }
+                Character.toChars(folded, chars, i);
+            }
+            
+            i += count;
+        }
+        
+        return chars == null ? text : new String(chars);
+    }
+    
+    /**
+     * Replace each run of new line characters in text with a space
+     */
+    public static String normaliseNewLines(String text) {
+        if(text == null || (text.indexOf('\n') == -1 && text.indexOf('\r') == -1)) {
+            return text;
+        }
+        return NEW_LINES.matcher(text).replaceAll(" "); //$NON-NLS-1$
+    }
+    
+    /**
+     * Trigram index of one text feature
+     */
+    static class TextField {
+        private Map<EObject, String> texts = new IdentityHashMap<>(); // folded text
+        private Map<Long, Set<EObject>> trigrams = new HashMap<>();
+        private boolean singleLine;
+        
+        /**
+         * @param singleLine If true new lines in the text and queries are replaced by a space
+         */
+        TextField(boolean singleLine) {
+            this.singleLine = singleLine;
+        }
+        
+        private String normalise(String text) {
+            return fold(singleLine ? normaliseNewLines(text) : text);
+        }
+        
+        void put(EObject eObject, String text) {
+            remove(eObject);
+            
+            text = normalise(text);
+            texts.put(eObject, text);
+            
+            for(int i = 0; i + 3 <= text.length(); i++) {
+                trigrams.computeIfAbsent(trigram(text, i), k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(eObject);
+            }
+        }
+        
+        void remove(EObject eObject) {
+            String text = texts.remove(eObject);
+            if(text == null) {
+                return;
+            }
+            
+            for(int i = 0; i + 3 <= text.length(); i++) {
+                Long key = trigram(text, i);
+                Set<EObject> set = trigrams.get(key);
+                if(set != null) {
+                    set.remove(eObject);
+                    if(set.isEmpty()) {
+                        trigrams.remove(key);
+                    }
+                }
+            }
+        }
+        
+        Set<EObject> find(String query) {
+            query = normalise(query);
+            
+            Set<EObject> result = Collections.newSetFromMap(new IdentityHashMap<>());
+            
+            // Check the texts of the objects that have the rarest trigram of the query, or all texts if it is too short
+            Collection<EObject> candidates = texts.keySet();
+            
+            for(int i = 0; i + 3 <= query.length(); i++) {
+                Set<EObject> set = trigrams.get(trigram(query, i));
+                if(set == null) {
+                    return result;
+                }
+                if(set.size() < candidates.size()) {
+                    candidates = set;
+                }
+            }
+            
+            for(EObject eObject : candidates) {
+                if(texts.get(eObject).contains(query)) {
+                    result.add(eObject);
+                }
+            }
+            
+            return result;
+        }
+        
+        int size() {
+            return texts.size();
+        }
+        
+        private static Long trigram(String text, int index) {
+            return ((long)text.charAt(index) << 32) | ((long)text.charAt(index + 1) << 16) | text.charAt(index + 2);
+        }
+    }
+    
+    private IArchimateModel fModel;
+    
+    private TextField fNames = new TextField(true);
+    private TextField fDocumentation = new TextField(false);
+    private Map<String, Set<IProperty>> fProperties = new HashMap<>();
+    
+    private IModelContentListener fModelListener = this::modelChanged;
+    
+    ModelTextIndex(IArchimateModel model) {
+        fModel = model;
+        
+        synchronized(this) {
+            add(model);
+            fModel.addModelContentListener(fModelListener);
+        }
+    }
+    
+    /**
+     * Stop listening to model changes and remove this index from the model
+     */
+    public void dispose() {
+        synchronized(CREATE_LOCK) {
+            if(fModel.getAdapter(ModelTextIndex.class) == this) {
+                fModel.setAdapter(ModelTextIndex.class, null);
+            }
+        }
+        
+        synchronized(this) {
+            fModel.removeModelContentListener(fModelListener);
+            fNames = new TextField(true);
+            fDocumentation = new TextField(false);
+            fProperties.clear();
+        }
+    }
+    
+    /**
+     * @param text The text to find. If this is empty all indexed objects with a name are returned.
+     * @return The indexed objects whose name contains text, ignoring case and with new lines replaced by a space
+     */
+    public synchronized Set<EObject> findByName(String text) {
+        return fNames.find(text);
+    }
+    
+    /**
+     * @param text The text to find. If this is empty all indexed objects with documentation are returned.
+     * @return The indexed objects whose documentation contains text, ignoring case
+     */
+    public synchronized Set<EObject> findByDocumentation(String text) {
+        return fDocumentation.find(text);
+    }
+    
+    /**
+     * @return All property keys used in the model
+     */
+    public synchronized Set<String> getPropertyKeys() {
+        return new HashSet<>(fProperties.keySet());
+    }
+    
+    /**
+     * @return All values of the properties with key in the model
+     */
+    public synchronized Set<String> getPropertyValues(String key) {
+        Set<String> result = new HashSet<>();
+        
+        for(IProperty property : fProperties.getOrDefault(key, Collections.emptySet())) {
+            result.add(property.getValue());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * @return The number of properties with key in the model
+     */
+    public synchronized int getPropertyCount(String key) {
+        Set<IProperty> set = fProperties.get(key);
+        return set == null ? 0 : set.size();
+    }
+    
+    /**
+     * @return The objects that have a property with one of keys
+     */
+    public synchronized Set<EObject> getPropertyOwners(Collection<String> keys) {
+        Set<EObject> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        
+        for(String key : keys) {
+            for(IProperty property : fProperties.getOrDefault(key, Collections.emptySet())) {
+                if(property.eContainer() != null) {
+                    result.add(property.eContainer());
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * @return The number of objects whose names are indexed
+     */
+    synchronized int getNameCount() {
+        return fNames.size();
+    }
+    
+    // =============================================================================================
+    // Model changes
+    // =============================================================================================
+    
+    private synchronized void modelChanged(Notification notification) {
+        if(notification.isTouch()) {
+            return;
+        }
+        
+        Object feature = notification.getFeature();
+        Object notifier = notification.getNotifier();
+        
+        if(feature == IArchimatePackage.Literals.NAMEABLE__NAME || feature == IArchimatePackage.Literals.DOCUMENTABLE__DOCUMENTATION) {
+            addText((EObject)notifier);
+        }
+        else if(feature == IArchimatePackage.Literals.PROPERTY__KEY) {
+            removeProperty((IProperty)notifier, notification.getOldStringValue());
+            addProperty((IProperty)notifier);
+        }
+        else if(feature instanceof EReference && ((EReference)feature).isContainment()) {
+            switch(notification.getEventType()) {
+                case Notification.ADD:
+                case Notification.SET:
+                case Notification.REMOVE:
+                    remove(notification.getOldValue());
+                    add(notification.getNewValue());
+                    break;
+                
+                case Notification.ADD_MANY:
+                    for(Object o : (Collection<?>)notification.getNewValue()) {
+                        add(o);
+                    }
+                    break;
+                
+                case Notification.REMOVE_MANY:
+                    for(Object o : (Collection<?>)notification.getOldValue()) {
+                        remove(o);
+                    }
+                    break;
+                
+                default:
+                    break;
+            }
+        }
+    }
+    
+    /**
+     * Add value and its contents to the index
+     */
+    private void add(Object value) {
+        if(value instanceof EObject) {
+            addObject((EObject)value);
+            for(Iterator<EObject> iter = ((EObject)value).eAllContents(); iter.hasNext();) {
+                addObject(iter.next());
+            }
+        }
+    }
+    
+    /**
+     * Remove value and its contents from the index
+     */
+    private void remove(Object value) {
+        if(value instanceof EObject) {
+            removeObject((EObject)value);
+            for(Iterator<EObject> iter = ((EObject)value).eAllContents(); iter.hasNext();) {
+                removeObject(iter.next());
+            }
+        }
+    }
+    
+    private void addObject(EObject eObject) {
+        addText(eObject);
+        
+        if(eObject instanceof IProperty) {
+            addProperty((IProperty)eObject);
+        }
+    }
+    
+    private void removeObject(EObject eObject) {
+        fNames.remove(eObject);
+        fDocumentation.remove(eObject);
+        
+        if(eObject instanceof IProperty) {
+            removeProperty((IProperty)eObject, ((IProperty)eObject).getKey());
+        }
+    }
+    
+    private void addText(EObject eObject) {
+        if(!isTextIndexed(eObject)) {
+            return;
+        }
+        
+        if(eObject instanceof INameable) {
+            fNames.put(eObject, ((INameable)eObject).getName());
+        }
+        
+        if(eObject instanceof IDocumentable) {
+            fDocumentation.put(eObject, ((IDocumentable)eObject).getDocumentation());
+        }
+    }
+    
+    /**
+     * @return true if the name and documentation of eObject are indexed.
+     *         These are the model and the objects in its folders, but not diagram components or profiles.
+     */
+    private boolean isTextIndexed(EObject eObject) {
+        return eObject == fModel || eObject.eContainer() instanceof IFolder
+                || (eObject instanceof IFolder && eObject.eContainer() == fModel);
+    }
+    
+    private void addProperty(IProperty property) {
+        if(property.getKey() != null) {
+            fProperties.computeIfAbsent(property.getKey(), k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(property);
+        }
+    }
+    
+    private void removeProperty(IProperty property, String key) {
+        Set<IProperty> set = key != null ? fProperties.get(key) : null;
+        if(set != null) {
+            set.remove(property);
+            if(set.isEmpty()) {
+                fProperties.remove(key);
+            }
+        }
+    }
+}
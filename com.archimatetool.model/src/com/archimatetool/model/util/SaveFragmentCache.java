@@ -0,0 +1,381 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EObject;
+
+import com.archimatetool.model.IArchimateConcept;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IFolder;
+
+/**
+ * Cache of the serialised XML of a model's folders, concepts and diagram models so that saving the model
+ * only serialises the objects that have changed since the last save.
+ *
+ * When an ArchimateResource is saved with this cache set an unchanged folder or diagram is written as a placeholder element
+ * and a changed one is written between marker elements. The resulting skeleton document is then expanded by replacing
+ * placeholders with the cached bytes and taking the bytes between markers as the new cached fragments.
+ * A folder's fragment contains placeholders for its child folders, concepts and diagram models, so a change to one concept
+ * or diagram model only serialises that object again and the folders that contain it as a list of placeholders.
+ *
+ * The output is the same as a full save of the model.
+ *
+ * @author Phillip Beauvoir
+ */
+public class SaveFragmentCache {
+    
+    static final String PLACEHOLDER_ELEMENT = "archiFragment"; //$NON-NLS-1$
+    static final String START_ELEMENT = "archiFragmentStart"; //$NON-NLS-1$
+    static final String END_ELEMENT = "archiFragmentEnd"; //$NON-NLS-1$
+    static final String KEY_ATTRIBUTE = "key"; //$NON-NLS-1$
+    
+    private static final byte[] MARKER_PREFIX = ("<" + PLACEHOLDER_ELEMENT).getBytes(StandardCharsets.US_ASCII); //$NON-NLS-1$
+    private static final byte[] KEY_PREFIX = (KEY_ATTRIBUTE + "=\"").getBytes(StandardCharsets.US_ASCII); //$NON-NLS-1$
+    private static final byte[] EMPTY_ELEMENT_END = "/>".getBytes(StandardCharsets.US_ASCII); //$NON-NLS-1$
+    private static final byte[] XSI_TYPE = "xsi:type=\"".getBytes(StandardCharsets.US_ASCII); //$NON-NLS-1$
+    
+    /**
+     * A cached folder, concept or diagram model
+     */
+    static class Fragment {
+        int key;
+        byte[] bytes; // null if it needs serialising
+        boolean usesXSI;
+    }
+    
+    private IArchimateModel fModel;
+    
+    private Map<EObject, Fragment> fFragments = new IdentityHashMap<>();
+    private Map<Integer, Fragment> fFragmentKeys = new HashMap<>();
+    private int fNextKey;
+    
+    private IModelContentListener fModelListener = this::modelChanged;
+    
+    public SaveFragmentCache(IArchimateModel model) {
+        fModel = model;
+        fModel.addModelContentListener(fModelListener);
+    }
+    
+    /**
+     * Stop listening to model changes and clear the cache
+     */
+    public void dispose() {
+        fModel.removeModelContentListener(fModelListener);
+        clear();
+    }
+    
+    /**
+     * Clear all cached fragments so that the next save is a full save
+     */
+    public void clear() {
+        fFragments.clear();
+        fFragmentKeys.clear();
+    }
+    
+    /**
+     * @return The total size of the cached fragments in bytes
+     */
+    public long getCacheSize() {
+        long size = 0;
+        for(Fragment fragment : fFragments.values()) {
+            if(fragment.bytes != null) {
+                size += fragment.bytes.length;
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * @return true if eObject is cached as a separate fragment
+     */
+    boolean isFragmentObject(EObject eObject) {
+        return eObject instanceof IFolder || eObject instanceof IDiagramModel || eObject instanceof IArchimateConcept;
+    }
+    
+    /**
+     * @return The Fragment for a folder, concept or diagram model, creating it if needed
+     */
+    Fragment getFragment(EObject eObject) {
+        Fragment fragment = fFragments.get(eObject);
+        if(fragment == null) {
+            fragment = new Fragment();
+            fragment.key = fNextKey++;
+            fFragments.put(eObject, fragment);
+            fFragmentKeys.put(fragment.key, fragment);
+        }
+        return fragment;
+    }
+    
+    // =============================================================================================
+    // Model changes
+    // =============================================================================================
+    
+    private void modelChanged(Notification notification) {
+        if(notification.isTouch()) {
+            return;
+        }
+        
+        // IDs are referenced across fragments
+        if(notification.getFeature() == IArchimatePackage.Literals.IDENTIFIER__ID) {
+            clear();
+            return;
+        }
+        
+        if(notification.getNotifier() instanceof EObject) {
+            invalidate((EObject)notification.getNotifier());
+        }
+        
+        switch(notification.getEventType()) {
+            case Notification.ADD:
+            case Notification.SET:
+            case Notification.REMOVE:
+                invalidateContents(notification.getNewValue());
+                invalidateContents(notification.getOldValue());
+                break;
+            
+            case Notification.ADD_MANY:
+                for(Object o : (Collection<?>)notification.getNewValue()) {
+                    invalidateContents(o);
+                }
+                break;
+            
+            case Notification.REMOVE_MANY:
+                for(Object o : (Collection<?>)notification.getOldValue()) {
+                    invalidateContents(o);
+                }
+                break;
+            
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Invalidate the fragment of eObject's concept or diagram model and the fragments of the folders that contain it
+     */
+    private void invalidate(EObject eObject) {
+        for(EObject o = eObject; o != null; o = o.eContainer()) {
+            Fragment fragment = fFragments.get(o);
+            if(fragment != null) {
+                fragment.bytes = null;
+            }
+        }
+    }
+    
+    /**
+     * An object was added, moved or removed so remove its fragment and the fragments that it contains.
+     * Their indentation might have changed.
+     */
+    private void invalidateContents(Object value) {
+        if(value instanceof EObject && isFragmentObject((EObject)value)) {
+            removeFragment((EObject)value);
+            
+            // Only folders contain other fragments
+            if(value instanceof IFolder) {
+                for(TreeIterator<EObject> iter = ((EObject)value).eAllContents(); iter.hasNext();) {
+                    EObject eObject = iter.next();
+                    if(isFragmentObject(eObject)) {
+                        removeFragment(eObject);
+                    }
+                    if(!(eObject instanceof IFolder)) {
+                        iter.prune();
+                    }
+                }
+            }
+        }
+    }
+    
+    private void removeFragment(EObject eObject) {
+        Fragment fragment = fFragments.remove(eObject);
+        if(fragment != null) {
+            fFragmentKeys.remove(fragment.key);
+        }
+    }
+    
+    // =============================================================================================
+    // Writing
+    // =============================================================================================
+    
+    /**
+     * A fragment being captured from the skeleton document
+     */
+    private static class Capture {
+        Fragment fragment;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        boolean usesXSI;
+        
+        Capture(Fragment fragment) {
+            this.fragment = fragment;
+        }
+    }
+    
+    /**
+     * Write the skeleton document to out, replacing placeholders with cached fragments and caching the fragments between markers
+     */
+    void write(byte[] skeleton, OutputStream out) throws IOException {
+        Deque<Capture> captures = new ArrayDeque<>();
+        int pos = 0;
+        
+        for(int start = indexOf(skeleton, MARKER_PREFIX, 0, skeleton.length); start != -1; start = indexOf(skeleton, MARKER_PREFIX, pos, skeleton.length)) {
+            int end = indexOf(skeleton, EMPTY_ELEMENT_END, start, skeleton.length) + EMPTY_ELEMENT_END.length;
+            String elementName = readElementName(skeleton, start + 1);
+            Fragment fragment = fFragmentKeys.get(readKey(skeleton, start, end));
+            
+            if(fragment == null) {
+                throw new IOException("Unknown fragment key in " + elementName); //$NON-NLS-1$
+            }
+            
+            Capture capture = captures.peek();
+            
+            switch(elementName) {
+                // Start of a new fragment. Drop the marker and the indent that follows it
+                case START_ELEMENT:
+                    write(skeleton, pos, start, out, capture);
+                    pos = skipWhitespace(skeleton, end);
+                    captures.push(new Capture(fragment));
+                    break;
+                
+                // End of a fragment. Drop the line break and indent before the marker and the marker
+                case END_ELEMENT:
+                    write(skeleton, pos, trimWhitespace(skeleton, pos, start), out, capture);
+                    pos = end;
+                    
+                    captures.pop();
+                    fragment.bytes = capture.bytes.toByteArray();
+                    fragment.usesXSI = capture.usesXSI || indexOf(fragment.bytes, XSI_TYPE, 0, fragment.bytes.length) != -1;
+                    
+                    // The fragment containing this one has a placeholder for it
+                    Capture parent = captures.peek();
+                    if(parent != null) {
+                        parent.bytes.write(placeholder(fragment));
+                        parent.usesXSI |= fragment.usesXSI;
+                    }
+                    break;
+                
+                // Placeholder for a cached fragment
+                default:
+                    write(skeleton, pos, start, out, capture);
+                    pos = end;
+                    
+                    if(capture != null) {
+                        capture.bytes.write(placeholder(fragment));
+                        capture.usesXSI |= fragment.usesXSI;
+                    }
+                    
+                    writeFragment(fragment, out);
+                    break;
+            }
+        }
+        
+        write(skeleton, pos, skeleton.length, out, captures.peek());
+    }
+    
+    /**
+     * Write a cached fragment to out, replacing the placeholders of nested fragments
+     */
+    private void writeFragment(Fragment fragment, OutputStream out) throws IOException {
+        byte[] bytes = fragment.bytes;
+        if(bytes == null) {
+            throw new IOException("Fragment is not cached: " + fragment.key); //$NON-NLS-1$
+        }
+        
+        int pos = 0;
+        for(int start = indexOf(bytes, MARKER_PREFIX, 0, bytes.length); start != -1; start = indexOf(bytes, MARKER_PREFIX, pos, bytes.length)) {
+            int end = indexOf(bytes, EMPTY_ELEMENT_END, start, bytes.length) + EMPTY_ELEMENT_END.length;
+            out.write(bytes, pos, start - pos);
+            
+            Fragment nested = fFragmentKeys.get(readKey(bytes, start, end));
+            if(nested == null) {
+                throw new IOException("Unknown nested fragment"); //$NON-NLS-1$
+            }
+            writeFragment(nested, out);
+            
+            pos = end;
+        }
+        
+        out.write(bytes, pos, bytes.length - pos);
+    }
+    
+    private void write(byte[] bytes, int start, int end, OutputStream out, Capture capture) throws IOException {
+        if(end > start) {
+            out.write(bytes, start, end - start);
+            if(capture != null) {
+                capture.bytes.write(bytes, start, end - start);
+            }
+        }
+    }
+    
+    private static byte[] placeholder(Fragment fragment) {
+        return ("<" + PLACEHOLDER_ELEMENT + " " + KEY_ATTRIBUTE + "=\"" + fragment.key + "\"/>").getBytes(StandardCharsets.US_ASCII); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+    
+    private static String readElementName(byte[] bytes, int start) {
+        int end = start;
+        while(end < bytes.length && bytes[end] != ' ' && bytes[end] != '/' && bytes[end] != '>') {
+            end++;
+        }
+        return new String(bytes, start, end - start, StandardCharsets.US_ASCII);
+    }
+    
+    private static int readKey(byte[] bytes, int start, int end) throws IOException {
+        int pos = indexOf(bytes, KEY_PREFIX, start, end);
+        if(pos == -1) {
+            throw new IOException("No fragment key"); //$NON-NLS-1$
+        }
+        
+        int key = 0;
+        for(pos += KEY_PREFIX.length; pos < end && bytes[pos] != '"'; pos++) {
+            key = key * 10 + (bytes[pos] - '0');
+        }
+        return key;
+    }
+    
+    private static int skipWhitespace(byte[] bytes, int pos) {
+        while(pos < bytes.length && isWhitespace(bytes[pos])) {
+            pos++;
+        }
+        return pos;
+    }
+    
+    private static int trimWhitespace(byte[] bytes, int start, int end) {
+        while(end > start && isWhitespace(bytes[end - 1])) {
+            end--;
+        }
+        return end;
+    }
+    
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+    
+    static int indexOf(byte[] bytes, byte[] target, int from, int to) {
+        outer:
+        for(int i = from; i <= to - target.length; i++) {
+            for(int j = 0; j < target.length; j++) {
+                if(bytes[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
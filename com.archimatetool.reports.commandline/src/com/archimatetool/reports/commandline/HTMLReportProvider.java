@@ -28,6 +28,13 @@ import com.archimatetool.reports.html.HTMLReportExporter;
  * Archi -consoleLog -nosplash -application com.archimatetool.commandline.app
    --loadModel "/pathToModel/model.archimate"
    --html.createReport "/pathToOutputFolder"
+   --html.incremental
+ * 
+ * Or to create the report in a zip file:
+ * 
+ * Archi -consoleLog -nosplash -application com.archimatetool.commandline.app
+   --loadModel "/pathToModel/model.archimate"
+   --html.createReportArchive "/pathToOutputFile/report.zip"
  * 
  * @author Phillip Beauvoir
  */
@@ -36,6 +43,8 @@ public class HTMLReportProvider extends AbstractCommandLineProvider {
     static final String PREFIX = Messages.HTMLReportProvider_0;
     
     static final String OPTION_CREATE_HTML_REPORT = "html.createReport"; //$NON-NLS-1$
+    static final String OPTION_INCREMENTAL = "html.incremental"; //$NON-NLS-1$
+    static final String OPTION_CREATE_HTML_REPORT_ARCHIVE = "html.createReportArchive"; //$NON-NLS-1$
     
     public HTMLReportProvider() {
     }
@@ -47,16 +56,19 @@ public class HTMLReportProvider extends AbstractCommandLineProvider {
             return;
         }
         
-        String sOutput = commandLine.getOptionValue(OPTION_CREATE_HTML_REPORT);
+        boolean isArchive = commandLine.hasOption(OPTION_CREATE_HTML_REPORT_ARCHIVE);
+        
+        String sOutput = commandLine.getOptionValue(isArchive ? OPTION_CREATE_HTML_REPORT_ARCHIVE : OPTION_CREATE_HTML_REPORT);
         if(!StringUtils.isSet(sOutput)) {
             logError(Messages.HTMLReportProvider_1);
             return;
         }
 
-        File folderOutput = new File(sOutput);
+        File fileOutput = new File(sOutput);
+        File folderOutput = isArchive ? fileOutput.getAbsoluteFile().getParentFile() : fileOutput;
         folderOutput.mkdirs();
         if(!folderOutput.exists()) {
-            logError(NLS.bind(Messages.HTMLReportProvider_2, sOutput));
+            logError(NLS.bind(Messages.HTMLReportProvider_2, folderOutput));
             return;
         }
 
@@ -68,13 +80,22 @@ public class HTMLReportProvider extends AbstractCommandLineProvider {
         
         logMessage(NLS.bind(Messages.HTMLReportProvider_4, model.getName(), sOutput));
 
-        HTMLReportExporter ex = new HTMLReportExporter(model);
-        ex.createReport(folderOutput, "index.html", new NullProgressMonitor() { //$NON-NLS-1$
+        NullProgressMonitor monitor = new NullProgressMonitor() {
             @Override
             public void subTask(String name) {
                 logMessage(name);
             }
-        });
+        };
+        
+        HTMLReportExporter ex = new HTMLReportExporter(model);
+        
+        if(isArchive) {
+            ex.createReportArchive(fileOutput, "index.html", monitor); //$NON-NLS-1$
+        }
+        else {
+            ex.setIncremental(commandLine.hasOption(OPTION_INCREMENTAL));
+            ex.createReport(folderOutput, "index.html", monitor); //$NON-NLS-1$
+        }
 
         logMessage(Messages.HTMLReportProvider_5);
     }
@@ -95,10 +116,23 @@ public class HTMLReportProvider extends AbstractCommandLineProvider {
                 .build();
         options.addOption(option);
         
+        option = Option.builder()
+                .longOpt(OPTION_INCREMENTAL)
+                .desc(Messages.HTMLReportProvider_8)
+                .build();
+        options.addOption(option);
+        
+        option = Option.builder()
+                .longOpt(OPTION_CREATE_HTML_REPORT_ARCHIVE)
+                .hasArg().argName(Messages.HTMLReportProvider_10)
+                .desc(Messages.HTMLReportProvider_9)
+                .build();
+        options.addOption(option);
+        
         return options;
     }
     
     private boolean hasCorrectOptions(CommandLine commandLine) {
-        return commandLine.hasOption(OPTION_CREATE_HTML_REPORT);
+        return commandLine.hasOption(OPTION_CREATE_HTML_REPORT) || commandLine.hasOption(OPTION_CREATE_HTML_REPORT_ARCHIVE);
     }
 }
@@ -21,6 +21,12 @@ public class Messages extends NLS {
     public static String HTMLReportProvider_6;
 
     public static String HTMLReportProvider_7;
+
+    public static String HTMLReportProvider_8;
+
+    public static String HTMLReportProvider_9;
+
+    public static String HTMLReportProvider_10;
     static {
         // initialize resource bundle
         NLS.initializeMessages(BUNDLE_NAME, Messages.class);
@@ -5,20 +5,41 @@
  */
 package com.archimatetool.reports.html;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.jface.dialogs.MessageDialog;
@@ -36,7 +57,10 @@ import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.browser.IWebBrowser;
 import org.eclipse.ui.browser.IWorkbenchBrowserSupport;
 import org.osgi.framework.Bundle;
+import org.osgi.service.prefs.BackingStoreException;
+import org.stringtemplate.v4.AutoIndentWriter;
 import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STGroup;
 import org.stringtemplate.v4.STGroupFile;
 import org.stringtemplate.v4.StringRenderer;
 
@@ -44,12 +68,13 @@ import com.archimatetool.editor.ArchiPlugin;
 import com.archimatetool.editor.browser.BrowserEditorInput;
 import com.archimatetool.editor.browser.IBrowserEditor;
 import com.archimatetool.editor.browser.IBrowserEditorInput;
-import com.archimatetool.editor.diagram.util.DiagramUtils;
+import com.archimatetool.editor.diagram.util.DiagramImageRenderer;
 import com.archimatetool.editor.diagram.util.ModelReferencedImage;
 import com.archimatetool.editor.ui.ImageFactory;
 import com.archimatetool.editor.ui.services.EditorManager;
 import com.archimatetool.editor.utils.FileUtils;
 import com.archimatetool.editor.utils.StringUtils;
+import com.archimatetool.editor.utils.ZipUtils;
 import com.archimatetool.model.FolderType;
 import com.archimatetool.model.IArchimateConcept;
 import com.archimatetool.model.IArchimateModel;
@@ -90,6 +115,35 @@ public class HTMLReportExporter {
     
     private IProgressMonitor progressMonitor;
     
+    private boolean fIncremental;
+    
+    /**
+     * Manifest of the pages and images written, only used in incremental mode
+     */
+    private ReportManifest manifest;
+    
+    /**
+     * The report's root folder. In an archive this is only used for the names of the entries.
+     */
+    private File reportFolder;
+    
+    /**
+     * The archive that the report is written to, or null if it is written to a folder
+     */
+    private ZipOutputStream zipOut;
+    
+    /**
+     * Source files to copy into the archive keyed by entry name, so that a later copy to the same entry replaces
+     * an earlier one as it does in a folder
+     */
+    private Map<String, File> archiveFiles = new LinkedHashMap<>();
+    
+    /**
+     * Pages are rendered and written by a pool of worker threads
+     */
+    private ExecutorService pageExecutor;
+    private Map<File, Future<?>> pageFutures;
+    
     static class CancelledException extends IOException {
         public CancelledException(String message) {
             super(message);
@@ -108,6 +162,15 @@ public class HTMLReportExporter {
         fModel = model;
     }
     
+    /**
+     * Set whether to only write the pages and images that have changed since the last report in the same folder.
+     * A manifest of the files written is saved in the report folder and files that are no longer in the report are deleted.
+     * @param set
+     */
+    public void setIncremental(boolean set) {
+        fIncremental = set;
+    }
+    
     public void export() throws Exception {
         File targetFolder = askSaveFolder();
         if(targetFolder == null) {
@@ -193,50 +256,90 @@ public class HTMLReportExporter {
     
     public File createReport(File targetFolder, String indexFileName, IProgressMonitor monitor) throws IOException {
         progressMonitor = monitor;
+        reportFolder = targetFolder;
         
         if(progressMonitor != null) {
             progressMonitor.beginTask(Messages.HTMLReportExporter_6, -1);
         }
         
+        // Load the manifest of the last report
+        manifest = null;
+        if(fIncremental && zipOut == null) {
+            manifest = new ReportManifest(targetFolder, new File(targetFolder, fModel.getId() + "/" + ReportManifest.FILE_NAME)); //$NON-NLS-1$
+            manifest.load();
+        }
+        
         // Copy HTML skeleton to target
         copyHTMLSkeleton(targetFolder);
         
         // Copy hints files from the help plug-in
         copyHintsFiles(targetFolder);
         
+        // Add the copied files to the archive
+        if(zipOut != null) {
+            addFilesToArchive();
+        }
+        
         setProgressSubTask(Messages.HTMLReportExporter_11, true);
         
         // Create sub-folders
         File elementsFolder = new File(targetFolder, fModel.getId() + "/elements"); //$NON-NLS-1$
-        elementsFolder.mkdirs(); // Make dir
-        
         File viewsFolder = new File(targetFolder, fModel.getId() + "/views"); //$NON-NLS-1$
-        viewsFolder.mkdirs(); // Make dir
-        
         File imagesFolder = new File(targetFolder, fModel.getId() + "/images"); //$NON-NLS-1$
-        imagesFolder.mkdirs(); // Make dir
-             
         File objectsFolder = new File(targetFolder, fModel.getId() + "/objects"); //$NON-NLS-1$
-        objectsFolder.mkdirs(); // Make dir
+        
+        if(zipOut == null) {
+            elementsFolder.mkdirs(); // Make dir
+            viewsFolder.mkdirs(); // Make dir
+            imagesFolder.mkdirs(); // Make dir
+            objectsFolder.mkdirs(); // Make dir
+        }
 
         // Instantiate templates files
         File mainFile = new File(ArchiReportsPlugin.INSTANCE.getTemplatesFolder(), "st/main.stg"); //$NON-NLS-1$
         STGroupFile groupFile = new STGroupFile(mainFile.getAbsolutePath(), '^', '^');
-        ST stFrame = groupFile.getInstanceOf("frame"); //$NON-NLS-1$
         
         groupFile.registerRenderer(String.class, new StringRenderer());
         
-        // Write model purpose and properties html
-        writeElement(new File(elementsFolder, "model.html"), stFrame, fModel); //$NON-NLS-1$
-        
-        // Write all folders
-        writeFolders(elementsFolder, stFrame, fModel.getFolders());
+        // The group is shared by the page threads so load the templates now rather than lazily in those threads
+        groupFile.load();
+        for(STGroup importedGroup : groupFile.getImportedGroups()) {
+            importedGroup.load();
+        }
         
-        // Write other graphical objects
-        writeGraphicalObjects(objectsFolder, stFrame);
+        int threads = Runtime.getRuntime().availableProcessors();
+        pageExecutor = Executors.newFixedThreadPool(threads);
+        pageFutures = new LinkedHashMap<>();
         
-        // Write Diagrams and images
-        writeDiagrams(imagesFolder, viewsFolder, stFrame);
+        try {
+            // Write model purpose and properties html
+            writeElement(new File(elementsFolder, "model.html"), groupFile, fModel); //$NON-NLS-1$
+            
+            // Write all folders
+            writeFolders(elementsFolder, groupFile, fModel.getFolders());
+            
+            // Write other graphical objects
+            writeGraphicalObjects(objectsFolder, groupFile);
+            
+            // Write Diagrams and images
+            writeDiagrams(imagesFolder, viewsFolder, groupFile);
+            
+            // Wait for all pages to be written
+            waitForPages();
+        }
+        finally {
+            // If there was an error or the user cancelled stop the pages that are still to be written
+            pageExecutor.shutdownNow();
+            try {
+                pageExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            
+            pageExecutor = null;
+            pageFutures = null;
+        }
         
         setProgressSubTask(Messages.HTMLReportExporter_13, true);
         
@@ -254,13 +357,40 @@ public class HTMLReportExporter {
         stModel.add("viewsFolder", fModel.getFolder(FolderType.DIAGRAMS)); //$NON-NLS-1$
         
         File indexFile = new File(targetFolder, indexFileName);
-        try(OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(indexFile), "UTF8")) { //$NON-NLS-1$
-            writer.write(stModel.render());
+        writeFile(indexFile, stModel);
+        
+        // Delete files no longer in the report and save the new manifest
+        if(manifest != null) {
+            manifest.deleteOrphans();
+            manifest.save();
         }
         
         return indexFile;
     }
     
+    /**
+     * Create the report in a single zip archive instead of a folder.
+     * This is faster to write to a network share than the many small files of a report folder.
+     * The incremental setting is not used.
+     * @param zipFile The zip file
+     * @param indexFileName The name of the index page in the archive
+     * @param monitor Progress monitor. Can be null.
+     * @return The zip file
+     * @throws IOException
+     */
+    public File createReportArchive(File zipFile, String indexFileName, IProgressMonitor monitor) throws IOException {
+        try(ZipOutputStream zOut = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)))) {
+            zipOut = zOut;
+            createReport(zipFile.getAbsoluteFile().getParentFile(), indexFileName, monitor);
+        }
+        finally {
+            zipOut = null;
+            archiveFiles.clear();
+        }
+        
+        return zipFile;
+    }
+    
     /**
      * Copy source HTML files to target folder
      * @throws IOException 
@@ -269,7 +399,7 @@ public class HTMLReportExporter {
         setProgressSubTask(Messages.HTMLReportExporter_9, true);
         
         File srcDir = new File(ArchiReportsPlugin.INSTANCE.getTemplatesFolder(), "html"); //$NON-NLS-1$
-        FileUtils.copyFolder(srcDir, targetFolder);
+        copyFolder(srcDir, targetFolder);
     }
     
     /**
@@ -282,38 +412,142 @@ public class HTMLReportExporter {
         // Main hints
         Bundle bundle = Platform.getBundle("com.archimatetool.help"); //$NON-NLS-1$
         URL url = FileLocator.resolve(bundle.getEntry("hints")); //$NON-NLS-1$
-        FileUtils.copyFolder(new File(url.getPath()), new File(targetFolder, "hints")); //$NON-NLS-1$
+        copyFolder(new File(url.getPath()), new File(targetFolder, "hints")); //$NON-NLS-1$
         
         // Canvas hints
         bundle = Platform.getBundle("com.archimatetool.canvas"); //$NON-NLS-1$
         url = FileLocator.resolve(bundle.getEntry("help/hints")); //$NON-NLS-1$
-        FileUtils.copyFolder(new File(url.getPath()), new File(targetFolder, "hints")); //$NON-NLS-1$
+        copyFolder(new File(url.getPath()), new File(targetFolder, "hints")); //$NON-NLS-1$
+    }
+    
+    /**
+     * Copy a folder. In incremental mode a file is not copied again if it is the same size as its source and newer.
+     */
+    private void copyFolder(File srcFolder, File destFolder) throws IOException {
+        if(manifest == null && zipOut == null) {
+            FileUtils.copyFolder(srcFolder, destFolder);
+            return;
+        }
+        
+        File[] srcFiles = srcFolder.listFiles();
+        if(srcFiles == null) {
+            throw new IOException("Source folder does not exist"); //$NON-NLS-1$
+        }
+        
+        if(zipOut == null) {
+            destFolder.mkdirs();
+        }
+        
+        for(File srcFile : srcFiles) {
+            File destFile = new File(destFolder, srcFile.getName());
+            
+            if(srcFile.isDirectory()) {
+                copyFolder(srcFile, destFile);
+            }
+            else if(zipOut != null) {
+                archiveFiles.put(getEntryName(destFile), srcFile);
+            }
+            else if(!(destFile.isFile() && destFile.length() == srcFile.length() && destFile.lastModified() >= srcFile.lastModified())) {
+                FileUtils.copyFile(srcFile, destFile, false);
+            }
+        }
+    }
+    
+    /**
+     * Render and write a page.
+     * In a folder and not in incremental mode the page is rendered straight to the file without creating a String.
+     */
+    private void writeFile(File file, ST st) throws IOException {
+        if(manifest != null || zipOut != null) {
+            writeFile(file, st.render());
+            return;
+        }
+        
+        try(Writer writer = createWriter(file)) {
+            st.write(new AutoIndentWriter(writer));
+        }
+    }
+    
+    /**
+     * Write a page. In incremental mode it is not written if it is the same as in the last report.
+     */
+    private void writeFile(File file, String content) throws IOException {
+        if(zipOut != null) {
+            addToArchive(file, content.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        
+        if(manifest != null && !manifest.update(file, ReportManifest.createHash(content))) {
+            return;
+        }
+        
+        try(Writer writer = createWriter(file)) {
+            writer.write(content);
+        }
+    }
+    
+    /**
+     * @return A buffered UTF-8 Writer for a file
+     */
+    private Writer createWriter(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Add the files copied to the archive. The same entry name can't be added twice, so this is done after all files are copied.
+     */
+    private void addFilesToArchive() throws IOException {
+        synchronized(zipOut) {
+            for(Entry<String, File> entry : archiveFiles.entrySet()) {
+                ZipUtils.addFileToZip(entry.getValue(), entry.getKey(), zipOut);
+            }
+        }
+        
+        archiveFiles.clear();
+    }
+    
+    /**
+     * Add a file's contents to the archive. Entries are written one at a time, so this is synchronized on the archive.
+     */
+    private void addToArchive(File file, byte[] data) throws IOException {
+        synchronized(zipOut) {
+            zipOut.putNextEntry(new ZipEntry(getEntryName(file)));
+            zipOut.write(data);
+            zipOut.closeEntry();
+        }
+    }
+    
+    /**
+     * @return The name of the archive entry for a file in the report folder
+     */
+    private String getEntryName(File file) {
+        return reportFolder.toPath().relativize(file.toPath()).toString().replace('\\', '/');
     }
 
     /**
      * Write all folders
      */
-    private void writeFolders(File elementsFolder, ST stFrame, List<IFolder> folders) throws IOException {
+    private void writeFolders(File elementsFolder, STGroup groupFile, List<IFolder> folders) {
     	for(IFolder folder : folders) {
-    		writeFolder(elementsFolder, stFrame, folder);
+    		writeFolder(elementsFolder, groupFile, folder);
     	}
     }
     
     /**
      * Write a single folder
      */
-    private void writeFolder(File elementsFolder, ST stFrame, IFolder folder) throws IOException {
-    	writeElements(elementsFolder, stFrame, folder.getElements());
-    	writeFolders(elementsFolder, stFrame, folder.getFolders());
+    private void writeFolder(File elementsFolder, STGroup groupFile, IFolder folder) {
+    	writeElements(elementsFolder, groupFile, folder.getElements());
+    	writeFolders(elementsFolder, groupFile, folder.getFolders());
     }
     
     /**
      * Write all elements
      */
-    private void writeElements(File elementsFolder, ST stFrame, List<EObject> list) throws IOException {
+    private void writeElements(File elementsFolder, STGroup groupFile, List<EObject> list) {
         for(EObject object : list) {
             if(object instanceof IArchimateConcept) {
-                writeElement(new File(elementsFolder, ((IIdentifier) object).getId() + ".html"), stFrame, object); //$NON-NLS-1$
+                writeElement(new File(elementsFolder, ((IIdentifier) object).getId() + ".html"), groupFile, object); //$NON-NLS-1$
             }
         }
     }
@@ -321,28 +555,20 @@ public class HTMLReportExporter {
     /**
      * Write a single element
      */
-    private void writeElement(File elementFile, ST stFrame, EObject component) throws IOException {
-        stFrame.remove("element"); //$NON-NLS-1$
-        //frame.remove("children");
-        stFrame.add("element", component); //$NON-NLS-1$
-        
-        try(OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(elementFile), "UTF8")) { //$NON-NLS-1$
-            writer.write(stFrame.render());
-        }
-
-        updateProgress();
+    private void writeElement(File elementFile, STGroup groupFile, EObject component) {
+        writePage(elementFile, groupFile, component, null);
     }
     
     /**
      * Write graphical objects
      */
-    private void writeGraphicalObjects(File objectsFolder, ST stFrame) throws IOException {
+    private void writeGraphicalObjects(File objectsFolder, STGroup groupFile) {
         for(IDiagramModel dm : fModel.getDiagramModels()) {
             for(Iterator<EObject> iter =  dm.eAllContents(); iter.hasNext();) {
                 EObject eObject = iter.next();
                 if(eObject instanceof IDiagramModelObject && !(eObject instanceof IDiagramModelArchimateObject) 
                         && !(eObject instanceof IDiagramModelReference)) {
-                    writeElement(new File(objectsFolder, ((IIdentifier) eObject).getId() + ".html"), stFrame, eObject); //$NON-NLS-1$
+                    writeElement(new File(objectsFolder, ((IIdentifier) eObject).getId() + ".html"), groupFile, eObject); //$NON-NLS-1$
                 }
             }
         }
@@ -351,7 +577,7 @@ public class HTMLReportExporter {
     /**
      * Write diagrams
      */
-    private void writeDiagrams(File imagesFolder, File viewsFolder, ST stFrame) throws IOException {
+    private void writeDiagrams(File imagesFolder, File viewsFolder, STGroup groupFile) throws IOException {
         List<IDiagramModel> diagramModels = fModel.getDiagramModels();
         
         if(diagramModels.isEmpty()) {
@@ -363,25 +589,60 @@ public class HTMLReportExporter {
         
         setProgressSubTask(Messages.HTMLReportExporter_11, true);
 
-        // Create html files
+        // Add the necessary bounds in order to get correct absolute coordinates for the elements in the generated images.
+        // This is done for all diagrams first as the map is read by the page threads.
         for(IDiagramModel dm : diagramModels) {
-            // Add the necessary bounds in order to get correct absolute coordinates for the elements in the generated image
             Rectangle bounds = diagramBoundsMap.get(dm);
             
             // process the children
             for(IDiagramModelObject dmo: dm.getChildren() ) {
                 addNewBounds(dmo, bounds.x * -1, bounds.y * -1);
             }
+        }
 
-            stFrame.remove("element"); //$NON-NLS-1$
-            stFrame.add("element", dm); //$NON-NLS-1$
-            
-            stFrame.remove("map"); //$NON-NLS-1$
-            stFrame.add("map", childBoundsMap); //$NON-NLS-1$
-            
+        // Create html files
+        for(IDiagramModel dm : diagramModels) {
             File viewFile = new File(viewsFolder, dm.getId() + ".html"); //$NON-NLS-1$
-            try(OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(viewFile), "UTF8")) { //$NON-NLS-1$
-                writer.write(stFrame.render());
+            writePage(viewFile, groupFile, dm, childBoundsMap);
+        }
+    }
+    
+    /**
+     * Render and write a "frame" page in a page thread.
+     * Each page has its own template instance because an instance can't be shared between threads.
+     * @param map The map of bounds for a diagram, or null
+     */
+    private void writePage(File file, STGroup groupFile, EObject element, Map<String, BoundsWithAbsolutePosition> map) {
+        pageFutures.put(file, pageExecutor.submit(() -> {
+            ST stFrame = groupFile.getInstanceOf("frame"); //$NON-NLS-1$
+            stFrame.add("element", element); //$NON-NLS-1$
+            if(map != null) {
+                stFrame.add("map", map); //$NON-NLS-1$
+            }
+            
+            writeFile(file, stFrame);
+            return null;
+        }));
+    }
+    
+    /**
+     * Wait for the page threads to write all pages
+     */
+    private void waitForPages() throws IOException {
+        for(Entry<File, Future<?>> entry : pageFutures.entrySet()) {
+            try {
+                entry.getValue().get();
+            }
+            catch(ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if(cause instanceof IOException) {
+                    throw (IOException)cause;
+                }
+                throw new IOException("Error writing page: " + entry.getKey().getName(), cause); //$NON-NLS-1$
+            }
+            catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
             }
             
             updateProgress();
@@ -390,6 +651,14 @@ public class HTMLReportExporter {
     
     /**
      * Save diagram images
+     * 
+     * Diagrams are rendered to ImageData in this thread because SWT needs the Display thread.
+     * The PNG encoding and file writing is done by a pool of worker threads. The pool's queue is bounded
+     * so that only a few images are held in memory. If it is full the image is saved in this thread.
+     * 
+     * In incremental mode an image is not rendered if its diagram model and the objects it references have not changed
+     * since the last report. Its bounds are taken from the manifest.
+     * 
      * @param diagramModels 
      * @throws IOException 
      */
@@ -401,55 +670,167 @@ public class HTMLReportExporter {
         int total = diagramModels.size();
         int i = 1;
         
-        for(IDiagramModel dm : diagramModels) {
-            setProgressSubTask(NLS.bind(Messages.HTMLReportExporter_4, i++, total), true);
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads), new ThreadPoolExecutor.CallerRunsPolicy());
+        
+        Map<IDiagramModel, Future<?>> futures = new LinkedHashMap<>();
+        
+        DiagramImageRenderer renderer = new DiagramImageRenderer();
+        
+        String renderSettings = manifest != null ? getRenderSettings() : null;
+        
+        try {
+            for(IDiagramModel dm : diagramModels) {
+                setProgressSubTask(NLS.bind(Messages.HTMLReportExporter_4, i++, total), true);
 
-            Image image = null;
-            
-            try {
-                ModelReferencedImage geoImage = DiagramUtils.createModelReferencedImage(dm, 1, 10);
-                image = geoImage.getImage();
+                ImageData imageData;
+                File file;
+                
+                try {
+                    // Generate file name
+                    String diagramName = dm.getId();
+                    if(StringUtils.isSet(diagramName)) {
+                        // removed this because ids can have hyphens in them (when imported from TOG format)
+                        // Let's hope that ids are filename friendly...
+                        //diagramName = FileUtils.getValidFileName(diagramName);
 
-                // Generate file name
-                String diagramName = dm.getId();
-                if(StringUtils.isSet(diagramName)) {
-                    // removed this because ids can have hyphens in them (when imported from TOG format)
-                    // Let's hope that ids are filename friendly...
-                    //diagramName = FileUtils.getValidFileName(diagramName);
+                        int j = 2;
+                        String s = diagramName + ".png";  //$NON-NLS-1$
+                        while(nameTable.containsValue(s)) {
+                            s = diagramName + "_" + j++ + ".png"; //$NON-NLS-1$ //$NON-NLS-2$
+                        }
+                        diagramName = s;
+                    }
+                    else {
+                        diagramName = Messages.HTMLReportExporter_1 + " " + nameCount++ + ".png";  //$NON-NLS-1$//$NON-NLS-2$
+                    }
 
-                    int j = 2;
-                    String s = diagramName + ".png";  //$NON-NLS-1$
-                    while(nameTable.containsValue(s)) {
-                        s = diagramName + "_" + j++ + ".png"; //$NON-NLS-1$ //$NON-NLS-2$
+                    nameTable.put(dm, diagramName);
+                    
+                    file = new File(imagesFolder, diagramName);
+                    
+                    // In incremental mode use the last image if it has not changed
+                    String hash = null;
+                    if(manifest != null) {
+                        hash = ReportManifest.createDiagramHash(dm, renderSettings);
+                        Rectangle bounds = manifest.isUnchanged(file, hash) ? parseBounds(manifest.getData(file)) : null;
+                        if(bounds != null) {
+                            diagramBoundsMap.put(dm, bounds);
+                            manifest.put(file, hash, formatBounds(bounds));
+                            continue;
+                        }
+                    }
+                    
+                    ModelReferencedImage geoImage = renderer.createModelReferencedImage(dm, 1, 10);
+                    
+                    Image image = geoImage.getImage();
+                    try {
+                        imageData = image.getImageData(ImageFactory.getImageDeviceZoom());
+                    }
+                    finally {
+                        image.dispose();
+                    }
+
+                    // Get and store the bounds of the top-left element in the figure to act as overall x,y offset
+                    Rectangle bounds = geoImage.getBounds();
+                    bounds.performScale(ImageFactory.getImageDeviceZoom() / 100); // Account for device zoom level
+                    diagramBoundsMap.put(dm, bounds);
+                    
+                    if(manifest != null) {
+                        manifest.put(file, hash, formatBounds(bounds));
                     }
-                    diagramName = s;
                 }
-                else {
-                    diagramName = Messages.HTMLReportExporter_1 + " " + nameCount++ + ".png";  //$NON-NLS-1$//$NON-NLS-2$
+                catch(Throwable t) {
+                    throw createSaveImageException(dm, t);
+                }
+                
+                futures.put(dm, executor.submit(() -> {
+                    ImageLoader loader = new ImageLoader();
+                    loader.data = new ImageData[] { imageData };
+                    
+                    if(zipOut != null) {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        loader.save(out, SWT.IMAGE_PNG);
+                        addToArchive(file, out.toByteArray());
+                    }
+                    else {
+                        loader.save(file.getAbsolutePath(), SWT.IMAGE_PNG);
+                    }
+                    
+                    return null;
+                }));
+            }
+            
+            // Wait for all images to be saved
+            for(Entry<IDiagramModel, Future<?>> entry : futures.entrySet()) {
+                try {
+                    entry.getValue().get();
+                }
+                catch(ExecutionException ex) {
+                    throw createSaveImageException(entry.getKey(), ex.getCause());
+                }
+                catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw createSaveImageException(entry.getKey(), ex);
                 }
-
-                nameTable.put(dm, diagramName);
-
-                // Get and store the bounds of the top-left element in the figure to act as overall x,y offset
-                Rectangle bounds = geoImage.getBounds();
-                bounds.performScale(ImageFactory.getImageDeviceZoom() / 100); // Account for device zoom level
-                diagramBoundsMap.put(dm, bounds);
-
-                ImageLoader loader = new ImageLoader();
-                loader.data = new ImageData[] { image.getImageData(ImageFactory.getImageDeviceZoom()) };
-                File file = new File(imagesFolder, diagramName);
-                loader.save(file.getAbsolutePath(), SWT.IMAGE_PNG);
             }
-            catch(Throwable t) {
-                throw new IOException("Error saving image for: " + dm.getName() + "\n" + //$NON-NLS-1$ //$NON-NLS-2$
-                        (t.getMessage() == null ? t.toString() : t.getMessage()), t);
+        }
+        finally {
+            renderer.dispose();
+            executor.shutdown();
+        }
+    }
+    
+    /**
+     * @return The settings that change how diagram images are drawn, used in the hash of each image
+     */
+    private String getRenderSettings() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        
+        sb.append(ArchiPlugin.INSTANCE.getBundle().getVersion());
+        sb.append(' ').append(ImageFactory.getImageDeviceZoom());
+        
+        // Preferences such as fonts and colours
+        IEclipsePreferences prefs = InstanceScope.INSTANCE.getNode(ArchiPlugin.PLUGIN_ID);
+        try {
+            for(String key : new TreeSet<>(List.of(prefs.keys()))) {
+                sb.append('\n').append(key).append('=').append(prefs.get(key, "")); //$NON-NLS-1$
             }
-            finally {
-                if(image != null) {
-                    image.dispose();
+        }
+        catch(BackingStoreException ex) {
+            throw new IOException(ex);
+        }
+        
+        return sb.toString();
+    }
+    
+    private String formatBounds(Rectangle bounds) {
+        return bounds.x + "," + bounds.y + "," + bounds.width + "," + bounds.height; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+    
+    /**
+     * @return The bounds stored in the manifest or null if not valid
+     */
+    private Rectangle parseBounds(String s) {
+        if(s != null) {
+            String[] values = s.split(","); //$NON-NLS-1$
+            if(values.length == 4) {
+                try {
+                    return new Rectangle(Integer.parseInt(values[0]), Integer.parseInt(values[1]),
+                                         Integer.parseInt(values[2]), Integer.parseInt(values[3]));
+                }
+                catch(NumberFormatException ex) {
                 }
             }
         }
+        
+        return null;
+    }
+    
+    private IOException createSaveImageException(IDiagramModel dm, Throwable t) {
+        return new IOException("Error saving image for: " + dm.getName() + "\n" + //$NON-NLS-1$ //$NON-NLS-2$
+                (t.getMessage() == null ? t.toString() : t.getMessage()), t);
     }
     
     private void updateProgress() throws CancelledException {
@@ -0,0 +1,302 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.reports.html;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+import com.archimatetool.editor.ui.textrender.TextRenderer;
+import com.archimatetool.model.IArchimateModelObject;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IIdentifier;
+
+
+/**
+ * Manifest of the pages and images written to a HTML report folder, used for incremental reports.
+ *
+ * Each file is stored with the hash of its inputs. For a page this is the hash of its rendered text.
+ * For an image this is the hash of the diagram model and the objects that it references, so that an image can be skipped without rendering it.
+ *
+ * The manifest of the previous report is loaded and a new manifest is built as files are written.
+ * Files in the previous manifest that are not in the new one are orphans and are deleted.
+ *
+ * @author Phillip Beauvoir
+ */
+final class ReportManifest {
+    
+    static final String FILE_NAME = "report-manifest.properties"; //$NON-NLS-1$
+    
+    private static final String DIGEST_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+    
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+    
+    // How many levels of referenced objects outside of a diagram model are included in its hash
+    private static final int REFERENCE_DEPTH = 2;
+    
+    private File rootFolder;
+    private File manifestFile;
+    
+    private Properties oldEntries = new Properties();
+    private Properties newEntries = new Properties();
+    
+    /**
+     * @param rootFolder The report's root folder. File paths are stored relative to this.
+     * @param manifestFile The manifest file
+     */
+    ReportManifest(File rootFolder, File manifestFile) {
+        this.rootFolder = rootFolder;
+        this.manifestFile = manifestFile;
+    }
+    
+    /**
+     * Load the manifest of the previous report, if there is one
+     */
+    void load() throws IOException {
+        if(manifestFile.isFile()) {
+            try(InputStream in = new BufferedInputStream(new FileInputStream(manifestFile))) {
+                oldEntries.load(in);
+            }
+        }
+    }
+    
+    /**
+     * Save the new manifest
+     */
+    void save() throws IOException {
+        manifestFile.getParentFile().mkdirs();
+        
+        try(OutputStream out = new BufferedOutputStream(new FileOutputStream(manifestFile))) {
+            newEntries.store(out, null);
+        }
+    }
+    
+    /**
+     * @return true if file exists and was written in the previous report with the same hash
+     */
+    boolean isUnchanged(File file, String hash) {
+        return hash != null && hash.equals(getHash(oldEntries.getProperty(getKey(file)))) && file.exists();
+    }
+    
+    /**
+     * @return The data that was stored with file in the previous report, or null
+     */
+    String getData(File file) {
+        String value = oldEntries.getProperty(getKey(file));
+        
+        if(value != null) {
+            int index = value.indexOf(' ');
+            if(index != -1) {
+                return value.substring(index + 1);
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Add file to the new manifest
+     * @param hash The hash of the file's inputs. If this is null the file will be written again in the next report.
+     * @param data Any data to store with the file, or null
+     */
+    void put(File file, String hash, String data) {
+        String value = hash == null ? "-" : hash; //$NON-NLS-1$
+        if(data != null) {
+            value += " " + data; //$NON-NLS-1$
+        }
+        
+        newEntries.setProperty(getKey(file), value);
+    }
+    
+    /**
+     * Add file to the new manifest
+     * @return true if the file has to be written because it doesn't exist or its hash has changed
+     */
+    boolean update(File file, String hash) {
+        put(file, hash, null);
+        return !isUnchanged(file, hash);
+    }
+    
+    /**
+     * Delete the files that were in the previous report but are not in this one
+     */
+    void deleteOrphans() {
+        for(String key : oldEntries.stringPropertyNames()) {
+            if(!newEntries.containsKey(key)) {
+                new File(rootFolder, key).delete();
+            }
+        }
+    }
+    
+    private String getKey(File file) {
+        return rootFolder.toPath().relativize(file.toPath()).toString().replace('\\', '/');
+    }
+    
+    private String getHash(String value) {
+        if(value == null) {
+            return null;
+        }
+        
+        int index = value.indexOf(' ');
+        return index == -1 ? value : value.substring(0, index);
+    }
+    
+    // ========================================= Hashes ======================================
+    
+    /**
+     * @return The hash of some text
+     */
+    static String createHash(String text) {
+        MessageDigest md = createMessageDigest();
+        update(md, text);
+        return toHex(md.digest());
+    }
+    
+    /**
+     * Create a hash of everything that is drawn in the image of a diagram model.
+     * This is the attributes of the diagram model and its contents, and of the concepts, views and profiles that they reference.
+     *
+     * @param dm The diagram model
+     * @param settings Any other settings that change how the image is drawn, such as preferences
+     * @return The hash, or null if it can't be known because a label expression is used
+     */
+    static String createDiagramHash(IDiagramModel dm, String settings) {
+        MessageDigest md = createMessageDigest();
+        update(md, settings);
+        
+        Set<EObject> referenced = new LinkedHashSet<>();
+        
+        // The diagram model and its contents
+        if(!update(md, dm, referenced)) {
+            return null;
+        }
+        
+        for(Iterator<EObject> iter = dm.eAllContents(); iter.hasNext();) {
+            if(!update(md, iter.next(), referenced)) {
+                return null;
+            }
+        }
+        
+        // Referenced objects outside of the diagram model
+        Set<EObject> visited = new HashSet<>();
+        
+        for(int depth = 0; depth < REFERENCE_DEPTH && !referenced.isEmpty(); depth++) {
+            Set<EObject> next = new LinkedHashSet<>();
+            
+            for(EObject eObject : referenced) {
+                if(EcoreUtil.isAncestor(dm, eObject) || !visited.add(eObject)) {
+                    continue;
+                }
+                
+                // A folder's label expression is used for the labels of the objects in it
+                if(eObject instanceof IArchimateModelObject
+                        && TextRenderer.getDefault().getFormatExpressionFromAncestorFolder((IArchimateModelObject)eObject) != null) {
+                    return null;
+                }
+                
+                if(!update(md, eObject, next)) {
+                    return null;
+                }
+                
+                // Properties and features of a concept, but not the contents of another diagram model
+                if(!(eObject instanceof IDiagramModel)) {
+                    for(Iterator<EObject> iter = eObject.eAllContents(); iter.hasNext();) {
+                        if(!update(md, iter.next(), next)) {
+                            return null;
+                        }
+                    }
+                }
+            }
+            
+            referenced = next;
+        }
+        
+        return toHex(md.digest());
+    }
+    
+    /**
+     * Update the digest with the type and attribute values of eObject and the ids of the objects it references
+     * @param referenced The referenced objects are added to this
+     * @return false if eObject has a label expression
+     */
+    private static boolean update(MessageDigest md, EObject eObject, Collection<EObject> referenced) {
+        if(eObject instanceof IArchimateModelObject && TextRenderer.getDefault().hasFormatExpression((IArchimateModelObject)eObject)) {
+            return false;
+        }
+        
+        update(md, eObject.eClass().getName());
+        
+        for(EAttribute attribute : eObject.eClass().getEAllAttributes()) {
+            update(md, String.valueOf(eObject.eGet(attribute)));
+        }
+        
+        for(EReference reference : eObject.eClass().getEAllReferences()) {
+            if(reference.isContainment() || reference.isContainer() || reference.isTransient() || reference.isDerived()) {
+                continue;
+            }
+            
+            Object value = eObject.eGet(reference);
+            
+            if(value instanceof Collection<?>) {
+                for(Object o : (Collection<?>)value) {
+                    updateReference(md, (EObject)o, referenced);
+                }
+            }
+            else if(value instanceof EObject) {
+                updateReference(md, (EObject)value, referenced);
+            }
+        }
+        
+        return true;
+    }
+    
+    private static void updateReference(MessageDigest md, EObject eObject, Collection<EObject> referenced) {
+        update(md, eObject instanceof IIdentifier ? ((IIdentifier)eObject).getId() : eObject.eClass().getName());
+        referenced.add(eObject);
+    }
+    
+    private static void update(MessageDigest md, String s) {
+        md.update(s.getBytes(StandardCharsets.UTF_8));
+        md.update((byte)0); // Separator
+    }
+    
+    private static MessageDigest createMessageDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        }
+        catch(NoSuchAlgorithmException ex) {
+            // Every Java implementation is required to support SHA-256
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    private static String toHex(byte[] hash) {
+        StringBuilder sb = new StringBuilder(hash.length * 2);
+        for(byte b : hash) {
+            sb.append(HEX_CHARS[(b >> 4) & 0xF]).append(HEX_CHARS[b & 0xF]);
+        }
+        return sb.toString();
+    }
+}
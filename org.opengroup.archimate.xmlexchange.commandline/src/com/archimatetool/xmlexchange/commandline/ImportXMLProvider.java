@@ -71,6 +71,7 @@ public class ImportXMLProvider extends AbstractCommandLineProvider {
         logMessage(NLS.bind(Messages.ImportXMLProvider_5, importFile.getPath()));
         
         XMLModelImporter importer = new XMLModelImporter();
+        importer.setStreaming(true);
         IArchimateModel model = importer.createArchiMateModel(importFile);
 
         if(model == null) {
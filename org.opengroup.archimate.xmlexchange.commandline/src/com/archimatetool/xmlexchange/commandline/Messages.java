@@ -49,6 +49,24 @@ public class Messages extends NLS {
     public static String ImportXMLProvider_8;
 
     public static String ImportXMLProvider_9;
+
+    public static String ValidateXMLProvider_0;
+
+    public static String ValidateXMLProvider_1;
+
+    public static String ValidateXMLProvider_2;
+
+    public static String ValidateXMLProvider_3;
+
+    public static String ValidateXMLProvider_4;
+
+    public static String ValidateXMLProvider_5;
+
+    public static String ValidateXMLProvider_6;
+
+    public static String ValidateXMLProvider_7;
+
+    public static String ValidateXMLProvider_8;
     static {
         // initialize resource bundle
         NLS.initializeMessages(BUNDLE_NAME, Messages.class);
@@ -0,0 +1,123 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.xmlexchange.commandline;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.eclipse.osgi.util.NLS;
+import org.opengroup.archimate.xmlexchange.XMLValidator;
+
+import com.archimatetool.commandline.AbstractCommandLineProvider;
+import com.archimatetool.editor.utils.StringUtils;
+
+/**
+ * Command Line interface for XML Validation
+ * 
+ * Typical usage - (should be all on one line):
+ * 
+ * Archi -consoleLog -nosplash -application com.archimatetool.commandline.app
+   --xmlexchange.validate "path/folder"
+ * 
+ * If the path is a folder all of the *.xml files in it are validated concurrently.
+ * 
+ * @author Phillip Beauvoir
+ */
+public class ValidateXMLProvider extends AbstractCommandLineProvider {
+
+    static final String PREFIX = Messages.ValidateXMLProvider_0;
+    
+    static final String OPTION_VALIDATE_XML = "xmlexchange.validate"; //$NON-NLS-1$
+    
+    public ValidateXMLProvider() {
+    }
+    
+    @Override
+    public void run(CommandLine commandLine) throws Exception {
+        if(!hasCorrectOptions(commandLine)) {
+            return;
+        }
+        
+        // File or folder
+        String value = commandLine.getOptionValue(OPTION_VALIDATE_XML);
+        if(!StringUtils.isSet(value)) {
+            logError(Messages.ValidateXMLProvider_1);
+            return;
+        }
+        File file = new File(value);
+        if(!file.exists()) {
+            logError(NLS.bind(Messages.ValidateXMLProvider_2, value));
+            return;
+        }
+        
+        List<File> files = file.isDirectory() ? getXMLFiles(file) : List.of(file);
+        
+        logMessage(NLS.bind(Messages.ValidateXMLProvider_3, files.size(), file.getPath()));
+        
+        XMLValidator validator = new XMLValidator();
+        Map<File, Exception> errors = validator.validateXML(files);
+        
+        for(Entry<File, Exception> entry : errors.entrySet()) {
+            logError(NLS.bind(Messages.ValidateXMLProvider_4, entry.getKey().getPath(), entry.getValue().getMessage()));
+        }
+        
+        if(!errors.isEmpty()) {
+            throw new IOException(NLS.bind(Messages.ValidateXMLProvider_5, errors.size(), files.size()));
+        }
+        
+        logMessage(Messages.ValidateXMLProvider_6);
+    }
+    
+    /**
+     * @return The *.xml files in folder sorted by name
+     */
+    private List<File> getXMLFiles(File folder) {
+        File[] files = folder.listFiles((dir, name) -> name.toLowerCase().endsWith(".xml") && new File(dir, name).isFile()); //$NON-NLS-1$
+        
+        if(files == null) {
+            return new ArrayList<>();
+        }
+        
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+    
+    @Override
+    protected String getLogPrefix() {
+        return PREFIX;
+    }
+    
+    @Override
+    public int getPriority() {
+        return PRIORITY_IMPORT;
+    }
+    
+    @Override
+    public Options getOptions() {
+        Options options = new Options();
+        
+        Option option = Option.builder()
+                .longOpt(OPTION_VALIDATE_XML)
+                .hasArg().argName(Messages.ValidateXMLProvider_7)
+                .desc(Messages.ValidateXMLProvider_8)
+                .build();
+        options.addOption(option);
+        
+        return options;
+    }
+    
+    private boolean hasCorrectOptions(CommandLine commandLine) {
+        return commandLine.hasOption(OPTION_VALIDATE_XML);
+    }
+}
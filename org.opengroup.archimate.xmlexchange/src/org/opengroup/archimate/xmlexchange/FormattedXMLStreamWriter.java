@@ -0,0 +1,558 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+
+/**
+ * An XMLStreamWriter that writes the same output as JDOM's XMLOutputter with Format.getPrettyFormat()
+ * so that XMLModelExporter writes the same files as it did when it used JDOM.
+ *
+ * That is, an indent of two spaces, CRLF line endings, "&lt;tag /&gt;" for empty elements,
+ * text trimmed of leading and trailing white space, and JDOM's escaping of text and attribute values.
+ *
+ * An element can have child elements or text but not both.
+ * Namespaces are not repaired, they have to be declared with writeNamespace() or writeDefaultNamespace().
+ * Declarations are written in the order given. JDOM writes the element's namespace first and then the others in prefix order.
+ *
+ * @author Phillip Beauvoir
+ */
+@SuppressWarnings("nls")
+class FormattedXMLStreamWriter implements XMLStreamWriter {
+    
+    static final String INDENT = "  ";
+    static final String LINE_SEPARATOR = "\r\n";
+    
+    /**
+     * An open element
+     */
+    private static class Frame {
+        String qName;
+        boolean hasChildren;
+        StringBuilder text;
+        
+        Frame(String qName) {
+            this.qName = qName;
+        }
+    }
+    
+    private Writer fWriter;
+    
+    private Deque<Frame> fFrames = new ArrayDeque<>();
+    
+    // The start tag of the current element is open for attributes
+    private boolean fStartTagOpen;
+    
+    // The current element was started with writeEmptyElement()
+    private boolean fEmptyElement;
+    
+    private boolean fHasRootElement;
+    
+    // Namespace URIs mapped to prefixes
+    private Map<String, String> fPrefixes = new HashMap<>();
+    
+    private NamespaceContext fNamespaceContext;
+    
+    FormattedXMLStreamWriter(Writer writer) {
+        fWriter = writer;
+    }
+    
+    @Override
+    public void writeStartDocument() throws XMLStreamException {
+        writeStartDocument("UTF-8", "1.0");
+    }
+    
+    @Override
+    public void writeStartDocument(String version) throws XMLStreamException {
+        writeStartDocument("UTF-8", version);
+    }
+    
+    @Override
+    public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+        if(fHasRootElement) {
+            throw new XMLStreamException("The document has already started");
+        }
+        
+        write("<?xml version=\"" + version + "\" encoding=\"" + encoding + "\"?>");
+        write(LINE_SEPARATOR);
+    }
+    
+    @Override
+    public void writeEndDocument() throws XMLStreamException {
+        while(!fFrames.isEmpty()) {
+            writeEndElement();
+        }
+        
+        if(fHasRootElement) {
+            write(LINE_SEPARATOR);
+        }
+    }
+    
+    @Override
+    public void writeStartElement(String localName) throws XMLStreamException {
+        writeStartElement("", localName);
+    }
+    
+    @Override
+    public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+        writeStartElement(getBoundPrefix(namespaceURI), localName, namespaceURI);
+    }
+    
+    @Override
+    public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+        startChild();
+        
+        String qName = getQualifiedName(prefix, localName);
+        write("<");
+        write(qName);
+        
+        fFrames.push(new Frame(qName));
+        fStartTagOpen = true;
+        fHasRootElement = true;
+    }
+    
+    @Override
+    public void writeEmptyElement(String localName) throws XMLStreamException {
+        writeStartElement(localName);
+        fEmptyElement = true;
+    }
+    
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+        writeStartElement(namespaceURI, localName);
+        fEmptyElement = true;
+    }
+    
+    @Override
+    public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+        writeStartElement(prefix, localName, namespaceURI);
+        fEmptyElement = true;
+    }
+    
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        endEmptyElement();
+        
+        Frame frame = fFrames.poll();
+        if(frame == null) {
+            throw new XMLStreamException("No element to end");
+        }
+        
+        if(frame.hasChildren) {
+            writeNewLine();
+            write("</");
+            write(frame.qName);
+            write(">");
+        }
+        else {
+            String text = frame.text == null ? "" : trim(frame.text);
+            
+            if(text.isEmpty()) {
+                write(" />");
+            }
+            else {
+                write(">");
+                writeEscapedText(text);
+                write("</");
+                write(frame.qName);
+                write(">");
+            }
+        }
+        
+        fStartTagOpen = false;
+    }
+    
+    @Override
+    public void writeAttribute(String localName, String value) throws XMLStreamException {
+        writeAttribute("", "", localName, value);
+    }
+    
+    @Override
+    public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException {
+        String prefix = XMLConstants.XML_NS_URI.equals(namespaceURI) ? XMLConstants.XML_NS_PREFIX : getBoundPrefix(namespaceURI);
+        writeAttribute(prefix, namespaceURI, localName, value);
+    }
+    
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI, String localName, String value) throws XMLStreamException {
+        if(!fStartTagOpen) {
+            throw new XMLStreamException("Attribute not written after a start element: " + localName);
+        }
+        
+        write(" ");
+        write(getQualifiedName(prefix, localName));
+        write("=\"");
+        writeEscapedAttribute(value == null ? "" : value);
+        write("\"");
+    }
+    
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+        if(prefix == null || prefix.isEmpty() || XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+            writeDefaultNamespace(namespaceURI);
+            return;
+        }
+        
+        setPrefix(prefix, namespaceURI);
+        writeAttribute(XMLConstants.XMLNS_ATTRIBUTE, XMLConstants.XMLNS_ATTRIBUTE_NS_URI, prefix, namespaceURI);
+    }
+    
+    @Override
+    public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+        setDefaultNamespace(namespaceURI);
+        writeAttribute("", XMLConstants.XMLNS_ATTRIBUTE_NS_URI, XMLConstants.XMLNS_ATTRIBUTE, namespaceURI);
+    }
+    
+    @Override
+    public void writeCharacters(String text) throws XMLStreamException {
+        if(text != null) {
+            writeCharacters(text.toCharArray(), 0, text.length());
+        }
+    }
+    
+    @Override
+    public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+        endEmptyElement();
+        
+        Frame frame = fFrames.peek();
+        if(frame == null) {
+            throw new XMLStreamException("Text not written in an element");
+        }
+        
+        if(frame.hasChildren) {
+            // White space between elements is formatted out
+            for(int i = start; i < start + len; i++) {
+                if(!isXMLWhitespace(text[i])) {
+                    throw new XMLStreamException("Text not written with child elements in " + frame.qName);
+                }
+            }
+            return;
+        }
+        
+        if(frame.text == null) {
+            frame.text = new StringBuilder(len);
+        }
+        frame.text.append(text, start, len);
+    }
+    
+    @Override
+    public void writeComment(String data) throws XMLStreamException {
+        startChild();
+        write("<!--");
+        write(data);
+        write("-->");
+    }
+    
+    @Override
+    public void writeProcessingInstruction(String target) throws XMLStreamException {
+        writeProcessingInstruction(target, "");
+    }
+    
+    @Override
+    public void writeProcessingInstruction(String target, String data) throws XMLStreamException {
+        startChild();
+        write("<?");
+        write(target);
+        if(data != null && !data.isEmpty()) {
+            write(" ");
+            write(data);
+        }
+        write("?>");
+    }
+    
+    @Override
+    public void writeCData(String data) throws XMLStreamException {
+        throw new UnsupportedOperationException("CDATA is not supported");
+    }
+    
+    @Override
+    public void writeDTD(String dtd) throws XMLStreamException {
+        throw new UnsupportedOperationException("DTD is not supported");
+    }
+    
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+        throw new UnsupportedOperationException("Entity references are not supported");
+    }
+    
+    @Override
+    public String getPrefix(String uri) throws XMLStreamException {
+        String prefix = fPrefixes.get(uri);
+        if(prefix == null && fNamespaceContext != null) {
+            prefix = fNamespaceContext.getPrefix(uri);
+        }
+        return prefix;
+    }
+    
+    @Override
+    public void setPrefix(String prefix, String uri) throws XMLStreamException {
+        fPrefixes.put(uri, prefix);
+    }
+    
+    @Override
+    public void setDefaultNamespace(String uri) throws XMLStreamException {
+        fPrefixes.put(uri, XMLConstants.DEFAULT_NS_PREFIX);
+    }
+    
+    @Override
+    public void setNamespaceContext(NamespaceContext context) throws XMLStreamException {
+        fNamespaceContext = context;
+    }
+    
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return new NamespaceContext() {
+            @Override
+            public String getNamespaceURI(String prefix) {
+                for(Entry<String, String> entry : fPrefixes.entrySet()) {
+                    if(entry.getValue().equals(prefix)) {
+                        return entry.getKey();
+                    }
+                }
+                return fNamespaceContext != null ? fNamespaceContext.getNamespaceURI(prefix) : XMLConstants.NULL_NS_URI;
+            }
+            
+            @Override
+            public String getPrefix(String namespaceURI) {
+                String prefix = fPrefixes.get(namespaceURI);
+                return prefix == null && fNamespaceContext != null ? fNamespaceContext.getPrefix(namespaceURI) : prefix;
+            }
+            
+            @Override
+            public Iterator<String> getPrefixes(String namespaceURI) {
+                String prefix = getPrefix(namespaceURI);
+                return prefix == null ? Collections.emptyIterator() : Collections.singleton(prefix).iterator();
+            }
+        };
+    }
+    
+    @Override
+    public Object getProperty(String name) throws IllegalArgumentException {
+        throw new IllegalArgumentException("Property not supported: " + name);
+    }
+    
+    @Override
+    public void flush() throws XMLStreamException {
+        try {
+            fWriter.flush();
+        }
+        catch(IOException ex) {
+            throw new XMLStreamException(ex);
+        }
+    }
+    
+    /**
+     * Flushes but does not close the underlying Writer, as with other XMLStreamWriters
+     */
+    @Override
+    public void close() throws XMLStreamException {
+        flush();
+    }
+    
+    // ========================================= Formatting ======================================
+    
+    /**
+     * Start a child node of the current element on a new line
+     */
+    private void startChild() throws XMLStreamException {
+        endEmptyElement();
+        
+        Frame parent = fFrames.peek();
+        
+        if(parent == null) {
+            if(fHasRootElement) {
+                throw new XMLStreamException("The document already has a root element");
+            }
+            return;
+        }
+        
+        if(!parent.hasChildren) {
+            if(parent.text != null && !trim(parent.text).isEmpty()) {
+                throw new XMLStreamException("Child elements not written with text in " + parent.qName);
+            }
+            
+            parent.hasChildren = true;
+            parent.text = null;
+            write(">");
+        }
+        
+        writeNewLine();
+        fStartTagOpen = false;
+    }
+    
+    private void endEmptyElement() throws XMLStreamException {
+        if(fEmptyElement) {
+            fEmptyElement = false;
+            writeEndElement();
+        }
+    }
+    
+    /**
+     * Write a new line and the indent of the current element's children
+     */
+    private void writeNewLine() throws XMLStreamException {
+        write(LINE_SEPARATOR);
+        for(int i = 0; i < fFrames.size(); i++) {
+            write(INDENT);
+        }
+    }
+    
+    private String getBoundPrefix(String namespaceURI) throws XMLStreamException {
+        if(namespaceURI == null || namespaceURI.isEmpty()) {
+            return "";
+        }
+        
+        String prefix = getPrefix(namespaceURI);
+        if(prefix == null) {
+            throw new XMLStreamException("Namespace not bound to a prefix: " + namespaceURI);
+        }
+        return prefix;
+    }
+    
+    private String getQualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+    
+    /**
+     * Trim XML white space from both ends of text as in Format.trimBoth()
+     */
+    static String trim(CharSequence text) {
+        int left = 0;
+        int right = text.length();
+        
+        while(left < right && isXMLWhitespace(text.charAt(left))) {
+            left++;
+        }
+        while(right > left && isXMLWhitespace(text.charAt(right - 1))) {
+            right--;
+        }
+        
+        return text.subSequence(left, right).toString();
+    }
+    
+    private static boolean isXMLWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r';
+    }
+    
+    /**
+     * Escape text as in Format.escapeText() with the line separator
+     */
+    private void writeEscapedText(String text) throws XMLStreamException {
+        StringBuilder sb = new StringBuilder(text.length() + 16);
+        
+        for(int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch(c) {
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '\r':
+                    sb.append("&#xD;");
+                    break;
+                case '\n':
+                    sb.append(LINE_SEPARATOR);
+                    break;
+                default:
+                    i = appendChar(text, i, sb);
+                    break;
+            }
+        }
+        
+        write(sb.toString());
+    }
+    
+    /**
+     * Escape an attribute value as in Format.escapeAttribute()
+     */
+    private void writeEscapedAttribute(String value) throws XMLStreamException {
+        StringBuilder sb = new StringBuilder(value.length() + 16);
+        
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch(c) {
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '\r':
+                    sb.append("&#xD;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                case '\t':
+                    sb.append("&#x9;");
+                    break;
+                case '\n':
+                    sb.append("&#xA;");
+                    break;
+                default:
+                    i = appendChar(value, i, sb);
+                    break;
+            }
+        }
+        
+        write(sb.toString());
+    }
+    
+    /**
+     * Append the character at index i, writing a surrogate pair as a character reference.
+     * Characters that are not allowed in XML are an error, as they are when setting JDOM content.
+     * @return The index of the last character used
+     */
+    private int appendChar(String s, int i, StringBuilder sb) throws XMLStreamException {
+        char c = s.charAt(i);
+        
+        if(Character.isHighSurrogate(c)) {
+            if(i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                sb.append("&#x").append(Integer.toHexString(Character.toCodePoint(c, s.charAt(i + 1)))).append(';');
+                return i + 1;
+            }
+            throw new XMLStreamException("Illegal surrogate pair in: " + s);
+        }
+        
+        if((c < 0x20 && c != '\t' && c != '\n' && c != '\r') || Character.isLowSurrogate(c) || c == 0xFFFE || c == 0xFFFF) {
+            throw new XMLStreamException("Illegal XML character 0x" + Integer.toHexString(c) + " in: " + s);
+        }
+        
+        sb.append(c);
+        return i;
+    }
+    
+    private void write(String s) throws XMLStreamException {
+        try {
+            fWriter.write(s);
+        }
+        catch(IOException ex) {
+            throw new XMLStreamException(ex);
+        }
+    }
+}
@@ -46,6 +46,7 @@ public class XMLExchangeImportProvider implements IModelImporter, IXMLExchangeGl
                     validator.validateXML(file);
                     
                     XMLModelImporter xmlModelImporter = new XMLModelImporter();
+                    xmlModelImporter.setStreaming(true);
                     IArchimateModel model = xmlModelImporter.createArchiMateModel(file);
                     
                     if(model != null) {
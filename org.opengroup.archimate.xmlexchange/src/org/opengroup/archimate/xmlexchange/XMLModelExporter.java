@@ -5,8 +5,13 @@
  */
 package org.opengroup.archimate.xmlexchange;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -14,16 +19,16 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.eclipse.draw2d.geometry.Point;
-import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.FontData;
 import org.eclipse.swt.graphics.RGB;
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.Namespace;
 
 import com.archimatetool.editor.model.DiagramModelUtils;
 import com.archimatetool.editor.ui.ColorFactory;
@@ -39,6 +44,7 @@ import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IArchimateRelationship;
 import com.archimatetool.model.IAssociationRelationship;
 import com.archimatetool.model.IBounds;
+import com.archimatetool.model.IConnectable;
 import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.IDiagramModelArchimateConnection;
 import com.archimatetool.model.IDiagramModelArchimateObject;
@@ -57,10 +63,12 @@ import com.archimatetool.model.IProperty;
 import com.archimatetool.model.util.UUIDFactory;
 
 
-
 /**
- * Export Archi Model to Open Exchange XML Format using JDOM
- * 
+ * Export Archi Model to Open Exchange XML Format using an XMLStreamWriter
+ *
+ * Elements, relationships, organizations and views are written to the file as they are read from the model
+ * so that no Document of the whole model is built in memory.
+ *
  * @author Phillip Beauvoir
  */
 public class XMLModelExporter implements IXMLExchangeGlobals {
@@ -70,7 +78,7 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     
     // Properties
     private Map<String, String> fPropertyDefsList;
-
+    
     /**
      * A map of DC metadata element tags mapped to values
      */
@@ -85,37 +93,53 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
      * Whether to copy XSD files
      */
     private boolean fIncludeXSD;
-
+    
     /**
      * The language code
      */
     private String fLanguageCode;
-
+    
+    private XMLStreamWriter fWriter;
+    
     public void exportModel(IArchimateModel model, File outputFile) throws IOException {
-        fModel = model;
-        
-        // JDOM Document
-        Document doc = createDocument();
-        
-        // Root Element
-        Element rootElement = createRootElement(doc);
-
-        // Persist model
-        writeModel(rootElement);
+        // Create parent folder if it doesn't exist
+        File parent = outputFile.getParentFile();
+        if(parent != null) {
+            parent.mkdirs();
+        }
         
-        // Save
-        JDOMUtils.write2XMLFile(doc, outputFile);
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8))) {
+            exportModel(model, writer);
+        }
         
         // XSD
         if(fIncludeXSD) {
-            File file1 = new File(outputFile.getParentFile(), XMLExchangePlugin.ARCHIMATE3_MODEL_XSD);
-            XMLExchangePlugin.INSTANCE.copyXSDFile(XMLExchangePlugin.ARCHIMATE3_MODEL_XSD, file1);
-            
-            File file2 = new File(outputFile.getParentFile(), XMLExchangePlugin.ARCHIMATE3_VIEW_XSD);
-            XMLExchangePlugin.INSTANCE.copyXSDFile(XMLExchangePlugin.ARCHIMATE3_VIEW_XSD, file2);
-            
-            File file3 = new File(outputFile.getParentFile(), XMLExchangePlugin.ARCHIMATE3_DIAGRAM_XSD);
-            XMLExchangePlugin.INSTANCE.copyXSDFile(XMLExchangePlugin.ARCHIMATE3_DIAGRAM_XSD, file3);
+            copyXSDFiles(outputFile);
+        }
+    }
+    
+    /**
+     * Write the model to a Writer. The Writer is not closed.
+     */
+    void exportModel(IArchimateModel model, Writer writer) throws IOException {
+        fModel = model;
+        
+        // Gather all properties now as they are referenced before their definitions are written
+        fPropertyDefsList = getAllUniquePropertyKeys(model);
+        
+        try {
+            fWriter = new FormattedXMLStreamWriter(writer);
+            fWriter.writeStartDocument("UTF-8", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
+            writeModel();
+            fWriter.writeEndDocument();
+            fWriter.close();
+        }
+        catch(XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+        finally {
+            fWriter = null;
+            fPropertyDefsList = null;
         }
     }
     
@@ -127,18 +151,6 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         fMetadata = metadata;
     }
     
-    boolean hasMetadata() {
-        if(fMetadata != null) {
-            for(String value : fMetadata.values()) {
-                if(StringUtils.isSet(value)) {
-                    return true;
-                }
-            }
-        }
-        
-        return false;
-    }
-    
     /**
      * Set whether to save organisation of folders
      * @param set
@@ -162,90 +174,77 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     public void setLanguageCode(String languageCode) {
         fLanguageCode = languageCode;
     }
-
-    /**
-     * @return A JDOM Document
-     */
-    Document createDocument() {
-        return new Document(); 
-    }
     
     /**
-     * @param doc
-     * @return The Root JDOM Element
+     * Write the model
      */
-    Element createRootElement(Document doc) {
-        Element rootElement = new Element(ELEMENT_MODEL, ARCHIMATE3_NAMESPACE);
-        doc.setRootElement(rootElement);
-
-        rootElement.addNamespaceDeclaration(JDOMUtils.XSI_Namespace);
-        // rootElement.addNamespaceDeclaration(ARCHIMATE3_NAMESPACE_EMBEDDED); // Don't include this
+    private void writeModel() throws XMLStreamException {
+        boolean hasMetadata = hasMetadata(fMetadata);
         
-        // DC Namespace
-        if(hasMetadata()) {
-            rootElement.addNamespaceDeclaration(DC_NAMESPACE);
+        fWriter.setDefaultNamespace(ARCHIMATE3_NAMESPACE.getURI());
+        writeStartElement(ELEMENT_MODEL);
+        
+        // Namespaces in the same order as JDOM
+        fWriter.writeDefaultNamespace(ARCHIMATE3_NAMESPACE.getURI());
+        if(hasMetadata) {
+            fWriter.writeNamespace(DC_NAMESPACE.getPrefix(), DC_NAMESPACE.getURI());
         }
-
-        /* 
+        fWriter.writeNamespace(XSI_NAMESPACE.getPrefix(), XSI_NAMESPACE.getURI());
+        
+        /*
          * Add Schema Location Attribute which is constructed from Target Namespaces and file names of Schemas
          */
         StringBuffer schemaLocationURI = new StringBuffer();
         
         // Archimate Schema Location
-        schemaLocationURI.append(rootElement.getNamespace().getURI());
+        schemaLocationURI.append(ARCHIMATE3_NAMESPACE.getURI());
         schemaLocationURI.append(" ");  //$NON-NLS-1$
         schemaLocationURI.append(ARCHIMATE3_SCHEMA_LOCATION);
         
         // DC Schema Location
-        if(hasMetadata()) {
+        if(hasMetadata) {
             schemaLocationURI.append(" ");  //$NON-NLS-1$
             schemaLocationURI.append(DC_NAMESPACE.getURI());
             schemaLocationURI.append(" ");  //$NON-NLS-1$
             schemaLocationURI.append(DC_SCHEMA_LOCATION);
         }
         
-        rootElement.setAttribute(JDOMUtils.XSI_SchemaLocation, schemaLocationURI.toString(), JDOMUtils.XSI_Namespace);
-
-        return rootElement;
-    }
-    
-    /**
-     * Write the model
-     */
-    private void writeModel(Element rootElement) {
-        rootElement.setAttribute(ATTRIBUTE_IDENTIFIER, checkID(fModel));
+        fWriter.writeAttribute(XSI_NAMESPACE.getURI(), JDOMUtils.XSI_SchemaLocation, schemaLocationURI.toString());
         
-        // Gather all properties now
-        fPropertyDefsList = getAllUniquePropertyKeysForModel();
+        fWriter.writeAttribute(ATTRIBUTE_IDENTIFIER, checkID(fModel));
         
         // Name
-        writeTextToElement(fModel.getName(), rootElement, ELEMENT_NAME, true);
+        writeTextElement(fModel.getName(), ELEMENT_NAME, true);
         
         // Documentation (Purpose) - optional
-        writeTextToElement(fModel.getPurpose(), rootElement, ELEMENT_DOCUMENTATION, false);
-
+        writeTextElement(fModel.getPurpose(), ELEMENT_DOCUMENTATION, false);
+        
         // Model Properties
-        writeProperties(fModel, rootElement);
+        writeProperties(fModel);
         
         // Metadata
-        writeMetadata(rootElement);
+        if(hasMetadata) {
+            writeMetadata();
+        }
         
         // Model Elements
-        writeModelElements(rootElement);
+        writeModelElements();
         
         // Relationships
-        writeModelRelationships(rootElement);
+        writeModelRelationships();
         
         // Organizations
         if(fDoSaveOrganisation) {
-            writeOrganizations(rootElement);
+            writeOrganizations();
         }
         
         // Properties Definitions
-        writeModelPropertiesDefinitions(rootElement);
+        writeModelPropertiesDefinitions();
         
         // Views
-        writeViews(rootElement);
+        writeViews();
+        
+        fWriter.writeEndElement();
     }
     
     // ========================================= Metadata ======================================
@@ -253,256 +252,206 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     /**
      * Write any DC Metadata
      */
-    Element writeMetadata(Element rootElement) {
-        if(!hasMetadata()) {
-            return null;
-        }
-        
-        Element mdElement = new Element(ELEMENT_METADATA, ARCHIMATE3_NAMESPACE);
-        rootElement.addContent(mdElement);
+    private void writeMetadata() throws XMLStreamException {
+        writeStartElement(ELEMENT_METADATA);
         
-        Element schemaElement = new Element(ELEMENT_SCHEMA, ARCHIMATE3_NAMESPACE);
-        schemaElement.setText("Dublin Core"); //$NON-NLS-1$
-        mdElement.addContent(schemaElement);
+        writeStartElement(ELEMENT_SCHEMA);
+        fWriter.writeCharacters("Dublin Core"); //$NON-NLS-1$
+        fWriter.writeEndElement();
         
-        Element schemaVersionElement = new Element(ELEMENT_SCHEMAVERSION, ARCHIMATE3_NAMESPACE);
-        schemaVersionElement.setText("1.1"); //$NON-NLS-1$
-        mdElement.addContent(schemaVersionElement);
+        writeStartElement(ELEMENT_SCHEMAVERSION);
+        fWriter.writeCharacters("1.1"); //$NON-NLS-1$
+        fWriter.writeEndElement();
         
         for(Entry<String, String> entry : fMetadata.entrySet()) {
             if(StringUtils.isSet(entry.getKey()) && StringUtils.isSet(entry.getValue())) {
-                Element element = new Element(entry.getKey(), DC_NAMESPACE);
-                element.setText(entry.getValue());
-                mdElement.addContent(element);
+                fWriter.writeStartElement(DC_NAMESPACE.getURI(), entry.getKey());
+                fWriter.writeCharacters(entry.getValue());
+                fWriter.writeEndElement();
             }
         }
         
-        return null;
+        fWriter.writeEndElement();
     }
     
     // ========================================= Model Elements ======================================
-
+    
     /**
      * Write the elements from the layers and extensions
      */
-    Element writeModelElements(Element rootElement) {
-        Element elementsElement = new Element(ELEMENT_ELEMENTS, ARCHIMATE3_NAMESPACE);
+    private void writeModelElements() throws XMLStreamException {
+        List<IArchimateElement> elements = new ArrayList<>();
         
-        writeModelElementsFolder(fModel.getFolder(FolderType.STRATEGY), elementsElement);
-        writeModelElementsFolder(fModel.getFolder(FolderType.BUSINESS), elementsElement);
-        writeModelElementsFolder(fModel.getFolder(FolderType.APPLICATION), elementsElement);
-        writeModelElementsFolder(fModel.getFolder(FolderType.TECHNOLOGY), elementsElement);
-        writeModelElementsFolder(fModel.getFolder(FolderType.MOTIVATION), elementsElement);
-        writeModelElementsFolder(fModel.getFolder(FolderType.IMPLEMENTATION_MIGRATION), elementsElement);
-        writeModelElementsFolder(fModel.getFolder(FolderType.OTHER), elementsElement);
+        getElements(fModel.getFolder(FolderType.STRATEGY), IArchimateElement.class, elements);
+        getElements(fModel.getFolder(FolderType.BUSINESS), IArchimateElement.class, elements);
+        getElements(fModel.getFolder(FolderType.APPLICATION), IArchimateElement.class, elements);
+        getElements(fModel.getFolder(FolderType.TECHNOLOGY), IArchimateElement.class, elements);
+        getElements(fModel.getFolder(FolderType.MOTIVATION), IArchimateElement.class, elements);
+        getElements(fModel.getFolder(FolderType.IMPLEMENTATION_MIGRATION), IArchimateElement.class, elements);
+        getElements(fModel.getFolder(FolderType.OTHER), IArchimateElement.class, elements);
         
         // If there are elements
-        if(!elementsElement.getChildren().isEmpty()) {
-            rootElement.addContent(elementsElement);
-            return elementsElement;
-        }
-        
-        // No children, so return null
-        return null;
-    }
-    
-    /**
-     * Write the elements from an Archi folder
-     */
-    private void writeModelElementsFolder(IFolder folder, Element elementsElement) {
-        if(folder == null) {
+        if(elements.isEmpty()) {
             return;
         }
-
-        List<EObject> list = new ArrayList<EObject>();
-        getElements(folder, list);
-        for(EObject eObject : list) {
-            if(eObject instanceof IArchimateElement) {
-                writeModelElement((IArchimateElement)eObject, elementsElement);
-             }
+        
+        writeStartElement(ELEMENT_ELEMENTS);
+        
+        for(IArchimateElement element : elements) {
+            writeModelElement(element);
         }
+        
+        fWriter.writeEndElement();
     }
     
     /**
      * Write an element
      */
-    Element writeModelElement(IArchimateElement element, Element elementsElement) { 
-        Element elementElement = new Element(ELEMENT_ELEMENT, ARCHIMATE3_NAMESPACE);
-        elementsElement.addContent(elementElement);
+    private void writeModelElement(IArchimateElement element) throws XMLStreamException {
+        writeStartElement(ELEMENT_ELEMENT);
         
         // Identifier
-        elementElement.setAttribute(ATTRIBUTE_IDENTIFIER, checkID(element));
+        fWriter.writeAttribute(ATTRIBUTE_IDENTIFIER, checkID(element));
         
         // Type
-        elementElement.setAttribute(ATTRIBUTE_TYPE, XMLTypeMapper.getArchimateConceptName(element), XSI_NAMESPACE);
+        writeTypeAttribute(XMLTypeMapper.getArchimateConceptName(element));
         
         // Name
-        writeTextToElement(element.getName(), elementElement, ELEMENT_NAME, true);
+        writeTextElement(element.getName(), ELEMENT_NAME, true);
         
         // Documentation - optional
-        writeTextToElement(element.getDocumentation(), elementElement, ELEMENT_DOCUMENTATION, false);
+        writeTextElement(element.getDocumentation(), ELEMENT_DOCUMENTATION, false);
         
         // Properties
-        writeProperties(element, elementElement);
+        writeProperties(element);
         
-        return elementElement;
+        fWriter.writeEndElement();
     }
-
+    
     /**
-     * Return all elements in an Archi folder and its sub-folders
+     * Add the objects of a type in an Archi folder and its sub-folders to a list
      */
-    private void getElements(IFolder folder, List<EObject> list) {
+    private <T> void getElements(IFolder folder, Class<T> type, List<T> list) {
         if(folder == null) {
             return;
         }
         
         for(EObject object : folder.getElements()) {
-            list.add(object);
+            if(type.isInstance(object)) {
+                list.add(type.cast(object));
+            }
         }
         
         for(IFolder f : folder.getFolders()) {
-            getElements(f, list);
+            getElements(f, type, list);
         }
     }
     
     // ========================================= Model Relationships ======================================
-
+    
     /**
      * Write the relationships
      */
-    Element writeModelRelationships(Element rootElement) {
-        Element relationshipsElement = new Element(ELEMENT_RELATIONSHIPS, ARCHIMATE3_NAMESPACE);
-        
-        writeModelRelationshipsFolder(fModel.getFolder(FolderType.RELATIONS), relationshipsElement);
+    private void writeModelRelationships() throws XMLStreamException {
+        List<IArchimateRelationship> relationships = new ArrayList<>();
+        getElements(fModel.getFolder(FolderType.RELATIONS), IArchimateRelationship.class, relationships);
         
         // If there are relationships
-        if(!relationshipsElement.getChildren().isEmpty()) {
-            rootElement.addContent(relationshipsElement);
-            return relationshipsElement;
-        }
-        
-        // No children, so return null
-        return null;
-    }
-    
-    /**
-     * Write the relationships from an Archi folder
-     */
-    private void writeModelRelationshipsFolder(IFolder folder, Element relationshipsElement) {
-        if(folder == null) {
+        if(relationships.isEmpty()) {
             return;
         }
-
-        List<EObject> list = new ArrayList<EObject>();
-        getElements(folder, list);
-        for(EObject eObject : list) {
-            if(eObject instanceof IArchimateRelationship) {
-                writeModelRelationship((IArchimateRelationship)eObject, relationshipsElement);
-             }
+        
+        writeStartElement(ELEMENT_RELATIONSHIPS);
+        
+        for(IArchimateRelationship relationship : relationships) {
+            writeModelRelationship(relationship);
         }
+        
+        fWriter.writeEndElement();
     }
-
+    
     /**
      * Write a relationship
      */
-    Element writeModelRelationship(IArchimateRelationship relationship, Element relationshipsElement) { 
-        Element relationshipElement = new Element(ELEMENT_RELATIONSHIP, ARCHIMATE3_NAMESPACE);
-        relationshipsElement.addContent(relationshipElement);
+    private void writeModelRelationship(IArchimateRelationship relationship) throws XMLStreamException {
+        writeStartElement(ELEMENT_RELATIONSHIP);
         
         // Identifier
-        relationshipElement.setAttribute(ATTRIBUTE_IDENTIFIER, checkID(relationship));
+        fWriter.writeAttribute(ATTRIBUTE_IDENTIFIER, checkID(relationship));
         
         // Source ID
-        relationshipElement.setAttribute(ATTRIBUTE_SOURCE, checkID(relationship.getSource()));
+        fWriter.writeAttribute(ATTRIBUTE_SOURCE, checkID(relationship.getSource()));
         
         // Target ID
-        relationshipElement.setAttribute(ATTRIBUTE_TARGET, checkID(relationship.getTarget()));
-
+        fWriter.writeAttribute(ATTRIBUTE_TARGET, checkID(relationship.getTarget()));
+        
         // Type
-        relationshipElement.setAttribute(ATTRIBUTE_TYPE, XMLTypeMapper.getArchimateConceptName(relationship), JDOMUtils.XSI_Namespace);
+        writeTypeAttribute(XMLTypeMapper.getArchimateConceptName(relationship));
         
         // Influence Modifier/Strength
         if(relationship.eClass() == IArchimatePackage.eINSTANCE.getInfluenceRelationship()) {
             String strength = ((IInfluenceRelationship)relationship).getStrength();
             if(hasSomeText(strength)) {
-                relationshipElement.setAttribute(ATTRIBUTE_INFLUENCE_MODIFIER, strength);
+                fWriter.writeAttribute(ATTRIBUTE_INFLUENCE_MODIFIER, strength);
             }
         }
         // Access direction
         else if(relationship.eClass() == IArchimatePackage.eINSTANCE.getAccessRelationship()) {
             int accessType = ((IAccessRelationship)relationship).getAccessType();
-            switch(accessType) {
-                case IAccessRelationship.READ_ACCESS:
-                    relationshipElement.setAttribute(ATTRIBUTE_ACCESS_TYPE, ACCESS_TYPE_READ);
-                    break;
-
-                case IAccessRelationship.READ_WRITE_ACCESS:
-                    relationshipElement.setAttribute(ATTRIBUTE_ACCESS_TYPE, ACCESS_TYPE_READ_WRITE);
-                    break;
-
-                case IAccessRelationship.UNSPECIFIED_ACCESS:
-                    relationshipElement.setAttribute(ATTRIBUTE_ACCESS_TYPE, ACCESS_TYPE_ACCESS);
-                    break;
-
-                default:
-                    relationshipElement.setAttribute(ATTRIBUTE_ACCESS_TYPE, ACCESS_TYPE_WRITE);
-                    break;
-            }
+            fWriter.writeAttribute(ATTRIBUTE_ACCESS_TYPE, getAccessType(accessType));
         }
         // Association Directed
         else if(relationship.eClass() == IArchimatePackage.eINSTANCE.getAssociationRelationship()) {
             if(((IAssociationRelationship)relationship).isDirected()) {
-                relationshipElement.setAttribute(ATTRIBUTE_ASSOCIATION_DIRECTED, "true"); //$NON-NLS-1$
+                fWriter.writeAttribute(ATTRIBUTE_ASSOCIATION_DIRECTED, "true"); //$NON-NLS-1$
             }
         }
-
+        
         // Name - optional
-        writeTextToElement(relationship.getName(), relationshipElement, ELEMENT_NAME, false);
+        writeTextElement(relationship.getName(), ELEMENT_NAME, false);
         
         // Documentation - optional
-        writeTextToElement(relationship.getDocumentation(), relationshipElement, ELEMENT_DOCUMENTATION, false);
+        writeTextElement(relationship.getDocumentation(), ELEMENT_DOCUMENTATION, false);
         
         // Properties
-        writeProperties(relationship, relationshipElement);
-
-        return relationshipElement;
+        writeProperties(relationship);
+        
+        fWriter.writeEndElement();
     }
     
     // ========================================= Organizations ======================================
-
-    Element writeOrganizations(Element rootElement) {
-        Element organizationsElement = new Element(ELEMENT_ORGANIZATIONS, ARCHIMATE3_NAMESPACE);
+    
+    private void writeOrganizations() throws XMLStreamException {
+        boolean hasOrganizations = false;
         
         for(IFolder folder : fModel.getFolders()) {
             // If the top level folder is not empty
             if(!(folder.getElements().isEmpty() && folder.getFolders().isEmpty())) {
-                writeFolder(folder, organizationsElement);
+                if(!hasOrganizations) {
+                    writeStartElement(ELEMENT_ORGANIZATIONS);
+                    hasOrganizations = true;
+                }
+                writeFolder(folder);
             }
         }
         
-        // If there are children
-        if(!organizationsElement.getChildren().isEmpty()) {
-            rootElement.addContent(organizationsElement);
-            return organizationsElement;
+        if(hasOrganizations) {
+            fWriter.writeEndElement();
         }
-        
-        // No children, so return null
-        return null;
     }
     
-    Element writeFolder(IFolder folder, Element parentElement) {
-        Element itemElement = new Element(ELEMENT_ITEM, ARCHIMATE3_NAMESPACE);
-        parentElement.addContent(itemElement);
+    private void writeFolder(IFolder folder) throws XMLStreamException {
+        writeStartElement(ELEMENT_ITEM);
         
         // Name
-        writeTextToElement(folder.getName(), itemElement, ELEMENT_LABEL, false);
+        writeTextElement(folder.getName(), ELEMENT_LABEL, false);
         
         // Documentation
-        writeTextToElement(folder.getDocumentation(), itemElement, ELEMENT_DOCUMENTATION, false);
-
+        writeTextElement(folder.getDocumentation(), ELEMENT_DOCUMENTATION, false);
+        
         // Sub-folders
         for(IFolder subFolder : folder.getFolders()) {
-            writeFolder(subFolder, itemElement);
+            writeFolder(subFolder);
         }
         
         // Sub-elements
@@ -513,103 +462,76 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
                     continue;
                 }
                 
-                IIdentifier component = (IIdentifier)eObject;
-                Element itemChildElement = new Element(ELEMENT_ITEM, ARCHIMATE3_NAMESPACE);
-                itemElement.addContent(itemChildElement);
-                itemChildElement.setAttribute(ATTRIBUTE_IDENTIFIERREF, checkID(component));
+                writeStartElement(ELEMENT_ITEM);
+                fWriter.writeAttribute(ATTRIBUTE_IDENTIFIERREF, checkID((IIdentifier)eObject));
+                fWriter.writeEndElement();
             }
         }
         
-        return itemElement;
+        fWriter.writeEndElement();
     }
     
     // ========================================= Properties ======================================
-
-    Element writeModelPropertiesDefinitions(Element rootElement) {
+    
+    private void writeModelPropertiesDefinitions() throws XMLStreamException {
         if(fPropertyDefsList.isEmpty()) {
-            return null;
+            return;
         }
         
-        Element propertiesDefinitionsElement = new Element(ELEMENT_PROPERTYDEFINITIONS, ARCHIMATE3_NAMESPACE);
-        rootElement.addContent(propertiesDefinitionsElement);
-
+        writeStartElement(ELEMENT_PROPERTYDEFINITIONS);
+        
         for(Entry<String, String> entry : fPropertyDefsList.entrySet()) {
-            Element propertyDefElement = new Element(ELEMENT_PROPERTYDEFINITION, ARCHIMATE3_NAMESPACE);
-            propertiesDefinitionsElement.addContent(propertyDefElement);
+            writeStartElement(ELEMENT_PROPERTYDEFINITION);
+            fWriter.writeAttribute(ATTRIBUTE_IDENTIFIER, entry.getValue());
+            fWriter.writeAttribute(ATTRIBUTE_TYPE, "string"); //$NON-NLS-1$
             
-            propertyDefElement.setAttribute(ATTRIBUTE_IDENTIFIER, entry.getValue());
-            propertyDefElement.setAttribute(ATTRIBUTE_TYPE, "string"); //$NON-NLS-1$
+            writeStartElement(ELEMENT_NAME);
+            fWriter.writeCharacters(entry.getKey());
+            fWriter.writeEndElement();
             
-            Element propertyNameElement = new Element(ELEMENT_NAME, ARCHIMATE3_NAMESPACE);
-            propertyNameElement.setText(entry.getKey());
-            propertyDefElement.addContent(propertyNameElement);
+            fWriter.writeEndElement();
         }
         
-        return propertiesDefinitionsElement;
-    }
-    
-    /**
-     * @return All unique property types in the model
-     */
-    Map<String, String> getAllUniquePropertyKeysForModel() {
-        Map<String, String> list = new TreeMap<String, String>();
-        
-        String id = "propid-"; //$NON-NLS-1$
-        int idCount = 1;
-        
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject element = iter.next();
-            if(element instanceof IProperty) {
-                String name = ((IProperty)element).getKey();
-                if(name != null && !list.containsKey(name)) {
-                    list.put(name, id + (idCount++));
-                }
-            }
-        }
-        
-        return list;
+        fWriter.writeEndElement();
     }
     
     /**
      * Write all property values for a given element
-     * @param properties
-     * @param parentElement
-     * @return The Element or null
      */
-    Element writeProperties(IProperties properties, Element parentElement) {
-        Element propertiesElement = new Element(ELEMENT_PROPERTIES, ARCHIMATE3_NAMESPACE);
+    private void writeProperties(IProperties properties) throws XMLStreamException {
+        boolean hasProperties = false;
         
         for(IProperty property : properties.getProperties()) {
             String name = property.getKey();
-            String value = property.getValue();
             if(hasSomeText(name)) {
                 String propertyRefID = fPropertyDefsList.get(name);
                 if(propertyRefID != null) {
-                    writePropertyValue(propertiesElement, propertyRefID, value);
+                    if(!hasProperties) {
+                        writeStartElement(ELEMENT_PROPERTIES);
+                        hasProperties = true;
+                    }
+                    writePropertyValue(propertyRefID, property.getValue());
                 }
             }
         }
         
-        if(propertiesElement.getChildren().size() > 0) {
-            parentElement.addContent(propertiesElement);
+        if(hasProperties) {
+            fWriter.writeEndElement();
         }
-        
-        return propertiesElement;
     }
     
     /**
      * Write a Property value referencing a property ref id
      */
-    Element writePropertyValue(Element propertiesElement, String propertyRefID, String propertyValue) {
-        Element propertyElement = new Element(ELEMENT_PROPERTY, ARCHIMATE3_NAMESPACE);
-        propertiesElement.addContent(propertyElement);
-        propertyElement.setAttribute(ATTRIBUTE_PROPERTY_IDENTIFIERREF, propertyRefID);
-        
-        Element valueElement = new Element(ELEMENT_VALUE, ARCHIMATE3_NAMESPACE);
-        propertyElement.addContent(valueElement);
-        writeElementTextWithLanguageCode(valueElement, propertyValue);
-
-        return propertyElement;
+    private void writePropertyValue(String propertyRefID, String propertyValue) throws XMLStreamException {
+        writeStartElement(ELEMENT_PROPERTY);
+        fWriter.writeAttribute(ATTRIBUTE_PROPERTY_IDENTIFIERREF, propertyRefID);
+        
+        writeStartElement(ELEMENT_VALUE);
+        writeTextWithLanguageCode(propertyValue);
+        fWriter.writeEndElement();
+        
+        fWriter.writeEndElement();
     }
     
     // ========================================= Views ======================================
@@ -622,524 +544,578 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
      */
     private Point fCurrentDiagramNegativeOffset;
     
-    Element writeViews(Element rootElement) {
+    private void writeViews() throws XMLStreamException {
         // Do we have any views?
-        EList<IDiagramModel> views = fModel.getDiagramModels();
+        List<IDiagramModel> views = fModel.getDiagramModels();
         if(views.isEmpty()) {
-            return null;
+            return;
         }
         
-        Element viewsElement = new Element(ELEMENT_VIEWS, ARCHIMATE3_NAMESPACE);
-        rootElement.addContent(viewsElement);
-        
-        Element diagramsElement = new Element(ELEMENT_DIAGRAMS, ARCHIMATE3_NAMESPACE);
-        viewsElement.addContent(diagramsElement);
+        writeStartElement(ELEMENT_VIEWS);
+        writeStartElement(ELEMENT_DIAGRAMS);
         
         for(IDiagramModel dm : views) {
             if(dm instanceof IArchimateDiagramModel) {
                 // Calculate negative offset for this diagram
                 fCurrentDiagramNegativeOffset = XMLExchangeUtils.getNegativeOffsetForDiagram(dm);
                 
-                writeView((IArchimateDiagramModel)dm, diagramsElement);
+                writeView((IArchimateDiagramModel)dm);
             }
         }
         
-        return viewsElement;
+        fWriter.writeEndElement();
+        fWriter.writeEndElement();
     }
     
-    Element writeView(IArchimateDiagramModel dm, Element viewsElement) {
-        Element viewElement = new Element(ELEMENT_VIEW, ARCHIMATE3_NAMESPACE);
-        viewsElement.addContent(viewElement);
-
+    private void writeView(IArchimateDiagramModel dm) throws XMLStreamException {
+        writeStartElement(ELEMENT_VIEW);
+        
         // Identifier
-        viewElement.setAttribute(ATTRIBUTE_IDENTIFIER, checkID(dm));
+        fWriter.writeAttribute(ATTRIBUTE_IDENTIFIER, checkID(dm));
         
         // Type
-        viewElement.setAttribute(ATTRIBUTE_TYPE, ATTRIBUTE_DIAGRAM_TYPE, XSI_NAMESPACE);
-
+        writeTypeAttribute(ATTRIBUTE_DIAGRAM_TYPE);
+        
         // Viewpoint
         String viewPointName = XMLTypeMapper.getViewpointName(dm.getViewpoint());
         if(StringUtils.isSet(viewPointName)) {
-            viewElement.setAttribute(ATTRIBUTE_VIEWPOINT, viewPointName);
+            fWriter.writeAttribute(ATTRIBUTE_VIEWPOINT, viewPointName);
         }
-
+        
         // Name
-        writeTextToElement(dm.getName(), viewElement, ELEMENT_NAME, true);
+        writeTextElement(dm.getName(), ELEMENT_NAME, true);
         
         // Documentation
-        writeTextToElement(dm.getDocumentation(), viewElement, ELEMENT_DOCUMENTATION, false);
-
+        writeTextElement(dm.getDocumentation(), ELEMENT_DOCUMENTATION, false);
+        
         // Properties
-        writeProperties(dm, viewElement);
+        writeProperties(dm);
         
-        // Nodes
-        writeNodes(dm, viewElement);
+        // Nodes, gathering connections in the order that they are contained in the diagram
+        List<IDiagramModelConnection> connections = new ArrayList<>();
+        
+        for(IDiagramModelObject child : dm.getChildren()) {
+            writeNode(child, connections);
+        }
         
         // Connections
-        writeConnections(dm, viewElement);
+        for(IDiagramModelConnection connection : connections) {
+            // If it's nested don't write a connection
+            if(!(connection instanceof IDiagramModelArchimateConnection
+                    && isNestedConnection((IDiagramModelArchimateConnection)connection))) {
+                writeConnection(connection);
+            }
+        }
         
-        return viewElement;
+        fWriter.writeEndElement();
     }
     
     // ========================================= Nodes ======================================
     
     /**
-     * Write all diagram nodes
-     */
-    void writeNodes(IDiagramModel dm, Element viewElement) {
-        for(IDiagramModelObject child : dm.getChildren()) {
-            writeNode(child, viewElement);
-        }
-    }
-    
-    /**
-     * Write a diagram node
+     * Write a diagram node and add its connections to the list of connections
      */
-    void writeNode(IDiagramModelObject dmo, Element parentElement) {
+    private void writeNode(IDiagramModelObject dmo, List<IDiagramModelConnection> connections) throws XMLStreamException {
+        // A diagram object's connections are contained before its child objects
+        addConnections(dmo, connections);
+        
         if(dmo instanceof IDiagramModelArchimateObject) {
-            writeArchimateNode((IDiagramModelArchimateObject)dmo, parentElement);
+            writeArchimateNode((IDiagramModelArchimateObject)dmo, connections);
         }
         // Group
         else if(dmo instanceof IDiagramModelGroup) {
-            writeGroupNode((IDiagramModelGroup)dmo, parentElement);
+            writeGroupNode((IDiagramModelGroup)dmo, connections);
         }
         // Note
         else if(dmo instanceof IDiagramModelNote) {
-            writeNoteNode((IDiagramModelNote)dmo, parentElement);
+            writeNoteNode((IDiagramModelNote)dmo);
         }
         // View Reference type
         else if(dmo instanceof IDiagramModelReference) {
-            writeViewReferenceNode((IDiagramModelReference)dmo, parentElement);
+            writeViewReferenceNode((IDiagramModelReference)dmo);
+        }
+    }
+    
+    /**
+     * Add the connections from a connectable and the connections from those connections to a list
+     */
+    private void addConnections(IConnectable connectable, List<IDiagramModelConnection> connections) {
+        for(IDiagramModelConnection connection : connectable.getSourceConnections()) {
+            connections.add(connection);
+            addConnections(connection, connections);
         }
     }
     
     /**
      * Write an ArchiMate node
      */
-    Element writeArchimateNode(IDiagramModelArchimateObject dmo, Element parentElement) {
-        Element nodeElement = new Element(ELEMENT_NODE, ARCHIMATE3_NAMESPACE);
-        parentElement.addContent(nodeElement);
+    private void writeArchimateNode(IDiagramModelArchimateObject dmo, List<IDiagramModelConnection> connections) throws XMLStreamException {
+        writeStartElement(ELEMENT_NODE);
         
         // ID
-        nodeElement.setAttribute(ATTRIBUTE_IDENTIFIER, checkID(dmo));
+        fWriter.writeAttribute(ATTRIBUTE_IDENTIFIER, checkID(dmo));
         
         // Element Ref
         IArchimateElement element = dmo.getArchimateElement();
-        nodeElement.setAttribute(ATTRIBUTE_ELEMENTREF, checkID(element));
+        fWriter.writeAttribute(ATTRIBUTE_ELEMENTREF, checkID(element));
         
         // Type
-        nodeElement.setAttribute(ATTRIBUTE_TYPE, ATTRIBUTE_ELEMENT_TYPE, XSI_NAMESPACE);
+        writeTypeAttribute(ATTRIBUTE_ELEMENT_TYPE);
         
         // Bounds
-        writeAbsoluteBounds(dmo, nodeElement);
+        writeAbsoluteBounds(dmo);
         
         // Style
-        writeNodeStyle(dmo, nodeElement);
-
+        writeNodeStyle(dmo);
+        
         // Children
         for(IDiagramModelObject child : dmo.getChildren()) {
-            writeNode(child, nodeElement);
+            writeNode(child, connections);
         }
         
-        return nodeElement;
+        fWriter.writeEndElement();
     }
     
     /**
      * Write a Group node
      */
-    Element writeGroupNode(IDiagramModelGroup group, Element parentElement) {
-        Element nodeElement = new Element(ELEMENT_NODE, ARCHIMATE3_NAMESPACE);
-        parentElement.addContent(nodeElement);
+    private void writeGroupNode(IDiagramModelGroup group, List<IDiagramModelConnection> connections) throws XMLStreamException {
+        writeStartElement(ELEMENT_NODE);
         
         // ID
-        nodeElement.setAttribute(ATTRIBUTE_IDENTIFIER, checkID(group));
-
+        fWriter.writeAttribute(ATTRIBUTE_IDENTIFIER, checkID(group));
+        
         // Bounds
-        writeAbsoluteBounds(group, nodeElement);
+        writeAbsoluteBounds(group);
         
         // Type
-        nodeElement.setAttribute(ATTRIBUTE_TYPE, ATTRIBUTE_CONTAINER_TYPE, XSI_NAMESPACE);
+        writeTypeAttribute(ATTRIBUTE_CONTAINER_TYPE);
         
         // Label
-        writeTextToElement(group.getName(), nodeElement, ELEMENT_LABEL, false);
+        writeTextElement(group.getName(), ELEMENT_LABEL, false);
         
         // Documentation
-        writeTextToElement(group.getDocumentation(), nodeElement, ELEMENT_DOCUMENTATION, false);
-
+        writeTextElement(group.getDocumentation(), ELEMENT_DOCUMENTATION, false);
+        
         // Style
-        writeNodeStyle(group, nodeElement);
+        writeNodeStyle(group);
         
         // Children
         for(IDiagramModelObject child : group.getChildren()) {
-            writeNode(child, nodeElement);
+            writeNode(child, connections);
         }
         
-        return nodeElement;
+        fWriter.writeEndElement();
     }
     
     /**
      * Write a Note node
      */
-    Element writeNoteNode(IDiagramModelNote note, Element parentElement) {
-        Element nodeElement = new Element(ELEMENT_NODE, ARCHIMATE3_NAMESPACE);
-        parentElement.addContent(nodeElement);
+    private void writeNoteNode(IDiagramModelNote note) throws XMLStreamException {
+        writeStartElement(ELEMENT_NODE);
         
         // ID
-        nodeElement.setAttribute(ATTRIBUTE_IDENTIFIER, checkID(note));
+        fWriter.writeAttribute(ATTRIBUTE_IDENTIFIER, checkID(note));
         
         // Type
-        nodeElement.setAttribute(ATTRIBUTE_TYPE, ATTRIBUTE_LABEL_TYPE, XSI_NAMESPACE);
-
+        writeTypeAttribute(ATTRIBUTE_LABEL_TYPE);
+        
         // Bounds
-        writeAbsoluteBounds(note, nodeElement);
+        writeAbsoluteBounds(note);
         
         // Text
-        writeTextToElement(note.getContent(), nodeElement, ELEMENT_LABEL, false);
+        writeTextElement(note.getContent(), ELEMENT_LABEL, false);
         
         // Style
-        writeNodeStyle(note, nodeElement);
+        writeNodeStyle(note);
         
-        return nodeElement;
+        fWriter.writeEndElement();
     }
-
+    
     /**
      * Write a View Reference node
      */
-    Element writeViewReferenceNode(IDiagramModelReference ref, Element parentElement) {
-        Element nodeElement = new Element(ELEMENT_NODE, ARCHIMATE3_NAMESPACE);
-        parentElement.addContent(nodeElement);
+    private void writeViewReferenceNode(IDiagramModelReference ref) throws XMLStreamException {
+        writeStartElement(ELEMENT_NODE);
         
         // ID
-        nodeElement.setAttribute(ATTRIBUTE_IDENTIFIER, checkID(ref));
+        fWriter.writeAttribute(ATTRIBUTE_IDENTIFIER, checkID(ref));
         
         // Type
-        nodeElement.setAttribute(ATTRIBUTE_TYPE, ATTRIBUTE_LABEL_TYPE, XSI_NAMESPACE);
-
+        writeTypeAttribute(ATTRIBUTE_LABEL_TYPE);
+        
         // Bounds
-        writeAbsoluteBounds(ref, nodeElement);
+        writeAbsoluteBounds(ref);
         
         // Text
-        writeTextToElement(ref.getName(), nodeElement, ELEMENT_LABEL, false);
+        writeTextElement(ref.getName(), ELEMENT_LABEL, false);
         
         // Style
-        writeNodeStyle(ref, nodeElement);
+        writeNodeStyle(ref);
         
         // View Ref
         // Only write view references to ArchiMate diagrams
         // If the view ref is sketch or canvas this will instead appear as a note
         if(ref.getReferencedModel() instanceof IArchimateDiagramModel) {
-            Element viewRefElement = new Element(ELEMENT_VIEWREF, ARCHIMATE3_NAMESPACE);
-            viewRefElement.setAttribute(ATTRIBUTE_REF, checkID(ref.getReferencedModel()));
-            nodeElement.addContent(viewRefElement);
+            writeStartElement(ELEMENT_VIEWREF);
+            fWriter.writeAttribute(ATTRIBUTE_REF, checkID(ref.getReferencedModel()));
+            fWriter.writeEndElement();
         }
         
-        return nodeElement;
+        fWriter.writeEndElement();
     }
     
     /**
      * Write a node style
      */
-    Element writeNodeStyle(IDiagramModelObject dmo, Element nodeElement) {
-        Element styleElement = new Element(ELEMENT_STYLE, ARCHIMATE3_NAMESPACE);
-        nodeElement.addContent(styleElement);
+    private void writeNodeStyle(IDiagramModelObject dmo) throws XMLStreamException {
+        writeStartElement(ELEMENT_STYLE);
         
         // Fill Color
-        writeFillColor(dmo, styleElement);
+        RGB fillColor = getFillColor(dmo);
+        if(fillColor != null) {
+            writeStartElement(ELEMENT_FILLCOLOR);
+            writeRGBAttributes(fillColor, dmo.getAlpha());
+            fWriter.writeEndElement();
+        }
         
         // Line color
-        writeLineColor(dmo, styleElement);
-
-        // Font
-        writeFont(dmo, styleElement);
-        
-        return styleElement;
-    }
-    
-    /**
-     * Write fill colour of a diagram object
-     */
-    Element writeFillColor(IDiagramModelObject dmo, Element parentElement) {
-        Element fillColorElement = null;
-        
-        RGB rgb = ColorFactory.convertStringToRGB(dmo.getFillColor());
-        if(rgb == null) {
-            Color color = ColorFactory.getDefaultFillColor(dmo);
-            if(color != null) {
-                rgb = color.getRGB();
-            }
-        }
+        writeLineColor(dmo);
         
-        if(rgb != null) {
-            fillColorElement = new Element(ELEMENT_FILLCOLOR, ARCHIMATE3_NAMESPACE);
-            parentElement.addContent(fillColorElement);
-            writeRGBAttributes(rgb, dmo.getAlpha(), fillColorElement);
-        }
+        // Font
+        writeFont(dmo);
         
-        return fillColorElement;
+        fWriter.writeEndElement();
     }
     
     // ========================================= Connections ======================================
     
-    /**
-     * Write all connections
-     */
-    void writeConnections(IDiagramModel dm, Element parentElement) {
-        for(Iterator<EObject> iter = dm.eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
-            // ArchiMate connection
-            if(eObject instanceof IDiagramModelArchimateConnection) {
-                // If it's nested don't write a connection
-                if(!isNestedConnection((IDiagramModelArchimateConnection)eObject)) {
-                    writeConnection((IDiagramModelConnection)eObject, parentElement);
-                }
-            }
-            // Other connection
-            else if(eObject instanceof IDiagramModelConnection) {
-                writeConnection((IDiagramModelConnection)eObject, parentElement);
-            }
-        }
-    }
-    
-    /**
-     * Check whether this is a nested connection - assume all nested connections should be hidden
-     */
-    boolean isNestedConnection(IDiagramModelArchimateConnection connection) {
-        if(connection.getSource() instanceof IDiagramModelArchimateObject && connection.getTarget() instanceof IDiagramModelArchimateObject) {
-            IDiagramModelArchimateObject src = (IDiagramModelArchimateObject)connection.getSource();
-            IDiagramModelArchimateObject tgt = (IDiagramModelArchimateObject)connection.getTarget();
-            return src.getChildren().contains(tgt) || tgt.getChildren().contains(src);
-        }
-        return false;
-    }
-    
     /**
      * Write a connection
      */
-    Element writeConnection(IDiagramModelConnection connection, Element parentElement) {
-        Element connectionElement = new Element(ELEMENT_CONNECTION, ARCHIMATE3_NAMESPACE);
-        parentElement.addContent(connectionElement);
+    private void writeConnection(IDiagramModelConnection connection) throws XMLStreamException {
+        writeStartElement(ELEMENT_CONNECTION);
         
         // ID
-        connectionElement.setAttribute(ATTRIBUTE_IDENTIFIER, checkID(connection));
-
+        fWriter.writeAttribute(ATTRIBUTE_IDENTIFIER, checkID(connection));
+        
         // ArchiMate connection has a Relationship ref
         if(connection instanceof IDiagramModelArchimateConnection) {
-            connectionElement.setAttribute(ATTRIBUTE_RELATIONSHIPREF, checkID(((IDiagramModelArchimateConnection)connection).getArchimateRelationship()));
+            fWriter.writeAttribute(ATTRIBUTE_RELATIONSHIPREF, checkID(((IDiagramModelArchimateConnection)connection).getArchimateRelationship()));
             // Type
-            connectionElement.setAttribute(ATTRIBUTE_TYPE, ATTRIBUTE_RELATIONSHIP_TYPE, XSI_NAMESPACE);
+            writeTypeAttribute(ATTRIBUTE_RELATIONSHIP_TYPE);
         }
         else {
             // Type
-            connectionElement.setAttribute(ATTRIBUTE_TYPE, ATTRIBUTE_LINE_TYPE, XSI_NAMESPACE);
+            writeTypeAttribute(ATTRIBUTE_LINE_TYPE);
         }
         
         // Source
-        connectionElement.setAttribute(ATTRIBUTE_SOURCE, checkID(connection.getSource()));
+        fWriter.writeAttribute(ATTRIBUTE_SOURCE, checkID(connection.getSource()));
         
         // Target
-        connectionElement.setAttribute(ATTRIBUTE_TARGET, checkID(connection.getTarget()));
+        fWriter.writeAttribute(ATTRIBUTE_TARGET, checkID(connection.getTarget()));
         
         // Style
-        writeConnectionStyle(connection, connectionElement);
-
+        writeStartElement(ELEMENT_STYLE);
+        
+        // Line Width
+        int lineWidth = connection.getLineWidth();
+        if(lineWidth != 1) {
+            fWriter.writeAttribute(ATTRIBUTE_LINEWIDTH, Integer.toString(lineWidth));
+        }
+        
+        // Line color
+        writeLineColor(connection);
+        
+        // Font
+        writeFont(connection);
+        
+        fWriter.writeEndElement();
+        
         // Bendpoints
-        writeConnectionBendpoints(connection, connectionElement);
+        writeConnectionBendpoints(connection);
         
-        return connectionElement;
+        fWriter.writeEndElement();
     }
     
     /**
      * Write connection bendpoints
      */
-    void writeConnectionBendpoints(IDiagramModelConnection connection, Element connectionElement) {
+    private void writeConnectionBendpoints(IDiagramModelConnection connection) throws XMLStreamException {
         // TODO: Doesn't work for connection->connection
         if(connection.getSource() instanceof IDiagramModelConnection || connection.getTarget() instanceof IDiagramModelConnection) {
             return;
         }
         
-        List<Point> points = DiagramModelUtils.getAbsoluteBendpointPositions(connection);
-        
-        for(Point pt : points) {
-            Element bendpointElement = new Element(ELEMENT_BENDPOINT, ARCHIMATE3_NAMESPACE);
-            connectionElement.addContent(bendpointElement);
-        
-            pt.x -= fCurrentDiagramNegativeOffset.x; // compensate for negative space
-            pt.y -= fCurrentDiagramNegativeOffset.y; // compensate for negative space
-            
-            bendpointElement.setAttribute(ATTRIBUTE_X, Integer.toString(pt.x));
-            bendpointElement.setAttribute(ATTRIBUTE_Y, Integer.toString(pt.y));
+        for(Point pt : DiagramModelUtils.getAbsoluteBendpointPositions(connection)) {
+            writeStartElement(ELEMENT_BENDPOINT);
+            fWriter.writeAttribute(ATTRIBUTE_X, Integer.toString(pt.x - fCurrentDiagramNegativeOffset.x)); // compensate for negative space
+            fWriter.writeAttribute(ATTRIBUTE_Y, Integer.toString(pt.y - fCurrentDiagramNegativeOffset.y)); // compensate for negative space
+            fWriter.writeEndElement();
         }
     }
     
-    /**
-     * Write a connection style
-     */
-    Element writeConnectionStyle(IDiagramModelConnection connection, Element parentElement) {
-        Element styleElement = new Element(ELEMENT_STYLE, ARCHIMATE3_NAMESPACE);
-        parentElement.addContent(styleElement);
-        
-        // Line Width
-        int lineWidth = connection.getLineWidth();
-        if(lineWidth != 1) {
-            styleElement.setAttribute(ATTRIBUTE_LINEWIDTH, Integer.toString(lineWidth));
-        }
-        
-        // Line color
-        writeLineColor(connection, styleElement);
-        
-        // Font
-        writeFont(connection, styleElement);
-
-        return styleElement;
-    }
-
     // ========================================= Helpers ======================================
     
     /**
      * Write line colour of a diagram object
      */
-    Element writeLineColor(ILineObject lineObject, Element parentElement) {
-        Element lineColorElement = null;
-        
-        RGB rgb = ColorFactory.convertStringToRGB(lineObject.getLineColor());
-        if(rgb == null) {
-            Color color = ColorFactory.getDefaultLineColor(lineObject);
-            if(color != null) {
-                rgb = color.getRGB();
-            }
-        }
+    private void writeLineColor(ILineObject lineObject) throws XMLStreamException {
+        RGB rgb = getLineColor(lineObject);
         
         if(rgb != null) {
-            lineColorElement = new Element(ELEMENT_LINECOLOR, ARCHIMATE3_NAMESPACE);
-            parentElement.addContent(lineColorElement);
+            writeStartElement(ELEMENT_LINECOLOR);
             // Use outline alpha if a diagram model object
-            if(lineObject instanceof IDiagramModelObject) {
-                writeRGBAttributes(rgb, ((IDiagramModelObject)lineObject).getLineAlpha(), lineColorElement);
-            }
-            else {
-                writeRGBAttributes(rgb, -1, lineColorElement);
-            }
+            writeRGBAttributes(rgb, lineObject instanceof IDiagramModelObject ? ((IDiagramModelObject)lineObject).getLineAlpha() : -1);
+            fWriter.writeEndElement();
         }
-        
-        return lineColorElement;
     }
-
+    
     /**
      * Write font of a diagram component
      */
-    Element writeFont(IFontAttribute fontObject, Element styleElement) {
-        Element fontElement = new Element(ELEMENT_FONT, ARCHIMATE3_NAMESPACE);
+    private void writeFont(IFontAttribute fontObject) throws XMLStreamException {
+        writeStartElement(ELEMENT_FONT);
+        
+        FontData fontData = null;
         
         try {
-            FontData fontData = null;
-            
-            String fontString = fontObject.getFont();
-            if(fontString != null) {
-                fontData = new FontData(fontString);
-            }
-            else {
-                fontData = FontFactory.getDefaultUserViewFontData();
-            }
-            
-            fontElement.setAttribute(ATTRIBUTE_FONTNAME, fontData.getName());
-            fontElement.setAttribute(ATTRIBUTE_FONTSIZE, Integer.toString(fontData.getHeight()));
-
-            int style = fontData.getStyle();
-            String styleString = ""; //$NON-NLS-1$
-
-            if((style & SWT.BOLD) == SWT.BOLD) {
-                styleString += "bold"; //$NON-NLS-1$
-            }
-            if((style & SWT.ITALIC) == SWT.ITALIC) {
-                if(StringUtils.isSet(styleString)) {
-                    styleString += " "; //$NON-NLS-1$
-                }
-                styleString += "italic"; //$NON-NLS-1$
-            }
-
-            if(hasSomeText(styleString)) {
-                fontElement.setAttribute(ATTRIBUTE_FONTSTYLE, styleString);
-            }
+            fontData = getFontData(fontObject);
         }
         catch(Exception ex) {
             ex.printStackTrace();
         }
         
+        if(fontData != null) {
+            fWriter.writeAttribute(ATTRIBUTE_FONTNAME, fontData.getName());
+            fWriter.writeAttribute(ATTRIBUTE_FONTSIZE, Integer.toString(fontData.getHeight()));
+            
+            String styleString = getFontStyle(fontData);
+            if(hasSomeText(styleString)) {
+                fWriter.writeAttribute(ATTRIBUTE_FONTSTYLE, styleString);
+            }
+        }
+        
         // Font color
-        String fontColorString = fontObject.getFontColor();
-        RGB rgb = ColorFactory.convertStringToRGB(fontColorString);
-        Element fontColorElement = new Element(ELEMENT_FONTCOLOR, ARCHIMATE3_NAMESPACE);
-        fontElement.addContent(fontColorElement);
-        writeRGBAttributes(rgb, -1, fontColorElement);
+        writeStartElement(ELEMENT_FONTCOLOR);
+        writeRGBAttributes(ColorFactory.convertStringToRGB(fontObject.getFontColor()), -1);
+        fWriter.writeEndElement();
         
-        if(hasElementContent(fontElement)) {
-            styleElement.addContent(fontElement);
-        }
-
-        return fontElement;
+        fWriter.writeEndElement();
     }
     
     /**
-     * Write RGB attribute on an Element 
+     * Write RGB attributes on the current element
      */
-    void writeRGBAttributes(RGB rgb, int alpha, Element colorElement) {
+    private void writeRGBAttributes(RGB rgb, int alpha) throws XMLStreamException {
         if(rgb == null) {
             rgb = new RGB(0, 0, 0);
         }
         
-        colorElement.setAttribute(ATTRIBUTE_R, Integer.toString(rgb.red));
-        colorElement.setAttribute(ATTRIBUTE_G, Integer.toString(rgb.green));
-        colorElement.setAttribute(ATTRIBUTE_B, Integer.toString(rgb.blue));
+        fWriter.writeAttribute(ATTRIBUTE_R, Integer.toString(rgb.red));
+        fWriter.writeAttribute(ATTRIBUTE_G, Integer.toString(rgb.green));
+        fWriter.writeAttribute(ATTRIBUTE_B, Integer.toString(rgb.blue));
         
         if(alpha != -1) {
-            int newValue = Math.round(((float)alpha / 255) * 100);
-            colorElement.setAttribute(ATTRIBUTE_A, Integer.toString(newValue));
+            fWriter.writeAttribute(ATTRIBUTE_A, Integer.toString(getAlphaPercent(alpha)));
         }
     }
-
+    
     /**
      * Write absolute bounds of a diagram object
      */
-    void writeAbsoluteBounds(IDiagramModelObject dmo, Element element) {
+    private void writeAbsoluteBounds(IDiagramModelObject dmo) throws XMLStreamException {
         IBounds bounds = DiagramModelUtils.getAbsoluteBounds(dmo);
         
         int x = bounds.getX() - fCurrentDiagramNegativeOffset.x; // compensate for negative space
         int y = bounds.getY() - fCurrentDiagramNegativeOffset.y; // compensate for negative space
         
-        element.setAttribute(ATTRIBUTE_X, Integer.toString(x));
-        element.setAttribute(ATTRIBUTE_Y, Integer.toString(y));
-        element.setAttribute(ATTRIBUTE_WIDTH, Integer.toString(bounds.getWidth()));
-        element.setAttribute(ATTRIBUTE_HEIGHT, Integer.toString(bounds.getHeight()));
+        fWriter.writeAttribute(ATTRIBUTE_X, Integer.toString(x));
+        fWriter.writeAttribute(ATTRIBUTE_Y, Integer.toString(y));
+        fWriter.writeAttribute(ATTRIBUTE_WIDTH, Integer.toString(bounds.getWidth()));
+        fWriter.writeAttribute(ATTRIBUTE_HEIGHT, Integer.toString(bounds.getHeight()));
     }
-
+    
     /**
-     * Write some text to a given JDOM Element.
-     * If mandatory write at least an empty tag
+     * Copy the XSD files to the folder of the output file
+     */
+    private static void copyXSDFiles(File outputFile) throws IOException {
+        File file1 = new File(outputFile.getParentFile(), XMLExchangePlugin.ARCHIMATE3_MODEL_XSD);
+        XMLExchangePlugin.INSTANCE.copyXSDFile(XMLExchangePlugin.ARCHIMATE3_MODEL_XSD, file1);
+        
+        File file2 = new File(outputFile.getParentFile(), XMLExchangePlugin.ARCHIMATE3_VIEW_XSD);
+        XMLExchangePlugin.INSTANCE.copyXSDFile(XMLExchangePlugin.ARCHIMATE3_VIEW_XSD, file2);
+        
+        File file3 = new File(outputFile.getParentFile(), XMLExchangePlugin.ARCHIMATE3_DIAGRAM_XSD);
+        XMLExchangePlugin.INSTANCE.copyXSDFile(XMLExchangePlugin.ARCHIMATE3_DIAGRAM_XSD, file3);
+    }
+    
+    private static boolean hasMetadata(Map<String, String> metadata) {
+        if(metadata != null) {
+            for(String value : metadata.values()) {
+                if(StringUtils.isSet(value)) {
+                    return true;
+                }
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * @return The exchange format access type of an Archi access type
      */
-    Element writeTextToElement(String text, Element parentElement, String childElementName, boolean mandatory) {
-        if(text == null) {
-            text = ""; //$NON-NLS-1$
+    private static String getAccessType(int accessType) {
+        switch(accessType) {
+            case IAccessRelationship.READ_ACCESS:
+                return ACCESS_TYPE_READ;
+            
+            case IAccessRelationship.READ_WRITE_ACCESS:
+                return ACCESS_TYPE_READ_WRITE;
+            
+            case IAccessRelationship.UNSPECIFIED_ACCESS:
+                return ACCESS_TYPE_ACCESS;
+            
+            default:
+                return ACCESS_TYPE_WRITE;
         }
+    }
+    
+    /**
+     * @return All unique property keys in a model mapped to property definition ids, numbered in the order they are found
+     */
+    private static Map<String, String> getAllUniquePropertyKeys(IArchimateModel model) {
+        Map<String, String> list = new TreeMap<String, String>();
         
-        Element element = null;
+        String id = "propid-"; //$NON-NLS-1$
+        int idCount = 1;
         
-        if(mandatory || hasSomeText(text)) {
-            element = new Element(childElementName, ARCHIMATE3_NAMESPACE);
-            parentElement.addContent(element);
-            writeElementTextWithLanguageCode(element, text);
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject element = iter.next();
+            if(element instanceof IProperty) {
+                String name = ((IProperty)element).getKey();
+                if(name != null && !list.containsKey(name)) {
+                    list.put(name, id + (idCount++));
+                }
+            }
         }
         
-        return element;
+        return list;
     }
-
-    private void writeElementTextWithLanguageCode(Element element, String text) {
-        element.setText(text);
+    
+    /**
+     * @return The fill colour of a diagram object, or its default fill colour, or null
+     */
+    private static RGB getFillColor(IDiagramModelObject dmo) {
+        RGB rgb = ColorFactory.convertStringToRGB(dmo.getFillColor());
+        if(rgb == null) {
+            Color color = ColorFactory.getDefaultFillColor(dmo);
+            if(color != null) {
+                rgb = color.getRGB();
+            }
+        }
+        return rgb;
+    }
+    
+    /**
+     * Check whether this is a nested connection - assume all nested connections should be hidden
+     */
+    private static boolean isNestedConnection(IDiagramModelArchimateConnection connection) {
+        if(connection.getSource() instanceof IDiagramModelArchimateObject && connection.getTarget() instanceof IDiagramModelArchimateObject) {
+            IDiagramModelArchimateObject src = (IDiagramModelArchimateObject)connection.getSource();
+            IDiagramModelArchimateObject tgt = (IDiagramModelArchimateObject)connection.getTarget();
+            return src.getChildren().contains(tgt) || tgt.getChildren().contains(src);
+        }
+        return false;
+    }
+    
+    /**
+     * @return The line colour of a line object, or its default line colour, or null
+     */
+    private static RGB getLineColor(ILineObject lineObject) {
+        RGB rgb = ColorFactory.convertStringToRGB(lineObject.getLineColor());
+        if(rgb == null) {
+            Color color = ColorFactory.getDefaultLineColor(lineObject);
+            if(color != null) {
+                rgb = color.getRGB();
+            }
+        }
+        return rgb;
+    }
+    
+    /**
+     * @return The font data of a font attribute or the default font data
+     */
+    private static FontData getFontData(IFontAttribute fontObject) {
+        String fontString = fontObject.getFont();
+        if(fontString != null) {
+            return new FontData(fontString);
+        }
+        return FontFactory.getDefaultUserViewFontData();
+    }
+    
+    /**
+     * @return The font style as "bold", "italic", "bold italic" or an empty string
+     */
+    private static String getFontStyle(FontData fontData) {
+        int style = fontData.getStyle();
+        String styleString = ""; //$NON-NLS-1$
+        
+        if((style & SWT.BOLD) == SWT.BOLD) {
+            styleString += "bold"; //$NON-NLS-1$
+        }
+        if((style & SWT.ITALIC) == SWT.ITALIC) {
+            if(StringUtils.isSet(styleString)) {
+                styleString += " "; //$NON-NLS-1$
+            }
+            styleString += "italic"; //$NON-NLS-1$
+        }
         
+        return styleString;
+    }
+    
+    /**
+     * @return An alpha value of 0-255 as a percentage
+     */
+    private static int getAlphaPercent(int alpha) {
+        return Math.round(((float)alpha / 255) * 100);
+    }
+    
+    /**
+     * Start an element in the ArchiMate namespace
+     */
+    private void writeStartElement(String name) throws XMLStreamException {
+        fWriter.writeStartElement(ARCHIMATE3_NAMESPACE.getURI(), name);
+    }
+    
+    /**
+     * Write the xsi:type attribute
+     */
+    private void writeTypeAttribute(String type) throws XMLStreamException {
+        fWriter.writeAttribute(XSI_NAMESPACE.getURI(), ATTRIBUTE_TYPE, type);
+    }
+    
+    /**
+     * Write some text in a child element.
+     * If mandatory write at least an empty tag
+     */
+    private void writeTextElement(String text, String childElementName, boolean mandatory) throws XMLStreamException {
+        if(mandatory || hasSomeText(text)) {
+            writeStartElement(childElementName);
+            writeTextWithLanguageCode(text);
+            fWriter.writeEndElement();
+        }
+    }
+    
+    private void writeTextWithLanguageCode(String text) throws XMLStreamException {
         if(fLanguageCode != null) {
-            element.setAttribute(ATTRIBUTE_LANG, fLanguageCode, Namespace.XML_NAMESPACE);
+            fWriter.writeAttribute(XMLConstants.XML_NS_URI, ATTRIBUTE_LANG, fLanguageCode);
         }
+        
+        fWriter.writeCharacters(text);
     }
-
+    
     /**
      * Return true if string has at least some text
      */
@@ -1147,17 +1123,10 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         return string != null && !string.isEmpty();
     }
     
-    /**
-     * @return true if element has attributes or a child element
-     */
-    private boolean hasElementContent(Element element) {
-        return element != null && (element.hasAttributes() || !element.getChildren().isEmpty());
-    }
-
     /**
      * Check that identifier is XML valid
      */
-    private String checkID(IIdentifier identifier) {
+    private static String checkID(IIdentifier identifier) {
         String id = identifier.getId();
         
         if(id == null) { // shouldn't happen
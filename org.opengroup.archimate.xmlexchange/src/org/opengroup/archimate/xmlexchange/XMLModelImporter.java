@@ -5,8 +5,11 @@
  */
 package org.opengroup.archimate.xmlexchange;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -15,15 +18,22 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.FontData;
 import org.eclipse.swt.graphics.RGB;
+import org.jdom2.Attribute;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.Namespace;
+import org.jdom2.Text;
 
 import com.archimatetool.editor.diagram.ArchimateDiagramModelFactory;
 import com.archimatetool.editor.diagram.ICreationFactory;
@@ -68,6 +78,10 @@ import com.archimatetool.model.IProperty;
 /**
  * XML Model Importer
  * 
+ * By default the file is read into a JDOM Document. If streaming is set the file is read with a StAX reader
+ * and each concept, View and organization is read into a small JDOM Element and then added to the model,
+ * so that the whole Document is never held in memory.
+ * 
  * @author Phillip Beauvoir
  */
 public class XMLModelImporter implements IXMLExchangeGlobals {
@@ -89,6 +103,32 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
     // Diagram Model references lookup
     private Map<IDiagramModelReference, String> fDiagramRefsLookup;
     
+    // Properties that are added when the Property Definitions have been read (streaming only)
+    private List<PropertyInfo> fPendingProperties;
+    
+    // Options
+    private boolean fStreaming;
+    
+    private static class PropertyInfo {
+        IProperties propertiesModel;
+        String idref;
+        String value;
+    }
+    
+    private static class RelationInfo {
+        IArchimateRelationship relation;
+        String sourceID;
+        String targetID;
+    }
+    
+    /**
+     * Set whether to read the file as a stream rather than as a JDOM Document
+     * @param set
+     */
+    public void setStreaming(boolean set) {
+        fStreaming = set;
+    }
+    
     public IArchimateModel createArchiMateModel(File instanceFile) throws IOException, JDOMException, XMLModelParserException {
         // New lookup tables
         fPropertyDefinitionsList = new HashMap<>();
@@ -96,11 +136,23 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
         fConnectionsNodesLookup = new HashMap<>();
         fDiagramsLookup = new HashMap<>();
         fDiagramRefsLookup = new HashMap<>();
+        fPendingProperties = fStreaming ? new ArrayList<>() : null;
         
         // Create a new Archimate Model and set its defaults
         fModel = IArchimateFactory.eINSTANCE.createArchimateModel();
         fModel.setDefaults();
         
+        if(fStreaming) {
+            readXMLStream(instanceFile);
+        }
+        else {
+            readXMLDocument(instanceFile);
+        }
+        
+        return fModel;
+    }
+    
+    private void readXMLDocument(File instanceFile) throws IOException, JDOMException, XMLModelParserException {
         // Read file without Schema validation
         Document doc = JDOMUtils.readXMLFile(instanceFile);
         
@@ -128,8 +180,199 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
         for(Element orgsElement : rootElement.getChildren(ELEMENT_ORGANIZATIONS, ARCHIMATE3_NAMESPACE)) {
             parseOrganizations(orgsElement);
         }
+    }
+    
+    // ========================================= Streaming ======================================
+    
+    private void readXMLStream(File instanceFile) throws IOException, JDOMException, XMLModelParserException {
+        // Same restrictions as JDOMUtils.readXMLFile(), no DTDs or external entities
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
         
-        return fModel;
+        try(InputStream in = new BufferedInputStream(new FileInputStream(instanceFile))) {
+            XMLStreamReader reader = factory.createXMLStreamReader(instanceFile.toURI().toString(), in);
+            try {
+                parseStream(reader);
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch(XMLStreamException ex) {
+            throw new JDOMException(ex.getMessage(), ex);
+        }
+    }
+    
+    private void parseStream(XMLStreamReader reader) throws IOException, XMLStreamException, XMLModelParserException {
+        // Root element and its attributes. Its name, documentation and properties are added as they are read
+        reader.nextTag();
+        Element rootElement = new Element(reader.getLocalName(), getNamespace(reader.getPrefix(), reader.getNamespaceURI()));
+        addAttributes(rootElement, reader);
+        
+        // Organizations have to be parsed after the Views
+        List<Element> organizationsElements = new ArrayList<>();
+        
+        boolean hasElements = false;
+        
+        while(reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if(!ARCHIMATE3_NAMESPACE.getURI().equals(reader.getNamespaceURI())) {
+                skipElement(reader);
+                continue;
+            }
+            
+            switch(reader.getLocalName()) {
+                case ELEMENT_NAME:
+                case ELEMENT_DOCUMENTATION:
+                case ELEMENT_PROPERTIES:
+                    rootElement.addContent(readElement(reader));
+                    break;
+                    
+                case ELEMENT_PROPERTYDEFINITIONS:
+                    parsePropertyDefinitions(readElement(reader));
+                    break;
+                    
+                case ELEMENT_ELEMENTS:
+                    hasElements = true;
+                    while(reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                        if(isArchimateElement(reader, ELEMENT_ELEMENT)) {
+                            parseArchiMateElement(readElement(reader));
+                        }
+                        else {
+                            skipElement(reader);
+                        }
+                    }
+                    break;
+                    
+                case ELEMENT_RELATIONSHIPS:
+                    checkHasElements(hasElements);
+                    List<RelationInfo> relationInfoList = new ArrayList<>();
+                    while(reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                        if(isArchimateElement(reader, ELEMENT_RELATIONSHIP)) {
+                            parseArchiMateRelation(readElement(reader), relationInfoList);
+                        }
+                        else {
+                            skipElement(reader);
+                        }
+                    }
+                    setRelationEnds(relationInfoList);
+                    break;
+                    
+                case ELEMENT_ORGANIZATIONS:
+                    organizationsElements.add(readElement(reader));
+                    break;
+                    
+                case ELEMENT_VIEWS:
+                    checkHasElements(hasElements);
+                    while(reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                        if(isArchimateElement(reader, ELEMENT_DIAGRAMS)) {
+                            while(reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                                if(isArchimateElement(reader, ELEMENT_VIEW)) {
+                                    parseView(readElement(reader));
+                                }
+                                else {
+                                    skipElement(reader);
+                                }
+                            }
+                        }
+                        else {
+                            skipElement(reader);
+                        }
+                    }
+                    break;
+                    
+                default:
+                    skipElement(reader);
+                    break;
+            }
+        }
+        
+        checkHasElements(hasElements);
+        
+        // Root Element
+        parseRootElement(rootElement);
+        
+        // All Property Definitions have been read now
+        addPendingProperties();
+        
+        // View references and implicit nested connections
+        setDiagramReferences();
+        addNestedConnections();
+        
+        // Organizations
+        for(Element orgsElement : organizationsElements) {
+            parseOrganizations(orgsElement);
+        }
+    }
+    
+    private void checkHasElements(boolean hasElements) throws XMLModelParserException {
+        if(!hasElements) {
+            throw new XMLModelParserException(Messages.XMLModelImporter_0);
+        }
+    }
+    
+    /**
+     * @return true if the reader is at an element with the given name in the ArchiMate namespace
+     */
+    private boolean isArchimateElement(XMLStreamReader reader, String name) {
+        return name.equals(reader.getLocalName()) && ARCHIMATE3_NAMESPACE.getURI().equals(reader.getNamespaceURI());
+    }
+    
+    /**
+     * Read the element at the reader's position, and all of its content, into a JDOM Element
+     * The reader is left at the element's end tag
+     */
+    private Element readElement(XMLStreamReader reader) throws XMLStreamException {
+        Element element = new Element(reader.getLocalName(), getNamespace(reader.getPrefix(), reader.getNamespaceURI()));
+        addAttributes(element, reader);
+        
+        while(true) {
+            switch(reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    element.addContent(readElement(reader));
+                    break;
+                    
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    element.addContent(new Text(reader.getText()));
+                    break;
+                    
+                case XMLStreamConstants.END_ELEMENT:
+                    return element;
+                    
+                default: // Comments and processing instructions
+                    break;
+            }
+        }
+    }
+    
+    private void addAttributes(Element element, XMLStreamReader reader) {
+        for(int i = 0; i < reader.getAttributeCount(); i++) {
+            Namespace ns = getNamespace(reader.getAttributePrefix(i), reader.getAttributeNamespace(i));
+            element.setAttribute(new Attribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i), ns));
+        }
+    }
+    
+    private Namespace getNamespace(String prefix, String uri) {
+        return Namespace.getNamespace(prefix == null ? "" : prefix, uri == null ? "" : uri); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    
+    /**
+     * Skip the element at the reader's position and all of its content
+     * The reader is left at the element's end tag
+     */
+    private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        for(int depth = 1; depth > 0;) {
+            int event = reader.next();
+            if(event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            }
+            else if(event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
     }
     
     // ========================================= Property Definitions ======================================
@@ -184,19 +427,40 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
                 String idref = propertyElement.getAttributeValue(ATTRIBUTE_PROPERTY_IDENTIFIERREF);
                 
                 if(idref != null) {
-                    String propertyName = fPropertyDefinitionsList.get(idref);
-                    if(propertyName != null) {
-                        String propertyValue = getChildElementText(propertyElement, ELEMENT_VALUE, true);
-                        IProperty property = IArchimateFactory.eINSTANCE.createProperty();
-                        property.setKey(propertyName);
-                        property.setValue(propertyValue);
-                        propertiesModel.getProperties().add(property);
+                    // When streaming the Property Definitions come later in the file
+                    if(fPendingProperties != null) {
+                        PropertyInfo pInfo = new PropertyInfo();
+                        pInfo.propertiesModel = propertiesModel;
+                        pInfo.idref = idref;
+                        pInfo.value = getChildElementText(propertyElement, ELEMENT_VALUE, true);
+                        fPendingProperties.add(pInfo);
+                    }
+                    else {
+                        addProperty(propertiesModel, idref, getChildElementText(propertyElement, ELEMENT_VALUE, true));
                     }
                 }
             }
         }
     }
     
+    private void addProperty(IProperties propertiesModel, String idref, String propertyValue) {
+        String propertyName = fPropertyDefinitionsList.get(idref);
+        if(propertyName != null) {
+            IProperty property = IArchimateFactory.eINSTANCE.createProperty();
+            property.setKey(propertyName);
+            property.setValue(propertyValue);
+            propertiesModel.getProperties().add(property);
+        }
+    }
+    
+    private void addPendingProperties() {
+        for(PropertyInfo pInfo : fPendingProperties) {
+            addProperty(pInfo.propertiesModel, pInfo.idref, pInfo.value);
+        }
+        
+        fPendingProperties = null;
+    }
+    
     // ========================================= Elements ======================================
 
     private void parseArchiMateElements(Element elementsElement) throws XMLModelParserException {
@@ -205,43 +469,47 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
         }
         
         for(Element childElement : elementsElement.getChildren(ELEMENT_ELEMENT, ARCHIMATE3_NAMESPACE)) {
-            String type = childElement.getAttributeValue(ATTRIBUTE_TYPE, XSI_NAMESPACE);
-            // If type is bogus ignore
-            if(type == null) {
-                continue;
-            }
-            
-            IArchimateElement element = (IArchimateElement)XMLTypeMapper.createArchimateConcept(type);
-            // If element is null throw exception
-            if(element == null) {
-                throw new XMLModelParserException(NLS.bind(Messages.XMLModelImporter_1, type));
-            }
-                    
-            // Identifier first
-            String id = childElement.getAttributeValue(ATTRIBUTE_IDENTIFIER);
-            if(id != null) {
-                element.setId(id);
-            }
+            parseArchiMateElement(childElement);
+        }
+    }
+    
+    private void parseArchiMateElement(Element childElement) throws XMLModelParserException {
+        String type = childElement.getAttributeValue(ATTRIBUTE_TYPE, XSI_NAMESPACE);
+        // If type is bogus ignore
+        if(type == null) {
+            return;
+        }
+        
+        IArchimateElement element = (IArchimateElement)XMLTypeMapper.createArchimateConcept(type);
+        // If element is null throw exception
+        if(element == null) {
+            throw new XMLModelParserException(NLS.bind(Messages.XMLModelImporter_1, type));
+        }
+                
+        // Identifier first
+        String id = childElement.getAttributeValue(ATTRIBUTE_IDENTIFIER);
+        if(id != null) {
+            element.setId(id);
+        }
 
-            // Add to model
-            fModel.getDefaultFolderForObject(element).getElements().add(element);
-            
-            String name = getChildElementText(childElement, ELEMENT_NAME, true);
-            if(name != null) {
-                element.setName(name);
-            }
-            
-            String documentation = getChildElementText(childElement, ELEMENT_DOCUMENTATION, false);
-            if(documentation != null) {
-                element.setDocumentation(documentation);
-            }
-            
-            // Properties
-            addProperties(element, childElement);
-            
-            // Add to lookup
-            fConceptsLookup.put(element.getId(), element);
+        // Add to model
+        fModel.getDefaultFolderForObject(element).getElements().add(element);
+        
+        String name = getChildElementText(childElement, ELEMENT_NAME, true);
+        if(name != null) {
+            element.setName(name);
+        }
+        
+        String documentation = getChildElementText(childElement, ELEMENT_DOCUMENTATION, false);
+        if(documentation != null) {
+            element.setDocumentation(documentation);
         }
+        
+        // Properties
+        addProperties(element, childElement);
+        
+        // Add to lookup
+        fConceptsLookup.put(element.getId(), element);
     }
     
     // ========================================= Relations ======================================
@@ -251,108 +519,112 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
             return;
         }
         
-        class RelationInfo {
-            IArchimateRelationship relation;
-            String sourceID;
-            String targetID;
-        }
-        
         List<RelationInfo> relationInfoList = new ArrayList<RelationInfo>();
-        IFolder relationshipFolder = fModel.getFolder(FolderType.RELATIONS);
         
         for(Element childElement : relationsElement.getChildren(ELEMENT_RELATIONSHIP, ARCHIMATE3_NAMESPACE)) {
-            String type = childElement.getAttributeValue(ATTRIBUTE_TYPE, XSI_NAMESPACE);
-            // If type is bogus ignore
-            if(type == null) {
-                continue;
-            }
-            
-            IArchimateRelationship relation = (IArchimateRelationship)XMLTypeMapper.createArchimateConcept(type);
-            // If relation is null throw exception
-            if(relation == null) {
-                throw new IOException(NLS.bind(Messages.XMLModelImporter_2, type));
-            }
-            
-            // Identifier first
-            String id = childElement.getAttributeValue(ATTRIBUTE_IDENTIFIER);
-            if(id != null) {
-                relation.setId(id);
-            }
+            parseArchiMateRelation(childElement, relationInfoList);
+        }
+        
+        // 2nd pass, add source and target concepts
+        setRelationEnds(relationInfoList);
+    }
+    
+    private void parseArchiMateRelation(Element childElement, List<RelationInfo> relationInfoList) throws IOException {
+        String type = childElement.getAttributeValue(ATTRIBUTE_TYPE, XSI_NAMESPACE);
+        // If type is bogus ignore
+        if(type == null) {
+            return;
+        }
+        
+        IArchimateRelationship relation = (IArchimateRelationship)XMLTypeMapper.createArchimateConcept(type);
+        // If relation is null throw exception
+        if(relation == null) {
+            throw new IOException(NLS.bind(Messages.XMLModelImporter_2, type));
+        }
+        
+        // Identifier first
+        String id = childElement.getAttributeValue(ATTRIBUTE_IDENTIFIER);
+        if(id != null) {
+            relation.setId(id);
+        }
 
-            // Add to model
-            relationshipFolder.getElements().add(relation);
-            
-            // Name
-            String name = getChildElementText(childElement, ELEMENT_NAME, true);
-            if(name != null) {
-                relation.setName(name);
-            }
-            
-            // Documentation
-            String documentation = getChildElementText(childElement, ELEMENT_DOCUMENTATION, false);
-            if(documentation != null) {
-                relation.setDocumentation(documentation);
-            }
-            
-            // Properties
-            addProperties(relation, childElement);
-            
-            // Source and target
-            String sourceID = childElement.getAttributeValue(ATTRIBUTE_SOURCE);
-            String targetID = childElement.getAttributeValue(ATTRIBUTE_TARGET);
-            
-            // Access type
-            if(relation instanceof IAccessRelationship) {
-                String accessType = childElement.getAttributeValue(ATTRIBUTE_ACCESS_TYPE);
-                if(accessType != null) {
-                    IAccessRelationship accessRelationship = (IAccessRelationship)relation;
-                    
-                    switch(accessType) {
-                        case ACCESS_TYPE_ACCESS:
-                            accessRelationship.setAccessType(IAccessRelationship.UNSPECIFIED_ACCESS);
-                            break;
+        // Add to model
+        fModel.getFolder(FolderType.RELATIONS).getElements().add(relation);
+        
+        // Name
+        String name = getChildElementText(childElement, ELEMENT_NAME, true);
+        if(name != null) {
+            relation.setName(name);
+        }
+        
+        // Documentation
+        String documentation = getChildElementText(childElement, ELEMENT_DOCUMENTATION, false);
+        if(documentation != null) {
+            relation.setDocumentation(documentation);
+        }
+        
+        // Properties
+        addProperties(relation, childElement);
+        
+        // Source and target
+        String sourceID = childElement.getAttributeValue(ATTRIBUTE_SOURCE);
+        String targetID = childElement.getAttributeValue(ATTRIBUTE_TARGET);
+        
+        // Access type
+        if(relation instanceof IAccessRelationship) {
+            String accessType = childElement.getAttributeValue(ATTRIBUTE_ACCESS_TYPE);
+            if(accessType != null) {
+                IAccessRelationship accessRelationship = (IAccessRelationship)relation;
+                
+                switch(accessType) {
+                    case ACCESS_TYPE_ACCESS:
+                        accessRelationship.setAccessType(IAccessRelationship.UNSPECIFIED_ACCESS);
+                        break;
 
-                        case ACCESS_TYPE_READ:
-                            accessRelationship.setAccessType(IAccessRelationship.READ_ACCESS);
-                            break;
+                    case ACCESS_TYPE_READ:
+                        accessRelationship.setAccessType(IAccessRelationship.READ_ACCESS);
+                        break;
 
-                        case ACCESS_TYPE_READ_WRITE:
-                            accessRelationship.setAccessType(IAccessRelationship.READ_WRITE_ACCESS);
-                            break;
+                    case ACCESS_TYPE_READ_WRITE:
+                        accessRelationship.setAccessType(IAccessRelationship.READ_WRITE_ACCESS);
+                        break;
 
-                        default:
-                            accessRelationship.setAccessType(IAccessRelationship.WRITE_ACCESS);
-                            break;
-                    }
+                    default:
+                        accessRelationship.setAccessType(IAccessRelationship.WRITE_ACCESS);
+                        break;
                 }
             }
-            // Influence type
-            else if(relation instanceof IInfluenceRelationship) {
-                String influenceStrength = childElement.getAttributeValue(ATTRIBUTE_INFLUENCE_MODIFIER);
-                if(influenceStrength != null) {
-                    ((IInfluenceRelationship)relation).setStrength(influenceStrength);
-                }
+        }
+        // Influence type
+        else if(relation instanceof IInfluenceRelationship) {
+            String influenceStrength = childElement.getAttributeValue(ATTRIBUTE_INFLUENCE_MODIFIER);
+            if(influenceStrength != null) {
+                ((IInfluenceRelationship)relation).setStrength(influenceStrength);
             }
-            // Association type
-            else if(relation instanceof IAssociationRelationship) {
-                String isDirected = childElement.getAttributeValue(ATTRIBUTE_ASSOCIATION_DIRECTED);
-                if("true".equalsIgnoreCase(isDirected)) { //$NON-NLS-1$
-                    ((IAssociationRelationship)relation).setDirected(true);
-                }
+        }
+        // Association type
+        else if(relation instanceof IAssociationRelationship) {
+            String isDirected = childElement.getAttributeValue(ATTRIBUTE_ASSOCIATION_DIRECTED);
+            if("true".equalsIgnoreCase(isDirected)) { //$NON-NLS-1$
+                ((IAssociationRelationship)relation).setDirected(true);
             }
-            
-            // Add to lookup table
-            fConceptsLookup.put(relation.getId(), relation);
-            
-            // Add to relations list for 2nd pass
-            RelationInfo rInfo = new RelationInfo();
-            rInfo.relation = relation;
-            rInfo.sourceID = sourceID;
-            rInfo.targetID = targetID;
-            relationInfoList.add(rInfo);
         }
         
-        // 2nd pass, add source and target concepts
+        // Add to lookup table
+        fConceptsLookup.put(relation.getId(), relation);
+        
+        // Add to relations list for 2nd pass
+        RelationInfo rInfo = new RelationInfo();
+        rInfo.relation = relation;
+        rInfo.sourceID = sourceID;
+        rInfo.targetID = targetID;
+        relationInfoList.add(rInfo);
+    }
+    
+    /**
+     * Set the source and target concepts of the relations now that all concepts have been read
+     */
+    private void setRelationEnds(List<RelationInfo> relationInfoList) throws IOException {
         for(RelationInfo rInfo : relationInfoList) {
             IArchimateConcept source = fConceptsLookup.get(rInfo.sourceID);
             if(source == null) {
@@ -546,50 +818,63 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
             return;
         }
         
-        // Add the views first because there may be child node view references
         for(Element viewElement : viewsElement.getChildren(ELEMENT_VIEW, ARCHIMATE3_NAMESPACE)) {
-            IArchimateDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
-            fModel.getDefaultFolderForObject(dm).getElements().add(dm);
-            
-            // Identifier first
-            String id = viewElement.getAttributeValue(ATTRIBUTE_IDENTIFIER);
-            if(id != null) {
-                dm.setId(id);
+            parseView(viewElement);
+        }
+        
+        // Now add any view diagram references
+        setDiagramReferences();
+        
+        // Add implicit nested connections
+        addNestedConnections();
+    }
+    
+    private void parseView(Element viewElement) throws XMLModelParserException {
+        IArchimateDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        fModel.getDefaultFolderForObject(dm).getElements().add(dm);
+        
+        // Identifier first
+        String id = viewElement.getAttributeValue(ATTRIBUTE_IDENTIFIER);
+        if(id != null) {
+            dm.setId(id);
 
-                // Store it
-                fDiagramsLookup.put(id, dm);
-            }
-            
-            // Viewpoint
-            String viewPointName = viewElement.getAttributeValue(ATTRIBUTE_VIEWPOINT);
-            if(viewPointName != null) {
-                String viewPointID = XMLTypeMapper.getViewpointID(viewPointName);
-                dm.setViewpoint(viewPointID);
-            }
+            // Store it
+            fDiagramsLookup.put(id, dm);
+        }
+        
+        // Viewpoint
+        String viewPointName = viewElement.getAttributeValue(ATTRIBUTE_VIEWPOINT);
+        if(viewPointName != null) {
+            String viewPointID = XMLTypeMapper.getViewpointID(viewPointName);
+            dm.setViewpoint(viewPointID);
+        }
 
-            // Name
-            String name = getChildElementText(viewElement, ELEMENT_NAME, true);
-            if(name != null) {
-                dm.setName(name);
-            }
-            
-            // Documentation
-            String documentation = getChildElementText(viewElement, ELEMENT_DOCUMENTATION, false);
-            if(documentation != null) {
-                dm.setDocumentation(documentation);
-            }
-            
-            // Properties
-            addProperties(dm, viewElement);
-            
-            // Nodes
-            addNodes(dm, viewElement);
-            
-            // Connections
-            addConnections(viewElement);
+        // Name
+        String name = getChildElementText(viewElement, ELEMENT_NAME, true);
+        if(name != null) {
+            dm.setName(name);
         }
         
-        // Now add any view diagram references
+        // Documentation
+        String documentation = getChildElementText(viewElement, ELEMENT_DOCUMENTATION, false);
+        if(documentation != null) {
+            dm.setDocumentation(documentation);
+        }
+        
+        // Properties
+        addProperties(dm, viewElement);
+        
+        // Nodes
+        addNodes(dm, viewElement);
+        
+        // Connections
+        addConnections(viewElement);
+    }
+    
+    /**
+     * Set the referenced diagram models of view references now that all views have been added
+     */
+    private void setDiagramReferences() throws XMLModelParserException {
         for(Entry<IDiagramModelReference, String> element : fDiagramRefsLookup.entrySet()) {
             IDiagramModelReference dmRef = element.getKey();
             String refID = element.getValue();
@@ -853,13 +1138,10 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
             // Style
             addConnectionStyle(cInfo.connection, cInfo.connectionElement.getChild(ELEMENT_STYLE, ARCHIMATE3_NAMESPACE));
         }
-        
-        // Add implicit nested connections
-        addNestedConnections();
     }
     
     /**
-     * Add implicit nested connections
+     * Add implicit nested connections. This is called once after all views have been added.
      * 1. Iterate through all diagram ArchiMate nodes and look for nested nodes
      * 2. If there is a relationship between the ArchiMate elements of the nodes and no existing connection, add one
      */
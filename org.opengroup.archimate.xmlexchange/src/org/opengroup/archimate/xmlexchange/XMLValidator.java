@@ -10,7 +10,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import javax.xml.XMLConstants;
 import javax.xml.transform.Source;
@@ -27,27 +35,105 @@ import org.xml.sax.SAXException;
 /**
  * XML Validator
  * 
+ * The XSDs are compiled once into a Schema which is shared by all threads.
+ * Each thread has its own Validator because a Validator is not thread safe.
+ * 
  * @author Phillip Beauvoir
  */
 public final class XMLValidator {
     
-    public void validateXML(File xmlInstance) throws SAXException, IOException {
-        SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+    private static Schema schema;
+    
+    private static final ThreadLocal<Validator> validators = new ThreadLocal<>();
+    
+    /**
+     * @return The Schema compiled from the local XSDs. This is compiled on first use.
+     */
+    private static synchronized Schema getSchema() throws SAXException, IOException {
+        if(schema == null) {
+            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            
+            // Resolver for xsd import
+            factory.setResourceResolver(new ResourceResolver());
+            
+            // Local XSDs
+            schema = factory.newSchema(new Source[]{
+                    new StreamSource(XMLExchangePlugin.INSTANCE.getBundleInputStream(XMLExchangePlugin.XSD_FOLDER + XMLExchangePlugin.ARCHIMATE3_DIAGRAM_XSD)),
+                    new StreamSource(XMLExchangePlugin.INSTANCE.getBundleInputStream(XMLExchangePlugin.XSD_FOLDER + XMLExchangePlugin.DUBLINCORE_XSD))
+            });
+        }
         
-        // Resolver for xsd import
-        factory.setResourceResolver(new ResourceResolver());
+        return schema;
+    }
+    
+    /**
+     * @return The Validator for the current thread
+     */
+    private static Validator getValidator() throws SAXException, IOException {
+        Validator validator = validators.get();
         
-        // Local XSDs
-        Schema schema = factory.newSchema(new Source[]{
-                new StreamSource(XMLExchangePlugin.INSTANCE.getBundleInputStream(XMLExchangePlugin.XSD_FOLDER + XMLExchangePlugin.ARCHIMATE3_DIAGRAM_XSD)),
-                new StreamSource(XMLExchangePlugin.INSTANCE.getBundleInputStream(XMLExchangePlugin.XSD_FOLDER + XMLExchangePlugin.DUBLINCORE_XSD))
-        });
-
-        Validator validator = schema.newValidator();
+        if(validator == null) {
+            validator = getSchema().newValidator();
+            
+            // Don't allow DTD loading in case of XSS exploits
+            validator.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, ""); //$NON-NLS-1$
+            validator.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, ""); //$NON-NLS-1$
+            
+            validators.set(validator);
+        }
         
-        // Don't allow DTD loading in case of XSS exploits
-        validator.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, ""); //$NON-NLS-1$
-        validator.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, ""); //$NON-NLS-1$
+        return validator;
+    }
+    
+    /**
+     * Validate XML files concurrently
+     * @param xmlInstances The files to validate
+     * @return A map of each file that is not valid to the exception thrown when validating it, in the order of xmlInstances
+     */
+    public Map<File, Exception> validateXML(List<File> xmlInstances) throws SAXException, IOException {
+        // Compile the XSDs now so that any error is thrown here and not for each file
+        getSchema();
+        
+        List<ForkJoinTask<Exception>> tasks = new ArrayList<>();
+        
+        for(File xmlInstance : xmlInstances) {
+            tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                try {
+                    validateXML(xmlInstance);
+                    return null;
+                }
+                catch(SAXException | IOException ex) {
+                    return ex;
+                }
+            }));
+        }
+        
+        Map<File, Exception> result = new LinkedHashMap<>();
+        
+        for(int i = 0; i < tasks.size(); i++) {
+            Exception exception;
+            
+            try {
+                exception = tasks.get(i).get();
+            }
+            catch(ExecutionException ex) {
+                exception = ex.getCause() instanceof Exception ? (Exception)ex.getCause() : ex;
+            }
+            catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            
+            if(exception != null) {
+                result.put(xmlInstances.get(i), exception);
+            }
+        }
+        
+        return result;
+    }
+    
+    public void validateXML(File xmlInstance) throws SAXException, IOException {
+        Validator validator = getValidator();
         
         // Fixes #274 https://github.com/archimatetool/archi/issues/274
         FileInputStream in = new FileInputStream(xmlInstance);
@@ -9,6 +9,7 @@ package com.archimatetool.csv;
 import junit.framework.TestSuite;
 
 import com.archimatetool.csv.export.CSVExporterTests;
+import com.archimatetool.csv.export.CSVRowWriterTests;
 import com.archimatetool.csv.importer.CSVImporterTests;
 
 @SuppressWarnings("nls")
@@ -18,6 +19,7 @@ public class AllTests {
 		TestSuite suite = new TestSuite("com.archimatetool.csv");
 
 		suite.addTest(CSVExporterTests.suite());
+        suite.addTest(CSVRowWriterTests.suite());
         suite.addTest(CSVImporterTests.suite());
 		
         return suite;
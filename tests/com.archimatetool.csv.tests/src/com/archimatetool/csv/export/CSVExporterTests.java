@@ -6,15 +6,21 @@
 package com.archimatetool.csv.export;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.archimatetool.csv.CSVConstants;
+import com.archimatetool.editor.utils.FileUtils;
+import com.archimatetool.model.FolderType;
 import com.archimatetool.model.IArchimateConcept;
 import com.archimatetool.model.IArchimateElement;
 import com.archimatetool.model.IArchimateFactory;
@@ -22,6 +28,7 @@ import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimateRelationship;
 import com.archimatetool.model.IProfile;
 import com.archimatetool.model.IProperty;
+import com.archimatetool.tests.TestUtils;
 
 import junit.framework.JUnit4TestAdapter;
 
@@ -33,11 +40,12 @@ public class CSVExporterTests {
         return new JUnit4TestAdapter(CSVExporterTests.class);
     }
     
+    private IArchimateModel model;
     private CSVExporter exporter;
     
     @Before
     public void runOnceBeforeEachTest() {
-        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model = IArchimateFactory.eINSTANCE.createArchimateModel();
         model.setId("0a9d34ab");
         model.setName("The Main Model");
         model.setPurpose("This is the Documentation");
@@ -45,6 +53,11 @@ public class CSVExporterTests {
         exporter = new CSVExporter(model);
     }
     
+    @After
+    public void runOnceAfterEachTest() throws IOException {
+        FileUtils.deleteFolder(TestUtils.TMP_FOLDER);
+    }
+    
     @Test
     public void testCreateHeader() {
         String[] elements = { "One", "Two", "Three" };
@@ -68,63 +81,6 @@ public class CSVExporterTests {
         assertEquals(expected, exporter.createHeader(elements));
     }
 
-    @Test
-    public void testNormalise() {
-        assertEquals("Hello\nWorld\r\nWith\rSome Things", exporter.normalise("Hello\nWorld\r\nWith\rSome\tThings"));
-        assertEquals("Hello World With Some Things", exporter.normalise("Hello World With Some Things"));
-        assertEquals("\"\"Hello World\"\"", exporter.normalise("\"Hello World\""));
-    }
-    
-    @Test
-    public void testNormalise_StripNewLinesTrue() {
-        exporter.setStripNewLines(true);
-        assertEquals("Hello World With Some Things", exporter.normalise("Hello\nWorld\r\nWith\rSome\tThings"));
-        assertEquals("Hello World With Some Things", exporter.normalise("Hello World With Some Things"));
-    }
-    
-    @Test
-    public void testSurroundWithQuotes() {
-        assertEquals("\"Hello World\"", exporter.surroundWithQuotes("Hello World"));
-        
-        exporter.setExcelCompatible(true);
-        assertEquals("\"=\"\" Hello World\"\"\"", exporter.surroundWithQuotes(" Hello World"));
-        assertEquals("\"=\"\"0123\"\"\"", exporter.surroundWithQuotes("0123"));
-    }
-    
-    @Test
-    public void testNeedsLeadingCharHack() {
-        assertFalse(exporter.needsLeadingCharHack(null));
-        assertFalse(exporter.needsLeadingCharHack(""));
-        assertFalse(exporter.needsLeadingCharHack("Hello World"));
-        assertFalse(exporter.needsLeadingCharHack("   Hello World"));
-        assertFalse(exporter.needsLeadingCharHack("0123"));
-        
-        exporter.setExcelCompatible(true);
-        assertFalse(exporter.needsLeadingCharHack(null));
-        assertFalse(exporter.needsLeadingCharHack(""));
-        assertFalse(exporter.needsLeadingCharHack("Hello World"));
-        assertTrue(exporter.needsLeadingCharHack("   Hello World"));
-        assertTrue(exporter.needsLeadingCharHack("0123"));
-    }
-
-    @Test
-    public void testNeedsLeadingCharFormulaHack() {
-        assertFalse(exporter.needsLeadingCharFormulaHack(null));
-        assertFalse(exporter.needsLeadingCharFormulaHack(""));
-        assertFalse(exporter.needsLeadingCharFormulaHack("Hello World"));
-        assertFalse(exporter.needsLeadingCharFormulaHack("   Hello World"));
-        assertFalse(exporter.needsLeadingCharFormulaHack("0123"));
-        
-        exporter.setExcelCompatible(true);
-        assertFalse(exporter.needsLeadingCharFormulaHack(null));
-        assertFalse(exporter.needsLeadingCharFormulaHack(""));
-        assertFalse(exporter.needsLeadingCharFormulaHack("Hello World"));
-        assertTrue(exporter.needsLeadingCharFormulaHack("=cmd"));
-        assertTrue(exporter.needsLeadingCharFormulaHack("+0123"));
-        assertTrue(exporter.needsLeadingCharFormulaHack("-0123"));
-        assertTrue(exporter.needsLeadingCharFormulaHack("@0123"));
-    }
-
     @Test
     public void testCreateModelRow() {
         assertEquals("\"0a9d34ab\",\"ArchimateModel\",\"The Main Model\",\"This is the Documentation\",\"\"", exporter.createModelRow());
@@ -265,4 +221,57 @@ public class CSVExporterTests {
         assertEquals("12345-properties.csv", exporter.createPropertiesFileName());
     }
 
+    
+    @Test
+    public void testExport() throws IOException {
+        model.setDefaults();
+        
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element.setId("a1234567");
+        element.setName("Actor");
+        model.getFolder(FolderType.BUSINESS).getElements().add(element);
+        
+        IArchimateRelationship relation = IArchimateFactory.eINSTANCE.createAssociationRelationship();
+        relation.setId("56435fd6");
+        relation.connect(element, element);
+        model.getFolder(FolderType.RELATIONS).getElements().add(relation);
+        
+        IProperty property = IArchimateFactory.eINSTANCE.createProperty();
+        property.setKey("key");
+        property.setValue("value");
+        element.getProperties().add(property);
+        
+        File folder = TestUtils.createTempFolder("csv");
+        exporter.export(folder);
+        
+        String CRLF = CSVConstants.CRLF;
+        
+        assertEquals("\"ID\",\"Type\",\"Name\",\"Documentation\",\"Specialization\"" + CRLF
+                + "\"0a9d34ab\",\"ArchimateModel\",\"The Main Model\",\"This is the Documentation\",\"\"" + CRLF
+                + "\"a1234567\",\"BusinessActor\",\"Actor\",\"\",\"\"",
+                readFile(new File(folder, "elements.csv")));
+        
+        assertEquals("\"ID\",\"Type\",\"Name\",\"Documentation\",\"Source\",\"Target\",\"Specialization\"" + CRLF
+                + "\"56435fd6\",\"AssociationRelationship\",\"\",\"\",\"a1234567\",\"a1234567\",\"\"",
+                readFile(new File(folder, "relations.csv")));
+        
+        assertEquals("\"ID\",\"Key\",\"Value\"" + CRLF
+                + "\"a1234567\",\"key\",\"value\"" + CRLF
+                + "\"56435fd6\",\"Directed\",\"false\"",
+                readFile(new File(folder, "properties.csv")));
+    }
+    
+    @Test
+    public void testExport_EmptyProperties() throws IOException {
+        model.setDefaults();
+        
+        File folder = TestUtils.createTempFolder("csv");
+        exporter.export(folder);
+        
+        assertEquals("\"ID\",\"Key\",\"Value\"", readFile(new File(folder, "properties.csv")));
+    }
+    
+    private String readFile(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
 }
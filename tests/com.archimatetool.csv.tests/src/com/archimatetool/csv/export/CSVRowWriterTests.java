@@ -0,0 +1,122 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.csv.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+@SuppressWarnings("nls")
+public class CSVRowWriterTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(CSVRowWriterTests.class);
+    }
+    
+    private String writeText(String s, boolean stripNewLines, boolean excelCompatible) throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        try(CSVRowWriter writer = new CSVRowWriter(stringWriter, ',', stripNewLines, excelCompatible)) {
+            writer.writeText(s);
+        }
+        return stringWriter.toString();
+    }
+    
+    private String writeField(String s, boolean excelCompatible) throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        try(CSVRowWriter writer = new CSVRowWriter(stringWriter, ',', false, excelCompatible)) {
+            writer.writeField(s);
+        }
+        return stringWriter.toString();
+    }
+    
+    @Test
+    public void testWriteText() throws IOException {
+        assertEquals("\"Hello\nWorld\r\nWith\rSome Things\"", writeText("Hello\nWorld\r\nWith\rSome\tThings", false, false));
+        assertEquals("\"Hello World With Some Things\"", writeText("Hello World With Some Things", false, false));
+        assertEquals("\"\"\"Hello World\"\"\"", writeText("\"Hello World\"", false, false));
+        assertEquals("\"\"", writeText(null, false, false));
+    }
+    
+    @Test
+    public void testWriteText_StripNewLines() throws IOException {
+        assertEquals("\"Hello World With Some Things\"", writeText("Hello\nWorld\r\nWith\rSome\tThings", true, false));
+        assertEquals("\"Hello World With Some Things\"", writeText("Hello World With Some Things", true, false));
+        assertEquals("\"=\"\" Start\"\"\"", writeText("\r\nStart", true, true));
+    }
+    
+    @Test
+    public void testWriteText_ExcelCompatible() throws IOException {
+        assertEquals("\" Tab\"", writeText("\tTab", false, false));
+        assertEquals("\"=\"\" Tab\"\"\"", writeText("\tTab", false, true));
+        assertEquals("\" =SUM(A1)\"", writeText("=SUM(A1)", false, true));
+    }
+    
+    @Test
+    public void testWriteField() throws IOException {
+        assertEquals("\"Hello World\"", writeField("Hello World", false));
+        assertEquals("\"0123\"", writeField("0123", false));
+        assertEquals("\"=cmd\"", writeField("=cmd", false));
+        assertEquals("\"null\"", writeField(null, false));
+        
+        assertEquals("\"Hello World\"", writeField("Hello World", true));
+        assertEquals("\"=\"\" Hello World\"\"\"", writeField(" Hello World", true));
+        assertEquals("\"=\"\"0123\"\"\"", writeField("0123", true));
+        assertEquals("\" =cmd\"", writeField("=cmd", true));
+        assertEquals("\"\"", writeField("", true));
+    }
+    
+    @Test
+    public void testNeedsLeadingCharHack() {
+        assertFalse(CSVRowWriter.needsLeadingCharHack((char)0));
+        assertFalse(CSVRowWriter.needsLeadingCharHack('H'));
+        assertTrue(CSVRowWriter.needsLeadingCharHack(' '));
+        assertTrue(CSVRowWriter.needsLeadingCharHack('0'));
+    }
+    
+    @Test
+    public void testNeedsLeadingCharFormulaHack() {
+        assertFalse(CSVRowWriter.needsLeadingCharFormulaHack((char)0));
+        assertFalse(CSVRowWriter.needsLeadingCharFormulaHack('H'));
+        assertFalse(CSVRowWriter.needsLeadingCharFormulaHack('0'));
+        assertTrue(CSVRowWriter.needsLeadingCharFormulaHack('='));
+        assertTrue(CSVRowWriter.needsLeadingCharFormulaHack('+'));
+        assertTrue(CSVRowWriter.needsLeadingCharFormulaHack('-'));
+        assertTrue(CSVRowWriter.needsLeadingCharFormulaHack('@'));
+    }
+    
+    @Test
+    public void testRows() throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        try(CSVRowWriter writer = new CSVRowWriter(stringWriter, ';', false, false)) {
+            writer.writeHeader(new String[] { "One", "Two" });
+            writer.startRow();
+            writer.writeField("id");
+            writer.writeText("Text");
+        }
+        
+        assertEquals("\"One\";\"Two\"\r\n\"id\";\"Text\"", stringWriter.toString());
+    }
+    
+    @Test
+    public void testLargerThanBuffer() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while(sb.length() < CSVRowWriter.BUFFER_SIZE * 2) {
+            sb.append("Some \"text\"\t");
+        }
+        String s = sb.toString();
+        
+        String expected = "\"" + s.replace("\"", "\"\"").replace("\t", " ") + "\"";
+        assertEquals(expected, writeText(s, false, false));
+    }
+}
@@ -14,6 +14,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.StringReader;
 
 import org.eclipse.gef.commands.CommandStack;
 import org.junit.Before;
@@ -425,4 +426,50 @@ public class CSVImporterTests {
         assertEquals(property, importer.getProperty(element, "key"));
         assertNull(importer.getProperty(element, "key2"));
     }
+    
+    @Test
+    public void testGetProperty_FirstWithKey() {
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        IProperty property1 = IArchimateFactory.eINSTANCE.createProperty();
+        property1.setKey("key");
+        element.getProperties().add(property1);
+        IProperty property2 = IArchimateFactory.eINSTANCE.createProperty();
+        property2.setKey("key");
+        element.getProperties().add(property2);
+        
+        assertEquals(property1, importer.getProperty(element, "key"));
+    }
+    
+    @Test
+    public void testFindObjectByID() throws Exception {
+        assertNull(importer.findObjectByID(null));
+        assertNull(importer.findObjectByID("f00aa5b4"));
+        
+        importer.doImport(elements1File);
+        
+        // Now in the model
+        importer = new CSVImporter(model);
+        assertNotNull(importer.findObjectByID("f00aa5b4"));
+    }
+    
+    @Test
+    public void testDetectDelimiter() throws Exception {
+        assertEquals(',', CSVImporter.detectDelimiter(new StringReader("\"ID\",\"Key\",\"Value\"")));
+        assertEquals(';', CSVImporter.detectDelimiter(new StringReader("\"ID\";\"Key\";\"Value\"\n\"1\",\"2\",\"3\",\"4\",\"5\"")));
+        assertEquals('\t', CSVImporter.detectDelimiter(new StringReader("ID\tKey\tValue")));
+        
+        // Delimiters in quotes are ignored
+        assertEquals(';', CSVImporter.detectDelimiter(new StringReader("\"I,D\";\"K,e,y\"")));
+        
+        // Default
+        assertEquals(',', CSVImporter.detectDelimiter(new StringReader("")));
+        assertEquals(',', CSVImporter.detectDelimiter(new StringReader("ID")));
+    }
+    
+    @Test
+    public void testDetectDelimiter_ResetsReader() throws Exception {
+        StringReader reader = new StringReader("ID;Key");
+        CSVImporter.detectDelimiter(reader);
+        assertEquals('I', reader.read());
+    }
 }
@@ -0,0 +1,88 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.diagram.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Rectangle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.archimatetool.editor.TestSupport;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.testingtools.ArchimateTestModel;
+
+import junit.framework.JUnit4TestAdapter;
+
+/**
+ * DiagramImageRendererTests
+ * 
+ * @author Phillip Beauvoir
+ */
+public class DiagramImageRendererTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(DiagramImageRendererTests.class);
+    }
+    
+    private static IArchimateModel model;
+    
+    private DiagramImageRenderer renderer;
+    
+    @BeforeClass
+    public static void runOnceBeforeAllTests() throws IOException {
+        ArchimateTestModel tm = new ArchimateTestModel(TestSupport.TEST_MODEL_FILE_1);
+        model = tm.loadModel();
+    }
+    
+    @Before
+    public void runBeforeEachTest() {
+        renderer = new DiagramImageRenderer();
+    }
+    
+    @After
+    public void runAfterEachTest() {
+        renderer.dispose();
+    }
+
+    @Test
+    public void testCreateModelReferencedImage() {
+        IDiagramModel dm = model.getDiagramModels().get(2);
+        
+        int width = 720 + 193; // x of furthest object in diagram, and its width
+        int height = 468 + 85; // x of furthest object in diagram, and its height
+        
+        ModelReferencedImage image = renderer.createModelReferencedImage(dm, 1, 0);
+        assertEquals(new Rectangle(0, 0, width, height), image.getImage().getBounds());
+        image.getImage().dispose();
+    }
+    
+    @Test
+    public void testCreateModelReferencedImage_SameAsDiagramUtils() {
+        // Render each diagram model twice so that the Viewers are re-used for different contents
+        for(int i = 0; i < 2; i++) {
+            for(IDiagramModel dm : model.getDiagramModels()) {
+                ModelReferencedImage expected = DiagramUtils.createModelReferencedImage(dm, 1, 10);
+                ModelReferencedImage actual = renderer.createModelReferencedImage(dm, 1, 10);
+                
+                assertEquals(expected.getBounds(), actual.getBounds());
+                
+                Image expectedImage = expected.getImage();
+                Image actualImage = actual.getImage();
+                assertEquals(expectedImage.getBounds(), actualImage.getBounds());
+                
+                expectedImage.dispose();
+                actualImage.dispose();
+            }
+        }
+    }
+}
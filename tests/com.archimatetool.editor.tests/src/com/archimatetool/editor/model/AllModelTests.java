@@ -13,6 +13,7 @@ import com.archimatetool.editor.model.compatibility.handlers.OutlineOpacityHandl
 import com.archimatetool.editor.model.impl.ArchiveManagerTests;
 import com.archimatetool.editor.model.impl.ByteArrayStorageTests;
 import com.archimatetool.editor.model.impl.EditorModelManagerTests;
+import com.archimatetool.editor.model.impl.LazyArchiveStorageTests;
 
 import junit.framework.TestSuite;
 
@@ -42,6 +43,7 @@ public class AllModelTests {
         // model.impl
         suite.addTest(ArchiveManagerTests.suite());
         suite.addTest(ByteArrayStorageTests.suite());
+        suite.addTest(LazyArchiveStorageTests.suite());
 		suite.addTest(EditorModelManagerTests.suite());
 		
 		return suite;
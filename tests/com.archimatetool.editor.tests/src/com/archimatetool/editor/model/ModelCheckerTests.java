@@ -6,12 +6,15 @@
 package com.archimatetool.editor.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.util.Iterator;
 import java.util.List;
 
+import org.eclipse.emf.ecore.EObject;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -60,6 +63,98 @@ public class ModelCheckerTests {
         assertTrue(modelChecker.checkAll());
     }
     
+    @Test
+    public void checkAll_Parallel() throws Exception {
+        File file = TestData.TEST_MODEL_FILE_ARCHISURANCE;
+        IArchimateModel model = new EditorModelManager().load(file);
+        assertNotNull(model);
+        ModelChecker modelChecker = new ModelChecker(model);
+        modelChecker.setParallel(true);
+        assertTrue(modelChecker.checkAll());
+        
+        // Break a diagram object
+        IArchimateElement element = null;
+        for(Iterator<EObject> iter = model.eAllContents(); element == null && iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof IDiagramModelArchimateObject) {
+                element = ((IDiagramModelArchimateObject)eObject).getArchimateElement();
+            }
+        }
+        ((IFolder)element.eContainer()).getElements().remove(element);
+        assertFalse(modelChecker.checkAll());
+    }
+    
+    @Test
+    public void checkAll_Incremental() {
+        IArchimateElement actor = IArchimateFactory.eINSTANCE.createBusinessActor();
+        IDiagramModelArchimateObject dmo = tm.createDiagramModelArchimateObjectAndAddToModel(actor);
+        model.getDefaultDiagramModel().getChildren().add(dmo);
+        
+        modelChecker.setIncremental(true);
+        assertTrue(modelChecker.checkAll());
+        
+        // Changing an object is fine
+        actor.setName("Actor");
+        assertTrue(modelChecker.checkAll());
+        
+        // Removing the element orphans the diagram object
+        model.getFolder(FolderType.BUSINESS).getElements().remove(actor);
+        assertFalse(modelChecker.checkAll());
+        assertTrue(modelChecker.getErrorMessages().get(0).startsWith("Diagram Element has orphaned ArchiMate element"));
+        
+        // Still reported
+        assertFalse(modelChecker.checkAll());
+        
+        // Fixed
+        model.getFolder(FolderType.BUSINESS).getElements().add(actor);
+        assertTrue(modelChecker.checkAll());
+        
+        modelChecker.dispose();
+    }
+    
+    @Test
+    public void checkAll_Incremental_RemovedObjectsAreNotKept() {
+        IArchimateElement actor = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getFolder(FolderType.BUSINESS).getElements().add(actor);
+        
+        modelChecker.setIncremental(true);
+        assertTrue(modelChecker.checkAll());
+        
+        actor.setName("Actor");
+        assertTrue(modelChecker.getDirtyObjects().contains(actor));
+        
+        model.getFolder(FolderType.BUSINESS).getElements().remove(actor);
+        assertFalse(modelChecker.getDirtyObjects().contains(actor));
+        
+        assertTrue(modelChecker.checkAll());
+        assertTrue(modelChecker.getDirtyObjects().isEmpty());
+        
+        modelChecker.dispose();
+    }
+    
+    @Test
+    public void checkAll_Parallel_SameMessages() {
+        IArchimateElement actor = IArchimateFactory.eINSTANCE.createBusinessActor();
+        actor.setId(null);
+        model.getFolder(FolderType.BUSINESS).getElements().add(actor);
+        
+        IArchimateElement role = IArchimateFactory.eINSTANCE.createBusinessRole();
+        role.setId("");
+        model.getFolder(FolderType.BUSINESS).getElements().add(role);
+        
+        IDiagramModelArchimateObject dmo = IArchimateFactory.eINSTANCE.createDiagramModelArchimateObject();
+        model.getDefaultDiagramModel().getChildren().add(dmo);
+        
+        assertFalse(modelChecker.checkAll());
+        List<String> expected = modelChecker.getErrorMessages();
+        assertEquals(3, expected.size());
+        
+        ModelChecker parallelChecker = new ModelChecker(model);
+        parallelChecker.setParallel(true);
+        assertFalse(parallelChecker.checkAll());
+        assertEquals(expected, parallelChecker.getErrorMessages());
+    }
+    
     @Test
     public void checkFolderStructure() {
         List<String> messages = modelChecker.checkFolderStructure();
@@ -5,6 +5,7 @@
  */
 package com.archimatetool.editor.model.impl;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -16,6 +17,10 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.swt.graphics.Image;
@@ -258,4 +263,146 @@ public class ArchiveManagerTests {
             assertSame(archiveManager.getBytesFromEntry(entryName), clone.getBytesFromEntry(entryName));
         }
     }
+    
+    @Test
+    public void testClone_OnDemand() throws Exception {
+        File file = TestUtils.createTempFile(".archimate");
+        Files.copy(TestSupport.TEST_MODEL_FILE_ZIPPED.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        
+        archiveManager.setLoadImagesOnDemand(true);
+        model.setFile(file);
+        archiveManager.loadImages();
+        
+        IArchiveManager clone = archiveManager.clone(IArchimateFactory.eINSTANCE.createArchimateModel());
+        assertEquals(archiveManager.getLoadedImagePaths(), clone.getLoadedImagePaths());
+        
+        // Clone can read the images after the original's file is replaced
+        archiveManager.saveModel();
+        
+        for(String entryName : clone.getLoadedImagePaths()) {
+            assertArrayEquals(archiveManager.getBytesFromEntry(entryName), clone.getBytesFromEntry(entryName));
+        }
+        
+        clone.dispose();
+    }
+    
+    @Test
+    public void testCopyImageBytes() throws Exception {
+        File imgFile = new File(TestSupport.getTestDataFolder(), "/img/img1.png");
+        String pathName = archiveManager.addImageFromFile(imgFile);
+        
+        IArchimateModel model2 = tm.createNewModel();
+        IArchiveManager archiveManager2 = (IArchiveManager)model2.getAdapter(IArchiveManager.class);
+        
+        String pathName2 = archiveManager2.copyImageBytes(archiveManager, pathName);
+        assertEquals(pathName, pathName2);
+        assertEquals(archiveManager.getImageDigest(pathName), archiveManager2.getImageDigest(pathName2));
+        
+        // Copy again is the same path
+        assertEquals(pathName2, archiveManager2.copyImageBytes(archiveManager, pathName));
+        assertEquals(1, archiveManager2.getLoadedImagePaths().size());
+    }
+    
+    @Test
+    public void testGetImagePathForDigest() throws Exception {
+        assertNull(archiveManager.getImagePathForDigest("digest"));
+        assertNull(archiveManager.getImageDigest("path"));
+        
+        File imgFile = new File(TestSupport.getTestDataFolder(), "/img/img1.png");
+        String pathName = archiveManager.addImageFromFile(imgFile);
+        
+        String digest = archiveManager.getImageDigest(pathName);
+        assertNotNull(digest);
+        assertEquals(pathName, archiveManager.getImagePathForDigest(digest));
+    }
+    
+    @Test
+    public void testLoadImages_OnDemand() throws Exception {
+        archiveManager.setLoadImagesOnDemand(true);
+        model.setFile(TestSupport.TEST_MODEL_FILE_ZIPPED);
+        
+        archiveManager.loadImages();
+        assertEquals(2, archiveManager.getLoadedImagePaths().size());
+        
+        ArchiveManager eagerArchiveManager = new ArchiveManager(null);
+        eagerArchiveManager.setLoadImagesOnDemand(false);
+        eagerArchiveManager.loadImagesFromModelFile(TestSupport.TEST_MODEL_FILE_ZIPPED);
+        
+        for(String imagePath : eagerArchiveManager.getLoadedImagePaths()) {
+            assertArrayEquals(eagerArchiveManager.getBytesFromEntry(imagePath), archiveManager.getBytesFromEntry(imagePath));
+            assertNotNull(archiveManager.createImageData(imagePath));
+        }
+    }
+    
+    @Test
+    public void testSaveModel_OnDemand() throws Exception {
+        File file = TestUtils.createTempFile(".archimate");
+        Files.copy(TestSupport.TEST_MODEL_FILE_ZIPPED.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        
+        archiveManager.setLoadImagesOnDemand(true);
+        model.setFile(file);
+        archiveManager.loadImages();
+        
+        String imagePath = archiveManager.getLoadedImagePaths().iterator().next();
+        byte[] bytes = archiveManager.getBytesFromEntry(imagePath).clone();
+        
+        IDiagramModelImage dmImage = IArchimateFactory.eINSTANCE.createDiagramModelImage();
+        dm.getChildren().add(dmImage);
+        dmImage.setImagePath(imagePath);
+        
+        // Save over the file that the images are read from
+        archiveManager.saveModel();
+        assertTrue(IArchiveManager.FACTORY.isArchiveFile(file));
+        
+        // Image is the same in the saved file
+        ArchiveManager eagerArchiveManager = new ArchiveManager(null);
+        eagerArchiveManager.setLoadImagesOnDemand(false);
+        eagerArchiveManager.loadImagesFromModelFile(file);
+        assertArrayEquals(bytes, eagerArchiveManager.getBytesFromEntry(imagePath));
+        
+        // And all images are still available
+        assertEquals(2, archiveManager.getLoadedImagePaths().size());
+        assertArrayEquals(bytes, archiveManager.getBytesFromEntry(imagePath));
+        
+        archiveManager.dispose();
+        file.delete();
+    }
+    
+    @Test
+    public void testSaveModel_StoreCompressedImages() throws Exception {
+        IDiagramModelImage dmImage = IArchimateFactory.eINSTANCE.createDiagramModelImage();
+        dm.getChildren().add(dmImage);
+        
+        String imagePath = archiveManager.addImageFromFile(new File(TestSupport.getTestDataFolder(), "/img/img1.png"));
+        dmImage.setImagePath(imagePath);
+        
+        File file = TestUtils.createTempFile(".archimate");
+        model.setFile(file);
+        
+        archiveManager.setCompressionLevel(9);
+        archiveManager.setStoreCompressedImages(true);
+        archiveManager.saveModel();
+        
+        try(ZipFile zipFile = new ZipFile(file)) {
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("model.xml").getMethod());
+            
+            ZipEntry zipEntry = zipFile.getEntry(imagePath);
+            assertEquals(ZipEntry.STORED, zipEntry.getMethod());
+            assertArrayEquals(archiveManager.getBytesFromEntry(imagePath), zipFile.getInputStream(zipEntry).readAllBytes());
+        }
+        
+        // No temporary files left behind
+        File[] files = file.getParentFile().listFiles((dir, name) -> name.startsWith("~" + file.getName()));
+        assertEquals(0, files.length);
+        
+        file.delete();
+    }
+    
+    @Test
+    public void testIsCompressedImage() throws Exception {
+        byte[] bytes = Files.readAllBytes(new File(TestSupport.getTestDataFolder(), "/img/img1.png").toPath());
+        assertTrue(ArchiveManager.isCompressedImage(bytes));
+        assertFalse(ArchiveManager.isCompressedImage(new byte[] { 'B', 'M', 0, 0 }));
+        assertFalse(ArchiveManager.isCompressedImage(new byte[0]));
+    }
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ package com.archimatetool.editor.model.impl;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -152,6 +153,43 @@ public class ByteArrayStorageTests {
         // entry2 should reference original bytes1
         assertEquals(bytes1, storage.getEntry(entry2));
     }
-
     
+    @Test
+    public void createDigest() throws Exception {
+        byte[] bytes1 = storage.getBytesFromFile(img1File);
+        byte[] bytes2 = storage.getBytesFromFile(img2File);
+        
+        String digest = ByteArrayStorage.createDigest(bytes1);
+        assertTrue(digest.startsWith(imgfileByteSize + "-"));
+        assertEquals(digest, ByteArrayStorage.createDigest(bytes2));
+        assertNotEquals(digest, ByteArrayStorage.createDigest(new byte[] { 1, 2, 3 }));
+    }
+    
+    @Test
+    public void getKeyForDigest() throws Exception {
+        byte[] bytes = storage.getBytesFromFile(img1File);
+        String digest = ByteArrayStorage.createDigest(bytes);
+        assertNull(storage.getKeyForDigest(digest));
+        
+        storage.addByteContentEntry(entry1, bytes);
+        assertEquals(entry1, storage.getKeyForDigest(digest));
+        assertEquals(digest, storage.getDigest(entry1));
+    }
+    
+    @Test
+    public void removeEntry_ReReferencesDigest() throws Exception {
+        byte[] bytes = storage.getBytesFromFile(img1File);
+        String digest = ByteArrayStorage.createDigest(bytes);
+        
+        storage.addByteContentEntry(entry1, bytes);
+        storage.addByteContentEntry(entry2, bytes);
+        assertEquals(entry1, storage.getKeyForDigest(digest));
+        
+        storage.removeEntry(entry1);
+        assertEquals(entry2, storage.getKeyForDigest(digest));
+        
+        storage.removeEntry(entry2);
+        assertNull(storage.getKeyForDigest(digest));
+        assertNull(storage.getDigest(entry2));
+    }
 }
@@ -0,0 +1,227 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.editor.TestSupport;
+import com.archimatetool.tests.TestUtils;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+@SuppressWarnings("nls")
+public class LazyArchiveStorageTests {
+    
+    private LazyArchiveStorage storage;
+    private ByteArrayStorage byteArrayStorage;
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(LazyArchiveStorageTests.class);
+    }
+    
+    @Before
+    public void runBeforeEachTest() throws Exception {
+        storage = new LazyArchiveStorage(TestSupport.TEST_MODEL_FILE_ZIPPED, "images/", LazyArchiveStorage.DEFAULT_MAX_CACHE_SIZE);
+        
+        // Eager storage for comparison
+        byteArrayStorage = new ByteArrayStorage();
+        ArchiveManager archiveManager = new ArchiveManager(null);
+        archiveManager.setLoadImagesOnDemand(false);
+        archiveManager.loadImagesFromModelFile(TestSupport.TEST_MODEL_FILE_ZIPPED);
+        for(String entryName : archiveManager.getLoadedImagePaths()) {
+            byteArrayStorage.addByteContentEntry(entryName, archiveManager.getBytesFromEntry(entryName));
+        }
+    }
+    
+    @After
+    public void runAfterEachTest() {
+        storage.dispose();
+    }
+    
+    // ---------------------------------------------------------------------------------------------
+    // Tests
+    // ---------------------------------------------------------------------------------------------
+
+    @Test
+    public void getEntryNames() {
+        assertTrue(storage.hasEntries());
+        assertEquals(2, storage.getEntryNames().size());
+        assertEquals(byteArrayStorage.getEntryNames(), storage.getEntryNames());
+    }
+    
+    @Test
+    public void getEntry() throws Exception {
+        assertNull(storage.getEntry(null));
+        assertNull(storage.getEntry("bogus"));
+        
+        for(String entryName : storage.getEntryNames()) {
+            assertArrayEquals(byteArrayStorage.getEntry(entryName), storage.getEntry(entryName));
+            assertEquals(byteArrayStorage.getEntrySize(entryName), storage.getEntrySize(entryName));
+        }
+    }
+    
+    @Test
+    public void getDigest() throws Exception {
+        for(String entryName : storage.getEntryNames()) {
+            String digest = storage.getDigest(entryName);
+            assertEquals(byteArrayStorage.getDigest(entryName), digest);
+            assertEquals(entryName, storage.getKeyForDigest(digest));
+        }
+        
+        assertNull(storage.getKeyForDigest("1-abc"));
+    }
+    
+    @Test
+    public void cacheIsBounded() throws Exception {
+        storage.dispose();
+        
+        // Cache only big enough for the largest entry
+        long max = 0;
+        for(String entryName : byteArrayStorage.getEntryNames()) {
+            max = Math.max(max, byteArrayStorage.getEntrySize(entryName));
+        }
+        
+        storage = new LazyArchiveStorage(TestSupport.TEST_MODEL_FILE_ZIPPED, "images/", max);
+        
+        for(String entryName : storage.getEntryNames()) {
+            assertNotNull(storage.getEntry(entryName));
+            assertTrue(storage.getCacheSize() <= max);
+        }
+    }
+    
+    @Test
+    public void removeEntry() throws Exception {
+        String entryName = storage.getEntryNames().iterator().next();
+        storage.removeEntry(entryName);
+        assertFalse(storage.hasEntry(entryName));
+        assertNull(storage.getEntry(entryName));
+    }
+    
+    @Test
+    public void moveEntries() throws Exception {
+        ByteArrayStorage target = new ByteArrayStorage();
+        storage.moveEntries(target);
+        
+        assertFalse(storage.hasEntries());
+        assertEquals(byteArrayStorage.getEntryNames(), target.getEntryNames());
+        
+        for(String entryName : target.getEntryNames()) {
+            assertArrayEquals(byteArrayStorage.getEntry(entryName), target.getEntry(entryName));
+        }
+    }
+    
+    @Test
+    public void getKeyForDigest_AfterRemoveEntry() throws Exception {
+        String entryName = storage.getEntryNames().iterator().next();
+        String digest = byteArrayStorage.getDigest(entryName);
+        assertEquals(entryName, storage.getKeyForDigest(digest));
+        
+        storage.removeEntry(entryName);
+        assertNull(storage.getKeyForDigest(digest));
+    }
+    
+    @Test
+    public void copy() throws Exception {
+        LazyArchiveStorage copy = storage.copy();
+        assertEquals(storage.getEntryNames(), copy.getEntryNames());
+        
+        // Entries removed from the copy are still in the original
+        String entryName = copy.getEntryNames().iterator().next();
+        copy.removeEntry(entryName);
+        assertFalse(copy.hasEntry(entryName));
+        assertTrue(storage.hasEntry(entryName));
+        
+        // Copy can still read entries when the original is disposed
+        storage.dispose();
+        for(String name : copy.getEntryNames()) {
+            assertArrayEquals(byteArrayStorage.getEntry(name), copy.getEntry(name));
+        }
+        
+        copy.dispose();
+    }
+    
+    @Test
+    public void releaseFile() throws Exception {
+        storage.dispose();
+        
+        File file = TestUtils.createTempFile(".zip");
+        Files.copy(TestSupport.TEST_MODEL_FILE_ZIPPED.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        
+        storage = new LazyArchiveStorage(file, "images/", LazyArchiveStorage.DEFAULT_MAX_CACHE_SIZE);
+        LazyArchiveStorage copy = storage.copy();
+        
+        assertTrue(storage.isFile(file));
+        storage.releaseFile();
+        assertFalse(storage.hasEntries());
+        
+        // Copy has its entries in memory after the file has gone
+        file.delete();
+        assertEquals(byteArrayStorage.getEntryNames(), copy.getEntryNames());
+        for(String entryName : copy.getEntryNames()) {
+            assertArrayEquals(byteArrayStorage.getEntry(entryName), copy.getEntry(entryName));
+            assertEquals(entryName, copy.getKeyForDigest(byteArrayStorage.getDigest(entryName)));
+        }
+        
+        copy.dispose();
+    }
+    
+    @Test
+    public void storedEntryIsRead() throws Exception {
+        storage.dispose();
+        
+        String entryName = byteArrayStorage.getEntryNames().iterator().next();
+        byte[] bytes = byteArrayStorage.getEntry(entryName);
+        
+        // Create an archive with a stored (uncompressed) entry
+        File file = TestUtils.createTempFile(".zip");
+        
+        try(ZipOutputStream zOut = new ZipOutputStream(new FileOutputStream(file))) {
+            zOut.putNextEntry(new ZipEntry("model.xml"));
+            zOut.write("<model/>".getBytes());
+            zOut.closeEntry();
+            
+            ZipEntry zipEntry = new ZipEntry(entryName);
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(bytes.length);
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            zipEntry.setCrc(crc.getValue());
+            zOut.putNextEntry(zipEntry);
+            zOut.write(bytes);
+            zOut.closeEntry();
+        }
+        
+        storage = new LazyArchiveStorage(file, "images/", LazyArchiveStorage.DEFAULT_MAX_CACHE_SIZE);
+        
+        try(InputStream in = storage.getInputStream(entryName)) {
+            assertArrayEquals(bytes, in.readAllBytes());
+        }
+        
+        assertArrayEquals(bytes, storage.getEntry(entryName));
+        
+        storage.dispose();
+        file.delete();
+    }
+}
@@ -15,9 +15,11 @@ public class AllTextRenderTests {
 
         suite.addTest(DocumentationRendererTests.suite());
         suite.addTest(IfRendererTests.suite());
+        suite.addTest(LabelExpressionTests.suite());
         suite.addTest(NameRendererTests.suite());
         suite.addTest(PropertiesRendererTests.suite());
         suite.addTest(RelationshipRendererTests.suite());
+        suite.addTest(RenderedLabelCacheTests.suite());
         suite.addTest(SpecializationRendererTests.suite());
         suite.addTest(TextContentRendererTests.suite());
         suite.addTest(TextRendererTests.suite());
@@ -0,0 +1,142 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.ui.textrender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.archimatetool.model.IArchimateModelObject;
+import com.archimatetool.model.IDiagramModelArchimateConnection;
+import com.archimatetool.model.IDiagramModelArchimateObject;
+
+import junit.framework.JUnit4TestAdapter;
+
+/**
+ * LabelExpression Tests
+ *
+ * @author Phillip Beauvoir
+ */
+@SuppressWarnings("nls")
+public class LabelExpressionTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(LabelExpressionTests.class);
+    }
+    
+    private List<IExpressionRenderer> renderers = List.of(
+            new NameRenderer(),
+            new DocumentationRenderer(),
+            new TypeRenderer(),
+            new SpecializationRenderer(),
+            new PropertiesRenderer(),
+            new TextContentRenderer(),
+            new RelationshipRenderer(),
+            new ViewpointRenderer(),
+            new IfRenderer(),
+            new WordWrapRenderer());
+    
+    private IDiagramModelArchimateObject dmo = TextRendererTests.createDiagramModelObject();
+    
+    private String render(IArchimateModelObject object, String expression) {
+        return LabelExpression.compile(expression).render(object, renderers);
+    }
+    
+    /**
+     * Render with each renderer in turn until the text doesn't change
+     */
+    private String renderWithRenderers(IArchimateModelObject object, String expression) {
+        String result = expression;
+        String previous;
+        
+        do {
+            previous = result;
+            for(IExpressionRenderer r : renderers) {
+                result = r.render(object, result);
+            }
+        }
+        while(!result.equals(previous));
+        
+        return result;
+    }
+    
+    private void assertSameAsRenderers(IArchimateModelObject object, String expression) {
+        String result = render(object, expression);
+        assertEquals(renderWithRenderers(object, expression), result);
+    }
+    
+    @Test
+    public void compile_Invalid() {
+        assertFalse(LabelExpression.compile("${name").isCompiled());
+        assertFalse(LabelExpression.compile("${if:${name}:x").isCompiled());
+        assertFalse(LabelExpression.compile("${na$me}").isCompiled());
+        assertNull(render(dmo, "${name"));
+    }
+    
+    @Test
+    public void render_Text() {
+        assertTrue(LabelExpression.compile("Just Some Text").isCompiled());
+        assertEquals("Just Some Text", render(dmo, "Just Some Text"));
+        assertEquals("$100 a:b", render(dmo, "$100 a:b"));
+        assertEquals("{name}", render(dmo, "{name}"));
+        
+        // Could be an expression
+        assertNull(render(dmo, "$100 {x}"));
+    }
+    
+    @Test
+    public void render_SameAsRenderers() {
+        TextRendererTests.addProperty(dmo.getArchimateConcept(), "key:colon", "colon value");
+        
+        assertSameAsRenderers(dmo, "${name} in $model{name} ($view{name})");
+        assertSameAsRenderers(dmo, "${doc} ${documentation} $model{doc} $mfolder{documentation}");
+        assertSameAsRenderers(dmo, "${type} ${specialization} ${viewpoint}");
+        assertSameAsRenderers(dmo, "${property:k1} $model{property:k2} $vfolder{property:k3} ${property:key:colon}");
+        assertSameAsRenderers(dmo, "${properties:, :k3} $model{propertiesvalues}");
+        assertSameAsRenderers(dmo, "${properties}");
+        assertSameAsRenderers(dmo, "${if:${property:k1}:${name}:${type}}");
+        assertSameAsRenderers(dmo, "${if:${property:k8}:${name}:${type}}");
+        assertSameAsRenderers(dmo, "${if:${specialization}:<<${specialization}}>>");
+        assertSameAsRenderers(dmo, "${if:not\\:Empty:Is\\:OK:Not\\:Shown}");
+        assertSameAsRenderers(dmo, "(${nvl:${property:k8}:${type}})");
+        assertSameAsRenderers(dmo, "${wordwrap:6:${name} and ${documentation}}");
+        assertSameAsRenderers(dmo, "${property:$model{property:k1}}");
+        
+        IDiagramModelArchimateConnection dmc = TextRendererTests.createDiagramModelConnection();
+        assertSameAsRenderers(dmc, "$source{name} - $target{name} $source{property:k1}");
+        assertSameAsRenderers((IArchimateModelObject)dmc.getSource(), "$assignment:target{name} $connection:target{type}");
+    }
+    
+    @Test
+    public void render_EscapedCharactersAreKept() {
+        assertEquals("Is\\:OK", render(dmo, "${if:not\\:Empty:Is\\:OK:Not\\:Shown}"));
+    }
+    
+    @Test
+    public void render_UnknownExpression_IsNotRendered() {
+        assertNull(render(dmo, "${unknown} ${name}"));
+        assertNull(render(dmo, "${if:a:b:c:d}"));
+        assertNull(render(dmo, "${strength}"));
+    }
+    
+    @Test
+    public void render_ValueWithExpression_IsNotRendered() {
+        dmo.getArchimateConcept().setName("${documentation}");
+        assertNull(render(dmo, "${name}"));
+    }
+    
+    @Test
+    public void render_ValueWithSyntaxInArgument_IsNotRendered() {
+        dmo.getArchimateConcept().setName("a:b");
+        assertEquals("a:b", render(dmo, "${name}"));
+        assertNull(render(dmo, "${if:${name}:yes}"));
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.ui.textrender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.archimatetool.model.IArchimateDiagramModel;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IDiagramModelArchimateObject;
+import com.archimatetool.model.IDiagramModelGroup;
+import com.archimatetool.model.IProperty;
+
+import junit.framework.JUnit4TestAdapter;
+
+/**
+ * RenderedLabelCache Tests
+ *
+ * @author Phillip Beauvoir
+ */
+@SuppressWarnings("nls")
+public class RenderedLabelCacheTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(RenderedLabelCacheTests.class);
+    }
+    
+    private TextRenderer textRenderer = TextRenderer.getDefault();
+    
+    private IDiagramModelArchimateObject dmo = TextRendererTests.createDiagramModelObject();
+    
+    private RenderedLabelCache cache = RenderedLabelCache.getCache(dmo.getArchimateModel());
+    
+    @After
+    public void runAfterEachTest() {
+        cache.dispose();
+    }
+    
+    @Test
+    public void getCache_IsShared() {
+        assertSame(cache, RenderedLabelCache.getCache(dmo.getArchimateModel()));
+    }
+    
+    @Test
+    public void disposeLabelCache() {
+        IArchimateModel model = dmo.getArchimateModel();
+        textRenderer.renderWithExpression(dmo, "${name}");
+        assertEquals(1, cache.size());
+        assertNotNull(model.getAdapter(RenderedLabelCache.class));
+        
+        textRenderer.disposeLabelCache(model);
+        assertNull(model.getAdapter(RenderedLabelCache.class));
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    public void render_IsCached() {
+        assertEquals("Concept Name", textRenderer.renderWithExpression(dmo, "${name}"));
+        assertEquals(1, cache.size());
+        
+        assertEquals("Concept Name", textRenderer.renderWithExpression(dmo, "${name}"));
+        assertEquals(1, cache.size());
+        
+        // Different expression
+        assertEquals("Concept Documentation", textRenderer.renderWithExpression(dmo, "${documentation}"));
+        assertEquals(1, cache.size());
+    }
+    
+    @Test
+    public void render_ConceptChanged() {
+        textRenderer.renderWithExpression(dmo, "${name}");
+        
+        dmo.getArchimateConcept().setName("New Name");
+        assertEquals(0, cache.size());
+        assertEquals("New Name", textRenderer.renderWithExpression(dmo, "${name}"));
+    }
+    
+    @Test
+    public void render_PropertyChanged() {
+        assertEquals("model_v1 concept_v1", textRenderer.renderWithExpression(dmo, "$model{property:k1} ${property:k1}"));
+        
+        IProperty property = dmo.getArchimateModel().getProperties().get(0);
+        property.setValue("changed");
+        assertEquals("changed concept_v1", textRenderer.renderWithExpression(dmo, "$model{property:k1} ${property:k1}"));
+        
+        dmo.getArchimateConcept().getProperties().remove(0);
+        assertEquals("changed ", textRenderer.renderWithExpression(dmo, "$model{property:k1} ${property:k1}"));
+    }
+    
+    @Test
+    public void render_OtherObjectChanged_IsStillCached() {
+        textRenderer.renderWithExpression(dmo, "${name}");
+        
+        dmo.getArchimateModel().setName("New Model Name");
+        dmo.getArchimateModel().getProperties().get(0).setValue("changed");
+        assertEquals(1, cache.size());
+    }
+    
+    @Test
+    public void render_ViewpointChanged() {
+        assertEquals("None", textRenderer.renderWithExpression(dmo, "${viewpoint}"));
+        
+        ((IArchimateDiagramModel)dmo.getDiagramModel()).setViewpoint("organization");
+        assertEquals("Organization", textRenderer.renderWithExpression(dmo, "${viewpoint}"));
+    }
+    
+    @Test
+    public void render_ParentChanged() {
+        assertEquals("View Name", textRenderer.renderWithExpression(dmo, "$parent{name}"));
+        
+        IDiagramModelGroup group = IArchimateFactory.eINSTANCE.createDiagramModelGroup();
+        group.setName("Group Name");
+        dmo.getDiagramModel().getChildren().add(group);
+        group.getChildren().add(dmo);
+        
+        assertEquals("Group Name", textRenderer.renderWithExpression(dmo, "$parent{name}"));
+    }
+    
+    @Test
+    public void render_LabelExpressionChanged() {
+        dmo.getFeatures().putString(TextRenderer.FEATURE_NAME, "${name}");
+        assertEquals("Concept Name", textRenderer.render(dmo));
+        
+        dmo.getFeatures().putString(TextRenderer.FEATURE_NAME, "${type}");
+        assertEquals("Business Actor", textRenderer.render(dmo));
+    }
+}
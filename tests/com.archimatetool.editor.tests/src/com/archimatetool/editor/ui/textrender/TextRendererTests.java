@@ -152,6 +152,26 @@ public class TextRendererTests {
         assertEquals("${name}", textRenderer.renderWithExpression(group, "${name}"));
     }
 
+    @Test
+    public void render_CompiledExpressionsAreLeastRecentlyUsed() {
+        IDiagramModelGroup group = IArchimateFactory.eINSTANCE.createDiagramModelGroup();
+        group.setName("Group Name");
+        
+        String usedExpression = "${name} used";
+        textRenderer.renderWithExpression(group, usedExpression);
+        
+        for(int i = 0; i < TextRenderer.MAX_COMPILED_EXPRESSIONS; i++) {
+            textRenderer.renderWithExpression(group, "${name} " + i);
+            textRenderer.renderWithExpression(group, usedExpression);
+        }
+        
+        // The least recently used expression is removed and the others are kept
+        assertTrue(textRenderer.isCompiledExpressionCached(usedExpression));
+        assertFalse(textRenderer.isCompiledExpressionCached("${name} 0"));
+        assertTrue(textRenderer.isCompiledExpressionCached("${name} 1"));
+        assertTrue(textRenderer.isCompiledExpressionCached("${name} " + (TextRenderer.MAX_COMPILED_EXPRESSIONS - 1)));
+    }
+
     @Test
     public void render_FromObject() {
         IDiagramModelGroup group = IArchimateFactory.eINSTANCE.createDiagramModelGroup();
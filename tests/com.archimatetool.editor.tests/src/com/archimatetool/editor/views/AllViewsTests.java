@@ -10,6 +10,7 @@ import junit.framework.TestSuite;
 import com.archimatetool.editor.views.tree.TreeModelViewerDragDropHandlerTests;
 import com.archimatetool.editor.views.tree.TreeModelViewerFindReplaceProviderTests;
 import com.archimatetool.editor.views.tree.commands.DeleteCommandHandlerTests;
+import com.archimatetool.editor.views.tree.search.SearchFilterIndexTests;
 
 @SuppressWarnings("nls")
 public class AllViewsTests {
@@ -24,6 +25,9 @@ public class AllViewsTests {
         // views.tree.commands
         suite.addTest(DeleteCommandHandlerTests.suite());
 
+        // views.tree.search
+        suite.addTest(SearchFilterIndexTests.suite());
+
         return suite;
 	}
 
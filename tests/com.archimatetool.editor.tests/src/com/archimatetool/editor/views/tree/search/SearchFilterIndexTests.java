@@ -0,0 +1,191 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.views.tree.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.IFolderContainer;
+import com.archimatetool.model.IProfile;
+import com.archimatetool.testingtools.ArchimateTestModel;
+import com.archimatetool.tests.TestData;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+@SuppressWarnings("nls")
+public class SearchFilterIndexTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(SearchFilterIndexTests.class);
+    }
+    
+    private IArchimateModel model;
+    private List<IArchimateModel> models;
+    
+    @Before
+    public void runBeforeEachTest() throws IOException {
+        ArchimateTestModel tm = new ArchimateTestModel(TestData.TEST_MODEL_FILE_ARCHISURANCE);
+        model = tm.loadModel();
+        models = Collections.singletonList(model);
+    }
+    
+    private SearchFilterIndex createIndex(String searchText, boolean filterName, boolean filterDocumentation,
+                                          Set<EClass> concepts, boolean showAllFolders) {
+        return new SearchFilterIndex(searchText, filterName, filterDocumentation, concepts, new HashSet<String>(),
+                                     new HashSet<IProfile>(), showAllFolders);
+    }
+    
+    /**
+     * Check the built index against a recursive query of each object
+     */
+    private void assertSameAsRecursive(SearchFilterIndex index, Object element, boolean showAllFolders) {
+        assertEquals(isVisibleRecursive(index, element, showAllFolders), index.isVisible(element));
+        
+        if(element instanceof IFolderContainer) {
+            for(IFolder folder : ((IFolderContainer)element).getFolders()) {
+                assertSameAsRecursive(index, folder, showAllFolders);
+            }
+        }
+        
+        if(element instanceof IFolder) {
+            for(EObject o : ((IFolder)element).getElements()) {
+                assertSameAsRecursive(index, o, showAllFolders);
+            }
+        }
+    }
+    
+    private boolean isVisibleRecursive(SearchFilterIndex index, Object element, boolean showAllFolders) {
+        if(element instanceof IFolderContainer) {
+            for(IFolder folder : ((IFolderContainer)element).getFolders()) {
+                if(isVisibleRecursive(index, folder, showAllFolders)) {
+                    return true;
+                }
+            }
+        }
+        
+        if(element instanceof IFolder) {
+            for(Object o : ((IFolder)element).getElements()) {
+                if(isVisibleRecursive(index, o, showAllFolders)) {
+                    return true;
+                }
+            }
+            
+            if(showAllFolders) {
+                return true;
+            }
+        }
+        
+        return index.matches(element);
+    }
+    
+    @Test
+    public void testBuild_Name() {
+        SearchFilterIndex index = createIndex("CUSTOMER", true, false, new HashSet<>(), false);
+        assertTrue(index.isFiltering());
+        assertFalse(index.isBuilt());
+        
+        index.build(models);
+        assertTrue(index.isBuilt());
+        
+        assertTrue(index.isVisible(model));
+        assertFalse(index.isVisible(model.getFolder(FolderType.MOTIVATION)));
+        assertSameAsRecursive(index, model, false);
+    }
+    
+    @Test
+    public void testBuild_MultiLineName() {
+        IArchimateElement element = (IArchimateElement)model.getFolder(FolderType.BUSINESS).getElements().get(0);
+        element.setName("Multi\nLine\r\nName");
+        
+        SearchFilterIndex index = createIndex("multi line name", true, false, new HashSet<>(), false);
+        index.build(models);
+        
+        assertTrue(index.isVisible(element));
+        assertTrue(index.matches(element));
+        assertSameAsRecursive(index, model, false);
+    }
+    
+    @Test
+    public void testBuild_Documentation() {
+        SearchFilterIndex index = createIndex("insurance", false, true, new HashSet<>(), false);
+        index.build(models);
+        assertSameAsRecursive(index, model, false);
+    }
+    
+    @Test
+    public void testBuild_Concepts_ShowAllFolders() {
+        Set<EClass> concepts = new HashSet<>();
+        concepts.add(IArchimatePackage.Literals.BUSINESS_ACTOR);
+        
+        SearchFilterIndex index = createIndex("", false, false, concepts, true);
+        index.build(models);
+        
+        assertTrue(index.isVisible(model.getFolder(FolderType.MOTIVATION)));
+        assertSameAsRecursive(index, model, true);
+    }
+    
+    @Test
+    public void testBuild_Cancelled() {
+        NullProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled(true);
+        
+        SearchFilterIndex index = createIndex("a", true, false, new HashSet<>(), false);
+        
+        assertFalse(index.findTextMatches(models, monitor));
+        assertFalse(index.hasTextMatches());
+        assertFalse(index.isBuilt());
+    }
+    
+    @Test
+    public void testFindTextMatches_ThenBuild() {
+        SearchFilterIndex index = createIndex("CUSTOMER", true, false, new HashSet<>(), false);
+        
+        assertTrue(index.findTextMatches(models, null));
+        assertTrue(index.hasTextMatches());
+        assertFalse(index.isBuilt());
+        
+        index.build(models);
+        assertTrue(index.isBuilt());
+        assertSameAsRecursive(index, model, false);
+    }
+    
+    @Test
+    public void testCopy() {
+        SearchFilterIndex index = createIndex("Customer", true, false, new HashSet<>(), false);
+        index.build(models);
+        
+        SearchFilterIndex copy = index.copy();
+        assertFalse(copy.isBuilt());
+        copy.build(models);
+        assertEquals(index.getObjectCount(), copy.getObjectCount());
+        assertSameAsRecursive(copy, model, false);
+    }
+    
+    @Test
+    public void testNotFiltering() {
+        SearchFilterIndex index = createIndex("Customer", false, false, new HashSet<>(), false);
+        assertFalse(index.isFiltering());
+    }
+}
@@ -11,6 +11,8 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import junit.framework.JUnit4TestAdapter;
 
@@ -74,6 +76,42 @@ public class SVGExportProviderTests extends AbstractExportProviderTests {
         // How do you test the integrity of an SVG file? Look at it in a viewer? ;-)
     }
 
+    @Test
+    public void testExport_SameImageIsWrittenOnce() throws Exception {
+        File tmp = TestUtils.createTempFile(null);
+        
+        // Add child figures that draw the same image
+        for(int i = 0; i < 3; i++) {
+            IFigure childFigure = new Figure() {
+                @Override
+                public void paintFigure(Graphics graphics) {
+                    super.paintFigure(graphics);
+                    Image image = IArchiImages.ImageFactory.getImage(IArchiImages.ICON_LANDSCAPE);
+                    graphics.drawImage(image, bounds.x, bounds.y);
+                }
+            };
+            childFigure.setBounds(new Rectangle(i * 60, 0, 50, 50));
+            rootFigure.add(childFigure);
+        }
+        
+        provider.init(mock(IExportDialogAdapter.class), shell, rootFigure);
+        provider.export(SVGExportProvider.SVG_IMAGE_EXPORT_PROVIDER, tmp);
+        
+        String svg = new String(Files.readAllBytes(tmp.toPath()), StandardCharsets.UTF_8);
+        
+        // One image definition and a reference to it for each figure
+        assertEquals(1, count(svg, "<image"));
+        assertEquals(3, count(svg, "<use"));
+    }
+    
+    private int count(String s, String match) {
+        int count = 0;
+        for(int index = s.indexOf(match); index != -1; index = s.indexOf(match, index + 1)) {
+            count++;
+        }
+        return count;
+    }
+
     @Test
     public void testInit() {
         // Add a child figure
@@ -0,0 +1,256 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.hammer.validation;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.hammer.validation.issues.AdviceType;
+import com.archimatetool.hammer.validation.issues.IIssue;
+import com.archimatetool.hammer.validation.issues.IIssueCategory;
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimateRelationship;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelArchimateObject;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.testingtools.ArchimateTestModel;
+import com.archimatetool.tests.TestData;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+@SuppressWarnings("nls")
+public class IncrementalValidatorTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(IncrementalValidatorTests.class);
+    }
+    
+    private IArchimateModel model;
+    private IncrementalValidator validator;
+    private int changeCount;
+    
+    @Before
+    public void runBeforeEachTest() throws IOException {
+        ArchimateTestModel tm = new ArchimateTestModel(TestData.TEST_MODEL_FILE_ARCHISURANCE);
+        model = tm.loadModel();
+        validator = new IncrementalValidator(model, () -> changeCount++);
+        validator.start();
+    }
+    
+    @After
+    public void runAfterEachTest() {
+        validator.dispose();
+    }
+    
+    /**
+     * @return The issues of a full validation as sorted strings
+     */
+    private List<String> getFullValidationIssues() {
+        List<String> result = new ArrayList<>();
+        
+        for(Object o : new Validator(model).validate()) {
+            if(o instanceof IIssueCategory) {
+                for(IIssue issue : ((IIssueCategory)o).getIssues()) {
+                    result.add(toString(issue));
+                }
+            }
+        }
+        
+        Collections.sort(result);
+        return result;
+    }
+    
+    private List<String> getIncrementalIssues() {
+        List<String> result = new ArrayList<>();
+        
+        for(IIssue issue : validator.getIssues()) {
+            result.add(toString(issue));
+        }
+        
+        Collections.sort(result);
+        return result;
+    }
+    
+    private String toString(IIssue issue) {
+        return issue.getName() + "|" + issue.getDescription() + "|" + System.identityHashCode(issue.getObject());
+    }
+    
+    private void assertSameAsFullValidation() {
+        validator.validateChanges();
+        assertFalse(validator.isValidationNeeded());
+        assertEquals(getFullValidationIssues(), getIncrementalIssues());
+    }
+    
+    @Test
+    public void testGetModel() {
+        assertSame(model, validator.getModel());
+    }
+    
+    @Test
+    public void testStart() {
+        assertFalse(validator.getIssues().isEmpty());
+        assertFalse(validator.isValidationNeeded());
+        assertSameAsFullValidation();
+    }
+    
+    @Test
+    public void testElementAdded() {
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element.setName("Unused");
+        model.getDefaultFolderForObject(element).getElements().add(element);
+        
+        assertTrue(validator.isValidationNeeded());
+        assertEquals(1, changeCount);
+        assertSameAsFullValidation();
+        
+        // Duplicate name
+        IArchimateElement element2 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element2.setName("Unused");
+        model.getDefaultFolderForObject(element2).getElements().add(element2);
+        assertEquals(2, changeCount);
+        assertSameAsFullValidation();
+    }
+    
+    @Test
+    public void testElementRemoved() {
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getDefaultFolderForObject(element).getElements().add(element);
+        assertSameAsFullValidation();
+        
+        model.getDefaultFolderForObject(element).getElements().remove(element);
+        assertSameAsFullValidation();
+    }
+    
+    @Test
+    public void testElementRenamed() {
+        IArchimateElement element = (IArchimateElement)model.getFolder(FolderType.BUSINESS).getElements().get(0);
+        IArchimateElement element2 = (IArchimateElement)model.getFolder(FolderType.BUSINESS).getElements().get(1);
+        element2.setName(element.getName());
+        assertSameAsFullValidation();
+    }
+    
+    @Test
+    public void testElementChanged_DuplicatesNotChecked() {
+        IArchimateElement element = (IArchimateElement)model.getFolder(FolderType.BUSINESS).getElements().get(0);
+        
+        element.setDocumentation("Documentation");
+        assertTrue(validator.isDirty(element));
+        assertFalse(validator.isDirty(model));
+        assertSameAsFullValidation();
+        
+        // Duplicates are checked when the name changes
+        element.setName("New Name");
+        assertTrue(validator.isDirty(model));
+        assertSameAsFullValidation();
+    }
+    
+    @Test
+    public void testRelationRetargeted() {
+        IArchimateRelationship relation = (IArchimateRelationship)model.getFolder(FolderType.RELATIONS).getElements().get(0);
+        IArchimateElement element = (IArchimateElement)model.getFolder(FolderType.TECHNOLOGY).getElements().get(0);
+        relation.connect(relation.getSource(), element);
+        assertSameAsFullValidation();
+    }
+    
+    @Test
+    public void testRelationNotInViewChanged() {
+        IArchimateElement parent = IArchimateFactory.eINSTANCE.createBusinessActor();
+        IArchimateElement child = IArchimateFactory.eINSTANCE.createBusinessRole();
+        IArchimateElement other = IArchimateFactory.eINSTANCE.createBusinessRole();
+        model.getDefaultFolderForObject(parent).getElements().add(parent);
+        model.getDefaultFolderForObject(child).getElements().add(child);
+        model.getDefaultFolderForObject(other).getElements().add(other);
+        
+        // Nest child in parent in a view without a relation
+        IDiagramModel dm = model.getDiagramModels().get(0);
+        IDiagramModelArchimateObject dmoParent = IArchimateFactory.eINSTANCE.createDiagramModelArchimateObject();
+        dmoParent.setArchimateElement(parent);
+        dm.getChildren().add(dmoParent);
+        IDiagramModelArchimateObject dmoChild = IArchimateFactory.eINSTANCE.createDiagramModelArchimateObject();
+        dmoChild.setArchimateElement(child);
+        dmoParent.getChildren().add(dmoChild);
+        assertSameAsFullValidation();
+        assertTrue(hasNestingIssueFor(dmoChild));
+        
+        // Add a relation that isn't drawn in the view
+        IArchimateRelationship relation = IArchimateFactory.eINSTANCE.createAssignmentRelationship();
+        relation.connect(parent, child);
+        model.getDefaultFolderForObject(relation).getElements().add(relation);
+        assertSameAsFullValidation();
+        assertFalse(hasNestingIssueFor(dmoChild));
+        
+        // Retarget it
+        relation.connect(parent, other);
+        assertSameAsFullValidation();
+        assertTrue(hasNestingIssueFor(dmoChild));
+        
+        // Retarget it back and remove it
+        relation.connect(parent, child);
+        assertSameAsFullValidation();
+        assertFalse(hasNestingIssueFor(dmoChild));
+        
+        model.getDefaultFolderForObject(relation).getElements().remove(relation);
+        relation.disconnect();
+        assertSameAsFullValidation();
+        assertTrue(hasNestingIssueFor(dmoChild));
+    }
+    
+    private boolean hasNestingIssueFor(Object object) {
+        for(IIssue issue : validator.getIssues()) {
+            if(issue instanceof AdviceType && issue.getObject() == object) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    @Test
+    public void testDiagramObjectAddedAndRemoved() {
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getDefaultFolderForObject(element).getElements().add(element);
+        assertSameAsFullValidation();
+        
+        IDiagramModel dm = model.getDiagramModels().get(0);
+        IDiagramModelArchimateObject dmo = IArchimateFactory.eINSTANCE.createDiagramModelArchimateObject();
+        dmo.setArchimateElement(element);
+        dm.getChildren().add(dmo);
+        assertSameAsFullValidation();
+        
+        dm.getChildren().remove(dmo);
+        assertSameAsFullValidation();
+    }
+    
+    @Test
+    public void testViewRemoved() {
+        IDiagramModel dm = model.getDiagramModels().get(0);
+        ((IFolder)dm.eContainer()).getElements().remove(dm);
+        assertSameAsFullValidation();
+    }
+    
+    @Test
+    public void testDispose() {
+        validator.dispose();
+        model.getFolder(FolderType.BUSINESS).getElements().add(IArchimateFactory.eINSTANCE.createBusinessActor());
+        assertFalse(validator.isValidationNeeded());
+        assertEquals(0, changeCount);
+    }
+}
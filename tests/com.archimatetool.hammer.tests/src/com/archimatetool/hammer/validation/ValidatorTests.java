@@ -12,11 +12,17 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.archimatetool.hammer.validation.checkers.IChecker;
+import com.archimatetool.hammer.validation.issues.ErrorType;
+import com.archimatetool.hammer.validation.issues.ErrorsCategory;
+import com.archimatetool.hammer.validation.issues.IIssue;
 import com.archimatetool.hammer.validation.issues.IIssueCategory;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.testingtools.ArchimateTestModel;
@@ -72,4 +78,63 @@ public class ValidatorTests {
     public void testGetArchimateViews() {
         assertEquals(17, validator.getArchimateViews().size());
     }
+    
+    @Test
+    public void testValidate_Listener() {
+        Validator validator = new Validator(model);
+        
+        List<IChecker> checkers = Collections.synchronizedList(new ArrayList<>());
+        List<IIssue> issues = Collections.synchronizedList(new ArrayList<>());
+        
+        List<Object> list = validator.validate((checker, checkerIssues, time) -> {
+            checkers.add(checker);
+            issues.addAll(checkerIssues);
+        });
+        
+        assertEquals(validator.getCheckerTimes().size(), checkers.size());
+        assertTrue(validator.getCheckerTimes().keySet().containsAll(checkers));
+        
+        int count = 0;
+        for(Object object : list) {
+            count += ((IIssueCategory)object).getIssues().size();
+        }
+        assertEquals(issues.size(), count);
+    }
+    
+    @Test
+    public void testValidate_CheckersRunOnCallingThread() {
+        Validator validator = new Validator(model);
+        
+        List<Thread> threads = new ArrayList<>();
+        validator.addChecker(() -> {
+            threads.add(Thread.currentThread());
+            return List.of();
+        });
+        
+        validator.validate((checker, checkerIssues, time) -> threads.add(Thread.currentThread()));
+        
+        assertFalse(threads.isEmpty());
+        for(Thread thread : threads) {
+            assertSame(Thread.currentThread(), thread);
+        }
+    }
+    
+    @Test
+    public void testAddChecker() {
+        Validator validator = new Validator(model);
+        
+        ErrorType error = new ErrorType();
+        validator.addChecker(() -> List.of(error));
+        
+        List<Object> list = validator.validate();
+        assertTrue(list.get(0) instanceof ErrorsCategory);
+        assertTrue(((IIssueCategory)list.get(0)).getIssues().contains(error));
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGetArchimateElementsIsUnmodifiable() {
+        Validator validator = new Validator(model);
+        validator.validate();
+        validator.getArchimateElements().clear();
+    }
 }
@@ -78,5 +78,98 @@ public class DuplicateElementCheckerTests {
         issues = checker.getIssues();
         assertTrue(issues.isEmpty());
     }
-
+    
+    @Test
+    public void testGetIssues_GroupedInOrderOfFirstOccurrence() {
+        List<IArchimateElement> elements = new ArrayList<IArchimateElement>();
+        
+        IArchimateElement a1 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        a1.setName("a");
+        elements.add(a1);
+        
+        IArchimateElement b1 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        b1.setName("b");
+        elements.add(b1);
+        
+        IArchimateElement a2 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        a2.setName("a");
+        elements.add(a2);
+        
+        IArchimateElement b2 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        b2.setName("b");
+        elements.add(b2);
+        
+        // Different type
+        IArchimateElement a3 = IArchimateFactory.eINSTANCE.createBusinessRole();
+        a3.setName("a");
+        elements.add(a3);
+        
+        List<IIssue> issues = new DuplicateElementChecker(elements).getIssues();
+        assertEquals(4, issues.size());
+        assertSame(a1, issues.get(0).getObject());
+        assertSame(a2, issues.get(1).getObject());
+        assertSame(b1, issues.get(2).getObject());
+        assertSame(b2, issues.get(3).getObject());
+    }
+    
+    @Test
+    public void testGetIssues_SimilarNames() {
+        List<IArchimateElement> elements = new ArrayList<IArchimateElement>();
+        
+        IArchimateElement e1 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        e1.setName("Customer Service");
+        elements.add(e1);
+        
+        IArchimateElement e2 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        e2.setName("  customer   service ");
+        elements.add(e2);
+        
+        IArchimateElement e3 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        e3.setName("Custmer Servise");
+        elements.add(e3);
+        
+        IArchimateElement e4 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        e4.setName("Insurance Broker");
+        elements.add(e4);
+        
+        // Different type
+        IArchimateElement e5 = IArchimateFactory.eINSTANCE.createBusinessRole();
+        e5.setName("Customer Service");
+        elements.add(e5);
+        
+        DuplicateElementChecker checker = new DuplicateElementChecker(elements);
+        
+        // Exact names only
+        assertTrue(checker.getIssues().isEmpty());
+        
+        // Ignore case and white space
+        checker.setMaxDistance(1);
+        List<IIssue> issues = checker.getIssues();
+        assertEquals(2, issues.size());
+        assertSame(e1, issues.get(0).getObject());
+        assertSame(e2, issues.get(1).getObject());
+        
+        // Two edits
+        checker.setMaxDistance(2);
+        issues = checker.getIssues();
+        assertEquals(3, issues.size());
+        assertSame(e1, issues.get(0).getObject());
+        assertSame(e2, issues.get(1).getObject());
+        assertSame(e3, issues.get(2).getObject());
+    }
+    
+    @Test
+    public void testNormalise() {
+        assertEquals("customer service", DuplicateElementChecker.normalise("  Customer \t  SERVICE \n"));
+        assertEquals("", DuplicateElementChecker.normalise("   "));
+    }
+    
+    @Test
+    public void testIsWithinDistance() {
+        assertTrue(DuplicateElementChecker.isWithinDistance("kitten", "kitten", 0));
+        assertFalse(DuplicateElementChecker.isWithinDistance("kitten", "sitting", 2));
+        assertTrue(DuplicateElementChecker.isWithinDistance("kitten", "sitting", 3));
+        assertTrue(DuplicateElementChecker.isWithinDistance("abc", "abcd", 1));
+        assertFalse(DuplicateElementChecker.isWithinDistance("abc", "abcdef", 2));
+    }
 }
@@ -11,6 +11,7 @@ import junit.framework.TestSuite;
 import com.archimatetool.jasperreports.data.ArchimateModelDataSourceTests;
 import com.archimatetool.jasperreports.data.ElementsDataSourceTests;
 import com.archimatetool.jasperreports.data.FieldDataFactoryTests;
+import com.archimatetool.jasperreports.data.ModelIndexTests;
 import com.archimatetool.jasperreports.data.PropertiesModelDataSourceTests;
 import com.archimatetool.jasperreports.data.ViewChildrenDataSourceTests;
 import com.archimatetool.jasperreports.data.ViewModelDataSourceTests;
@@ -25,6 +26,7 @@ public class AllTests {
 		suite.addTest(ArchimateModelDataSourceTests.suite());
         suite.addTest(ElementsDataSourceTests.suite());
         suite.addTest(FieldDataFactoryTests.suite());
+        suite.addTest(ModelIndexTests.suite());
         suite.addTest(PropertiesModelDataSourceTests.suite());
         suite.addTest(ViewChildrenDataSourceTests.suite());
         suite.addTest(ViewModelDataSourceTests.suite());
@@ -6,11 +6,17 @@
 package com.archimatetool.jasperreports;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -25,6 +31,7 @@ import com.archimatetool.tests.TestUtils;
 import junit.framework.JUnit4TestAdapter;
 import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
 
 
 @SuppressWarnings("nls")
@@ -147,4 +154,95 @@ public class JasperReportsExporterTests {
     public void testJasperPrint() {
         assertEquals("main_report", jasperPrint.getName());
     }
+    
+    @Test
+    public void testCompileReport_IsCached() throws Exception {
+        File cacheFolder = new File(exportFolder, "cache");
+        
+        JasperReport report = exporter.compileReport(mainTemplateFile, cacheFolder);
+        
+        File[] files = cacheFolder.listFiles();
+        assertEquals(1, files.length);
+        assertTrue(files[0].getName().endsWith(".jasper"));
+        
+        // Loaded from the cache
+        files[0].setLastModified(0);
+        JasperReport cachedReport = exporter.compileReport(mainTemplateFile, cacheFolder);
+        assertEquals(report.getName(), cachedReport.getName());
+        assertEquals(0, files[0].lastModified());
+        assertEquals(1, cacheFolder.listFiles().length);
+    }
+    
+    @Test
+    public void testCompileReport_StaleReportsAreDeleted() throws Exception {
+        File cacheFolder = new File(exportFolder, "cache2");
+        
+        File templateFile = new File(exportFolder, "template/main.jrxml");
+        templateFile.getParentFile().mkdirs();
+        Files.copy(mainTemplateFile.toPath(), templateFile.toPath());
+        
+        exporter.compileReport(templateFile, cacheFolder);
+        exporter.compileReport(mainTemplateFile, cacheFolder);
+        assertEquals(2, cacheFolder.listFiles().length);
+        
+        // Change the template
+        Files.write(templateFile.toPath(), "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        exporter.compileReport(templateFile, cacheFolder);
+        
+        // The old compiled report of the changed template is deleted and the other template's is kept
+        File[] files = cacheFolder.listFiles();
+        assertEquals(2, files.length);
+        
+        exporter.compileReport(mainTemplateFile, cacheFolder);
+        assertEquals(new HashSet<>(Arrays.asList(files)), new HashSet<>(Arrays.asList(cacheFolder.listFiles())));
+    }
+    
+    @Test
+    public void testUsesDiagramImages() throws Exception {
+        List<JasperReport> reports = exporter.compileReports();
+        assertEquals("main_report", reports.get(0).getName());
+        assertTrue(exporter.usesDiagramImages(reports));
+        
+        // Just the main report
+        assertFalse(exporter.usesDiagramImages(reports.subList(0, 1)));
+    }
+    
+    @Test
+    public void testUsesDiagramImages_ImagePathProperty() throws Exception {
+        JasperReport report = compileImageReport("image1", "System.getProperty(\"JASPER_IMAGE_PATH\") + \"/\" + $F{id} + \".png\"");
+        assertTrue(exporter.usesDiagramImages(List.of(report)));
+    }
+    
+    @Test
+    public void testUsesDiagramImages_IdExpression() throws Exception {
+        JasperReport report = compileImageReport("image2", "$P{REPORT_PATH} + $F{id} + \".png\"");
+        assertTrue(exporter.usesDiagramImages(List.of(report)));
+    }
+    
+    @Test
+    public void testUsesDiagramImages_OtherImage() throws Exception {
+        JasperReport report = compileImageReport("image3", "$P{REPORT_PATH} + \"background.png\"");
+        assertFalse(exporter.usesDiagramImages(List.of(report)));
+    }
+    
+    /**
+     * Compile a report that has an image with imageExpression and no image path field
+     */
+    private JasperReport compileImageReport(String name, String imageExpression) throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<jasperReport xmlns=\"http://jasperreports.sourceforge.net/jasperreports\" name=\"" + name + "\""
+                + " pageWidth=\"595\" pageHeight=\"842\" columnWidth=\"555\" leftMargin=\"20\" rightMargin=\"20\" topMargin=\"20\" bottomMargin=\"20\">\n"
+                + "<parameter name=\"REPORT_PATH\" class=\"java.lang.String\"/>\n"
+                + "<field name=\"id\" class=\"java.lang.String\"/>\n"
+                + "<detail><band height=\"100\"><image><reportElement x=\"0\" y=\"0\" width=\"100\" height=\"100\"/>\n"
+                + "<imageExpression><![CDATA[" + imageExpression + "]]></imageExpression>\n"
+                + "</image></band></detail>\n"
+                + "</jasperReport>\n";
+        
+        File templateFile = new File(exportFolder, "images/" + name + ".jrxml");
+        templateFile.getParentFile().mkdirs();
+        Files.write(templateFile.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+        
+        return exporter.compileReport(templateFile, new File(exportFolder, "cache3"));
+    }
 }
@@ -0,0 +1,90 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.jasperreports.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.archimatetool.model.IArchimateConcept;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.testingtools.ArchimateTestModel;
+import com.archimatetool.tests.TestData;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+@SuppressWarnings("nls")
+public class ModelIndexTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ModelIndexTests.class);
+    }
+
+    private static IArchimateModel model;
+    private static ModelIndex index;
+    
+    @BeforeClass
+    public static void runOnceBeforeAllTests() throws IOException {
+        ArchimateTestModel tm = new ArchimateTestModel(TestData.TEST_MODEL_FILE_ARCHISURANCE);
+        model = tm.loadModel();
+        index = new ModelIndex(model);
+    }
+    
+    @Test
+    public void getModel() {
+        assertSame(model, index.getModel());
+    }
+    
+    @Test
+    public void getObjectByID() {
+        IArchimateConcept concept = index.getConcepts("elements").get(0);
+        assertSame(concept, index.getObjectByID(concept.getId()));
+        
+        IDiagramModel dm = model.getDiagramModels().get(0);
+        assertSame(dm, index.getObjectByID(dm.getId()));
+        assertSame(dm.getChildren().get(0), index.getObjectByID(dm.getChildren().get(0).getId()));
+        
+        assertSame(model, index.getObjectByID(model.getId()));
+        assertNull(index.getObjectByID("nothing"));
+        assertNull(index.getObjectByID(null));
+    }
+    
+    @Test
+    public void getConcepts_SameAsElementsDataSource() {
+        for(String types : new String[] { "elements", "relations", "business", "other", "BusinessActor", "BusinessActor|Node|NOTREAL" }) {
+            assertEquals(types, new ElementsDataSource(model, types).fConcepts, new ElementsDataSource(index, types, false).fConcepts);
+            assertEquals(types, new ElementsDataSource(model, types, true).fConcepts, new ElementsDataSource(index, types, true).fConcepts);
+        }
+    }
+    
+    @Test
+    public void getConcepts_IsCached() {
+        assertSame(index.getConcepts("business"), index.getConcepts("business"));
+    }
+    
+    @Test
+    public void getConceptsInDiagram_SameAsArchimateModelDataSource() {
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            for(String types : new String[] { "elements", "relations", "elements|relations", "business", "BusinessActor" }) {
+                List<IArchimateConcept> expected = new ArrayList<>(ArchimateModelDataSource.getConceptsInDiagram(dm, types));
+                assertEquals(expected, index.getConceptsInDiagram(dm, types));
+            }
+        }
+        
+        IDiagramModel dm = model.getDiagramModels().get(1);
+        assertEquals(30, index.getConceptsInDiagram(dm, "elements").size());
+        assertEquals(28, index.getConceptsInDiagram(dm, "relations").size());
+    }
+}
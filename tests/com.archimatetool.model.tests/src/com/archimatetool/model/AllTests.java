@@ -30,7 +30,9 @@ import com.archimatetool.model.impl.SketchModelStickyTests;
 import com.archimatetool.model.impl.SketchModelTests;
 import com.archimatetool.model.util.ArchimateModelUtilsTests;
 import com.archimatetool.model.util.ArchimateResourceFactoryTests;
+import com.archimatetool.model.util.ModelTextIndexTests;
 import com.archimatetool.model.util.RelationshipsMatrixTests;
+import com.archimatetool.model.util.SaveFragmentCacheTests;
 import com.archimatetool.model.util.UUIDFactoryTests;
 import com.archimatetool.model.viewpoints.ViewpointManagerTests;
 import com.archimatetool.model.viewpoints.ViewpointTests;
@@ -77,6 +79,8 @@ public class AllTests {
         suite.addTest(ArchimateResourceFactoryTests.suite());
         suite.addTest(UUIDFactoryTests.suite());
         suite.addTest(RelationshipsMatrixTests.suite());
+        suite.addTest(SaveFragmentCacheTests.suite());
+        suite.addTest(ModelTextIndexTests.suite());
 
         // viewpoints
         suite.addTest(ViewpointTests.suite());
@@ -20,6 +20,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateElement;
 import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.IFolder;
@@ -92,6 +93,111 @@ public class ArchimateModelTests {
         assertFalse(model.removeModelContentListener(listener));
     }
 
+    @Test
+    public void getObjectByID() {
+        model.setDefaults();
+        model.addModelContentListener((notification) -> {});
+        
+        assertNull(model.getObjectByID(null));
+        assertSame(model, model.getObjectByID(model.getId()));
+        
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getDefaultFolderForObject(element).getElements().add(element);
+        assertSame(element, model.getObjectByID(element.getId()));
+        
+        // Added after the index was created
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        IArchimateElement element2 = IArchimateFactory.eINSTANCE.createBusinessRole();
+        folder.getElements().add(element2);
+        model.getFolder(FolderType.BUSINESS).getFolders().add(folder);
+        assertSame(folder, model.getObjectByID(folder.getId()));
+        assertSame(element2, model.getObjectByID(element2.getId()));
+        
+        // ID changed
+        String oldID = element.getId();
+        element.setId("newID");
+        assertNull(model.getObjectByID(oldID));
+        assertSame(element, model.getObjectByID("newID"));
+        
+        // Removed
+        model.getFolder(FolderType.BUSINESS).getFolders().remove(folder);
+        assertNull(model.getObjectByID(folder.getId()));
+        assertNull(model.getObjectByID(element2.getId()));
+        
+        // Moved
+        model.getFolder(FolderType.BUSINESS).getFolders().add(folder);
+        model.getFolder(FolderType.OTHER).getFolders().add(folder);
+        assertSame(element2, model.getObjectByID(element2.getId()));
+        
+        // Disposed
+        model.dispose();
+        assertNull(model.getObjectByID(element.getId()));
+    }
+    
+    @Test
+    public void getObjectByID_WithModelContentListener() {
+        model.setDefaults();
+        
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getDefaultFolderForObject(element).getElements().add(element);
+        
+        model.addModelContentListener((notification) -> {});
+        assertEquals(1, model.eAdapters().size());
+        
+        assertSame(element, model.getObjectByID(element.getId()));
+        assertEquals(1, model.eAdapters().size()); // only one adapter
+    }
+    
+    @Test
+    public void getObjectByID_NoModelContentListener() {
+        model.setDefaults();
+        
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getDefaultFolderForObject(element).getElements().add(element);
+        
+        assertSame(model, model.getObjectByID(model.getId()));
+        assertSame(element, model.getObjectByID(element.getId()));
+        assertNull(model.getObjectByID("nothing"));
+        
+        // Lookup doesn't change the model
+        assertTrue(model.eAdapters().isEmpty());
+        assertTrue(element.eAdapters().isEmpty());
+    }
+    
+    @Test
+    public void getObjectByID_DuplicateIDs() {
+        model.setDefaults();
+        model.addModelContentListener((notification) -> {});
+        
+        IArchimateElement element1 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element1.setId("id");
+        model.getDefaultFolderForObject(element1).getElements().add(element1);
+        
+        IArchimateElement element2 = IArchimateFactory.eINSTANCE.createBusinessRole();
+        element2.setId("id");
+        model.getDefaultFolderForObject(element2).getElements().add(element2);
+        
+        assertSame(element1, model.getObjectByID("id"));
+        
+        // Removing the first one finds the second one
+        model.getDefaultFolderForObject(element1).getElements().remove(element1);
+        assertSame(element2, model.getObjectByID("id"));
+        
+        // Add it back and change the ID of the second one
+        model.getDefaultFolderForObject(element1).getElements().add(element1);
+        element2.setId("id2");
+        assertSame(element1, model.getObjectByID("id"));
+        assertSame(element2, model.getObjectByID("id2"));
+        
+        // Removing the duplicate keeps the indexed one
+        element2.setId("id");
+        model.getDefaultFolderForObject(element2).getElements().remove(element2);
+        assertSame(element1, model.getObjectByID("id"));
+        
+        model.getDefaultFolderForObject(element1).getElements().remove(element1);
+        assertNull(model.getObjectByID("id"));
+    }
+
     @Test
     public void addDefaultFolders() {
         // No folders by default
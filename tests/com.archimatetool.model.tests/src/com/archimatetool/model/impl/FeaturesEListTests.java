@@ -206,6 +206,81 @@ public class FeaturesEListTests {
         assertNull(list.getFeature("bogus"));
     }
     
+    @Test
+    public void getFeatureAfterRemove() {
+        IFeature feature = list.putString("name1", "value1");
+        assertSame(feature, list.getFeature("name1"));
+        
+        list.remove(feature);
+        assertNull(list.getFeature("name1"));
+        
+        list.add(feature);
+        assertSame(feature, list.getFeature("name1"));
+    }
+    
+    @Test
+    public void getFeatureAfterRename() {
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createArtifact();
+        IFeaturesEList features = element.getFeatures();
+        
+        IFeature feature = features.putString("name1", "value1");
+        assertSame(feature, features.getFeature("name1"));
+        
+        feature.setName("name2");
+        assertNull(features.getFeature("name1"));
+        assertSame(feature, features.getFeature("name2"));
+    }
+    
+    @Test
+    public void getFeatureAfterSet() {
+        IFeature feature1 = list.putString("name1", "value1");
+        
+        IFeature feature2 = IArchimateFactory.eINSTANCE.createFeature();
+        feature2.setName("name2");
+        feature2.setValue("value2");
+        list.set(0, feature2);
+        
+        assertNull(list.getFeature("name1"));
+        assertSame(feature2, list.getFeature("name2"));
+        assertFalse(list.contains(feature1));
+    }
+    
+    @Test
+    public void getIntAfterValueChanged() {
+        IFeature feature = list.putInt("name1", 1);
+        assertEquals(1, list.getInt("name1", 0));
+        
+        feature.setValue("2");
+        assertEquals(2, list.getInt("name1", 0));
+        
+        feature.setValue("-3");
+        assertEquals(-3, list.getInt("name1", 0));
+
+        feature.setValue("not an int");
+        assertEquals(5, list.getInt("name1", 5));
+        
+        feature.setValue("99999999999");
+        assertEquals(5, list.getInt("name1", 5));
+
+        feature.setValue("-");
+        assertEquals(5, list.getInt("name1", 5));
+    }
+    
+    @Test
+    public void getBooleanAfterValueChanged() {
+        IFeature feature = list.putBoolean("name1", true);
+        assertTrue(list.getBoolean("name1", false));
+        
+        feature.setValue("false");
+        assertFalse(list.getBoolean("name1", true));
+        
+        feature.setValue("TRUE");
+        assertTrue(list.getBoolean("name1", false));
+        
+        feature.setValue("bogus");
+        assertFalse(list.getBoolean("name1", true));
+    }
+    
     @Test
     public void noDuplicateFeature1() {
         IFeature feature = IArchimateFactory.eINSTANCE.createFeature();
@@ -0,0 +1,252 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDocumentable;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.INameable;
+import com.archimatetool.model.IProperty;
+import com.archimatetool.model.TestSupport;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+@SuppressWarnings("nls")
+public class ModelTextIndexTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ModelTextIndexTests.class);
+    }
+    
+    private IArchimateModel model;
+    private ModelTextIndex index;
+    
+    @Before
+    public void runBeforeEachTest() throws IOException {
+        model = TestSupport.loadModel(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        index = ModelTextIndex.getIndex(model);
+    }
+    
+    @After
+    public void runAfterEachTest() {
+        index.dispose();
+    }
+    
+    /**
+     * @return The objects in the model whose name or documentation contains text, by visiting all of them
+     */
+    private Set<EObject> find(String text, boolean documentation) {
+        Set<EObject> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        text = ModelTextIndex.fold(text);
+        
+        Set<EObject> objects = Collections.newSetFromMap(new IdentityHashMap<>());
+        objects.add(model);
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject.eContainer() instanceof IFolder || (eObject instanceof IFolder && eObject.eContainer() == model)) {
+                objects.add(eObject);
+            }
+        }
+        
+        for(EObject eObject : objects) {
+            String value = null;
+            if(!documentation && eObject instanceof INameable) {
+                value = ModelTextIndex.normaliseNewLines(((INameable)eObject).getName());
+            }
+            else if(documentation && eObject instanceof IDocumentable) {
+                value = ((IDocumentable)eObject).getDocumentation();
+            }
+            else {
+                continue;
+            }
+            
+            if(ModelTextIndex.fold(value).contains(text)) {
+                result.add(eObject);
+            }
+        }
+        
+        return result;
+    }
+    
+    private void assertSameAsFind(String text) {
+        assertEquals(find(text, false), index.findByName(text));
+        assertEquals(find(text, true), index.findByDocumentation(text));
+    }
+    
+    @Test
+    public void getIndex_IsShared() {
+        assertSame(index, ModelTextIndex.getIndex(model));
+        
+        index.dispose();
+        ModelTextIndex newIndex = ModelTextIndex.getIndex(model);
+        assertNotSame(index, newIndex);
+        newIndex.dispose();
+    }
+    
+    @Test
+    public void disposeIndex() {
+        ModelTextIndex.disposeIndex(model);
+        assertNull(model.getAdapter(ModelTextIndex.class));
+        assertEquals(0, index.getNameCount());
+        
+        // No longer listening to the model
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element.setName("Disposed");
+        model.getDefaultFolderForObject(element).getElements().add(element);
+        assertEquals(0, index.getNameCount());
+        
+        // Nothing to dispose
+        ModelTextIndex.disposeIndex(model);
+    }
+    
+    @Test
+    public void fold() {
+        assertEquals("", ModelTextIndex.fold(null));
+        assertEquals("customer", ModelTextIndex.fold("CusTomer"));
+        assertEquals("\u00DF".length(), ModelTextIndex.fold("\u00DF").length());
+    }
+    
+    @Test
+    public void find() {
+        assertFalse(index.findByName("Customer").isEmpty());
+        assertSameAsFind("Customer");
+        assertSameAsFind("CUSTOMER");
+        assertSameAsFind("in"); // Shorter than a trigram
+        assertSameAsFind("");
+        assertSameAsFind("Not in the model");
+    }
+    
+    @Test
+    public void find_DiagramComponentsAreNotIndexed() {
+        IDiagramModel dm = model.getDiagramModels().get(0);
+        assertTrue(index.findByName(dm.getName()).contains(dm));
+        
+        for(Iterator<EObject> iter = dm.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof INameable) {
+                assertFalse(index.findByName(((INameable)eObject).getName()).contains(eObject));
+            }
+        }
+    }
+    
+    @Test
+    public void find_ElementRenamed() {
+        IArchimateElement element = (IArchimateElement)model.getFolder(FolderType.BUSINESS).getElements().get(0);
+        element.setName("Renamed Element");
+        element.setDocumentation("Some documentation");
+        
+        assertEquals(Collections.singleton(element), index.findByName("renamed element"));
+        assertEquals(Collections.singleton(element), index.findByDocumentation("SOME DOC"));
+        assertSameAsFind("Customer");
+    }
+    
+    @Test
+    public void find_MultiLineName() {
+        IArchimateElement element = (IArchimateElement)model.getFolder(FolderType.BUSINESS).getElements().get(0);
+        element.setName("Multi\nLine\r\n\r\nName");
+        element.setDocumentation("Multi\nLine");
+        
+        assertEquals("Multi Line Name", ModelTextIndex.normaliseNewLines(element.getName()));
+        assertEquals(Collections.singleton(element), index.findByName("multi line name"));
+        assertEquals(Collections.singleton(element), index.findByName("Multi\nLine"));
+        
+        // Documentation is not normalised
+        assertTrue(index.findByDocumentation("multi line").isEmpty());
+        assertEquals(Collections.singleton(element), index.findByDocumentation("multi\nline"));
+    }
+    
+    @Test
+    public void find_ElementAddedAndRemoved() {
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        folder.setName("Added Folder");
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element.setName("Added Actor");
+        folder.getElements().add(element);
+        
+        model.getFolder(FolderType.BUSINESS).getFolders().add(folder);
+        assertEquals(2, index.findByName("added").size());
+        assertSameAsFind("added");
+        
+        model.getFolder(FolderType.BUSINESS).getFolders().remove(folder);
+        assertTrue(index.findByName("added").isEmpty());
+        assertSameAsFind("Customer");
+    }
+    
+    @Test
+    public void getPropertyKeys() {
+        Set<String> keys = new HashSet<>();
+        Set<String> values = new HashSet<>();
+        int count = 0;
+        
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof IProperty) {
+                keys.add(((IProperty)eObject).getKey());
+            }
+        }
+        
+        assertEquals(keys, index.getPropertyKeys());
+        
+        IArchimateElement element = (IArchimateElement)model.getFolder(FolderType.BUSINESS).getElements().get(0);
+        IProperty property = IArchimateFactory.eINSTANCE.createProperty("New Key", "New Value");
+        element.getProperties().add(property);
+        
+        assertTrue(index.getPropertyKeys().contains("New Key"));
+        assertEquals(Collections.singleton("New Value"), index.getPropertyValues("New Key"));
+        assertEquals(1, index.getPropertyCount("New Key"));
+        assertEquals(Collections.singleton(element), index.getPropertyOwners(Collections.singleton("New Key")));
+        
+        // Key changed
+        property.setKey("Changed Key");
+        assertFalse(index.getPropertyKeys().contains("New Key"));
+        assertEquals(0, index.getPropertyCount("New Key"));
+        assertEquals(1, index.getPropertyCount("Changed Key"));
+        
+        // Removed
+        element.getProperties().remove(property);
+        assertFalse(index.getPropertyKeys().contains("Changed Key"));
+        assertTrue(index.getPropertyValues("Changed Key").isEmpty());
+        
+        for(String key : keys) {
+            for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+                EObject eObject = iter.next();
+                if(eObject instanceof IProperty && key.equals(((IProperty)eObject).getKey())) {
+                    values.add(((IProperty)eObject).getValue());
+                    count++;
+                }
+            }
+            
+            assertEquals(values, index.getPropertyValues(key));
+            assertEquals(count, index.getPropertyCount(key));
+            values.clear();
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.TestSupport;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+@SuppressWarnings("nls")
+public class SaveFragmentCacheTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(SaveFragmentCacheTests.class);
+    }
+    
+    private IArchimateModel model;
+    private SaveFragmentCache cache;
+    
+    @Before
+    public void runBeforeEachTest() throws IOException {
+        model = TestSupport.loadModel(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        cache = new SaveFragmentCache(model);
+    }
+    
+    @After
+    public void runAfterEachTest() {
+        cache.dispose();
+    }
+    
+    private byte[] save(SaveFragmentCache cache) throws IOException {
+        ArchimateResource resource = (ArchimateResource)model.eResource();
+        resource.setSaveFragmentCache(cache);
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            resource.save(out, null);
+        }
+        finally {
+            resource.setSaveFragmentCache(null);
+        }
+        
+        return out.toByteArray();
+    }
+    
+    private void assertSameAsFullSave() throws IOException {
+        assertArrayEquals(save(null), save(cache));
+    }
+    
+    @Test
+    public void save_FirstSaveIsFullSave() throws IOException {
+        assertEquals(0, cache.getCacheSize());
+        assertSameAsFullSave();
+        assertTrue(cache.getCacheSize() > 0);
+    }
+    
+    @Test
+    public void save_Unchanged() throws IOException {
+        assertSameAsFullSave();
+        assertSameAsFullSave();
+    }
+    
+    @Test
+    public void save_ElementChanged() throws IOException {
+        assertSameAsFullSave();
+        
+        IArchimateElement element = (IArchimateElement)model.getFolder(FolderType.BUSINESS).getElements().get(0);
+        element.setName("Changed & <escaped>");
+        element.setDocumentation("Documentation");
+        assertSameAsFullSave();
+    }
+    
+    @Test
+    public void save_ElementChanged_OtherFragmentsAreKept() throws IOException {
+        assertSameAsFullSave();
+        
+        IFolder businessFolder = model.getFolder(FolderType.BUSINESS);
+        IArchimateElement element = (IArchimateElement)businessFolder.getElements().get(0);
+        IArchimateElement otherElement = (IArchimateElement)businessFolder.getElements().get(1);
+        IDiagramModel dm = model.getDiagramModels().get(0);
+        element.setName("Changed");
+        
+        assertNull(cache.getFragment(element).bytes);
+        assertNull(cache.getFragment(businessFolder).bytes);
+        assertNotNull(cache.getFragment(otherElement).bytes);
+        assertNotNull(cache.getFragment(dm).bytes);
+        assertNotNull(cache.getFragment(model.getFolder(FolderType.APPLICATION)).bytes);
+        
+        assertSameAsFullSave();
+    }
+    
+    @Test
+    public void save_ElementMovedToSubFolder() throws IOException {
+        assertSameAsFullSave();
+        
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        folder.setName("Sub Folder");
+        model.getFolder(FolderType.BUSINESS).getFolders().add(folder);
+        folder.getElements().add(model.getFolder(FolderType.BUSINESS).getElements().get(0));
+        assertSameAsFullSave();
+    }
+    
+    @Test
+    public void save_ElementRemoved() throws IOException {
+        assertSameAsFullSave();
+        
+        model.getFolder(FolderType.BUSINESS).getElements().remove(0);
+        assertSameAsFullSave();
+    }
+    
+    @Test
+    public void save_DiagramChanged() throws IOException {
+        assertSameAsFullSave();
+        
+        IDiagramModel dm = model.getDiagramModels().get(0);
+        dm.setName("Changed");
+        dm.getChildren().remove(0);
+        assertSameAsFullSave();
+    }
+    
+    @Test
+    public void save_DiagramMovedToSubFolder() throws IOException {
+        assertSameAsFullSave();
+        
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        folder.setName("Sub Folder");
+        model.getFolder(FolderType.DIAGRAMS).getFolders().add(folder);
+        folder.getElements().add(model.getDiagramModels().get(0));
+        assertSameAsFullSave();
+    }
+    
+    @Test
+    public void save_IDChanged() throws IOException {
+        assertSameAsFullSave();
+        
+        IArchimateElement element = (IArchimateElement)model.getFolder(FolderType.BUSINESS).getElements().get(0);
+        element.setId("new-id");
+        assertEquals(0, cache.getCacheSize());
+        assertSameAsFullSave();
+    }
+    
+    @Test
+    public void save_ModelChanged() throws IOException {
+        assertSameAsFullSave();
+        
+        model.setName("New Name");
+        model.setPurpose("Purpose");
+        assertSameAsFullSave();
+    }
+    
+    @Test
+    public void save_FolderRemoved() throws IOException {
+        assertSameAsFullSave();
+        
+        model.getFolders().remove(model.getFolder(FolderType.OTHER));
+        assertSameAsFullSave();
+    }
+}
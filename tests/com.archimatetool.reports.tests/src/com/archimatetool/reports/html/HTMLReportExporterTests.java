@@ -5,22 +5,31 @@
  */
 package com.archimatetool.reports.html;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.util.Iterator;
+import java.util.List;
 
 import org.eclipse.emf.ecore.EObject;
 import org.junit.Test;
 
 import com.archimatetool.editor.utils.FileUtils;
+import com.archimatetool.editor.utils.ZipUtils;
 import com.archimatetool.model.IArchimateConcept;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.IDiagramModelArchimateObject;
 import com.archimatetool.model.IDiagramModelObject;
 import com.archimatetool.model.IDiagramModelReference;
+import com.archimatetool.model.IFolder;
 import com.archimatetool.reports.TestData;
 import com.archimatetool.testingtools.ArchimateTestModel;
 import com.archimatetool.tests.TestUtils;
@@ -106,5 +115,106 @@ public class HTMLReportExporterTests {
         // Clean up
         FileUtils.deleteFolder(TestUtils.TMP_FOLDER);
     }
+    
+    @Test
+    public void testCreateReport_Incremental() throws Exception {
+        ArchimateTestModel tm = new ArchimateTestModel(TestData.TEST_MODEL_FILE);
+        IArchimateModel model = tm.loadModel();
+        
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getDefaultFolderForObject(element).getElements().add(element);
+        
+        HTMLReportExporter exporter = new HTMLReportExporter(model);
+        exporter.setIncremental(true);
+        
+        File targetFolder = TestUtils.createTempFolder("archi-html-report");
+        exporter.createReport(targetFolder, "index.html");
+        
+        File modelFolder = new File(targetFolder, model.getId());
+        assertTrue(new File(modelFolder, ReportManifest.FILE_NAME).exists());
+        
+        IDiagramModel dm = model.getDiagramModels().get(0);
+        File imageFile = new File(modelFolder, "images/" + dm.getId() + ".png");
+        File viewFile = new File(modelFolder, "views/" + dm.getId() + ".html");
+        File elementFile = new File(modelFolder, "elements/" + element.getId() + ".html");
+        assertTrue(imageFile.exists());
+        assertTrue(viewFile.exists());
+        assertTrue(elementFile.exists());
+        
+        // Nothing has changed so nothing is written
+        imageFile.setLastModified(0);
+        viewFile.setLastModified(0);
+        exporter.createReport(targetFolder, "index.html");
+        assertEquals(0, imageFile.lastModified());
+        assertEquals(0, viewFile.lastModified());
+        
+        // The View has changed so its page and image are written
+        dm.setName("Changed");
+        exporter.createReport(targetFolder, "index.html");
+        assertNotEquals(0, imageFile.lastModified());
+        assertNotEquals(0, viewFile.lastModified());
+        
+        // The element has been removed so its page is deleted
+        ((IFolder)element.eContainer()).getElements().remove(element);
+        exporter.createReport(targetFolder, "index.html");
+        assertFalse(elementFile.exists());
+        
+        // Clean up
+        FileUtils.deleteFolder(TestUtils.TMP_FOLDER);
+    }
+
+    @Test
+    public void testCreateReportArchive() throws Exception {
+        ArchimateTestModel tm = new ArchimateTestModel(TestData.TEST_MODEL_FILE);
+        IArchimateModel model = tm.loadModel();
+        
+        HTMLReportExporter exporter = new HTMLReportExporter(model);
+        
+        File targetFolder = TestUtils.createTempFolder("archi-html-report");
+        File zipFile = new File(targetFolder, "report.zip");
+        
+        assertEquals(zipFile, exporter.createReportArchive(zipFile, "index.html", null));
+        assertTrue(ZipUtils.isZipFile(zipFile));
+        
+        // Only the zip file is written
+        assertEquals(1, targetFolder.listFiles().length);
+        
+        List<String> entries = ZipUtils.getZipFileEntryNames(zipFile);
+        assertTrue(entries.contains("index.html"));
+        assertTrue(entries.contains("css/model.css"));
+        assertTrue(entries.stream().anyMatch(s -> s.startsWith("hints/")));
+        assertTrue(entries.contains(model.getId() + "/elements/model.html"));
+        
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            
+            if(eObject instanceof IArchimateConcept) {
+                assertTrue(entries.contains(model.getId() + "/elements/" + ((IArchimateConcept)eObject).getId() + ".html"));
+            }
+            else if(eObject instanceof IDiagramModel) {
+                assertTrue(entries.contains(model.getId() + "/images/" + ((IDiagramModel)eObject).getId() + ".png"));
+                assertTrue(entries.contains(model.getId() + "/views/" + ((IDiagramModel)eObject).getId() + ".html"));
+            }
+            else if(eObject instanceof IDiagramModelObject && !(eObject instanceof IDiagramModelArchimateObject) 
+                    && !(eObject instanceof IDiagramModelReference)) {
+                assertTrue(entries.contains(model.getId() + "/objects/" + ((IDiagramModelObject)eObject).getId() + ".html"));
+            }
+        }
+        
+        // Pages are the same as in a report folder
+        File folder = new File(targetFolder, "folder");
+        exporter.createReport(folder, "index.html");
+        IDiagramModel dm = model.getDiagramModels().get(0);
+        String entryName = model.getId() + "/views/" + dm.getId() + ".html";
+        File entryFile = ZipUtils.extractZipEntry(zipFile, entryName, new File(targetFolder, "view.html"));
+        assertArrayEquals(Files.readAllBytes(new File(folder, entryName).toPath()), Files.readAllBytes(entryFile.toPath()));
+        
+        // Hints files that are copied more than once are the last copy, as in a report folder
+        entryFile = ZipUtils.extractZipEntry(zipFile, "hints/style.css", new File(targetFolder, "style.css"));
+        assertArrayEquals(Files.readAllBytes(new File(folder, "hints/style.css").toPath()), Files.readAllBytes(entryFile.toPath()));
+        
+        // Clean up
+        FileUtils.deleteFolder(TestUtils.TMP_FOLDER);
+    }
 
 }
@@ -16,6 +16,7 @@ public class AllTests {
 
         suite.addTest(XMLExchangeUtilsTests.suite());
 		suite.addTest(XMLModelExporterTests.suite());
+        suite.addTest(FormattedXMLStreamWriterTests.suite());
         suite.addTest(XMLModelImporterTests.suite());
         suite.addTest(XMLValidatorTests.suite());
 		
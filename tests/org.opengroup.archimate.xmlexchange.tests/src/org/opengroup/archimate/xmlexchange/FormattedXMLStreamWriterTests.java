@@ -0,0 +1,139 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.Namespace;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.jdom.JDOMUtils;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+/**
+ * FormattedXMLStreamWriter Tests
+ * 
+ * @author Phillip Beauvoir
+ */
+@SuppressWarnings("nls")
+public class FormattedXMLStreamWriterTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(FormattedXMLStreamWriterTests.class);
+    }
+    
+    private static final String TEXT = "  Text & <tag> \"quoted\" 'single'\r\n\tLine 2\r\u00e9\uD83D\uDE00  ";
+    
+    private StringWriter stringWriter;
+    private FormattedXMLStreamWriter writer;
+    
+    @Before
+    public void runBeforeEachTest() {
+        stringWriter = new StringWriter();
+        writer = new FormattedXMLStreamWriter(stringWriter);
+    }
+    
+    private String toJDOMString(Element rootElement) throws IOException {
+        return JDOMUtils.write2XMLString(new Document(rootElement));
+    }
+    
+    @Test
+    public void testSameAsJDOM() throws Exception {
+        Namespace ns = Namespace.getNamespace("http://test/");
+        Namespace xsi = IXMLExchangeGlobals.XSI_NAMESPACE;
+        
+        Element root = new Element("root", ns);
+        root.addNamespaceDeclaration(xsi);
+        root.setAttribute("type", "model", xsi);
+        root.setAttribute("id", TEXT);
+        
+        Element child = new Element("child", ns);
+        root.addContent(child);
+        Element name = new Element("name", ns);
+        name.setText(TEXT);
+        name.setAttribute("lang", "en", Namespace.XML_NAMESPACE);
+        child.addContent(name);
+        child.addContent(new Element("empty", ns));
+        Element whitespace = new Element("whitespace", ns);
+        whitespace.setText(" \r\n\t ");
+        child.addContent(whitespace);
+        
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.setDefaultNamespace(ns.getURI());
+        writer.writeStartElement(ns.getURI(), "root");
+        writer.writeDefaultNamespace(ns.getURI());
+        writer.writeNamespace(xsi.getPrefix(), xsi.getURI());
+        writer.writeAttribute(xsi.getURI(), "type", "model");
+        writer.writeAttribute("id", TEXT);
+        writer.writeStartElement(ns.getURI(), "child");
+        writer.writeStartElement(ns.getURI(), "name");
+        writer.writeAttribute(Namespace.XML_NAMESPACE.getURI(), "lang", "en");
+        writer.writeCharacters(TEXT);
+        writer.writeEndElement();
+        writer.writeEmptyElement(ns.getURI(), "empty");
+        writer.writeStartElement(ns.getURI(), "whitespace");
+        writer.writeCharacters(" \r\n\t ");
+        writer.writeEndDocument();
+        writer.close();
+        
+        assertEquals(toJDOMString(root), stringWriter.toString());
+    }
+    
+    @Test
+    public void testEmptyElement() throws Exception {
+        writer.writeStartElement("a");
+        writer.writeAttribute("b", "c");
+        writer.writeEndElement();
+        assertEquals("<a b=\"c\" />", stringWriter.toString());
+    }
+    
+    @Test
+    public void testTextIsTrimmed() throws Exception {
+        writer.writeStartElement("a");
+        writer.writeCharacters("  b ");
+        writer.writeCharacters(" c\n");
+        writer.writeEndElement();
+        assertEquals("<a>b  c</a>", stringWriter.toString());
+    }
+    
+    @Test
+    public void testIndent() throws Exception {
+        writer.writeStartElement("a");
+        writer.writeStartElement("b");
+        writer.writeEmptyElement("c");
+        writer.writeEndElement();
+        writer.writeEndElement();
+        assertEquals("<a>\r\n  <b>\r\n    <c />\r\n  </b>\r\n</a>", stringWriter.toString());
+    }
+    
+    @Test(expected = XMLStreamException.class)
+    public void testMixedContentThrowsException() throws Exception {
+        writer.writeStartElement("a");
+        writer.writeCharacters("text");
+        writer.writeStartElement("b");
+    }
+    
+    @Test(expected = XMLStreamException.class)
+    public void testIllegalCharacterThrowsException() throws Exception {
+        writer.writeStartElement("a");
+        writer.writeAttribute("b", "\u0001");
+    }
+    
+    @Test(expected = XMLStreamException.class)
+    public void testUnboundNamespaceThrowsException() throws Exception {
+        writer.writeStartElement("http://test/", "a");
+    }
+}
@@ -5,16 +5,27 @@
  */
 package org.opengroup.archimate.xmlexchange;
 
+import static org.junit.Assert.assertArrayEquals;
+
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.eclipse.emf.ecore.resource.Resource;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.xml.sax.SAXException;
 
+import com.archimatetool.editor.utils.FileUtils;
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IDiagramModelObject;
+import com.archimatetool.model.IProperty;
 import com.archimatetool.model.util.ArchimateResourceFactory;
 import com.archimatetool.tests.TestUtils;
 
@@ -32,39 +43,107 @@ public class XMLModelExporterTests {
     public static junit.framework.Test suite() {
         return new JUnit4TestAdapter(XMLModelExporterTests.class);
     }
-
-    @Test
-    public void testExportModel() throws IOException, SAXException {
+    
+    private IArchimateModel model;
+    
+    private String languageCode;
+    private Map<String, String> metadata;
+    private boolean saveOrganisation;
+    
+    @Before
+    public void runBeforeEachTest() throws IOException {
         Resource resource = ArchimateResourceFactory.createNewResource(TestSupport.archiFile1);
         resource.load(null);
+        model = (IArchimateModel)resource.getContents().get(0);
+    }
+    
+    @After
+    public void runAfterEachTest() throws IOException {
+        FileUtils.deleteFolder(TestUtils.TMP_FOLDER);
+    }
+    
+    private void setOptions() {
+        languageCode = "en";
         
-        IArchimateModel model = (IArchimateModel)resource.getContents().get(0);
-        
-        XMLModelExporter exporter = new XMLModelExporter();
-        
-        // Language code
-        exporter.setLanguageCode("en");
-        
-        // Metadata
-        Map<String, String> metadata = new HashMap<String, String>();
+        metadata = new HashMap<String, String>();
         metadata.put("creator", "Phil Beauvoir");
         metadata.put("date", "2015-01-21 17:50");
         metadata.put("description", "Test the Archisurance Exchange Model");
         metadata.put("language", "en");
         metadata.put("subject", "ArchiMate, Testing");
         metadata.put("title", "Archisurance Test Exchange Model");
+        
+        saveOrganisation = true;
+    }
+    
+    private File exportWithJDOM() throws IOException {
+        JDOMModelExporter exporter = new JDOMModelExporter();
+        exporter.setLanguageCode(languageCode);
         exporter.setMetadata(metadata);
+        exporter.setSaveOrganisation(saveOrganisation);
         
-        // Add Organization
-        exporter.setSaveOrganisation(true);
+        File file = TestUtils.createTempFile(".xml");
+        exporter.exportModel(model, file);
+        return file;
+    }
+    
+    private File export() throws IOException {
+        XMLModelExporter exporter = new XMLModelExporter();
+        exporter.setLanguageCode(languageCode);
+        exporter.setMetadata(metadata);
+        exporter.setSaveOrganisation(saveOrganisation);
         
-        // Export
-        File outputFile = TestUtils.createTempFile(".xml");
-        exporter.exportModel(model, outputFile);
+        File file = TestUtils.createTempFile(".xml");
+        exporter.exportModel(model, file);
+        return file;
+    }
+    
+    private void assertSameAsJDOM() throws IOException {
+        assertArrayEquals(Files.readAllBytes(exportWithJDOM().toPath()), Files.readAllBytes(export().toPath()));
+    }
+    
+    @Test
+    public void testExportModel_SameAsJDOM() throws IOException {
+        assertSameAsJDOM();
+    }
+    
+    @Test
+    public void testExportModel_SameAsJDOM_WithOptions() throws IOException {
+        setOptions();
+        assertSameAsJDOM();
+    }
+    
+    @Test
+    public void testExportModel_SameAsJDOM_WithEscapedText() throws IOException {
+        setOptions();
+        
+        IArchimateElement element = (IArchimateElement)model.getFolder(FolderType.BUSINESS).getElements().get(0);
+        element.setName("  Name & <Tag> \"Quoted\"  ");
+        element.setDocumentation("Line 1\r\nLine 2\n\tLine 3\r");
+        
+        IProperty property = IArchimateFactory.eINSTANCE.createProperty();
+        property.setKey("Key\twith tab");
+        property.setValue(null);
+        element.getProperties().add(property);
+        
+        IDiagramModelObject dmo = model.getDiagramModels().get(0).getChildren().get(0);
+        dmo.setFont("1|Arial|12.0|1|GTK|1|");
+        
+        assertSameAsJDOM();
+    }
+    
+    @Test
+    public void testExportModel_SameAsJDOM_EmptyModel() throws IOException {
+        model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        assertSameAsJDOM();
+    }
+    
+    @Test
+    public void testExportModel() throws IOException, SAXException {
+        setOptions();
         
-        // And Validate
         XMLValidator validator = new XMLValidator();
-        validator.validateXML(outputFile);
+        validator.validateXML(export());
     }
-
 }
@@ -9,6 +9,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EObject;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -17,7 +23,11 @@ import com.archimatetool.model.IArchimateElement;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IArchimateRelationship;
+import com.archimatetool.model.IBounds;
+import com.archimatetool.model.IDiagramModelConnection;
 import com.archimatetool.model.IFolder;
+import com.archimatetool.model.INameable;
+import com.archimatetool.model.IProperty;
 
 import junit.framework.JUnit4TestAdapter;
 
@@ -26,6 +36,7 @@ import junit.framework.JUnit4TestAdapter;
  * 
  * @author Phillip Beauvoir
  */
+@SuppressWarnings("nls")
 public class XMLModelImporterTests {
     
     public static junit.framework.Test suite() {
@@ -74,4 +85,60 @@ public class XMLModelImporterTests {
         assertEquals(element1, relation.getSource());
         assertEquals(element2, relation.getTarget());
     }
+    
+    @Test
+    public void testStreamingArchimateModelHasCorrectElementsAndRelations() throws Exception {
+        importer.setStreaming(true);
+        testArchimateModelHasCorrectElementsAndRelations();
+    }
+    
+    @Test
+    public void testStreamingSameAsDocument() throws Exception {
+        assertStreamingSameAsDocument(TestSupport.xmlFile1);
+        assertStreamingSameAsDocument(TestSupport.xmlFile2);
+    }
+    
+    private void assertStreamingSameAsDocument(File file) throws Exception {
+        IArchimateModel expected = new XMLModelImporter().createArchiMateModel(file);
+        
+        XMLModelImporter streamingImporter = new XMLModelImporter();
+        streamingImporter.setStreaming(true);
+        IArchimateModel actual = streamingImporter.createArchiMateModel(file);
+        
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getPurpose(), actual.getPurpose());
+        assertEquals(getContents(expected), getContents(actual));
+    }
+    
+    /**
+     * Folder and some connection ids are generated so compare the type, name, properties, bounds and connection ends of each object
+     */
+    private List<String> getContents(IArchimateModel model) {
+        List<String> result = new ArrayList<>();
+        
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            String s = eObject.eClass().getName();
+            
+            if(eObject instanceof INameable) {
+                s += " " + ((INameable)eObject).getName();
+            }
+            if(eObject instanceof IProperty) {
+                s += " " + ((IProperty)eObject).getKey() + "=" + ((IProperty)eObject).getValue();
+            }
+            if(eObject instanceof IBounds) {
+                IBounds bounds = (IBounds)eObject;
+                s += " " + bounds.getX() + "," + bounds.getY() + "," + bounds.getWidth() + "," + bounds.getHeight();
+            }
+            if(eObject instanceof IDiagramModelConnection) {
+                IDiagramModelConnection connection = (IDiagramModelConnection)eObject;
+                s += " " + connection.getSource().getName() + " -> " + connection.getTarget().getName();
+            }
+            
+            result.add(s);
+        }
+        
+        return result;
+    }
 }
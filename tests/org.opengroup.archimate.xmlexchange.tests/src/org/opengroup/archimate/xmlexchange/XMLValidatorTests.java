@@ -5,6 +5,13 @@
  */
 package org.opengroup.archimate.xmlexchange;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Test;
 
 import junit.framework.JUnit4TestAdapter;
@@ -27,4 +34,17 @@ public class XMLValidatorTests {
         validator.validateXML(TestSupport.xmlFile2);
     }
     
+    @Test
+    public void testValidateFiles() throws Exception {
+        XMLValidator validator = new XMLValidator();
+        
+        Map<File, Exception> errors = validator.validateXML(List.of(TestSupport.xmlFile2, TestSupport.archiFile1, TestSupport.xmlFile2));
+        assertEquals(1, errors.size());
+        assertTrue(errors.containsKey(TestSupport.archiFile1));
+        
+        // Validators are re-used by each thread so a valid file is still valid after an invalid one
+        errors = validator.validateXML(List.of(TestSupport.xmlFile2, TestSupport.xmlFile2));
+        assertTrue(errors.isEmpty());
+    }
+    
 }